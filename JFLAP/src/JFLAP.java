@@ -50,10 +50,17 @@ import org.xml.sax.SAXException;
  * @author Moti Ben-Ari
  *   All code moved to gui.Main
  *   Parameter dontQuit false for command line invocation
+ *   "test" as the first argument runs automata.BatchTester with no windows
  */
 
 public class JFLAP {
 	public static void main(String[] args) {
+		if (args.length > 0 && args[0].equals("test")) {
+			String[] rest = new String[args.length - 1];
+			System.arraycopy(args, 1, rest, 0, rest.length);
+			automata.BatchTester.main(rest);
+			return;
+		}
 		gui.Main.main(args, false);
 	}
 }
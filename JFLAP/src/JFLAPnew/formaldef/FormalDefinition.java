@@ -20,6 +20,8 @@ import JFLAPnew.formaldef.symbols.Symbol;
 
 public abstract class FormalDefinition extends TreeSet<IAlphabet> implements IComplete, Comparable<FormalDefinition>{
 
+	private transient SymbolTable mySymbolTable;
+
 	public FormalDefinition(Class<? extends IAlphabet> ... alphabets){
 		super();
 		initializeAlphabets(alphabets); 
@@ -125,6 +127,16 @@ public abstract class FormalDefinition extends TreeSet<IAlphabet> implements ICo
 	
 	public abstract String getName();
 
+	/**
+	 * Returns the table of integer IDs for the symbols of this definition,
+	 * rebuilding it if any alphabet has changed since it was last built.
+	 */
+	public SymbolTable getSymbolTable() {
+		if (mySymbolTable == null || !mySymbolTable.isCurrent())
+			mySymbolTable = new SymbolTable(this);
+		return mySymbolTable;
+	}
+
 	public void eraseAlphabets() {
 		super.clear();
 	}
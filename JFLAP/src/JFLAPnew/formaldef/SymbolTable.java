@@ -0,0 +1,136 @@
+package JFLAPnew.formaldef;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import JFLAPnew.formaldef.alphabets.IAlphabet;
+import JFLAPnew.formaldef.symbols.Symbol;
+import JFLAPnew.formaldef.symbols.SymbolString;
+
+/**
+ * A <CODE>SymbolTable</CODE> interns every distinct symbol of a
+ * {@link FormalDefinition} as a dense integer ID, so that input can be
+ * handled as an <CODE>int[]</CODE> rather than as a list of
+ * <CODE>Symbol</CODE>s compared by their strings. IDs are handed out
+ * alphabet by alphabet in the order of the definition, and a symbol that
+ * appears in more than one alphabet (e.g. in both the input and the tape
+ * alphabet) keeps a single ID.
+ * <P>
+ * A table is a snapshot; use {@link FormalDefinition#getSymbolTable()} to
+ * get one that reflects the current alphabets.
+ */
+public class SymbolTable {
+
+	private FormalDefinition myDefinition;
+	private IAlphabet[] myAlphabets;
+	private int[] myModificationCounts;
+	private Map<String, Integer> myIDs;
+	private List<Symbol> mySymbols;
+	private SymbolTokenizer myTokenizer;
+
+	public SymbolTable(FormalDefinition def) {
+		myDefinition = def;
+		myAlphabets = def.toArray(new IAlphabet[0]);
+		myModificationCounts = new int[myAlphabets.length];
+		myIDs = new HashMap<String, Integer>();
+		mySymbols = new ArrayList<Symbol>();
+		for (int i = 0; i < myAlphabets.length; i++){
+			myModificationCounts[i] = myAlphabets[i].getModificationCount();
+			for (int id = 0; id < myAlphabets[i].size(); id++){
+				Symbol s = myAlphabets[i].getSymbolByID(id);
+				if (!myIDs.containsKey(s.getString())){
+					myIDs.put(s.getString(), mySymbols.size());
+					mySymbols.add(s);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns true if none of the alphabets of the definition have been
+	 * added, removed or modified since this table was built.
+	 */
+	public boolean isCurrent() {
+		if (myDefinition.size() != myAlphabets.length)
+			return false;
+		int i = 0;
+		for (IAlphabet alph: myDefinition){
+			if (alph != myAlphabets[i] ||
+					alph.getModificationCount() != myModificationCounts[i])
+				return false;
+			i++;
+		}
+		return true;
+	}
+
+	public FormalDefinition getDefinition() {
+		return myDefinition;
+	}
+
+	/**
+	 * @return the number of IDs; every ID is in <CODE>[0, size())</CODE>
+	 */
+	public int size() {
+		return mySymbols.size();
+	}
+
+	/**
+	 * @return the ID of the symbol with the given string, or -1 if no
+	 * 			alphabet contains it
+	 */
+	public int getID(String sym) {
+		Integer id = myIDs.get(sym);
+		return id == null ? -1 : id;
+	}
+
+	public int getID(Symbol sym) {
+		return this.getID(sym.getString());
+	}
+
+	public Symbol getSymbol(int id) {
+		return mySymbols.get(id);
+	}
+
+	/**
+	 * Returns the tokenizer that splits text into the symbols of this table.
+	 */
+	public SymbolTokenizer getTokenizer() {
+		if (myTokenizer == null)
+			myTokenizer = new SymbolTokenizer(this);
+		return myTokenizer;
+	}
+
+	/**
+	 * Translates a string of symbols to IDs. Symbols that are in none of the
+	 * alphabets translate to -1.
+	 */
+	public int[] encode(SymbolString string) {
+		int[] ids = new int[string.size()];
+		for (int i = 0; i < ids.length; i++)
+			ids[i] = this.getID(string.get(i));
+		return ids;
+	}
+
+	/**
+	 * Splits the input text into symbols of the definition and translates
+	 * them to IDs.
+	 *
+	 * @return the IDs of the symbols, or null if the text cannot be parsed
+	 * 			into symbols of the definition
+	 */
+	public int[] encode(String input) {
+		if (SymbolString.isEmpty(input))
+			return new int[0];
+		return this.getTokenizer().tokenize(input);
+	}
+
+	public SymbolString decode(int[] ids) {
+		Symbol[] symbols = new Symbol[ids.length];
+		for (int i = 0; i < ids.length; i++)
+			symbols[i] = this.getSymbol(ids[i]);
+		return new SymbolString(symbols);
+	}
+
+}
@@ -0,0 +1,174 @@
+package JFLAPnew.formaldef;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * A <CODE>SymbolTokenizer</CODE> splits text into the symbols of a
+ * {@link SymbolTable} in a single left to right pass. The symbol strings are
+ * compiled into a trie, and at each position the longest symbol that matches
+ * is taken. Symbols are produced directly as their table IDs.
+ * <P>
+ * A tokenizer belongs to one snapshot of a table; get it through
+ * {@link SymbolTable#getTokenizer()} so it is rebuilt with the table when an
+ * alphabet changes.
+ */
+public class SymbolTokenizer {
+
+	private Node myRoot;
+	private int myLongestSymbol;
+
+	public SymbolTokenizer(SymbolTable table) {
+		myRoot = new Node();
+		for (int id = 0; id < table.size(); id++){
+			String s = table.getSymbol(id).getString();
+			Node node = myRoot;
+			for (int i = 0; i < s.length(); i++)
+				node = node.getOrCreateChild(s.charAt(i));
+			node.myID = id;
+			myLongestSymbol = Math.max(myLongestSymbol, s.length());
+		}
+	}
+
+	/**
+	 * Splits the whole input into symbol IDs.
+	 *
+	 * @return the IDs, or null if some part of the input is not a symbol
+	 */
+	public int[] tokenize(CharSequence input) {
+		int[] ids = new int[input.length()];
+		int count = this.scan(input, ids);
+		return count < 0 ? null : Arrays.copyOf(ids, count);
+	}
+
+	/**
+	 * Splits the input into symbol IDs up to the first position at which no
+	 * symbol matches; the rest of the input is ignored.
+	 */
+	public int[] tokenizePrefix(CharSequence input) {
+		int[] ids = new int[input.length()];
+		int count = this.scan(input, ids);
+		return Arrays.copyOf(ids, count < 0 ? -count - 1 : count);
+	}
+
+	/**
+	 * Writes the symbol IDs of <CODE>input</CODE> into <CODE>ids</CODE>,
+	 * which must have room for <CODE>input.length()</CODE> entries.
+	 *
+	 * @return the number of IDs written, or if the input could not be
+	 * 			tokenized completely, <CODE>-(written + 1)</CODE>
+	 */
+	private int scan(CharSequence input, int[] ids) {
+		int count = 0, pos = 0, length = input.length();
+		while (pos < length){
+			Node node = myRoot;
+			int matchID = -1, matchEnd = pos;
+			for (int i = pos; i < length && (node = node.getChild(input.charAt(i))) != null; i++){
+				if (node.myID >= 0){
+					matchID = node.myID;
+					matchEnd = i + 1;
+				}
+			}
+			if (matchID < 0)
+				return -count - 1;
+			ids[count++] = matchID;
+			pos = matchEnd;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns a reader of the symbol IDs in the text read from
+	 * <CODE>in</CODE>. At most the length of the longest symbol is buffered.
+	 */
+	public SymbolReader read(Reader in) {
+		return new SymbolReader(in);
+	}
+
+	/**
+	 * Reads symbol IDs one at a time from a character stream.
+	 */
+	public class SymbolReader {
+
+		private Reader myIn;
+		private char[] myLookahead = new char[Math.max(myLongestSymbol, 1)];
+		private int myStart, myCount;
+		private boolean amAtEnd;
+
+		private SymbolReader(Reader in) {
+			myIn = in;
+		}
+
+		/**
+		 * @return the ID of the next symbol, or -1 at the end of the input
+		 * @throws AlphabetException if the upcoming text is not a symbol
+		 */
+		public int read() throws IOException {
+			fill();
+			if (myCount == 0)
+				return -1;
+			Node node = myRoot;
+			int matchID = -1, matchLength = 0;
+			for (int i = 0; i < myCount && (node = node.getChild(charAt(i))) != null; i++){
+				if (node.myID >= 0){
+					matchID = node.myID;
+					matchLength = i + 1;
+				}
+			}
+			if (matchID < 0)
+				throw new AlphabetException("The input starting with \"" + charAt(0) +
+						"\" is not made of symbols from the alphabets.");
+			myStart = (myStart + matchLength) % myLookahead.length;
+			myCount -= matchLength;
+			return matchID;
+		}
+
+		private char charAt(int i) {
+			return myLookahead[(myStart + i) % myLookahead.length];
+		}
+
+		private void fill() throws IOException {
+			while (!amAtEnd && myCount < myLookahead.length){
+				int c = myIn.read();
+				if (c < 0)
+					amAtEnd = true;
+				else
+					myLookahead[(myStart + myCount++) % myLookahead.length] = (char) c;
+			}
+		}
+
+	}
+
+	private static class Node {
+
+		private char[] myChars = new char[0];
+		private Node[] myChildren = new Node[0];
+		private int myID = -1;
+
+		private Node getChild(char c) {
+			int i = Arrays.binarySearch(myChars, c);
+			return i < 0 ? null : myChildren[i];
+		}
+
+		private Node getOrCreateChild(char c) {
+			int i = Arrays.binarySearch(myChars, c);
+			if (i >= 0)
+				return myChildren[i];
+			i = -i - 1;
+			char[] chars = new char[myChars.length + 1];
+			Node[] children = new Node[myChildren.length + 1];
+			System.arraycopy(myChars, 0, chars, 0, i);
+			System.arraycopy(myChildren, 0, children, 0, i);
+			System.arraycopy(myChars, i, chars, i + 1, myChars.length - i);
+			System.arraycopy(myChildren, i, children, i + 1, myChildren.length - i);
+			chars[i] = c;
+			children[i] = new Node();
+			myChars = chars;
+			myChildren = children;
+			return children[i];
+		}
+
+	}
+
+}
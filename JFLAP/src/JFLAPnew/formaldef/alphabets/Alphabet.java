@@ -9,9 +9,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Observable;
 import java.util.Set;
 import java.util.TreeSet;
@@ -26,7 +28,14 @@ public abstract class Alphabet<T extends Symbol> extends Observable implements I
 
 
 	private TreeSet<T> mySymbols;
+	/** A read only view of the symbols, so they only change through this. */
+	private Set<T> myView;
 	private FormalDefinition myParent;
+	/** Dense IDs of the symbols, by symbol string; null until first needed. */
+	private transient Map<String, Integer> myIDs;
+	/** The symbols in ID order; null until first needed. */
+	private transient List<T> mySymbolsByID;
+	private int myModificationCount;
 	
 	public Alphabet(FormalDefinition parent){
 		this();
@@ -35,11 +44,17 @@ public abstract class Alphabet<T extends Symbol> extends Observable implements I
 	
 	public Alphabet() {
 		mySymbols = new TreeSet<T>();
+		myView = Collections.unmodifiableSet(mySymbols);
 	}
 
+	/**
+	 * Returns a read only view of the symbols. They can only be changed
+	 * through the methods of this alphabet, so that their IDs are kept up to
+	 * date.
+	 */
 	@Override
 	public Set<T> getSymbols() {
-		return mySymbols;
+		return myView;
 	}
 
 	@Override
@@ -56,8 +71,8 @@ public abstract class Alphabet<T extends Symbol> extends Observable implements I
 	public boolean equals(IAlphabet o){
 		if (!this.equalsByPriority(o))
 			return false;
-		Set<T> a1 = this.clone().getSymbols(),
-				a2 = o.clone().getSymbols();
+		Set<T> a1 = new TreeSet<T>(this.getSymbols()),
+				a2 = new TreeSet<T>(o.getSymbols());
 		a1.removeAll(o.getSymbols());
 		a2.removeAll(this.getSymbols());
 		return a1.isEmpty() && a2.isEmpty();
@@ -114,7 +129,7 @@ public abstract class Alphabet<T extends Symbol> extends Observable implements I
 	@Override
 	public BooleanWrapper add(T sym) {
 		BooleanWrapper canAdd = this.canAdd(sym);
-		if (canAdd.isTrue()) mySymbols.add(sym);
+		if (canAdd.isTrue() && mySymbols.add(sym)) this.symbolsChanged();
 		return canAdd;
 	}
 
@@ -126,7 +141,7 @@ public abstract class Alphabet<T extends Symbol> extends Observable implements I
 	@Override
 	public boolean containsSymbolWithString(String... strings) {
 		for	(String s: strings){
-			if (!this.contains(this.createDesiredSymbol(s))) 
+			if (this.getIDForString(s) < 0) 
 				return false; 
 		}
 		return true;
@@ -189,11 +204,8 @@ public abstract class Alphabet<T extends Symbol> extends Observable implements I
 
 	@Override
 	public T getSymbol(String sym) {
-		for (T s: mySymbols){
-			if (sym.equals(s.getString()))
-				return s;
-		}
-		return null;
+		int id = this.getIDForString(sym);
+		return id < 0 ? null : this.getSymbolByID(id);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -205,7 +217,7 @@ public abstract class Alphabet<T extends Symbol> extends Observable implements I
 	@Override
 	public BooleanWrapper remove(T sym) {
 		BooleanWrapper canRemove = this.canRemove(sym);
-		if (canRemove.isTrue()) mySymbols.remove(sym);
+		if (canRemove.isTrue() && mySymbols.remove(sym)) this.symbolsChanged();
 		return canRemove;
 	}
 
@@ -213,10 +225,39 @@ public abstract class Alphabet<T extends Symbol> extends Observable implements I
 	@Override
 	public BooleanWrapper modify(T from, String to) {
 		BooleanWrapper canChange = this.canModify(from, to);
-		if (canChange.isTrue()) from.setString(to);
+		if (canChange.isTrue()) {
+			// Alphabets that share the symbol keep it by its string as well.
+			List<Alphabet<T>> sharing = this.getAlphabetsSharing(from);
+			for (Alphabet<T> alph : sharing)
+				alph.mySymbols.remove(from);
+			mySymbols.remove(from);
+			from.setString(to);
+			mySymbols.add(from);
+			this.symbolsChanged();
+			for (Alphabet<T> alph : sharing) {
+				alph.mySymbols.add(from);
+				alph.symbolsChanged();
+			}
+		}
 		return canChange;
 	}
 
+	/**
+	 * Returns the other alphabets of the parent definition that hold this
+	 * very symbol object, rather than one with the same string.
+	 */
+	@SuppressWarnings("unchecked")
+	private List<Alphabet<T>> getAlphabetsSharing(T sym) {
+		List<Alphabet<T>> sharing = new ArrayList<Alphabet<T>>();
+		if (myParent == null)
+			return sharing;
+		for (IAlphabet alph : myParent)
+			if (alph != this && alph instanceof Alphabet
+					&& alph.getSymbol(sym.getString()) == sym)
+				sharing.add((Alphabet<T>) alph);
+		return sharing;
+	}
+
 	@Override
 	public Set<Character> getUniqueCharacters() {
 		Set<Character> chars = new TreeSet<Character>();
@@ -287,13 +328,55 @@ public abstract class Alphabet<T extends Symbol> extends Observable implements I
 	 * 				-1 if the symbol is not in the ALphabet
 	 */
 	public int getIndex(T sym) {
-		int index = mySymbols.size()-1;
-		for (T s : mySymbols.descendingSet()){
-			if (s.equals(sym))
-				break;
-			index--;
+		return this.getIDForString(sym.getString());
+	}
+
+	/**
+	 * Returns the ID of the symbol with the given string. IDs are dense,
+	 * running from 0 to <CODE>size()-1</CODE> in the sorted order of the
+	 * symbols, and stay the same until this alphabet is next modified.
+	 * 
+	 * @param sym
+	 *            the string of the symbol
+	 * @return the ID of the symbol, or -1 if no symbol has that string
+	 */
+	@Override
+	public int getIDForString(String sym) {
+		Integer id = this.getIDs().get(sym);
+		return id == null ? -1 : id;
+	}
+
+	@Override
+	public T getSymbolByID(int id) {
+		this.getIDs();
+		return mySymbolsByID.get(id);
+	}
+
+	@Override
+	public int getModificationCount() {
+		return myModificationCount;
+	}
+
+	private Map<String, Integer> getIDs() {
+		if (myIDs == null){
+			Map<String, Integer> ids = new HashMap<String, Integer>();
+			List<T> byID = new ArrayList<T>(mySymbols);
+			for (int i = 0; i < byID.size(); i++)
+				ids.put(byID.get(i).getString(), i);
+			mySymbolsByID = byID;
+			myIDs = ids;
 		}
-		return index;	
+		return myIDs;
+	}
+
+	/**
+	 * Must be called whenever the symbols of this alphabet, or their strings,
+	 * change, so that the symbol IDs are reassigned.
+	 */
+	protected void symbolsChanged() {
+		myIDs = null;
+		mySymbolsByID = null;
+		myModificationCount++;
 	}
 
 	@Override
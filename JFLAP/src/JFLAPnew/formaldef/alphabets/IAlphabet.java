@@ -67,5 +67,11 @@ public interface IAlphabet<T extends Symbol> extends Comparable<IAlphabet>,
 	public void clear();
 
 	public String[] getSymbolStringArray();
+
+	public int getIDForString(String sym);
+
+	public T getSymbolByID(int id);
+
+	public int getModificationCount();
 	
 }
@@ -2,41 +2,62 @@ package JFLAPnew.formaldef.symbols;
 
 import gui.environment.Universe;
 
-import java.lang.reflect.Array;
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
 import java.util.Set;
 import java.util.TreeSet;
 
-import automata.Automaton;
-
 import JFLAPnew.formaldef.FormalDefinition;
-import JFLAPnew.formaldef.alphabets.IAlphabet;
-import JFLAPnew.formaldef.symbols.terminal.Terminal;
-import JFLAPnew.formaldef.symbols.variable.Variable;
+import JFLAPnew.formaldef.SymbolTable;
+
+/**
+ * A <CODE>SymbolString</CODE> is an ordered list of {@link Symbol}s backed by
+ * a slice (offset and length) of a <CODE>Symbol</CODE> array. Random access
+ * is O(1), and {@link #subList(int)}, {@link #subList(int, int)} and the copy
+ * constructor share the backing array rather than copying it. The backing
+ * array is copied lazily the first time a shared string is modified, so
+ * every <CODE>SymbolString</CODE> still behaves as an independent value.
+ */
+public class SymbolString extends AbstractList<Symbol> implements RandomAccess,
+		Comparable<SymbolString>, Cloneable, java.io.Serializable {
+
+	private static final Symbol[] NO_SYMBOLS = new Symbol[0];
 
-public class SymbolString extends LinkedList<Symbol> implements Comparable<SymbolString> {
+	private Symbol[] mySymbols;
+	private int myOffset;
+	private int mySize;
+	/** True if <CODE>mySymbols</CODE> may be seen by another SymbolString. */
+	private boolean amShared;
 
 	public SymbolString(String in, FormalDefinition def){
-		super();
-		this.addAll(SymbolString.createFromString(in, def));
+		this(SymbolString.createFromString(in, def));
 	}
 
 	public SymbolString() {
-		super();
+		mySymbols = NO_SYMBOLS;
 	}
 
 	public SymbolString(Symbol ... symbols) {
-		super();
-		for (Symbol s: symbols)
-			this.add(s);
+		mySymbols = symbols.length == 0 ? NO_SYMBOLS : symbols.clone();
+		mySize = symbols.length;
 	}
 
 	public SymbolString(SymbolString subList) {
-		super(subList);
+		this(subList, 0, subList.size());
+	}
+
+	/**
+	 * Creates a view of <CODE>size</CODE> symbols of <CODE>other</CODE>
+	 * starting at <CODE>start</CODE> that shares its backing array.
+	 */
+	private SymbolString(SymbolString other, int start, int size) {
+		mySymbols = other.mySymbols;
+		myOffset = other.myOffset + start;
+		mySize = size;
+		amShared = other.amShared = true;
 	}
 
 	public <T extends Symbol> Set<T> getSymbolsOfClass(Class<T> clazz) {
@@ -45,36 +66,45 @@ public class SymbolString extends LinkedList<Symbol> implements Comparable<Symbo
 			if (s.getClass().isAssignableFrom(clazz))
 				results.add((T) s);
 		}
-		
+
 		return results;
 	}
-	
+
 	public boolean concat(Symbol sym) {
 		return this.add(sym);
 	}
 
 	public SymbolString reverse() {
-		SymbolString reverse = new SymbolString();
-		for (Symbol s: this)
-			reverse.addFirst(s);
-		return reverse;
+		Symbol[] reverse = new Symbol[mySize];
+		for (int i = 0; i < mySize; i++)
+			reverse[i] = mySymbols[myOffset + mySize - 1 - i];
+		return wrap(reverse);
 	}
-	
+
 	public int indexOfSubSymbolString(SymbolString o) {
-		if (o.size() > this.size())
-			return -1;
-		for (int i = 0; i< this.size(); i++){
-			Boolean check = true;
-			for (int j = 0; j + o.size() <= this.size(); j++){
-				check = check && this.get(i+j).equals(o.get(j));
-			}
-			if (check) return i;
+		for (int i = 0; i + o.mySize <= mySize; i++){
+			if (this.regionMatches(i, o))
+				return i;
 		}
 		return -1;
 	}
 
+	/**
+	 * Returns true if the symbols of <CODE>o</CODE> occur in this string
+	 * starting at index <CODE>start</CODE>.
+	 */
+	public boolean regionMatches(int start, SymbolString o) {
+		if (start < 0 || start + o.mySize > mySize)
+			return false;
+		for (int j = 0; j < o.mySize; j++){
+			if (!mySymbols[myOffset + start + j].equals(o.mySymbols[o.myOffset + j]))
+				return false;
+		}
+		return true;
+	}
+
 	public boolean startsWith(SymbolString label) {
-		return this.indexOfSubSymbolString(label) == 0;
+		return this.regionMatches(0, label);
 	}
 
 	/**
@@ -82,114 +112,279 @@ public class SymbolString extends LinkedList<Symbol> implements Comparable<Symbo
 	 * @return
 	 */
 	public int stringLength() {
-		return this.isEmpty() ? 0 : this.toString().length();
+		int length = 0;
+		for (int i = 0; i < mySize; i++)
+			length += mySymbols[myOffset + i].length();
+		return length;
 	}
 
 	public boolean endsWith(SymbolString ss) {
-		return this.indexOfSubSymbolString(ss) + ss.size() == this.size();
+		return this.regionMatches(mySize - ss.mySize, ss);
 	}
 
 	public boolean endsWith(Symbol s) {
-		return this.getLast() == s;
+		return !this.isEmpty() && this.getLast() == s;
 	}
 
+	/**
+	 * Returns the suffix of this string starting at <CODE>i</CODE>. The
+	 * suffix shares this string's backing array, so no symbols are copied.
+	 */
 	public SymbolString subList(int i) {
-		return (SymbolString) super.subList(i, this.size());
+		return this.subList(i, mySize);
 	}
 
 	@Override
 	public SymbolString subList(int start, int end){
-		return new SymbolString(super.subList(start, end).toArray(new Symbol[0]));
+		if (start < 0 || end > mySize || start > end)
+			throw new IndexOutOfBoundsException("subList(" + start + ", " + end +
+					") of a string of size " + mySize);
+		return new SymbolString(this, start, end - start);
 	}
 
-	public String toString(){
-		String string = "";
-		for (Symbol s: this){
-			string += s.toString();
+	@Override
+	public Symbol get(int index) {
+		checkIndex(index, mySize);
+		return mySymbols[myOffset + index];
+	}
+
+	@Override
+	public int size() {
+		return mySize;
+	}
+
+	@Override
+	public Symbol set(int index, Symbol s) {
+		checkIndex(index, mySize);
+		makeWritable(mySize);
+		Symbol old = mySymbols[index];
+		mySymbols[index] = s;
+		return old;
+	}
+
+	@Override
+	public void add(int index, Symbol s) {
+		checkIndex(index, mySize + 1);
+		makeWritable(mySize + 1);
+		System.arraycopy(mySymbols, index, mySymbols, index + 1, mySize - index);
+		mySymbols[index] = s;
+		mySize++;
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends Symbol> c) {
+		if (c.isEmpty())
+			return false;
+		Symbol[] added = c.toArray(NO_SYMBOLS);
+		makeWritable(mySize + added.length);
+		System.arraycopy(added, 0, mySymbols, mySize, added.length);
+		mySize += added.length;
+		return true;
+	}
+
+	@Override
+	public Symbol remove(int index) {
+		checkIndex(index, mySize);
+		makeWritable(mySize);
+		Symbol old = mySymbols[index];
+		System.arraycopy(mySymbols, index + 1, mySymbols, index, mySize - index - 1);
+		mySymbols[--mySize] = null;
+		return old;
+	}
+
+	@Override
+	public void clear() {
+		modCount++;
+		mySymbols = NO_SYMBOLS;
+		myOffset = mySize = 0;
+		amShared = false;
+	}
+
+	/**
+	 * Removes every occurrence of <CODE>s</CODE> from this string.
+	 *
+	 * @return true if anything was removed
+	 */
+	public boolean purgeOf(Symbol s) {
+		makeWritable(mySize);
+		int kept = 0;
+		for (int i = 0; i < mySize; i++){
+			if (!mySymbols[i].equals(s))
+				mySymbols[kept++] = mySymbols[i];
 		}
-		return string.length() == 0 ? Universe.curProfile.getEmptyStringSymbol() : string;
+		Arrays.fill(mySymbols, kept, mySize, null);
+		boolean changed = kept != mySize;
+		mySize = kept;
+		return changed;
+	}
+
+	public Symbol getFirst() {
+		if (this.isEmpty())
+			throw new NoSuchElementException();
+		return this.get(0);
+	}
+
+	public Symbol getLast() {
+		if (this.isEmpty())
+			throw new NoSuchElementException();
+		return this.get(mySize - 1);
+	}
+
+	public void addFirst(Symbol s) {
+		this.add(0, s);
+	}
+
+	public void addLast(Symbol s) {
+		this.add(s);
+	}
+
+	public Symbol removeFirst() {
+		if (this.isEmpty())
+			throw new NoSuchElementException();
+		return this.remove(0);
+	}
+
+	public Symbol removeLast() {
+		if (this.isEmpty())
+			throw new NoSuchElementException();
+		return this.remove(mySize - 1);
+	}
+
+	@Override
+	public Object[] toArray() {
+		return Arrays.copyOfRange(mySymbols, myOffset, myOffset + mySize, Object[].class);
+	}
+
+	public String toString(){
+		if (mySize == 0)
+			return Universe.curProfile.getEmptyStringSymbol();
+		StringBuilder string = new StringBuilder();
+		for (int i = 0; i < mySize; i++)
+			string.append(mySymbols[myOffset + i].toString());
+		return string.toString();
 	}
 
 	public boolean equals(Object o){
-		if (o instanceof SymbolString)
-			return this.compareTo((SymbolString) o) == 0;		
+		if (o == this)
+			return true;
+		if (o instanceof SymbolString){
+			SymbolString other = (SymbolString) o;
+			if (other.mySize != mySize)
+				return false;
+			return this.startsWith(other);
+		}
 		if (o instanceof Symbol)
-			return this.size() == 1 && this.getFirst() == o;
+			return mySize == 1 && this.getFirst() == o;
 		return false;
 	}
 
 	@Override
 	public int hashCode() {
+		// Not cached: symbols may be renamed in place by their alphabet.
 		int code = 0;
-		for (Symbol s: this)
-			code += s.hashCode();
+		for (int i = 0; i < mySize; i++)
+			code = 31 * code + mySymbols[myOffset + i].hashCode();
 		return code;
 	}
 
 	@Override
 	public SymbolString clone() {
-		SymbolString string = new SymbolString();
-		for (Symbol s: this)
-			string.add(s.clone());
-		return string;
+		Symbol[] string = new Symbol[mySize];
+		for (int i = 0; i < mySize; i++)
+			string[i] = mySymbols[myOffset + i].clone();
+		return wrap(string);
 	}
 
 	@Override
 	public int compareTo(SymbolString o) {
-		Iterator<Symbol> me = this.iterator(),
-		 		 other = o.iterator();
-		while(me.hasNext() && other.hasNext()){
-			Symbol sMe = me.next(),
-				   sOther = other.next();
-			
-			if(sMe.compareTo(sOther) != 0)
-					return sMe.compareTo(sOther);
+		int common = Math.min(mySize, o.mySize);
+		for (int i = 0; i < common; i++){
+			int comp = mySymbols[myOffset + i].compareTo(o.mySymbols[o.myOffset + i]);
+			if (comp != 0)
+				return comp;
 		}
-		
-		if (!me.hasNext() && other.hasNext())
+
+		if (mySize < o.mySize)
 			return 1;
-		if (me.hasNext() && !other.hasNext())
+		if (mySize > o.mySize)
 			return -1;
-		
+
 		return 0;
 	}
 
 	@Override
 	public int indexOf(Object other){
-		if (other instanceof Symbol)
-			return super.indexOf(other);
+		if (other instanceof Symbol){
+			for (int i = 0; i < mySize; i++){
+				if (mySymbols[myOffset + i].equals(other))
+					return i;
+			}
+			return -1;
+		}
 		return indexOfSubSymbolString((SymbolString) other);
-		
+
 	}
 
+	/**
+	 * Prepares the backing array for a modification that leaves this string
+	 * with <CODE>capacity</CODE> symbols. The array is copied if it is shared
+	 * with another string or is too small, so that afterwards the symbols
+	 * start at index 0 of an array owned by this string alone.
+	 */
+	private void makeWritable(int capacity) {
+		modCount++;
+		if (amShared || myOffset != 0 || capacity > mySymbols.length){
+			Symbol[] copy = new Symbol[Math.max(capacity, mySize + (mySize >> 1) + 1)];
+			System.arraycopy(mySymbols, myOffset, copy, 0, mySize);
+			mySymbols = copy;
+			myOffset = 0;
+			amShared = false;
+		}
+	}
+
+	private static void checkIndex(int index, int bound) {
+		if (index < 0 || index >= bound)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + bound);
+	}
+
+	private static SymbolString wrap(Symbol[] symbols) {
+		SymbolString string = new SymbolString();
+		string.mySymbols = symbols;
+		string.mySize = symbols.length;
+		return string;
+	}
+
+	/**
+	 * Splits <CODE>in</CODE> into the symbols of the alphabets of
+	 * <CODE>def</CODE>, taking the longest matching symbol at each position.
+	 * Splitting stops at the first position where no symbol matches.
+	 */
 	public static SymbolString createFromString(String in,
 			FormalDefinition def) {
-		
-		String temp = "";
-		SymbolString symbols = new SymbolString();
-		if (in == Universe.curProfile.getEmptyStringSymbol()) return symbols;
-		for (int i = 0; i < in.length(); i++){
-			temp += in.charAt(i);
-			for (IAlphabet alph: def){
-				if (alph.containsSymbolWithString(temp)){
-					symbols.add(alph.getSymbol(temp));
-					temp = "";
-					break;
-				}
-			}
-		}
-		return symbols;
+		if (SymbolString.isEmpty(in)) return new SymbolString();
+		SymbolTable table = def.getSymbolTable();
+		int[] ids = table.getTokenizer().tokenizePrefix(in);
+		Symbol[] symbols = new Symbol[ids.length];
+		for (int i = 0; i < ids.length; i++)
+			symbols[i] = table.getSymbol(ids[i]);
+		return wrap(symbols);
 	}
 
 	public static SymbolString concat(SymbolString ... strings) {
-		SymbolString concat = new SymbolString();
+		int size = 0;
 		for (SymbolString ss: strings)
-			concat.concat(ss);
-		return concat;
+			size += ss.mySize;
+		Symbol[] concat = new Symbol[size];
+		int next = 0;
+		for (SymbolString ss: strings){
+			System.arraycopy(ss.mySymbols, ss.myOffset, concat, next, ss.mySize);
+			next += ss.mySize;
+		}
+		return wrap(concat);
 	}
 
 	public static boolean canBeParsed(String input, FormalDefinition def) {
-		return SymbolString.isEmpty(input) || createFromString(input, def).stringLength() == input.length();
+		return SymbolString.isEmpty(input) || def.getSymbolTable().getTokenizer().tokenize(input) != null;
 	}
 
 	public static boolean isEmpty(String input) {
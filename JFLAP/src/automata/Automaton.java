@@ -37,6 +37,7 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 import JFLAPnew.formaldef.FormalDefinition;
 import JFLAPnew.formaldef.FormallyDefinedObject;
@@ -319,7 +320,6 @@ public abstract class Automaton<T extends Transition> extends FormalDefinition i
 
 		distributeTransitionEvent(new AutomataTransitionEvent(this, trans,
 				true, false));
-		System.out.println(this);
 	}
 
 	/**
@@ -747,6 +747,7 @@ public abstract class Automaton<T extends Transition> extends FormalDefinition i
 	 *            the event to distribute
 	 */
 	void distributeStateEvent(AutomataStateEvent event) {
+		modificationCount++;
 		Iterator it = stateListeners.iterator();
 		while (it.hasNext()) {
 			AutomataStateListener listener = (AutomataStateListener) it.next();
@@ -756,6 +757,17 @@ public abstract class Automaton<T extends Transition> extends FormalDefinition i
 
 
 
+	/**
+	 * Returns a count that changes whenever a state or transition event is
+	 * distributed. Structures derived from this automaton can remember the
+	 * count they were built at to tell if they are out of date.
+	 * 
+	 * @return the modification count of this automaton
+	 */
+	public int getModificationCount() {
+		return modificationCount;
+	}
+
 	/**
 	 * Removes a <CODE>AutomataStateListener</CODE> from this automata.
 	 * 
@@ -793,6 +805,7 @@ public abstract class Automaton<T extends Transition> extends FormalDefinition i
 	 *            the event to distribute
 	 */
 	void distributeTransitionEvent(AutomataTransitionEvent event) {
+		modificationCount++;
 		Iterator it = transitionListeners.iterator();
 		while (it.hasNext()) {
 			AutomataTransitionListener listener = (AutomataTransitionListener) it
@@ -1003,12 +1016,16 @@ public abstract class Automaton<T extends Transition> extends FormalDefinition i
 	// LISTENER STUFF
 	// Structures related to this object as something that generates
 	// events, in particular as it pertains to the removal and
-	// addition of states and transtions.
-	private transient HashSet transitionListeners = new HashSet();
+	// addition of states and transtions. Listeners may be added from any
+	// thread, e.g. by compiled forms built while simulating.
+	private transient Set transitionListeners = new CopyOnWriteArraySet();
+
+	private transient Set stateListeners = new CopyOnWriteArraySet();
 
-	private transient HashSet stateListeners = new HashSet();
+	private transient Set noteListeners = new CopyOnWriteArraySet();
 
-	private transient HashSet noteListeners = new HashSet();
+	/** Counts the state and transition events distributed so far. */
+	private transient int modificationCount = 0;
 	
 	/**
 	 * Reset all non-transient data structures.
@@ -1035,6 +1052,7 @@ public abstract class Automaton<T extends Transition> extends FormalDefinition i
 		
 		
 		initialState = null;
+		modificationCount++;
     
     
     	cachedStates = null;
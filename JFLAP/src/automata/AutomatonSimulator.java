@@ -29,6 +29,10 @@ import JFLAPnew.formaldef.symbols.SymbolString;
  * takes an automaton object and an input string and runs the machine on the
  * given input. This is the root class for the simulators of all forms of
  * automata, including FSA, PDA, and Turing machines.
+ * <P>
+ * A simulator keeps no configurations between calls, so runs on different
+ * simulators of the same automaton can go on in different threads; a single
+ * simulator should be used by one thread at a time.
  * 
  * @author Ryan Cavalcante
  */
@@ -39,7 +43,6 @@ public abstract class AutomatonSimulator {
 	 */
 	public AutomatonSimulator(Automaton automaton) {
 		myAutomaton = automaton;
-		myConfigurations = new HashSet();
 	}
 
 	/**
@@ -62,16 +65,6 @@ public abstract class AutomatonSimulator {
 	 */
 	public abstract ArrayList stepConfiguration(Configuration config);
 
-	/**
-	 * Returns true if the simulation of the input string on the automaton left
-	 * the machine in an accept state (the criteria for "accept" is defined
-	 * differently for the different automata).
-	 * 
-	 * @return true if the simulation of the input string on the automaton left
-	 *         the machine in an "accept" state.
-	 */
-	public abstract boolean isAccepted();
-
 	/**
 	 * Runs the automaton on the input string.
 	 * 
@@ -88,10 +81,4 @@ public abstract class AutomatonSimulator {
 
 	/** The automaton that the string will be run on. */
 	protected Automaton myAutomaton;
-
-	/**
-	 * The set of configurations the machine could possibly be in at a given
-	 * moment in the simulation.
-	 */
-	protected Set myConfigurations;
 }
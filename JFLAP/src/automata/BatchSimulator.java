@@ -0,0 +1,383 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package automata;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import JFLAPnew.formaldef.SymbolTable;
+import JFLAPnew.formaldef.symbols.SymbolString;
+import automata.turing.AcceptanceFilter;
+import automata.turing.TMSimulator;
+import automata.turing.TMState;
+import automata.turing.TuringMachine;
+
+/**
+ * A <CODE>BatchSimulator</CODE> runs many inputs on automata at once,
+ * without any user interface, on a fixed number of threads. Each run is a
+ * task with its own simulator, searched with a {@link ConfigurationSearch},
+ * so no simulator is shared between threads; a task that runs longer than
+ * the time allowed is stopped, and all tasks can be cancelled. Each result
+ * is given to a {@link Listener} as soon as its task ends, in whatever order
+ * the tasks end.
+ * <P>
+ * Automata are only read by the tasks, and must not be changed until every
+ * task on them has ended. Their lazily built structures are built when a
+ * task is submitted, by the thread that submits it.
+ */
+
+public class BatchSimulator {
+	/** The result of a run that accepted. */
+	public static final int ACCEPTED = ConfigurationSearch.ACCEPTED;
+
+	/** The result of a run that rejected. */
+	public static final int REJECTED = ConfigurationSearch.REJECTED;
+
+	/** The result of a run that was cancelled. */
+	public static final int CANCELLED = ConfigurationSearch.CANCELLED;
+
+	/** The result of a run stopped because it took too long. */
+	public static final int TIMED_OUT = 3;
+
+	/**
+	 * The result of a run stopped by an exception or error in the simulator,
+	 * such as running out of memory or stack.
+	 */
+	public static final int FAILED = 4;
+
+	/**
+	 * A <CODE>Listener</CODE> hears the results of the tasks of a batch. It
+	 * is called from the thread that ran the task.
+	 */
+	public static interface Listener {
+		/**
+		 * Called when a task ends.
+		 *
+		 * @param task
+		 *            the number the task was submitted with
+		 * @param result
+		 *            {@link #ACCEPTED}, {@link #REJECTED}, {@link #CANCELLED},
+		 *            {@link #TIMED_OUT} or {@link #FAILED}
+		 * @param configuration
+		 *            the accepting configuration, or else the last one
+		 *            considered, or <CODE>null</CODE> if there was none
+		 * @param time
+		 *            the time the task ran, in nanoseconds
+		 */
+		public void finished(int task, int result,
+				Configuration configuration, long time);
+	}
+
+	/**
+	 * Instantiates a batch simulator.
+	 *
+	 * @param threads
+	 *            the number of threads to run tasks on
+	 * @param timeout
+	 *            the most time a task may take, in milliseconds, or 0 for no
+	 *            limit
+	 * @param strategy
+	 *            the order configurations are searched in
+	 * @param listener
+	 *            the listener for the results
+	 */
+	public BatchSimulator(int threads, long timeout,
+			ConfigurationSearch.Strategy strategy, Listener listener) {
+		myTimeout = timeout;
+		myStrategy = strategy;
+		myListener = listener;
+		ThreadFactory factory = new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "Batch simulation");
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+		myPool = Executors.newFixedThreadPool(Math.max(1, threads), factory);
+		if (timeout > 0)
+			myTimer = Executors.newSingleThreadScheduledExecutor(factory);
+	}
+
+	/**
+	 * Sets how Turing machines accept, for tasks submitted after this. Until
+	 * it is set, they accept as the current profile says.
+	 *
+	 * @param filters
+	 *            the acceptance filters; a configuration is accepted if any
+	 *            of them accepts it
+	 */
+	public void setAcceptanceFilters(AcceptanceFilter[] filters) {
+		myFilters = (AcceptanceFilter[]) filters.clone();
+	}
+
+	/**
+	 * Sets the text that stands for the empty input, besides no text at all,
+	 * for tasks submitted after this. Until it is set, it is the empty string
+	 * symbol of the current profile.
+	 *
+	 * @param empty
+	 *            the text for the empty input
+	 */
+	public void setEmptyString(String empty) {
+		myEmptyString = empty;
+	}
+
+	/**
+	 * Submits a run of an input on an automaton.
+	 *
+	 * @param task
+	 *            the number to report the result with
+	 * @param automaton
+	 *            the automaton
+	 * @param input
+	 *            the input, a <CODE>String</CODE>, or for a Turing machine, a
+	 *            <CODE>String</CODE> for each tape
+	 */
+	public void submit(int task, Automaton automaton, Object input) {
+		prepare(automaton);
+		myPool.execute(new Task(task, automaton, input, myFilters,
+				myEmptyString));
+	}
+
+	/**
+	 * Builds the structures an automaton builds when it is first read, so
+	 * that the tasks only read it.
+	 */
+	private static void prepare(Automaton automaton) {
+		automaton.getSymbolTable().getTokenizer();
+		automaton.getTransitions();
+		automaton.getFinalStates();
+		State[] states = automaton.getStates();
+		for (int i = 0; i < states.length; i++) {
+			automaton.getTransitionsFromState(states[i]);
+			automaton.getTransitionsToState(states[i]);
+			if (states[i] instanceof TMState
+					&& ((TMState) states[i]).getInnerTM() != null)
+				prepare(((TMState) states[i]).getInnerTM());
+		}
+	}
+
+	/**
+	 * Cancels every task: those not started end at once, and those running
+	 * stop soon after. Each is reported as {@link #CANCELLED}.
+	 */
+	public void cancel() {
+		myCancelled = true;
+		for (Task task : myRunning)
+			task.stop(false);
+	}
+
+	/**
+	 * Lets the tasks submitted finish, and then ends the threads. No more
+	 * tasks may be submitted.
+	 */
+	public void shutdown() {
+		myPool.shutdown();
+		if (myTimer != null)
+			myTimer.shutdown();
+	}
+
+	/**
+	 * Waits for the tasks submitted before {@link #shutdown} to end.
+	 *
+	 * @param millis
+	 *            the most time to wait, in milliseconds
+	 * @return <CODE>true</CODE> if they all ended
+	 * @throws InterruptedException
+	 *             if this thread is interrupted while waiting
+	 */
+	public boolean awaitTermination(long millis) throws InterruptedException {
+		return myPool.awaitTermination(millis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * One run of an input. A task is interrupted to stop it, and only while
+	 * it runs.
+	 */
+	private class Task implements Runnable {
+		public Task(int number, Automaton automaton, Object input,
+				AcceptanceFilter[] filters, String empty) {
+			myNumber = number;
+			myAutomaton = automaton;
+			myInput = input;
+			myTaskFilters = filters;
+			myEmpty = empty;
+		}
+
+		public void run() {
+			if (myCancelled) {
+				myListener.finished(myNumber, CANCELLED, null, 0);
+				return;
+			}
+			long start = System.nanoTime();
+			myThread = Thread.currentThread();
+			myRunning.add(this);
+			if (myCancelled)
+				stop(false);
+			ScheduledFuture<?> timer = null;
+			if (myTimer != null)
+				timer = myTimer.schedule(new Runnable() {
+					public void run() {
+						stop(true);
+					}
+				}, myTimeout, TimeUnit.MILLISECONDS);
+			int result;
+			Configuration last = null;
+			AutomatonSimulator simulator = null;
+			Error fatal = null;
+			try {
+				if (myAutomaton instanceof TuringMachine
+						&& myTaskFilters != null)
+					simulator = new TMSimulator(myAutomaton, myTaskFilters);
+				else
+					simulator = SimulatorFactory.getSimulator(myAutomaton);
+				Configuration[] initial = getInitialConfigurations(simulator);
+				if (initial.length == 0) {
+					result = REJECTED;
+				} else {
+					ConfigurationSearch search = new ConfigurationSearch(
+							simulator, myStrategy, Integer.MAX_VALUE);
+					result = search.search(initial, null);
+					last = search.getLastConfiguration();
+				}
+			} catch (Throwable e) {
+				result = FAILED;
+				// Running out of memory or stack is the input's failure, and
+				// what it used is let go; any other error is rethrown once
+				// the task has been reported.
+				if (e instanceof Error && !(e instanceof OutOfMemoryError)
+						&& !(e instanceof StackOverflowError))
+					fatal = (Error) e;
+			} finally {
+				synchronized (this) {
+					myDone = true;
+				}
+				// Its compiled machine listens to the machines until then.
+				if (simulator instanceof TMSimulator)
+					((TMSimulator) simulator).dispose();
+				if (timer != null)
+					timer.cancel(false);
+				myRunning.remove(this);
+				// An interrupt meant for this task must not reach the next.
+				Thread.interrupted();
+			}
+			if (result == CANCELLED && myTimedOut)
+				result = TIMED_OUT;
+			myListener.finished(myNumber, result, last, System.nanoTime()
+					- start);
+			if (fatal != null)
+				throw fatal;
+		}
+
+		/**
+		 * Returns the initial configurations for the input.
+		 */
+		private Configuration[] getInitialConfigurations(
+				AutomatonSimulator simulator) {
+			if (myAutomaton instanceof TuringMachine) {
+				String[] inputs = myInput instanceof String[] ? (String[]) myInput
+						: new String[] { (String) myInput };
+				return ((TMSimulator) simulator).getInitialConfigurations(inputs);
+			}
+			String input = (String) myInput;
+			if (myEmpty == null) {
+				if (!SymbolString.canBeParsed(input, myAutomaton))
+					return new Configuration[0];
+				return simulator.getInitialConfigurations(SymbolString
+						.createFromString(input, myAutomaton));
+			}
+			if (input.length() == 0 || input.equals(myEmpty))
+				return simulator.getInitialConfigurations(new SymbolString());
+			SymbolTable table = myAutomaton.getSymbolTable();
+			int[] ids = table.getTokenizer().tokenize(input);
+			if (ids == null)
+				return new Configuration[0];
+			return simulator.getInitialConfigurations(table.decode(ids));
+		}
+
+		/**
+		 * Interrupts the task, if it is still running.
+		 *
+		 * @param timedOut
+		 *            if the task is stopped for taking too long
+		 */
+		public synchronized void stop(boolean timedOut) {
+			if (myDone)
+				return;
+			myTimedOut = timedOut;
+			myThread.interrupt();
+		}
+
+		private int myNumber;
+
+		private Automaton myAutomaton;
+
+		private Object myInput;
+
+		/** How Turing machines accept, or <CODE>null</CODE> for the profile. */
+		private AcceptanceFilter[] myTaskFilters;
+
+		/** The text for the empty input, or <CODE>null</CODE> for the profile. */
+		private String myEmpty;
+
+		/** The thread running the task. */
+		private Thread myThread;
+
+		/** Whether the task has ended. */
+		private boolean myDone = false;
+
+		/** Whether the task was stopped for taking too long. */
+		private volatile boolean myTimedOut = false;
+	}
+
+	/** The most time a task may take, or 0. */
+	private long myTimeout;
+
+	/** The order of the searches. */
+	private ConfigurationSearch.Strategy myStrategy;
+
+	/** The listener for results. */
+	private Listener myListener;
+
+	/** How Turing machines accept, or <CODE>null</CODE> for the profile. */
+	private AcceptanceFilter[] myFilters = null;
+
+	/** The text for the empty input, or <CODE>null</CODE> for the profile. */
+	private String myEmptyString = null;
+
+	/** The threads that run tasks. */
+	private ExecutorService myPool;
+
+	/** The thread that stops tasks that take too long, or <CODE>null</CODE>. */
+	private ScheduledExecutorService myTimer = null;
+
+	/** The tasks running. */
+	private Set<Task> myRunning = ConcurrentHashMap.<Task> newKeySet();
+
+	/** Whether the tasks have been cancelled. */
+	private volatile boolean myCancelled = false;
+}
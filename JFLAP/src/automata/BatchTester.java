@@ -0,0 +1,561 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package automata;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+
+import automata.mealy.MealyConfiguration;
+import automata.mealy.MealyMachine;
+import automata.turing.AcceptByFinalStateFilter;
+import automata.turing.AcceptByHaltingFilter;
+import automata.turing.AcceptanceFilter;
+import automata.turing.TMConfiguration;
+import automata.turing.Tape;
+import automata.turing.TuringMachine;
+import file.ParseException;
+import file.XMLCodec;
+import gui.environment.Profile;
+
+/**
+ * The <CODE>BatchTester</CODE> runs inputs on automata saved in files from the
+ * command line, with no windows, and writes a line for each run. It is started
+ * by <CODE>java JFLAP test</CODE> followed by the options and files described
+ * in {@link #USAGE}.
+ * <P>
+ * Every input is run on every automaton, on a {@link BatchSimulator}, and the
+ * results are written in the order of the files and inputs as soon as they are
+ * known. Nothing is read from the profile of the editor: Turing machines
+ * accept as the command line says, and the empty input is an empty field or
+ * {@link Profile#LAMBDA}. Each line of input holds tab separated fields: the
+ * input, one field for each tape of a Turing machine, and optionally what is
+ * expected. For finite state and pushdown automata that is a verdict, where
+ * anything starting with "r" means reject and anything else accept, as in the
+ * multiple run table. For Mealy and Moore machines it is the output. For
+ * Turing machines it is the expected output of each tape, "~" for any, and
+ * then the verdict.
+ */
+
+public class BatchTester {
+	/** The exit status when every run ended and was as expected. */
+	public static final int PASSED = 0;
+
+	/** The exit status when some run was not as expected. */
+	public static final int MISMATCH = 1;
+
+	/** The exit status when some run timed out, failed or never ended. */
+	public static final int INCOMPLETE = 2;
+
+	/** The exit status when some file could not be read as an automaton. */
+	public static final int BAD_FILE = 3;
+
+	/** The exit status when the results could not be written. */
+	public static final int WRITE_ERROR = 4;
+
+	/** The exit status when the command line is wrong. */
+	public static final int USAGE_ERROR = 64;
+
+	/** The description of the command line. */
+	public static final String USAGE = "Usage: java JFLAP test [options] file.jff ...\n"
+			+ "  -i FILE      read inputs from FILE, or - for standard input;\n"
+			+ "               may be repeated (default: standard input)\n"
+			+ "  -o FILE      write results to FILE (default: standard output)\n"
+			+ "  -f FORMAT    jsonl or csv (default: jsonl)\n"
+			+ "  -t MILLIS    time allowed for each run, 0 for no limit (default: 10000)\n"
+			+ "  -j THREADS   runs at once (default: the number of processors)\n"
+			+ "  -s STRATEGY  bfs, dfs or ids (default: bfs)\n"
+			+ "  -a ACCEPT    how Turing machines accept: final, halt or both\n"
+			+ "               (default: final)\n"
+			+ "Exit status: 0 all as expected, 1 some not as expected, 2 some timed\n"
+			+ "out or failed, 3 some file could not be read, 4 results could not be\n"
+			+ "written, 64 bad command line.";
+
+	/**
+	 * Runs the tester.
+	 *
+	 * @param args
+	 *            the options and files, not including "test"
+	 */
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+		int status;
+		try {
+			status = new BatchTester().run(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			status = USAGE_ERROR;
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+			status = USAGE_ERROR;
+		} catch (InterruptedException e) {
+			status = INCOMPLETE;
+		}
+		System.exit(status);
+	}
+
+	/**
+	 * Runs the tester on a command line.
+	 *
+	 * @param args
+	 *            the options and files
+	 * @return the exit status
+	 * @throws IllegalArgumentException
+	 *             if the command line is wrong
+	 * @throws IOException
+	 *             if the inputs could not be read
+	 * @throws InterruptedException
+	 *             if this thread is interrupted while the runs finish
+	 */
+	public int run(String[] args) throws IOException, InterruptedException {
+		ArrayList<String> files = new ArrayList<String>();
+		ArrayList<String> inputFiles = new ArrayList<String>();
+		String output = null;
+		long timeout = 10000;
+		int threads = Runtime.getRuntime().availableProcessors();
+		ConfigurationSearch.Strategy strategy = ConfigurationSearch.Strategy.BREADTH_FIRST;
+		AcceptanceFilter[] filters = { new AcceptByFinalStateFilter() };
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (!arg.startsWith("-") || arg.length() == 1) {
+				files.add(arg);
+				continue;
+			}
+			if (i + 1 == args.length)
+				throw new IllegalArgumentException(arg + " needs a value.");
+			String value = args[++i];
+			if (arg.equals("-i"))
+				inputFiles.add(value);
+			else if (arg.equals("-o"))
+				output = value;
+			else if (arg.equals("-f")) {
+				if (value.equals("csv"))
+					myCSV = true;
+				else if (!value.equals("jsonl"))
+					throw new IllegalArgumentException("Unknown format " + value
+							+ ".");
+			} else if (arg.equals("-t"))
+				timeout = parseNumber(arg, value);
+			else if (arg.equals("-j"))
+				threads = (int) parseNumber(arg, value);
+			else if (arg.equals("-s")) {
+				if (value.equals("bfs"))
+					strategy = ConfigurationSearch.Strategy.BREADTH_FIRST;
+				else if (value.equals("dfs"))
+					strategy = ConfigurationSearch.Strategy.DEPTH_FIRST;
+				else if (value.equals("ids"))
+					strategy = ConfigurationSearch.Strategy.ITERATIVE_DEEPENING;
+				else
+					throw new IllegalArgumentException("Unknown strategy "
+							+ value + ".");
+			} else if (arg.equals("-a")) {
+				if (value.equals("final"))
+					filters = new AcceptanceFilter[] { new AcceptByFinalStateFilter() };
+				else if (value.equals("halt"))
+					filters = new AcceptanceFilter[] { new AcceptByHaltingFilter() };
+				else if (value.equals("both"))
+					filters = new AcceptanceFilter[] {
+							new AcceptByFinalStateFilter(),
+							new AcceptByHaltingFilter() };
+				else
+					throw new IllegalArgumentException("Unknown acceptance "
+							+ value + ".");
+			} else
+				throw new IllegalArgumentException("Unknown option " + arg
+						+ ".");
+		}
+		if (files.isEmpty())
+			throw new IllegalArgumentException("No files to test.");
+		if (inputFiles.isEmpty())
+			inputFiles.add("-");
+
+		for (String name : inputFiles)
+			readInputs(name);
+		try {
+			myOut = new BufferedWriter(new OutputStreamWriter(
+					output == null ? System.out : new FileOutputStream(output),
+					"UTF-8"));
+			if (myCSV)
+				myOut.write("file,line,input,result,output,expected,pass,millis\n");
+		} catch (IOException e) {
+			return writeError(e);
+		}
+
+		int total = files.size() * myInputs.size();
+		myFiles = new String[total];
+		myAutomata = new Automaton[total];
+		myRecords = new String[total];
+		BatchSimulator batch = new BatchSimulator(threads, timeout, strategy,
+				new BatchSimulator.Listener() {
+					public void finished(int task, int result,
+							Configuration configuration, long time) {
+						record(task, result, configuration, time);
+					}
+				});
+		// Nothing is taken from the profile of the editor.
+		batch.setAcceptanceFilters(filters);
+		batch.setEmptyString(Profile.LAMBDA);
+		XMLCodec codec = new XMLCodec();
+		int task = 0;
+		for (String name : files) {
+			Automaton automaton = null;
+			String error;
+			try {
+				Object structure = codec.decode(new File(name), null);
+				if (structure instanceof Automaton)
+					automaton = (Automaton) structure;
+				error = name + " does not hold an automaton.";
+			} catch (ParseException e) {
+				error = name + ": " + e.getMessage();
+			} catch (RuntimeException e) {
+				error = name + ": " + e;
+			}
+			if (automaton == null) {
+				System.err.println(error);
+				myStatus = Math.max(myStatus, BAD_FILE);
+			}
+			for (int i = 0; i < myInputs.size(); i++, task++) {
+				myFiles[task] = name;
+				myAutomata[task] = automaton;
+				if (automaton == null)
+					record(task, BatchSimulator.FAILED, null, 0);
+				else
+					batch.submit(task, automaton, getInput(automaton, i));
+			}
+		}
+		batch.shutdown();
+		batch.awaitTermination(Long.MAX_VALUE);
+		synchronized (this) {
+			// A task that never reported is written as cancelled, so that
+			// every line is accounted for.
+			int missing = 0;
+			for (; myWritten < myRecords.length; missing++)
+				record(myWritten, BatchSimulator.CANCELLED, null, 0);
+			if (missing > 0)
+				System.err.println(missing + " runs never ended.");
+			try {
+				if (myError != null)
+					throw myError;
+				myOut.flush();
+				if (output != null)
+					myOut.close();
+			} catch (IOException e) {
+				return writeError(e);
+			}
+		}
+		return myStatus;
+	}
+
+	/**
+	 * Reports an error writing the results, and returns the exit status for
+	 * it.
+	 */
+	private static int writeError(IOException e) {
+		System.err.println(e.getMessage());
+		return WRITE_ERROR;
+	}
+
+	/**
+	 * Returns the value of a numeric option.
+	 */
+	private static long parseNumber(String option, String value) {
+		try {
+			long number = Long.parseLong(value);
+			if (number >= 0)
+				return number;
+		} catch (NumberFormatException e) {
+		}
+		throw new IllegalArgumentException(option + " needs a number, not "
+				+ value + ".");
+	}
+
+	/**
+	 * Reads the lines of an input file, or of standard input for "-".
+	 */
+	private void readInputs(String name) throws IOException {
+		InputStream stream = name.equals("-") ? System.in
+				: new FileInputStream(name);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				stream, "UTF-8"));
+		try {
+			int number = 0;
+			for (String line; (line = reader.readLine()) != null;) {
+				number++;
+				myInputs.add(line.split("\t", -1));
+				myLines.add(number);
+			}
+		} finally {
+			if (stream != System.in)
+				reader.close();
+		}
+	}
+
+	/**
+	 * Returns the number of input fields of each line for an automaton.
+	 */
+	private static int getTapes(Automaton automaton) {
+		return automaton instanceof TuringMachine ? ((TuringMachine) automaton)
+				.tapes() : 1;
+	}
+
+	/**
+	 * Returns the input of a line for an automaton, in the form
+	 * {@link BatchSimulator#submit} takes.
+	 */
+	private Object getInput(Automaton automaton, int line) {
+		String[] fields = myInputs.get(line);
+		if (!(automaton instanceof TuringMachine))
+			return fields[0];
+		String[] tapes = new String[getTapes(automaton)];
+		for (int i = 0; i < tapes.length; i++)
+			tapes[i] = i < fields.length ? fields[i] : "";
+		return tapes;
+	}
+
+	/**
+	 * Records the result of a task, and writes every record that is next in
+	 * order.
+	 */
+	private synchronized void record(int task, int result,
+			Configuration configuration, long time) {
+		myRecords[task] = format(task, result, configuration, time);
+		myAutomata[task] = null;
+		try {
+			while (myWritten < myRecords.length && myRecords[myWritten] != null) {
+				if (myError == null)
+					myOut.write(myRecords[myWritten]);
+				myRecords[myWritten++] = null;
+			}
+		} catch (IOException e) {
+			myError = e;
+		}
+	}
+
+	/**
+	 * Returns the line written for a task, and updates the exit status.
+	 */
+	private String format(int task, int result, Configuration configuration,
+			long time) {
+		int line = task % myInputs.size();
+		Automaton automaton = myAutomata[task];
+		String[] fields = myInputs.get(line);
+		int tapes = automaton == null ? 1 : getTapes(automaton);
+		boolean accepted = result == BatchSimulator.ACCEPTED;
+
+		String[] input = new String[tapes];
+		for (int i = 0; i < tapes; i++)
+			input[i] = i < fields.length ? fields[i] : "";
+		String[] output = null;
+		if (accepted && configuration instanceof TMConfiguration) {
+			Tape[] tape = ((TMConfiguration) configuration).getTapes();
+			output = new String[tape.length];
+			for (int i = 0; i < tape.length; i++)
+				output[i] = tape[i].getOutput();
+		} else if (accepted && configuration instanceof MealyConfiguration)
+			output = new String[] { ((MealyConfiguration) configuration)
+					.getOutput() };
+		String[] expected = null;
+		if (fields.length > tapes) {
+			expected = new String[fields.length - tapes];
+			System.arraycopy(fields, tapes, expected, 0, expected.length);
+		}
+
+		Boolean pass = null;
+		if (result == BatchSimulator.TIMED_OUT
+				|| result == BatchSimulator.FAILED
+				|| result == BatchSimulator.CANCELLED)
+			myStatus = Math.max(myStatus, INCOMPLETE);
+		if (expected != null) {
+			pass = Boolean.valueOf(isExpected(automaton, result, output,
+					expected));
+			if (!pass.booleanValue())
+				myStatus = Math.max(myStatus, MISMATCH);
+		}
+
+		String resultName = RESULT[result];
+		String millis = String.valueOf(time / 1000 / 1000.0);
+		StringBuffer buffer = new StringBuffer();
+		if (myCSV) {
+			appendCSV(buffer, myFiles[task]).append(',');
+			buffer.append(myLines.get(line)).append(',');
+			appendCSV(buffer, join(input)).append(',');
+			appendCSV(buffer, resultName).append(',');
+			if (output != null)
+				appendCSV(buffer, join(output));
+			buffer.append(',');
+			if (expected != null)
+				appendCSV(buffer, join(expected));
+			buffer.append(',');
+			if (pass != null)
+				buffer.append(pass);
+			buffer.append(',').append(millis).append('\n');
+		} else {
+			buffer.append("{\"file\":");
+			appendJSON(buffer, myFiles[task]);
+			buffer.append(",\"line\":").append(myLines.get(line));
+			buffer.append(",\"input\":");
+			appendJSON(buffer, input);
+			buffer.append(",\"result\":");
+			appendJSON(buffer, resultName);
+			if (output != null) {
+				buffer.append(",\"output\":");
+				appendJSON(buffer, output);
+			}
+			if (expected != null) {
+				buffer.append(",\"expected\":");
+				appendJSON(buffer, expected);
+				buffer.append(",\"pass\":").append(pass);
+			}
+			buffer.append(",\"millis\":").append(millis).append("}\n");
+		}
+		return buffer.toString();
+	}
+
+	/**
+	 * Returns if a run ended as expected.
+	 */
+	private static boolean isExpected(Automaton automaton, int result,
+			String[] output, String[] expected) {
+		if (result != BatchSimulator.ACCEPTED
+				&& result != BatchSimulator.REJECTED)
+			return false;
+		boolean accepted = result == BatchSimulator.ACCEPTED;
+		if (automaton instanceof MealyMachine)
+			return accepted && expected[0].equals(output[0]);
+		String verdict = expected[expected.length - 1];
+		if (accepted == verdict.toLowerCase().startsWith("r"))
+			return false;
+		if (accepted && output != null)
+			for (int i = 0; i < expected.length - 1 && i < output.length; i++)
+				if (!expected[i].equals("~") && !expected[i].equals(output[i]))
+					return false;
+		return true;
+	}
+
+	/**
+	 * Returns strings joined by tabs, as they were in the input.
+	 */
+	private static String join(String[] strings) {
+		StringBuffer buffer = new StringBuffer(strings[0]);
+		for (int i = 1; i < strings.length; i++)
+			buffer.append('\t').append(strings[i]);
+		return buffer.toString();
+	}
+
+	/**
+	 * Appends a field to a line of comma separated values, quoted if needed.
+	 */
+	private static StringBuffer appendCSV(StringBuffer buffer, String field) {
+		if (field.indexOf(',') < 0 && field.indexOf('"') < 0
+				&& field.indexOf('\n') < 0 && field.indexOf('\r') < 0)
+			return buffer.append(field);
+		buffer.append('"');
+		for (int i = 0; i < field.length(); i++) {
+			char c = field.charAt(i);
+			if (c == '"')
+				buffer.append('"');
+			buffer.append(c);
+		}
+		return buffer.append('"');
+	}
+
+	/**
+	 * Appends strings as a JSON string if there is one, or else an array.
+	 */
+	private static void appendJSON(StringBuffer buffer, String[] strings) {
+		if (strings.length == 1) {
+			appendJSON(buffer, strings[0]);
+			return;
+		}
+		buffer.append('[');
+		for (int i = 0; i < strings.length; i++) {
+			if (i > 0)
+				buffer.append(',');
+			appendJSON(buffer, strings[i]);
+		}
+		buffer.append(']');
+	}
+
+	/**
+	 * Appends a string as a JSON string.
+	 */
+	private static void appendJSON(StringBuffer buffer, String string) {
+		buffer.append('"');
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			if (c == '"' || c == '\\')
+				buffer.append('\\').append(c);
+			else if (c == '\n')
+				buffer.append("\\n");
+			else if (c == '\t')
+				buffer.append("\\t");
+			else if (c < ' ') {
+				String hex = Integer.toHexString(c);
+				buffer.append("\\u0000", 0, 6 - hex.length()).append(hex);
+			} else
+				buffer.append(c);
+		}
+		buffer.append('"');
+	}
+
+	/** The names of results, by {@link BatchSimulator} result. */
+	private static final String[] RESULT = { "Accept", "Reject", "Cancelled",
+			"Timed out", "Error" };
+
+	/** Whether to write comma separated values rather than JSON lines. */
+	private boolean myCSV = false;
+
+	/** The fields of each line of input. */
+	private ArrayList<String[]> myInputs = new ArrayList<String[]>();
+
+	/** The number of each line of input in its file. */
+	private ArrayList<Integer> myLines = new ArrayList<Integer>();
+
+	/** The file of each task. */
+	private String[] myFiles;
+
+	/** The automaton of each task until it ends, <CODE>null</CODE> if none. */
+	private Automaton[] myAutomata;
+
+	/** The lines of tasks that have ended but not been written yet. */
+	private String[] myRecords;
+
+	/** The number of tasks whose lines have been written. */
+	private int myWritten = 0;
+
+	/** Where the results are written. */
+	private Writer myOut;
+
+	/** The first error writing results, or <CODE>null</CODE>. */
+	private IOException myError = null;
+
+	/** The exit status so far. */
+	private int myStatus = PASSED;
+}
@@ -49,25 +49,27 @@ public class ClosureTaker {
 	 * @return the set of states that represent the closure of state.
 	 */
 	public static State[] getClosure(State state, Automaton automaton) {
-		List list = new ArrayList();
+		List<State> list = new ArrayList<State>();
+		Set<State> seen = new HashSet<State>();
 		list.add(state);
+		seen.add(state);
+		LambdaTransitionChecker checker = LambdaCheckerFactory
+				.getLambdaChecker(automaton);
 		for (int i = 0; i < list.size(); i++) {
-			state = (State) list.get(i);
+			state = list.get(i);
 			Transition transitions[] = automaton.getTransitionsFromState(state);
 			for (int k = 0; k < transitions.length; k++) {
 				Transition transition = transitions[k];
-				LambdaTransitionChecker checker = LambdaCheckerFactory
-						.getLambdaChecker(automaton);
 				/** if lambda transition */
 				if (checker.isLambdaTransition(transition)) {
 					State toState = transition.getToState();
-					if (!list.contains(toState)) {
+					if (seen.add(toState)) {
 						list.add(toState);
 					}
 				}
 			}
 		}
-		return (State[]) list.toArray(new State[0]);
+		return list.toArray(new State[0]);
 	}
 
 }
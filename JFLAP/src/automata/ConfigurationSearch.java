@@ -0,0 +1,316 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package automata;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import automata.fsa.FSAConfiguration;
+import automata.mealy.MealyConfiguration;
+import automata.pda.PDAConfiguration;
+
+/**
+ * A <CODE>ConfigurationSearch</CODE> looks for an accepting configuration
+ * among all those a simulator can reach from some initial configurations.
+ * Each configuration is expanded at most once: configurations are indexed by
+ * a key of their state, how much of the input they have read, and their
+ * stack or output, so paths through lambda cycles or nondeterministic choices
+ * that meet again are not explored twice. Configurations with no key, such as
+ * those of Turing machines, whose tapes change in place, are always expanded.
+ * The order of the search is a
+ * {@link Strategy}. A search stops if the thread running it is interrupted.
+ *
+ * @see AutomatonSimulator#stepConfiguration
+ */
+
+public class ConfigurationSearch {
+	/** The order configurations are expanded in. */
+	public static enum Strategy {
+		/** Configurations nearest the start first. */
+		BREADTH_FIRST("Breadth first"),
+		/** The most recently found configurations first. */
+		DEPTH_FIRST("Depth first"),
+		/**
+		 * Depth first up to a limit on the number of steps, repeated with the
+		 * limit doubled until nothing is cut off.
+		 */
+		ITERATIVE_DEEPENING("Iterative deepening");
+
+		private Strategy(String name) {
+			myName = name;
+		}
+
+		public String toString() {
+			return myName;
+		}
+
+		private String myName;
+	}
+
+	/** The result of a search that found an accepting configuration. */
+	public static final int ACCEPTED = 0;
+
+	/** The result of a search that found no accepting configuration. */
+	public static final int REJECTED = 1;
+
+	/** The result of a search that was stopped by its monitor. */
+	public static final int CANCELLED = 2;
+
+	/**
+	 * A <CODE>Monitor</CODE> is asked whether a long search should go on.
+	 */
+	public static interface Monitor {
+		/**
+		 * Returns if the search should continue.
+		 *
+		 * @param generated
+		 *            the number of distinct configurations found so far
+		 */
+		public boolean shouldContinue(int generated);
+	}
+
+	/**
+	 * Instantiates a search.
+	 *
+	 * @param simulator
+	 *            the simulator that steps configurations
+	 * @param strategy
+	 *            the order to expand configurations in
+	 * @param warningStep
+	 *            the number of configurations after which the monitor is
+	 *            first asked to continue; each later question comes after
+	 *            twice as many
+	 */
+	public ConfigurationSearch(AutomatonSimulator simulator,
+			Strategy strategy, int warningStep) {
+		mySimulator = simulator;
+		myStrategy = strategy;
+		myWarningStep = warningStep;
+	}
+
+	/**
+	 * Searches from the initial configurations.
+	 *
+	 * @param initial
+	 *            the initial configurations
+	 * @param monitor
+	 *            asked whether to continue as the search grows, or
+	 *            <CODE>null</CODE> to never stop early
+	 * @return {@link #ACCEPTED}, {@link #REJECTED} or {@link #CANCELLED}, if
+	 *         the monitor stopped the search or the thread was interrupted
+	 */
+	public int search(Configuration[] initial, Monitor monitor) {
+		myMonitor = monitor;
+		myGenerated = 0;
+		myWarning = myWarningStep;
+		myLast = initial.length == 0 ? null : initial[initial.length - 1];
+		// Configurations with no key may be changed as they are stepped, so
+		// they cannot be searched again from the start.
+		if (myStrategy != Strategy.ITERATIVE_DEEPENING || initial.length == 0
+				|| getKey(initial[0]) == null)
+			return search(initial, Integer.MAX_VALUE);
+		for (int limit = 1;; limit = limit > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE
+				: 2 * limit) {
+			myCutOff = false;
+			int result = search(initial, limit);
+			if (result != REJECTED || !myCutOff)
+				return result;
+		}
+	}
+
+	/**
+	 * Searches from the initial configurations no further than a number of
+	 * steps.
+	 */
+	private int search(Configuration[] initial, int limit) {
+		HashMap<Object, Integer> visited = new HashMap<Object, Integer>();
+		LinkedList<Configuration> pending = new LinkedList<Configuration>();
+		LinkedList<Integer> depths = new LinkedList<Integer>();
+		for (int i = 0; i < initial.length; i++)
+			if (visit(visited, initial[i], 0)) {
+				pending.add(initial[i]);
+				depths.add(0);
+			}
+		while (!pending.isEmpty()) {
+			if (Thread.currentThread().isInterrupted())
+				return CANCELLED;
+			if (myGenerated >= myWarning) {
+				if (myMonitor != null && !myMonitor.shouldContinue(myGenerated))
+					return CANCELLED;
+				while (myGenerated >= myWarning && myWarning < Integer.MAX_VALUE / 2)
+					myWarning *= 2;
+			}
+			Configuration config;
+			int depth;
+			if (myStrategy == Strategy.BREADTH_FIRST) {
+				config = pending.removeFirst();
+				depth = depths.removeFirst();
+			} else {
+				config = pending.removeLast();
+				depth = depths.removeLast();
+			}
+			myLast = config;
+			if (config.isAccept())
+				return ACCEPTED;
+			if (depth >= limit) {
+				myCutOff = true;
+				continue;
+			}
+			List next = mySimulator.stepConfiguration(config);
+			Iterator it = next.iterator();
+			while (it.hasNext()) {
+				Configuration child = (Configuration) it.next();
+				if (visit(visited, child, depth + 1)) {
+					pending.add(child);
+					depths.add(depth + 1);
+				}
+			}
+		}
+		return REJECTED;
+	}
+
+	/**
+	 * Records that a configuration was reached in some number of steps.
+	 *
+	 * @return <CODE>true</CODE> if it should be expanded, i.e. it was not
+	 *         reached before, or for iterative deepening, not in as few steps
+	 */
+	private boolean visit(HashMap<Object, Integer> visited,
+			Configuration config, int depth) {
+		Object key = getKey(config);
+		if (key == null) {
+			myGenerated++;
+			return true;
+		}
+		Integer old = visited.get(key);
+		if (old != null
+				&& (old <= depth || myStrategy != Strategy.ITERATIVE_DEEPENING))
+			return false;
+		visited.put(key, depth);
+		if (old == null)
+			myGenerated++;
+		return true;
+	}
+
+	/**
+	 * Returns a key for a configuration that is equal for any two
+	 * configurations with the same future, wherever they came from: the ID of
+	 * the state, the amount of input left, and the stack of a PDA or the
+	 * output of a Mealy machine. Other configurations, such as those of
+	 * Turing machines, may share and change their contents after they are
+	 * stepped, so they have no key.
+	 *
+	 * @param config
+	 *            the configuration
+	 * @return the key for the configuration, or <CODE>null</CODE> if it has
+	 *         none
+	 */
+	public static Object getKey(Configuration config) {
+		int state = config.getCurrentState().getID();
+		if (config instanceof FSAConfiguration)
+			return new Key(state, ((FSAConfiguration) config)
+					.getUnprocessedInput().size(), null);
+		if (config instanceof PDAConfiguration) {
+			PDAConfiguration pda = (PDAConfiguration) config;
+			return new Key(state, pda.getUnprocessedInput().length(), pda
+					.getStack());
+		}
+		if (config instanceof MealyConfiguration) {
+			MealyConfiguration mealy = (MealyConfiguration) config;
+			return new Key(state, mealy.getUnprocessedInput().length(), mealy
+					.getOutput());
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the configuration the last search accepted with, or else the
+	 * last one it considered.
+	 */
+	public Configuration getLastConfiguration() {
+		return myLast;
+	}
+
+	/**
+	 * Returns the number of distinct configurations the last search found.
+	 */
+	public int getGeneratedCount() {
+		return myGenerated;
+	}
+
+	/**
+	 * The key of a configuration: a state ID, the amount of input left, and
+	 * any other contents, which must not change.
+	 */
+	private static class Key {
+		public Key(int state, int remaining, Object contents) {
+			myState = state;
+			myRemaining = remaining;
+			myContents = contents;
+			myHash = 31 * (31 * state + remaining)
+					+ (contents == null ? 0 : contents.hashCode());
+		}
+
+		public int hashCode() {
+			return myHash;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key key = (Key) o;
+			return key.myHash == myHash && key.myState == myState
+					&& key.myRemaining == myRemaining
+					&& (myContents == null ? key.myContents == null
+							: myContents.equals(key.myContents));
+		}
+
+		private int myState, myRemaining, myHash;
+
+		private Object myContents;
+	}
+
+	/** The simulator. */
+	private AutomatonSimulator mySimulator;
+
+	/** The order of the search. */
+	private Strategy myStrategy;
+
+	/** The number of configurations before the first question. */
+	private int myWarningStep;
+
+	/** The monitor of the current search. */
+	private Monitor myMonitor;
+
+	/** The number of configurations found. */
+	private int myGenerated;
+
+	/** The number of configurations at which to ask next. */
+	private int myWarning;
+
+	/** Whether a depth limited search left configurations unexpanded. */
+	private boolean myCutOff;
+
+	/** The accepting or last configuration considered. */
+	private Configuration myLast;
+}
@@ -0,0 +1,113 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package automata.fsa;
+
+import JFLAPnew.formaldef.SymbolTable;
+import automata.Automaton;
+
+/**
+ * The compiled FSA simulator steps through configurations exactly like the
+ * {@link FSAStepWithClosureSimulator}, but answers {@link #simulateInput}
+ * without building configurations: from a {@link DFATransitionTable} when the
+ * automaton is deterministic, and from an {@link NFATransitionTable}
+ * otherwise. The tables are compiled on first use and recompiled after the
+ * automaton changes.
+ */
+
+public class CompiledFSASimulator extends FSAStepWithClosureSimulator {
+	/**
+	 * Creates a compiled FSA simulator for the given automaton.
+	 *
+	 * @param automaton
+	 *            the machine to simulate
+	 */
+	public CompiledFSASimulator(Automaton automaton) {
+		super(automaton);
+	}
+
+	/**
+	 * Recompiles the tables if the automaton or its alphabet has changed
+	 * since they were last compiled.
+	 */
+	private void compile() {
+		if (mySymbols == null || !mySymbols.isCurrent()
+				|| myModificationCount != myAutomaton.getModificationCount()) {
+			myModificationCount = myAutomaton.getModificationCount();
+			mySymbols = myAutomaton.getSymbolTable();
+			FiniteStateAutomaton fsa = (FiniteStateAutomaton) myAutomaton;
+			myTable = DFATransitionTable.compile(fsa);
+			myNFATable = myTable == null ? NFATransitionTable.compile(fsa)
+					: null;
+		}
+	}
+
+	/**
+	 * Returns the transition table for the automaton, compiling it if the
+	 * automaton has changed since it was last compiled.
+	 *
+	 * @return the transition table, or <CODE>null</CODE> if the automaton
+	 *         cannot be compiled, e.g. because it is nondeterministic
+	 */
+	public DFATransitionTable getTransitionTable() {
+		compile();
+		return myTable;
+	}
+
+	/**
+	 * Returns the nondeterministic transition table for the automaton,
+	 * compiling it if the automaton has changed since it was last compiled.
+	 *
+	 * @return the transition table, or <CODE>null</CODE> if the automaton is
+	 *         deterministic or cannot be compiled at all
+	 */
+	public NFATransitionTable getNFATransitionTable() {
+		compile();
+		return myNFATable;
+	}
+
+	/**
+	 * Runs the automaton on the input string, through a transition table if
+	 * the automaton can be compiled.
+	 *
+	 * @param input
+	 *            the input string to be run on the automaton
+	 * @return true if the automaton accepts the input
+	 */
+	public boolean simulateInput(String input) {
+		compile();
+		if (myTable == null && myNFATable == null)
+			return super.simulateInput(input);
+		return myTable != null ? myTable.accepts(input) : myNFATable
+				.accepts(input);
+	}
+
+	/** The compiled automaton, or <CODE>null</CODE> if it cannot be. */
+	private DFATransitionTable myTable = null;
+
+	/** The compiled nondeterministic automaton, if it is not a DFA. */
+	private NFATransitionTable myNFATable = null;
+
+	/** The modification count of the automaton when last compiled. */
+	private int myModificationCount;
+
+	/** The symbol table of the automaton when last compiled. */
+	private SymbolTable mySymbols = null;
+}
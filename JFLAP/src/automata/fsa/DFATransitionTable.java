@@ -0,0 +1,248 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package automata.fsa;
+
+import java.util.Arrays;
+
+import JFLAPnew.formaldef.SymbolTable;
+import JFLAPnew.formaldef.symbols.SymbolString;
+import automata.State;
+import automata.Transition;
+
+/**
+ * A <CODE>DFATransitionTable</CODE> is a compiled form of a deterministic
+ * finite state automaton. States are numbered by their position in
+ * {@link automata.Automaton#getStates()}, symbols by their ID in the
+ * automaton's {@link SymbolTable}, and the transition function is held in a
+ * single dense <CODE>int</CODE> array, so running the machine on input is a
+ * loop of array lookups that allocates nothing.
+ * <P>
+ * The table is a snapshot: use {@link #isCurrent} to see if the automaton or
+ * its alphabet has changed since it was compiled.
+ *
+ * @see CompiledFSASimulator
+ */
+
+public class DFATransitionTable {
+	/** The "state" the machine is in after a symbol with no transition. */
+	public static final int DEAD = -1;
+
+	/**
+	 * Compiles the automaton into a transition table.
+	 *
+	 * @param automaton
+	 *            the automaton to compile
+	 * @return the transition table, or <CODE>null</CODE> if the automaton is
+	 *         not deterministic, has no initial state, or has a transition
+	 *         that does not read exactly one symbol of its alphabet
+	 */
+	public static DFATransitionTable compile(FiniteStateAutomaton automaton) {
+		if (automaton.getInitialState() == null)
+			return null;
+		DFATransitionTable table = new DFATransitionTable(automaton);
+		Transition[] transitions = automaton.getTransitions();
+		for (int i = 0; i < transitions.length; i++) {
+			FSATransition transition = (FSATransition) transitions[i];
+			SymbolString label = transition.getLabel();
+			if (label.size() != 1)
+				return null;
+			int symbol = table.mySymbols.getID(label.get(0));
+			if (symbol < 0)
+				return null;
+			int from = table.getIndex(transition.getFromState());
+			int cell = from * table.mySymbolCount + symbol;
+			if (table.myTable[cell] != DEAD)
+				return null;
+			table.myTable[cell] = table.getIndex(transition.getToState());
+		}
+		return table;
+	}
+
+	/**
+	 * Instantiates an empty table for the states of the automaton, with no
+	 * transitions.
+	 */
+	private DFATransitionTable(FiniteStateAutomaton automaton) {
+		myAutomaton = automaton;
+		myModificationCount = automaton.getModificationCount();
+		mySymbols = automaton.getSymbolTable();
+		myStates = automaton.getStates();
+		mySymbolCount = mySymbols.size();
+		myTable = new int[myStates.length * mySymbolCount];
+		Arrays.fill(myTable, DEAD);
+		myFinal = new boolean[myStates.length];
+		for (int i = 0; i < myStates.length; i++)
+			myFinal[i] = automaton.isFinalState(myStates[i]);
+		myInitial = getIndex(automaton.getInitialState());
+	}
+
+	/**
+	 * Returns the index of a state of the automaton in this table.
+	 *
+	 * @param state
+	 *            the state
+	 * @return the index of the state, or -1 if it is not in the table
+	 */
+	public int getIndex(State state) {
+		int low = 0, high = myStates.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int id = myStates[mid].getID();
+			if (id < state.getID())
+				low = mid + 1;
+			else if (id > state.getID())
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the state of the automaton for an index of this table.
+	 */
+	public State getState(int index) {
+		return myStates[index];
+	}
+
+	/**
+	 * Returns the number of states.
+	 */
+	public int getStateCount() {
+		return myStates.length;
+	}
+
+	/**
+	 * Returns the number of symbol IDs; every symbol is in
+	 * <CODE>[0, getSymbolCount())</CODE>.
+	 */
+	public int getSymbolCount() {
+		return mySymbolCount;
+	}
+
+	/**
+	 * Returns the symbol table the symbol IDs of this table come from.
+	 */
+	public SymbolTable getSymbolTable() {
+		return mySymbols;
+	}
+
+	/**
+	 * Returns the index of the initial state.
+	 */
+	public int getInitialState() {
+		return myInitial;
+	}
+
+	/**
+	 * Returns if the state with this index is final.
+	 */
+	public boolean isFinal(int state) {
+		return myFinal[state];
+	}
+
+	/**
+	 * Returns the state moved to on reading a symbol.
+	 *
+	 * @param state
+	 *            the index of the current state
+	 * @param symbol
+	 *            the ID of the symbol read
+	 * @return the index of the next state, or {@link #DEAD}
+	 */
+	public int next(int state, int symbol) {
+		return myTable[state * mySymbolCount + symbol];
+	}
+
+	/**
+	 * Runs the machine from the initial state over the input.
+	 *
+	 * @param input
+	 *            the symbol IDs of the input
+	 * @return the index of the state the machine stops in, or {@link #DEAD}
+	 *         if some symbol had no transition
+	 */
+	public int run(int[] input) {
+		int[] table = myTable;
+		int symbols = mySymbolCount;
+		int state = myInitial;
+		for (int i = 0; i < input.length && state != DEAD; i++)
+			state = table[state * symbols + input[i]];
+		return state;
+	}
+
+	/**
+	 * Returns if the machine accepts the input.
+	 *
+	 * @param input
+	 *            the symbol IDs of the input
+	 */
+	public boolean accepts(int[] input) {
+		int state = run(input);
+		return state != DEAD && myFinal[state];
+	}
+
+	/**
+	 * Returns if the machine accepts the input text. Text that cannot be
+	 * split into symbols of the alphabet is rejected.
+	 *
+	 * @param input
+	 *            the input text
+	 */
+	public boolean accepts(String input) {
+		int[] ids = mySymbols.encode(input);
+		return ids != null && accepts(ids);
+	}
+
+	/**
+	 * Returns if this table still describes its automaton, i.e. no state or
+	 * transition event has happened and the alphabet is unchanged since it
+	 * was compiled.
+	 */
+	public boolean isCurrent() {
+		return myModificationCount == myAutomaton.getModificationCount()
+				&& mySymbols.isCurrent();
+	}
+
+	/** The automaton this table was compiled from. */
+	private FiniteStateAutomaton myAutomaton;
+
+	/** The modification count of the automaton when compiled. */
+	private int myModificationCount;
+
+	/** The symbol IDs. */
+	private SymbolTable mySymbols;
+
+	/** The states, in order of index. */
+	private State[] myStates;
+
+	/** The number of symbol IDs, i.e. the width of a row of the table. */
+	private int mySymbolCount;
+
+	/** The next state for each state and symbol, row by row. */
+	private int[] myTable;
+
+	/** Whether each state is final. */
+	private boolean[] myFinal;
+
+	/** The index of the initial state. */
+	private int myInitial;
+}
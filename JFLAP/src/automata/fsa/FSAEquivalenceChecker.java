@@ -0,0 +1,347 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package automata.fsa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import JFLAPnew.formaldef.SymbolTable;
+
+/**
+ * The <CODE>FSAEquivalenceChecker</CODE> decides if two finite state
+ * automata accept the same language with the algorithm of Hopcroft and Karp.
+ * Both automata are determinized lazily, only as far as the check reaches,
+ * and pairs of DFA states are merged in a union-find structure, so the check
+ * takes nearly linear time in the number of DFA states visited; neither
+ * automaton is converted or minimized as a whole, and neither is changed.
+ * <P>
+ * If the languages differ, the shortest string that one automaton accepts and
+ * the other does not is found by a breadth first search of the pairs of
+ * states.
+ *
+ * @see automata.graph.FSAEqualityChecker
+ */
+
+public class FSAEquivalenceChecker {
+	/**
+	 * Instantiates a checker for two automata. Nothing is checked until
+	 * {@link #isEquivalent} or {@link #getCounterexample} is called.
+	 *
+	 * @param fsa1
+	 *            the first automaton
+	 * @param fsa2
+	 *            the second automaton
+	 * @throws IllegalArgumentException
+	 *             if either automaton cannot be compiled, e.g. because it has
+	 *             no initial state
+	 */
+	public FSAEquivalenceChecker(FiniteStateAutomaton fsa1,
+			FiniteStateAutomaton fsa2) {
+		this(NFATransitionTable.compile(fsa1), NFATransitionTable
+				.compile(fsa2));
+	}
+
+	/**
+	 * Instantiates a checker for two compiled automata, so that one automaton
+	 * compiled once can be checked against many.
+	 *
+	 * @param table1
+	 *            the first compiled automaton
+	 * @param table2
+	 *            the second compiled automaton
+	 * @throws IllegalArgumentException
+	 *             if either table is <CODE>null</CODE>
+	 */
+	public FSAEquivalenceChecker(NFATransitionTable table1,
+			NFATransitionTable table2) {
+		if (table1 == null || table2 == null)
+			throw new IllegalArgumentException(
+					"Both automata must have an initial state, and only "
+							+ "transitions on symbols of their alphabets.");
+		// Both automata read the union of the two alphabets.
+		LinkedHashMap<String, Integer> symbols = new LinkedHashMap<String, Integer>();
+		addSymbols(symbols, table1.getSymbolTable());
+		addSymbols(symbols, table2.getSymbolTable());
+		mySymbols = symbols.keySet().toArray(new String[0]);
+		mySide1 = new Side(table1, mySymbols);
+		mySide2 = new Side(table2, mySymbols);
+	}
+
+	/**
+	 * Gives an index to each symbol of a table not already indexed.
+	 */
+	private static void addSymbols(HashMap<String, Integer> symbols,
+			SymbolTable table) {
+		for (int i = 0; i < table.size(); i++) {
+			String symbol = table.getSymbol(i).getString();
+			if (!symbols.containsKey(symbol))
+				symbols.put(symbol, symbols.size());
+		}
+	}
+
+	/**
+	 * Returns if the two automata accept the same language.
+	 */
+	public boolean isEquivalent() {
+		if (myEquivalent == null)
+			myEquivalent = check();
+		return myEquivalent;
+	}
+
+	/**
+	 * Returns the shortest string accepted by exactly one of the automata.
+	 *
+	 * @return the string, the empty string if only one of them accepts the
+	 *         empty string, or <CODE>null</CODE> if they are equivalent
+	 */
+	public String getCounterexample() {
+		if (!isEquivalent() && myCounterexample == null)
+			myCounterexample = findCounterexample();
+		return myCounterexample;
+	}
+
+	/**
+	 * Runs Hopcroft and Karp's check: pairs of states that must be equivalent
+	 * are merged, and their successors on each symbol are checked in turn,
+	 * unless those are already known to be merged.
+	 *
+	 * @return <CODE>true</CODE> if no merged pair disagrees on acceptance
+	 */
+	private boolean check() {
+		int symbols = mySymbols.length;
+		int[] queue = new int[16];
+		int head = 0, tail = 0;
+		union(mySide1.getNode(0), mySide2.getNode(0));
+		queue[tail++] = 0;
+		queue[tail++] = 0;
+		while (head < tail) {
+			int p = queue[head++], q = queue[head++];
+			if (mySide1.isAccepting(p) != mySide2.isAccepting(q))
+				return false;
+			for (int a = 0; a < symbols; a++) {
+				int p2 = mySide1.next(p, a), q2 = mySide2.next(q, a);
+				if (union(mySide1.getNode(p2), mySide2.getNode(q2))) {
+					if (tail + 2 > queue.length)
+						queue = Arrays.copyOf(queue, 2 * queue.length);
+					queue[tail++] = p2;
+					queue[tail++] = q2;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Searches the pairs of states breadth first from the initial pair for
+	 * the nearest pair that disagrees on acceptance.
+	 *
+	 * @return the string that leads to that pair
+	 */
+	private String findCounterexample() {
+		int symbols = mySymbols.length;
+		HashMap<Long, Integer> seen = new HashMap<Long, Integer>();
+		// For each pair found: the pair, the pair it came from, the symbol.
+		List<int[]> pairs = new ArrayList<int[]>();
+		pairs.add(new int[] { 0, 0, -1, -1 });
+		seen.put(0L, 0);
+		for (int i = 0; i < pairs.size(); i++) {
+			int[] pair = pairs.get(i);
+			if (mySide1.isAccepting(pair[0]) != mySide2.isAccepting(pair[1]))
+				return pathTo(pairs, i);
+			for (int a = 0; a < symbols; a++) {
+				int p = mySide1.next(pair[0], a), q = mySide2.next(pair[1], a);
+				Long key = ((long) p << 32) | q;
+				if (!seen.containsKey(key)) {
+					seen.put(key, pairs.size());
+					pairs.add(new int[] { p, q, i, a });
+				}
+			}
+		}
+		// The check found a difference, so the search must too.
+		throw new IllegalStateException("No counterexample found.");
+	}
+
+	/**
+	 * Returns the symbols read on the way to a pair found by the search.
+	 */
+	private String pathTo(List<int[]> pairs, int index) {
+		List<String> path = new ArrayList<String>();
+		for (int[] pair = pairs.get(index); pair[2] >= 0; pair = pairs
+				.get(pair[2]))
+			path.add(mySymbols[pair[3]]);
+		StringBuffer buffer = new StringBuffer();
+		for (int i = path.size() - 1; i >= 0; i--)
+			buffer.append(path.get(i));
+		return buffer.toString();
+	}
+
+	/**
+	 * Returns the representative of a node's set in the union-find.
+	 */
+	private int find(int node) {
+		while (myParent[node] != node) {
+			myParent[node] = myParent[myParent[node]];
+			node = myParent[node];
+		}
+		return node;
+	}
+
+	/**
+	 * Merges the sets of two nodes in the union-find.
+	 *
+	 * @return <CODE>true</CODE> if they were in different sets
+	 */
+	private boolean union(int a, int b) {
+		a = find(a);
+		b = find(b);
+		if (a == b)
+			return false;
+		if (myRank[a] < myRank[b]) {
+			int swap = a;
+			a = b;
+			b = swap;
+		}
+		myParent[b] = a;
+		if (myRank[a] == myRank[b])
+			myRank[a]++;
+		return true;
+	}
+
+	/**
+	 * Returns a new node for the union-find, in a set of its own.
+	 */
+	private int newNode() {
+		if (myNodeCount == myParent.length) {
+			myParent = Arrays.copyOf(myParent, 2 * myNodeCount);
+			myRank = Arrays.copyOf(myRank, 2 * myNodeCount);
+		}
+		myParent[myNodeCount] = myNodeCount;
+		return myNodeCount++;
+	}
+
+	/**
+	 * One of the two automata, determinized as far as it has been explored.
+	 * DFA states are numbered in the order they are found, with the initial
+	 * state 0; the state with no NFA states is the dead state.
+	 */
+	private class Side {
+		public Side(NFATransitionTable table, String[] symbols) {
+			myTable = table;
+			mySymbolMap = new int[symbols.length];
+			for (int a = 0; a < symbols.length; a++)
+				mySymbolMap[a] = table.getSymbolTable().getID(symbols[a]);
+			intern(table.getInitialSet().clone());
+		}
+
+		/**
+		 * Returns the number of a DFA state, numbering it if it is new.
+		 */
+		private int intern(long[] set) {
+			StateSetKey key = new StateSetKey(set);
+			Integer state = myStates.get(key);
+			if (state != null)
+				return state;
+			int number = mySets.size();
+			myStates.put(key, number);
+			mySets.add(set);
+			myNodes.add(newNode());
+			int symbols = mySymbolMap.length;
+			if ((number + 1) * symbols > myNext.length) {
+				int length = Math.max(2 * myNext.length, (number + 1) * symbols);
+				int old = myNext.length;
+				myNext = Arrays.copyOf(myNext, length);
+				Arrays.fill(myNext, old, length, -1);
+			}
+			return number;
+		}
+
+		/**
+		 * Returns the DFA state reached from a state on a symbol.
+		 */
+		public int next(int state, int symbol) {
+			int cell = state * mySymbolMap.length + symbol;
+			if (myNext[cell] < 0) {
+				long[] to = myTable.createSet();
+				if (mySymbolMap[symbol] >= 0)
+					myTable.step(mySets.get(state), mySymbolMap[symbol], to);
+				int next = intern(to);
+				myNext[cell] = next;
+			}
+			return myNext[cell];
+		}
+
+		/**
+		 * Returns if a DFA state is accepting.
+		 */
+		public boolean isAccepting(int state) {
+			return myTable.isAccepting(mySets.get(state));
+		}
+
+		/**
+		 * Returns the union-find node of a DFA state.
+		 */
+		public int getNode(int state) {
+			return myNodes.get(state);
+		}
+
+		/** The compiled automaton. */
+		private NFATransitionTable myTable;
+
+		/** The ID in the table of each symbol, or -1 if it has none. */
+		private int[] mySymbolMap;
+
+		/** The DFA states by their sets of NFA states. */
+		private HashMap<StateSetKey, Integer> myStates = new HashMap<StateSetKey, Integer>();
+
+		/** The set of NFA states of each DFA state. */
+		private List<long[]> mySets = new ArrayList<long[]>();
+
+		/** The union-find node of each DFA state. */
+		private List<Integer> myNodes = new ArrayList<Integer>();
+
+		/** The next state for each state and symbol, or -1 if not found. */
+		private int[] myNext = new int[0];
+	}
+
+	/** The union of the alphabets of the automata. */
+	private String[] mySymbols;
+
+	/** The union-find parent of each node. */
+	private int[] myParent = new int[16];
+
+	/** The union-find rank of each node. */
+	private int[] myRank = new int[16];
+
+	/** The number of union-find nodes. */
+	private int myNodeCount = 0;
+
+	/** The two automata. */
+	private Side mySide1, mySide2;
+
+	/** Whether they are equivalent, once checked. */
+	private Boolean myEquivalent = null;
+
+	/** The shortest counterexample, once found. */
+	private String myCounterexample = null;
+}
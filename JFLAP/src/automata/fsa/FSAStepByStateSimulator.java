@@ -21,6 +21,7 @@
 package automata.fsa;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
@@ -111,10 +112,7 @@ public class FSAStepByStateSimulator extends AutomatonSimulator {
 //				}
 //			}
 			 if (unprocessedInput.startsWith(transLabel)) {
-				SymbolString input = new SymbolString();
-				if (transLabel.size() < unprocessedInput.size()) {
-					input = unprocessedInput.subList(transLabel.size());
-				}
+				SymbolString input = unprocessedInput.subList(transLabel.size());
 				State toState = transition.getToState();
 				FSAConfiguration configurationToAdd = new FSAConfiguration(
 						toState, configuration, totalInput, input);
@@ -125,19 +123,19 @@ public class FSAStepByStateSimulator extends AutomatonSimulator {
 	}
 
 	/**
-	 * Returns true if the simulation of the input string on the automaton left
-	 * the machine in a final state. If the entire input string is processed and
-	 * the machine is in a final state, return true.
+	 * Returns true if one of the configurations has processed the entire input
+	 * string and is in a final state.
 	 * 
-	 * @return true if the simulation of the input string on the automaton left
-	 *         the machine in a final state.
+	 * @param configurations
+	 *            the configurations the machine could be in
+	 * @return true if one of the configurations is accepting
 	 */
-	public boolean isAccepted() {
-		Iterator it = myConfigurations.iterator();
+	protected boolean isAccepted(Collection configurations) {
+		Iterator it = configurations.iterator();
 		while (it.hasNext()) {
 			FSAConfiguration configuration = (FSAConfiguration) it.next();
 			State currentState = configuration.getCurrentState();
-			if (configuration.getUnprocessedInput().equals("")
+			if (configuration.getUnprocessedInput().isEmpty()
 					&& myAutomaton.isFinalState(currentState)) {
 				return true;
 			}
@@ -153,20 +151,19 @@ public class FSAStepByStateSimulator extends AutomatonSimulator {
 	 * @return true if the automaton accepts the input
 	 */
 	public boolean simulateInput(String in) {
-		/** clear the configurations to begin new simulation. */
-		myConfigurations.clear();
+		Set configurations = new HashSet();
 		if (!SymbolString.canBeParsed(in, myAutomaton)) return false;
 		SymbolString input = SymbolString.createFromString(in, myAutomaton);
 		Configuration[] initialConfigs = getInitialConfigurations(input);
 		for (int k = 0; k < initialConfigs.length; k++) {
 			FSAConfiguration initialConfiguration = (FSAConfiguration) initialConfigs[k];
-			myConfigurations.add(initialConfiguration);
+			configurations.add(initialConfiguration);
 		}
-		while (!myConfigurations.isEmpty()) {
-			if (isAccepted())
+		while (!configurations.isEmpty()) {
+			if (isAccepted(configurations))
 				return true;
 			ArrayList configurationsToAdd = new ArrayList();
-			Iterator it = myConfigurations.iterator();
+			Iterator it = configurations.iterator();
 			while (it.hasNext()) {
 				FSAConfiguration configuration = (FSAConfiguration) it.next();
 				ArrayList configsToAdd = stepConfiguration(configuration);
@@ -177,7 +174,7 @@ public class FSAStepByStateSimulator extends AutomatonSimulator {
 				 */
 				it.remove();
 			}
-			myConfigurations.addAll(configurationsToAdd);
+			configurations.addAll(configurationsToAdd);
 		}
 		return false;
 	}
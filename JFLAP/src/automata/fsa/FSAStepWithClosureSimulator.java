@@ -114,10 +114,7 @@ public class FSAStepWithClosureSimulator extends FSAStepByStateSimulator {
 //			}
 			if (transLabel.size() > 0) {
 				if (unprocessedInput.startsWith(transLabel)) {
-					SymbolString input = new SymbolString();
-					if (transLabel.size() < unprocessedInput.size()) {
-						input = unprocessedInput.subList(transLabel.size());
-					}
+					SymbolString input = unprocessedInput.subList(transLabel.size());
 					State toState = transition.getToState();
 					State[] closure = ClosureTaker.getClosure(toState,
 							myAutomaton);
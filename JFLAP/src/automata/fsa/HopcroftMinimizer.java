@@ -0,0 +1,387 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package automata.fsa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The <CODE>HopcroftMinimizer</CODE> finds the groups of indistinguishable
+ * states of a deterministic automaton with Hopcroft's partition refinement
+ * algorithm, in <I>O(n k log n)</I> time for <I>n</I> states and <I>k</I>
+ * symbols. It works on integer states and symbols only, so it needs neither
+ * the automaton objects nor the tree of groups that the {@link Minimizer}
+ * keeps for the interactive minimization.
+ * <P>
+ * The groups start as the nonaccepting states (group 0) and the accepting
+ * states (group 1); a group that would be empty is left out. Each split
+ * moves some states of a group into a new group with the next number. If the
+ * splits are recorded they can be replayed, e.g. into a tree of
+ * distinguishable groups.
+ * <P>
+ * A missing transition is taken to go to an extra nonaccepting dead state,
+ * numbered after the given states.
+ *
+ * @see Minimizer#getDistinguishableGroupsTree
+ */
+
+public class HopcroftMinimizer {
+	/**
+	 * Instantiates a minimizer for a compiled DFA.
+	 *
+	 * @param table
+	 *            the compiled DFA
+	 * @param recordSplits
+	 *            if the splits should be kept for {@link #getSplits}
+	 */
+	public HopcroftMinimizer(DFATransitionTable table, boolean recordSplits) {
+		this(table.getStateCount(), table.getSymbolCount(), tableOf(table),
+				acceptingOf(table), recordSplits);
+	}
+
+	/**
+	 * Instantiates a minimizer for a DFA given as a table.
+	 *
+	 * @param stateCount
+	 *            the number of states
+	 * @param symbolCount
+	 *            the number of symbols
+	 * @param next
+	 *            the next state for each state and symbol, row by row, or
+	 *            {@link DFATransitionTable#DEAD}
+	 * @param accepting
+	 *            whether each state is accepting
+	 * @param recordSplits
+	 *            if the splits should be kept for {@link #getSplits}
+	 */
+	public HopcroftMinimizer(int stateCount, int symbolCount, int[] next,
+			boolean[] accepting, boolean recordSplits) {
+		myStateCount = stateCount;
+		mySymbolCount = symbolCount;
+		mySplits = recordSplits ? new ArrayList<Split>() : null;
+		boolean dead = false;
+		for (int i = 0; i < stateCount * symbolCount && !dead; i++)
+			dead = next[i] == DFATransitionTable.DEAD;
+		int n = stateCount + (dead ? 1 : 0);
+
+		buildPredecessors(next, n);
+		myElements = new int[n];
+		myLocation = new int[n];
+		myBlock = new int[n];
+		myFirst = new int[n];
+		myEnd = new int[n];
+		myMarked = new int[n];
+
+		// Nonaccepting states first, then accepting.
+		int front = 0, back = n;
+		for (int s = 0; s < n; s++) {
+			int place = s < stateCount && accepting[s] ? --back : front++;
+			myElements[place] = s;
+		}
+		// Keep the accepting states in increasing order.
+		for (int i = back, j = n - 1; i < j; i++, j--) {
+			int swap = myElements[i];
+			myElements[i] = myElements[j];
+			myElements[j] = swap;
+		}
+		myInitial[0] = front > 0 ? addBlock(0, front) : -1;
+		myInitial[1] = back < n ? addBlock(back, n) : -1;
+		for (int i = 0; i < n; i++)
+			myLocation[myElements[i]] = i;
+
+		refine();
+	}
+
+	/**
+	 * Returns the row by row transitions of a compiled DFA.
+	 */
+	private static int[] tableOf(DFATransitionTable table) {
+		int symbols = table.getSymbolCount();
+		int[] next = new int[table.getStateCount() * symbols];
+		for (int s = 0; s < table.getStateCount(); s++)
+			for (int a = 0; a < symbols; a++)
+				next[s * symbols + a] = table.next(s, a);
+		return next;
+	}
+
+	/**
+	 * Returns which states of a compiled DFA are final.
+	 */
+	private static boolean[] acceptingOf(DFATransitionTable table) {
+		boolean[] accepting = new boolean[table.getStateCount()];
+		for (int s = 0; s < accepting.length; s++)
+			accepting[s] = table.isFinal(s);
+		return accepting;
+	}
+
+	/**
+	 * Builds, for every symbol and state, the list of states that go to that
+	 * state on that symbol. The dead state, if any, is state
+	 * <CODE>n - 1</CODE> and goes to itself.
+	 */
+	private void buildPredecessors(int[] next, int n) {
+		int k = mySymbolCount;
+		myPredecessorStart = new int[n * k + 1];
+		for (int s = 0; s < n; s++)
+			for (int a = 0; a < k; a++)
+				myPredecessorStart[a * n + target(next, s, a, n) + 1]++;
+		for (int i = 0; i < n * k; i++)
+			myPredecessorStart[i + 1] += myPredecessorStart[i];
+		myPredecessors = new int[n * k];
+		int[] fill = new int[n * k];
+		for (int s = 0; s < n; s++) {
+			for (int a = 0; a < k; a++) {
+				int cell = a * n + target(next, s, a, n);
+				myPredecessors[myPredecessorStart[cell] + fill[cell]++] = s;
+			}
+		}
+	}
+
+	/**
+	 * Returns where a state goes on a symbol, counting the dead state.
+	 */
+	private int target(int[] next, int state, int symbol, int n) {
+		if (state >= myStateCount)
+			return n - 1;
+		int to = next[state * mySymbolCount + symbol];
+		return to == DFATransitionTable.DEAD ? n - 1 : to;
+	}
+
+	/**
+	 * Makes a new group of the elements in <CODE>[first, end)</CODE>.
+	 */
+	private int addBlock(int first, int end) {
+		int block = myBlockCount++;
+		myFirst[block] = first;
+		myEnd[block] = end;
+		for (int i = first; i < end; i++)
+			myBlock[myElements[i]] = block;
+		return block;
+	}
+
+	/**
+	 * Splits the groups until every group is indistinguishable.
+	 */
+	private void refine() {
+		int n = myElements.length, k = mySymbolCount;
+		if (myBlockCount == 0 || k == 0)
+			return;
+		// Each group is put on the list once per symbol, when it is made.
+		int[] work = new int[n * k];
+		int workCount = 0;
+		// Either initial group will do as the first splitter; take the smaller.
+		int start = myBlockCount == 1 || size(0) <= size(1) ? 0 : 1;
+		for (int a = 0; a < k; a++) {
+			work[workCount++] = start * k + a;
+		}
+
+		int[] splitter = new int[n];
+		int[] touched = new int[n];
+		while (workCount > 0) {
+			int pair = work[--workCount];
+			int block = pair / k, symbol = pair % k;
+			// Copy the splitter, as marking may reorder it.
+			int count = size(block);
+			System.arraycopy(myElements, myFirst[block], splitter, 0, count);
+			int touchedCount = 0;
+			for (int i = 0; i < count; i++) {
+				int cell = symbol * n + splitter[i];
+				for (int j = myPredecessorStart[cell]; j < myPredecessorStart[cell + 1]; j++) {
+					int p = myPredecessors[j];
+					int b = myBlock[p];
+					if (myMarked[b] == 0)
+						touched[touchedCount++] = b;
+					swap(myLocation[p], myFirst[b] + myMarked[b]++);
+				}
+			}
+			for (int t = 0; t < touchedCount; t++) {
+				int b = touched[t];
+				int marked = myMarked[b];
+				myMarked[b] = 0;
+				if (marked == size(b))
+					continue;
+				// The smaller part becomes the new group.
+				int newBlock;
+				if (marked <= size(b) - marked) {
+					newBlock = addBlock(myFirst[b], myFirst[b] + marked);
+					myFirst[b] += marked;
+				} else {
+					newBlock = addBlock(myFirst[b] + marked, myEnd[b]);
+					myEnd[b] = myFirst[b] + marked;
+				}
+				if (mySplits != null)
+					recordSplit(b, newBlock, symbol);
+				for (int a = 0; a < k; a++) {
+					work[workCount++] = newBlock * k + a;
+				}
+			}
+		}
+	}
+
+	/** Swaps the elements at two places. */
+	private void swap(int i, int j) {
+		int si = myElements[i], sj = myElements[j];
+		myElements[i] = sj;
+		myElements[j] = si;
+		myLocation[sj] = i;
+		myLocation[si] = j;
+	}
+
+	/** Returns the number of states in a group. */
+	private int size(int block) {
+		return myEnd[block] - myFirst[block];
+	}
+
+	/**
+	 * Records the states, other than the dead state, moved by a split.
+	 */
+	private void recordSplit(int block, int newBlock, int symbol) {
+		int[] states = new int[size(newBlock)];
+		int count = 0;
+		for (int i = myFirst[newBlock]; i < myEnd[newBlock]; i++)
+			if (myElements[i] < myStateCount)
+				states[count++] = myElements[i];
+		states = Arrays.copyOf(states, count);
+		Arrays.sort(states);
+		mySplits.add(new Split(block, newBlock, symbol, states));
+	}
+
+	/**
+	 * Returns the number of groups, counting a group that holds only the dead
+	 * state.
+	 */
+	public int getBlockCount() {
+		return myBlockCount;
+	}
+
+	/**
+	 * Returns the group of a state.
+	 */
+	public int getBlock(int state) {
+		return myBlock[state];
+	}
+
+	/**
+	 * Returns the group that the accepting, or the nonaccepting, states were
+	 * all in before the first split, or -1 if there were none. The dead state
+	 * counts as nonaccepting.
+	 *
+	 * @param accepting
+	 *            whether to return the group of the accepting states
+	 */
+	public int getInitialBlock(boolean accepting) {
+		return myInitial[accepting ? 1 : 0];
+	}
+
+	/**
+	 * Returns the group the dead state is in, or -1 if there is no dead
+	 * state.
+	 */
+	public int getDeadBlock() {
+		return myElements.length > myStateCount ? myBlock[myStateCount] : -1;
+	}
+
+	/**
+	 * Returns the splits in the order they were made.
+	 *
+	 * @return the splits, or <CODE>null</CODE> if they were not recorded
+	 */
+	public List<Split> getSplits() {
+		return mySplits;
+	}
+
+	/**
+	 * A <CODE>Split</CODE> records states moved out of one group into a new
+	 * group, because of where they go on a symbol.
+	 */
+	public static class Split {
+		private Split(int block, int newBlock, int symbol, int[] states) {
+			myBlock = block;
+			myNewBlock = newBlock;
+			mySymbol = symbol;
+			myStates = states;
+		}
+
+		/** Returns the group that was split. */
+		public int getBlock() {
+			return myBlock;
+		}
+
+		/** Returns the new group. */
+		public int getNewBlock() {
+			return myNewBlock;
+		}
+
+		/** Returns the symbol that told the two groups apart. */
+		public int getSymbol() {
+			return mySymbol;
+		}
+
+		/**
+		 * Returns the states moved to the new group, in increasing order.
+		 * The array must not be modified.
+		 */
+		public int[] getStates() {
+			return myStates;
+		}
+
+		private int myBlock, myNewBlock, mySymbol;
+
+		private int[] myStates;
+	}
+
+	/** The number of states, not counting the dead state. */
+	private int myStateCount;
+
+	/** The number of symbols. */
+	private int mySymbolCount;
+
+	/** Where each state and symbol's list of predecessors starts. */
+	private int[] myPredecessorStart;
+
+	/** The lists of predecessors. */
+	private int[] myPredecessors;
+
+	/** The states, with each group contiguous. */
+	private int[] myElements;
+
+	/** The place of each state in the elements. */
+	private int[] myLocation;
+
+	/** The group of each state. */
+	private int[] myBlock;
+
+	/** The range of elements of each group. */
+	private int[] myFirst, myEnd;
+
+	/** The number of marked states at the front of each group. */
+	private int[] myMarked;
+
+	/** The number of groups. */
+	private int myBlockCount = 0;
+
+	/** The first groups of the nonaccepting and accepting states, or -1. */
+	private int[] myInitial = new int[2];
+
+	/** The splits, if recorded. */
+	private List<Split> mySplits;
+}
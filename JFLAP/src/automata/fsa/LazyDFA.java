@@ -0,0 +1,303 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package automata.fsa;
+
+import java.util.HashMap;
+
+/**
+ * A <CODE>LazyDFA</CODE> determinizes a compiled nondeterministic automaton
+ * while it reads input. A state of the DFA is a set of states of the
+ * {@link NFATransitionTable}, and is only made the first time some input
+ * reaches it; each of its transitions is only computed the first time it is
+ * followed. Input that revisits states therefore runs at the speed of a DFA,
+ * while an automaton whose full subset construction would be huge costs only
+ * as many states as the inputs actually touch.
+ * <P>
+ * At most a fixed number of DFA states are kept. When the cache is full the
+ * least recently used state is evicted; transitions into an evicted state are
+ * noticed when next followed and computed again. An evicted state drops its
+ * set and its transitions, so what stale transitions keep alive is bounded by
+ * the capacity times the number of symbols. The numbers of cache hits,
+ * misses and evictions are counted.
+ *
+ * @see NFAToDFA
+ */
+
+public class LazyDFA {
+	/** The number of states cached if no other limit is given. */
+	public static final int DEFAULT_CAPACITY = 10000;
+
+	/**
+	 * Instantiates a lazy DFA for a compiled automaton with the default cache
+	 * capacity.
+	 *
+	 * @param table
+	 *            the compiled nondeterministic automaton
+	 */
+	public LazyDFA(NFATransitionTable table) {
+		this(table, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Instantiates a lazy DFA for a compiled automaton.
+	 *
+	 * @param table
+	 *            the compiled nondeterministic automaton
+	 * @param capacity
+	 *            the most DFA states to keep at once; at least two are kept
+	 *            so a step always has a state to come from and go to
+	 */
+	public LazyDFA(NFATransitionTable table, int capacity) {
+		myTable = table;
+		myCapacity = Math.max(capacity, 2);
+		myScratch = table.createSet();
+		myLRU.myNewer = myLRU.myOlder = myLRU;
+	}
+
+	/**
+	 * Returns the compiled automaton this determinizes.
+	 */
+	public NFATransitionTable getTable() {
+		return myTable;
+	}
+
+	/**
+	 * Returns if the machine accepts the input.
+	 *
+	 * @param input
+	 *            the symbol IDs of the input
+	 */
+	public synchronized boolean accepts(int[] input) {
+		CachedState state = getInitial();
+		for (int i = 0; i < input.length; i++) {
+			state = next(state, input[i]);
+			if (state == DEAD)
+				return false;
+		}
+		return state.amAccepting;
+	}
+
+	/**
+	 * Returns if the machine accepts the input text. Text that cannot be
+	 * split into symbols of the alphabet is rejected.
+	 *
+	 * @param input
+	 *            the input text
+	 */
+	public boolean accepts(String input) {
+		int[] ids = myTable.getSymbolTable().encode(input);
+		return ids != null && accepts(ids);
+	}
+
+	/**
+	 * Returns the DFA state for the closure of the initial state.
+	 */
+	private CachedState getInitial() {
+		if (myInitial == null || myInitial.amEvicted)
+			myInitial = intern(myTable.getInitialSet());
+		touch(myInitial);
+		return myInitial;
+	}
+
+	/**
+	 * Returns the DFA state reached from a state on a symbol, computing it if
+	 * it is not cached.
+	 *
+	 * @return the next state, or {@link #DEAD}
+	 */
+	private CachedState next(CachedState state, int symbol) {
+		CachedState to = state.myNext[symbol];
+		if (to != null && !to.amEvicted) {
+			myHits++;
+			if (to != DEAD)
+				touch(to);
+			return to;
+		}
+		myMisses++;
+		to = myTable.step(state.mySet, symbol, myScratch) ? intern(myScratch)
+				: DEAD;
+		if (!state.amEvicted)
+			state.myNext[symbol] = to;
+		return to;
+	}
+
+	/**
+	 * Returns the cached DFA state for a set of NFA states, adding it to the
+	 * cache if there is none. The set is copied if it is added.
+	 */
+	private CachedState intern(long[] set) {
+		CachedState state = myStates.get(new StateSetKey(set));
+		if (state != null) {
+			touch(state);
+			return state;
+		}
+		if (myStates.size() >= myCapacity)
+			evict();
+		state = new CachedState(set.clone(), myTable.isAccepting(set), myTable
+				.getSymbolCount());
+		myStates.put(new StateSetKey(state.mySet), state);
+		link(state);
+		return state;
+	}
+
+	/**
+	 * Evicts the least recently used state.
+	 */
+	private void evict() {
+		CachedState oldest = myLRU.myOlder;
+		unlink(oldest);
+		myStates.remove(new StateSetKey(oldest.mySet));
+		oldest.amEvicted = true;
+		// Live states may still point to it until they follow that
+		// transition again, so it must not keep its set or the states it
+		// points to alive.
+		oldest.mySet = null;
+		oldest.myNext = null;
+		oldest.myNewer = oldest.myOlder = null;
+		myEvictions++;
+	}
+
+	/** Moves a state to the most recently used end of the list. */
+	private void touch(CachedState state) {
+		if (myLRU.myNewer == state)
+			return;
+		unlink(state);
+		link(state);
+	}
+
+	/** Adds a state at the most recently used end of the list. */
+	private void link(CachedState state) {
+		state.myOlder = myLRU;
+		state.myNewer = myLRU.myNewer;
+		myLRU.myNewer.myOlder = state;
+		myLRU.myNewer = state;
+	}
+
+	/** Removes a state from the list. */
+	private void unlink(CachedState state) {
+		state.myOlder.myNewer = state.myNewer;
+		state.myNewer.myOlder = state.myOlder;
+	}
+
+	/**
+	 * Empties the cache. The counters are not reset.
+	 */
+	public synchronized void clear() {
+		for (CachedState state : myStates.values())
+			state.amEvicted = true;
+		myStates.clear();
+		myLRU.myNewer = myLRU.myOlder = myLRU;
+		myInitial = null;
+	}
+
+	/**
+	 * Returns the number of DFA states now cached.
+	 */
+	public synchronized int getCachedStateCount() {
+		return myStates.size();
+	}
+
+	/**
+	 * Returns the most DFA states kept at once.
+	 */
+	public int getCapacity() {
+		return myCapacity;
+	}
+
+	/**
+	 * Returns the number of transitions followed that were already cached.
+	 */
+	public synchronized long getHitCount() {
+		return myHits;
+	}
+
+	/**
+	 * Returns the number of transitions followed that had to be computed.
+	 */
+	public synchronized long getMissCount() {
+		return myMisses;
+	}
+
+	/**
+	 * Returns the number of states evicted to make room for others.
+	 */
+	public synchronized long getEvictionCount() {
+		return myEvictions;
+	}
+
+	/**
+	 * Sets the hit, miss and eviction counters to zero.
+	 */
+	public synchronized void resetCounters() {
+		myHits = myMisses = myEvictions = 0;
+	}
+
+	/**
+	 * A state of the DFA: a set of NFA states, with the transitions out of it
+	 * found so far, and its place in the least recently used list.
+	 */
+	private static class CachedState {
+		public CachedState(long[] set, boolean accepting, int symbols) {
+			mySet = set;
+			amAccepting = accepting;
+			myNext = new CachedState[symbols];
+		}
+
+		long[] mySet;
+
+		boolean amAccepting;
+
+		boolean amEvicted = false;
+
+		/** The next state on each symbol, or null if not yet computed. */
+		CachedState[] myNext;
+
+		CachedState myNewer, myOlder;
+	}
+
+	/** The state reached when no NFA state remains; it is never evicted. */
+	private static final CachedState DEAD = new CachedState(new long[0],
+			false, 0);
+
+	/** The compiled automaton. */
+	private NFATransitionTable myTable;
+
+	/** The most states kept. */
+	private int myCapacity;
+
+	/** The cached states by their sets of NFA states. */
+	private HashMap<StateSetKey, CachedState> myStates = new HashMap<StateSetKey, CachedState>();
+
+	/**
+	 * The head of the circular least recently used list; its newer neighbor
+	 * is the most recently used state and its older neighbor the least.
+	 */
+	private CachedState myLRU = new CachedState(new long[0], false, 0);
+
+	/** The initial state, if cached. */
+	private CachedState myInitial = null;
+
+	/** Holds the result of a step before it is interned. */
+	private long[] myScratch;
+
+	/** The counters. */
+	private long myHits = 0, myMisses = 0, myEvictions = 0;
+}
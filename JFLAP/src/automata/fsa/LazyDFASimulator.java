@@ -0,0 +1,95 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package automata.fsa;
+
+import automata.Automaton;
+
+/**
+ * The lazy DFA simulator answers {@link #simulateInput} for a
+ * nondeterministic automaton by determinizing it on the fly with a
+ * {@link LazyDFA}, so repeated runs reuse the DFA states earlier inputs
+ * reached. Deterministic automata are run from their
+ * {@link DFATransitionTable} as in the {@link CompiledFSASimulator}, and step
+ * by step simulation is unchanged.
+ */
+
+public class LazyDFASimulator extends CompiledFSASimulator {
+	/**
+	 * Creates a lazy DFA simulator for the given automaton with the default
+	 * cache capacity.
+	 *
+	 * @param automaton
+	 *            the machine to simulate
+	 */
+	public LazyDFASimulator(Automaton automaton) {
+		this(automaton, LazyDFA.DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a lazy DFA simulator for the given automaton.
+	 *
+	 * @param automaton
+	 *            the machine to simulate
+	 * @param capacity
+	 *            the most DFA states to cache
+	 */
+	public LazyDFASimulator(Automaton automaton, int capacity) {
+		super(automaton);
+		myCapacity = capacity;
+	}
+
+	/**
+	 * Returns the lazy DFA for the automaton, starting a new one with an empty
+	 * cache if the automaton has changed since the last was made.
+	 *
+	 * @return the lazy DFA, or <CODE>null</CODE> if the automaton is
+	 *         deterministic or cannot be compiled
+	 */
+	public LazyDFA getLazyDFA() {
+		NFATransitionTable table = getNFATransitionTable();
+		if (table == null)
+			myLazyDFA = null;
+		else if (myLazyDFA == null || myLazyDFA.getTable() != table)
+			myLazyDFA = new LazyDFA(table, myCapacity);
+		return myLazyDFA;
+	}
+
+	/**
+	 * Runs the automaton on the input string, through the lazy DFA if the
+	 * automaton is nondeterministic.
+	 *
+	 * @param input
+	 *            the input string to be run on the automaton
+	 * @return true if the automaton accepts the input
+	 */
+	public boolean simulateInput(String input) {
+		LazyDFA dfa = getLazyDFA();
+		if (dfa == null)
+			return super.simulateInput(input);
+		return dfa.accepts(input);
+	}
+
+	/** The most DFA states to cache. */
+	private int myCapacity;
+
+	/** The lazy DFA for the current compiled automaton. */
+	private LazyDFA myLazyDFA = null;
+}
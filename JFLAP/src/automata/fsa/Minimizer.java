@@ -613,6 +613,12 @@ public class Minimizer {
 	 */
 	public DefaultTreeModel getDistinguishableGroupsTree(Automaton automaton) {
 		DefaultTreeModel tree = getInitializedTree(automaton);
+		DFATransitionTable table = DFATransitionTable
+				.compile((FiniteStateAutomaton) automaton);
+		if (table != null) {
+			replaySplits(new HopcroftMinimizer(table, true), table, tree);
+			return tree;
+		}
 		// DefaultMutableTreeNode root =
 		// (DefaultMutableTreeNode) tree.getRoot();
 		MinimizeTreeNode root = (MinimizeTreeNode) tree.getRoot();
@@ -632,6 +638,68 @@ public class Minimizer {
 		return tree;
 	}
 
+	/**
+	 * Adds the splits found by a {@link HopcroftMinimizer} to a tree of
+	 * distinguishable groups, as if each group had been split by hand. Every
+	 * split of a group becomes two children of its node, the states that
+	 * stayed and the states that moved, and the node's terminal is the
+	 * terminal the split was made on.
+	 * 
+	 * @param hopcroft
+	 *            the minimizer, which must have recorded its splits
+	 * @param table
+	 *            the compiled automaton the minimizer ran on
+	 * @param tree
+	 *            the tree, as returned by <CODE>getInitializedTree</CODE>
+	 */
+	public void replaySplits(HopcroftMinimizer hopcroft,
+			DFATransitionTable table, DefaultTreeModel tree) {
+		MinimizeTreeNode root = (MinimizeTreeNode) tree.getRoot();
+		MinimizeTreeNode[] leaves = new MinimizeTreeNode[hopcroft
+				.getBlockCount()];
+		// The children of the root are the groups the states start in.
+		for (int k = 0; k < root.getChildCount(); k++) {
+			MinimizeTreeNode child = (MinimizeTreeNode) root.getChildAt(k);
+			int index = table.getIndex(child.getStates()[0]);
+			leaves[hopcroft.getInitialBlock(table.isFinal(index))] = child;
+		}
+		boolean[] moved = new boolean[table.getStateCount()];
+		for (HopcroftMinimizer.Split split : hopcroft.getSplits()) {
+			MinimizeTreeNode parent = leaves[split.getBlock()];
+			int[] indices = split.getStates();
+			/** the groups may differ only by the dead state. */
+			if (indices.length == 0)
+				continue;
+			State[] group = parent.getStates();
+			if (indices.length == group.length) {
+				leaves[split.getNewBlock()] = parent;
+				leaves[split.getBlock()] = null;
+				continue;
+			}
+			ArrayList<State> stayed = new ArrayList<State>();
+			ArrayList<State> left = new ArrayList<State>();
+			for (int k = 0; k < indices.length; k++)
+				moved[indices[k]] = true;
+			for (int k = 0; k < group.length; k++) {
+				if (moved[table.getIndex(group[k])])
+					left.add(group[k]);
+				else
+					stayed.add(group[k]);
+			}
+			for (int k = 0; k < indices.length; k++)
+				moved[indices[k]] = false;
+			ArrayList<State[]> children = new ArrayList<State[]>();
+			children.add(stayed.toArray(new State[0]));
+			children.add(left.toArray(new State[0]));
+			parent.setTerminal((Terminal) table.getSymbolTable().getSymbol(
+					split.getSymbol()));
+			addChildrenToParent(children, parent, tree);
+			leaves[split.getBlock()] = (MinimizeTreeNode) parent.getChildAt(0);
+			leaves[split.getNewBlock()] = (MinimizeTreeNode) parent
+					.getChildAt(1);
+		}
+	}
+
 	/**
 	 * Returns true if <CODE>states</CODE> contains a state that is a final
 	 * state in <CODE>automaton</CODE>.
@@ -839,19 +907,47 @@ public class Minimizer {
 		// if(isMinimized(automaton))
 		// return (FiniteStateAutomaton) automaton.clone();
 		FiniteStateAutomaton minDfa = new FiniteStateAutomaton();
-		createStatesForMinimumDfa(automaton, minDfa, tree);
-
-		ArrayList list = new ArrayList();
-		State[] states = minDfa.getStates();
-		for (int k = 0; k < states.length; k++) {
-			list.addAll(getTransitionsForState(states[k], minDfa, automaton,
-					tree));
+		MinimizeTreeNode root = (MinimizeTreeNode) tree.getRoot();
+		ArrayList groups = getLeaves(tree, root);
+		/** look groups up by hash rather than by searching the leaves. */
+		HashMap<State, State[]> groupForState = new HashMap<State, State[]>();
+		HashMap<State[], State> stateForGroup = new HashMap<State[], State>();
+		StatePlacer sp = new StatePlacer();
+		Iterator it = groups.iterator();
+		while (it.hasNext()) {
+			State[] group = (State[]) it.next();
+			for (int k = 0; k < group.length; k++)
+				groupForState.put(group[k], group);
+			if (!containsTrapState(group)) {
+				Point point = sp.getPointForState(minDfa);
+				State state = minDfa.createStateWithId(point, stateForGroup
+						.size());
+				state.setLabel(getString(group));
+				if (hasInitialState(group, automaton))
+					minDfa.setInitialState(state);
+				if (hasFinalState(group, automaton))
+					minDfa.addFinalState(state);
+				mapStateToGroup(state, group);
+				stateForGroup.put(group, state);
+			}
 		}
 
-		Iterator it = list.iterator();
+		it = groups.iterator();
 		while (it.hasNext()) {
-			Transition transition = (Transition) it.next();
-			minDfa.addTransition(transition);
+			State[] group = (State[]) it.next();
+			State from = stateForGroup.get(group);
+			if (from == null)
+				continue;
+			Transition[] transitions = automaton
+					.getTransitionsFromState(group[0]);
+			for (int k = 0; k < transitions.length; k++) {
+				FSATransition trans = (FSATransition) transitions[k];
+				State to = stateForGroup.get(groupForState.get(trans
+						.getToState()));
+				if (to != null)
+					minDfa.addTransition(new FSATransition(from, to, trans
+							.getLabel()));
+			}
 		}
 		return minDfa;
 	}
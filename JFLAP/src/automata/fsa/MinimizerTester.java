@@ -0,0 +1,67 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+package automata.fsa;
+
+import java.awt.Point;
+import java.util.ArrayList;
+
+import javax.swing.tree.DefaultTreeModel;
+
+import JFLAPnew.formaldef.symbols.SymbolString;
+import JFLAPnew.formaldef.symbols.terminal.Terminal;
+import automata.State;
+
+/**
+ * Tester for the tree of distinguishable groups the minimizer builds from the
+ * splits of Hopcroft's algorithm. The DFA has the states 0, 1 and 2, goes from
+ * 0 to 2, 1 to 1 and 2 to 2 on a, and accepts in 2; its first split is of the
+ * nonaccepting group, which used to be found by the group the states end in.
+ */
+public class MinimizerTester {
+
+	public static void main(String[] args)
+	{
+		FiniteStateAutomaton fsa = new FiniteStateAutomaton();
+		Terminal a = new Terminal("a");
+		fsa.getInputAlphabet().add(a);
+		State[] states = new State[3];
+		for (int i = 0; i < states.length; i++)
+			states[i] = fsa.createState(new Point(100 * i, 0));
+		fsa.setInitialState(states[0]);
+		fsa.addFinalState(states[2]);
+		fsa.addTransition(new FSATransition(states[0], states[2], new SymbolString(a)));
+		fsa.addTransition(new FSATransition(states[1], states[1], new SymbolString(a)));
+		fsa.addTransition(new FSATransition(states[2], states[2], new SymbolString(a)));
+
+		Minimizer minimizer = new Minimizer();
+		minimizer.initializeMinimizer();
+		DefaultTreeModel tree = minimizer.getDistinguishableGroupsTree(fsa);
+		ArrayList groups = minimizer.getLeaves(tree,
+				(MinimizeTreeNode) tree.getRoot());
+		for (int k = 0; k < groups.size(); k++) {
+			State[] group = (State[]) groups.get(k);
+			for (int i = 0; i < group.length; i++)
+				System.out.print(group[i].getName() + " ");
+			System.out.println();
+		}
+		System.out.println("Groups = " + groups.size() + " (expected 3)");
+		System.out.println("Minimized = " + minimizer.isMinimized(fsa, tree));
+	}
+}
@@ -23,9 +23,13 @@ package automata.fsa;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.StringTokenizer;
 
+import JFLAPnew.formaldef.SymbolTable;
 import JFLAPnew.formaldef.symbols.SymbolString;
 import JFLAPnew.formaldef.symbols.terminal.Terminal;
 import automata.AlphabetRetriever;
@@ -368,6 +372,94 @@ public class NFAToDFA {
 		if (FSALabelHandler.hasMultipleCharacterLabels(automaton)) {
 			FSALabelHandler.removeMultipleCharacterLabelsFromAutomaton(automaton);
 		}
+		NFATransitionTable table = NFATransitionTable
+				.compile((FiniteStateAutomaton) automaton);
+		if (table == null)
+			return convertByExpansion(automaton);
+		return convertWithTable(table);
+	}
+
+	/**
+	 * Performs the subset construction on a compiled NFA. Each set of NFA
+	 * states is a bit set, found in a hash map keyed on its bits, so a DFA
+	 * state is looked up in constant time. The DFA states are only created,
+	 * and their labels only written, once all the sets are known.
+	 * 
+	 * @param table
+	 *            the compiled nfa
+	 * @return a deterministic finite state automaton equivalent to the nfa
+	 */
+	private FiniteStateAutomaton convertWithTable(NFATransitionTable table) {
+		int symbols = table.getSymbolCount();
+		List<long[]> sets = new ArrayList<long[]>();
+		Map<StateSetKey, Integer> indices = new HashMap<StateSetKey, Integer>();
+		/** each transition is from, symbol, to in turn. */
+		int[] transitions = new int[3 * 16];
+		int transitionCount = 0;
+
+		long[] initial = table.getInitialSet().clone();
+		sets.add(initial);
+		indices.put(new StateSetKey(initial), 0);
+		long[] next = table.createSet();
+		for (int from = 0; from < sets.size(); from++) {
+			long[] set = sets.get(from);
+			for (int symbol = 0; symbol < symbols; symbol++) {
+				if (!table.step(set, symbol, next))
+					continue;
+				StateSetKey key = new StateSetKey(next);
+				Integer to = indices.get(key);
+				if (to == null) {
+					to = sets.size();
+					indices.put(key, to);
+					sets.add(next);
+					next = table.createSet();
+				}
+				if (transitionCount + 3 > transitions.length)
+					transitions = Arrays.copyOf(transitions, 2 * transitions.length);
+				transitions[transitionCount++] = from;
+				transitions[transitionCount++] = symbol;
+				transitions[transitionCount++] = to;
+			}
+		}
+
+		FiniteStateAutomaton dfa = new FiniteStateAutomaton();
+		StatePlacer sp = new StatePlacer();
+		State[] states = new State[sets.size()];
+		StringBuffer buffer = new StringBuffer();
+		for (int i = 0; i < states.length; i++) {
+			long[] set = sets.get(i);
+			states[i] = dfa.createStateWithId(sp.getPointForState(dfa), i);
+			buffer.setLength(0);
+			for (int s = 0; s < table.getStateCount(); s++) {
+				if (NFATransitionTable.contains(set, s)) {
+					if (buffer.length() > 0)
+						buffer.append(",");
+					buffer.append(table.getState(s).getID());
+				}
+			}
+			states[i].setLabel(buffer.toString());
+			if (table.isAccepting(set))
+				dfa.addFinalState(states[i]);
+		}
+		dfa.setInitialState(states[0]);
+		SymbolTable symbolTable = table.getSymbolTable();
+		for (int t = 0; t < transitionCount; t += 3) {
+			dfa.addTransition(new FSATransition(states[transitions[t]],
+					states[transitions[t + 2]], new SymbolString(symbolTable
+							.getSymbol(transitions[t + 1]))));
+		}
+		return dfa;
+	}
+
+	/**
+	 * Converts the nfa by expanding states of the dfa, as in the step by step
+	 * conversion. This is used when the nfa cannot be compiled.
+	 * 
+	 * @param automaton
+	 *            the automaton to convert to a dfa.
+	 * @return a deterministic finite state automaton equivalent to <CODE>automaton</CODE>.
+	 */
+	private FiniteStateAutomaton convertByExpansion(Automaton automaton) {
 		/** create new finite state automaton. */
 		FiniteStateAutomaton dfa = new FiniteStateAutomaton();
 		State initialState = createInitialState(automaton, dfa);
@@ -0,0 +1,360 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package automata.fsa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import JFLAPnew.formaldef.SymbolTable;
+import JFLAPnew.formaldef.symbols.SymbolString;
+import automata.State;
+import automata.Transition;
+
+/**
+ * An <CODE>NFATransitionTable</CODE> is a compiled form of a (possibly
+ * nondeterministic) finite state automaton that simulates all paths through
+ * the machine at once. A set of states is a <CODE>long[]</CODE> bit set, the
+ * lambda closure of every state is computed once, and for every state and
+ * symbol the closed set of states reached is stored, so reading a symbol is a
+ * word-parallel OR over the active states and needs no configuration
+ * objects.
+ * <P>
+ * States are numbered by their position in
+ * {@link automata.Automaton#getStates()}. A transition that reads more than
+ * one symbol is split into a chain of single-symbol transitions through extra
+ * states numbered after the automaton's own, for which {@link #getState}
+ * returns <CODE>null</CODE>. Symbols are numbered by their ID in the
+ * automaton's {@link SymbolTable}.
+ *
+ * @see DFATransitionTable
+ */
+
+public class NFATransitionTable {
+	/**
+	 * Compiles the automaton into a transition table.
+	 *
+	 * @param automaton
+	 *            the automaton to compile
+	 * @return the transition table, or <CODE>null</CODE> if the automaton has
+	 *         no initial state or a transition reads a symbol that is not in
+	 *         its alphabet
+	 */
+	public static NFATransitionTable compile(FiniteStateAutomaton automaton) {
+		if (automaton.getInitialState() == null)
+			return null;
+		State[] states = automaton.getStates();
+		SymbolTable symbols = automaton.getSymbolTable();
+		// Each edge is {from, symbol or -1 for lambda, to}.
+		List<int[]> edges = new ArrayList<int[]>();
+		int stateCount = states.length;
+		Transition[] transitions = automaton.getTransitions();
+		for (int i = 0; i < transitions.length; i++) {
+			FSATransition transition = (FSATransition) transitions[i];
+			SymbolString label = transition.getLabel();
+			int from = indexOf(states, transition.getFromState());
+			int to = indexOf(states, transition.getToState());
+			if (label.isEmpty()) {
+				edges.add(new int[] { from, -1, to });
+				continue;
+			}
+			for (int k = 0; k < label.size(); k++) {
+				int symbol = symbols.getID(label.get(k));
+				if (symbol < 0)
+					return null;
+				int next = k == label.size() - 1 ? to : stateCount++;
+				edges.add(new int[] { from, symbol, next });
+				from = next;
+			}
+		}
+		return new NFATransitionTable(automaton, states, symbols, stateCount,
+				edges);
+	}
+
+	/**
+	 * Returns the index of a state in an array of states sorted by ID.
+	 */
+	private static int indexOf(State[] states, State state) {
+		int low = 0, high = states.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int id = states[mid].getID();
+			if (id < state.getID())
+				low = mid + 1;
+			else if (id > state.getID())
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	/**
+	 * Builds the closures and moves of the machine from its edges.
+	 */
+	private NFATransitionTable(FiniteStateAutomaton automaton,
+			State[] states, SymbolTable symbols, int stateCount,
+			List<int[]> edges) {
+		myStates = states;
+		mySymbols = symbols;
+		myStateCount = stateCount;
+		mySymbolCount = symbols.size();
+		myWords = (stateCount + 63) >>> 6;
+
+		int[][] lambda = lambdaAdjacency(edges, stateCount);
+		myClosures = new long[stateCount][];
+		int[] stack = new int[stateCount];
+		for (int s = 0; s < stateCount; s++) {
+			long[] closure = new long[myWords];
+			int top = 0;
+			stack[top++] = s;
+			add(closure, s);
+			while (top > 0) {
+				int t = stack[--top];
+				for (int i = 0; i < lambda[t].length; i++) {
+					int u = lambda[t][i];
+					if (!contains(closure, u)) {
+						add(closure, u);
+						stack[top++] = u;
+					}
+				}
+			}
+			myClosures[s] = closure;
+		}
+
+		myMoves = new long[stateCount * mySymbolCount][];
+		for (int i = 0; i < edges.size(); i++) {
+			int[] edge = edges.get(i);
+			if (edge[1] < 0)
+				continue;
+			int cell = edge[0] * mySymbolCount + edge[1];
+			if (myMoves[cell] == null)
+				myMoves[cell] = new long[myWords];
+			or(myMoves[cell], myClosures[edge[2]]);
+		}
+
+		myFinal = new long[myWords];
+		for (int s = 0; s < states.length; s++)
+			if (automaton.isFinalState(states[s]))
+				add(myFinal, s);
+		myInitial = myClosures[indexOf(states, automaton.getInitialState())];
+	}
+
+	/**
+	 * Returns, for every state, the targets of its lambda edges.
+	 */
+	private static int[][] lambdaAdjacency(List<int[]> edges, int stateCount) {
+		int[] counts = new int[stateCount];
+		for (int[] edge : edges)
+			if (edge[1] < 0)
+				counts[edge[0]]++;
+		int[][] adjacency = new int[stateCount][];
+		for (int s = 0; s < stateCount; s++)
+			adjacency[s] = new int[counts[s]];
+		for (int[] edge : edges)
+			if (edge[1] < 0)
+				adjacency[edge[0]][--counts[edge[0]]] = edge[2];
+		return adjacency;
+	}
+
+	/**
+	 * Returns the state of the automaton for an index of this table.
+	 *
+	 * @return the state, or <CODE>null</CODE> for the extra states made to
+	 *         split multiple symbol transitions
+	 */
+	public State getState(int index) {
+		return index < myStates.length ? myStates[index] : null;
+	}
+
+	/**
+	 * Returns the number of states, including the extra states.
+	 */
+	public int getStateCount() {
+		return myStateCount;
+	}
+
+	/**
+	 * Returns the number of symbol IDs; every symbol is in
+	 * <CODE>[0, getSymbolCount())</CODE>.
+	 */
+	public int getSymbolCount() {
+		return mySymbolCount;
+	}
+
+	/**
+	 * Returns the symbol table the symbol IDs of this table come from.
+	 */
+	public SymbolTable getSymbolTable() {
+		return mySymbols;
+	}
+
+	/**
+	 * Returns the number of <CODE>long</CODE> words in a set of states.
+	 */
+	public int getWordCount() {
+		return myWords;
+	}
+
+	/**
+	 * Returns a new, empty set of states.
+	 */
+	public long[] createSet() {
+		return new long[myWords];
+	}
+
+	/**
+	 * Returns the lambda closure of the initial state. The array must not be
+	 * modified.
+	 */
+	public long[] getInitialSet() {
+		return myInitial;
+	}
+
+	/**
+	 * Returns the lambda closure of a state. The array must not be modified.
+	 */
+	public long[] getClosure(int state) {
+		return myClosures[state];
+	}
+
+	/**
+	 * Returns the closed set of states reached from one state by reading one
+	 * symbol. The array must not be modified.
+	 *
+	 * @return the set of states, or <CODE>null</CODE> if there are none
+	 */
+	public long[] getMove(int state, int symbol) {
+		return myMoves[state * mySymbolCount + symbol];
+	}
+
+	/**
+	 * Computes the states reached from a set of states by reading a symbol.
+	 *
+	 * @param from
+	 *            the current set of states
+	 * @param symbol
+	 *            the ID of the symbol read
+	 * @param to
+	 *            receives the next set of states; its old contents are lost
+	 * @return <CODE>true</CODE> if the next set of states is not empty
+	 */
+	public boolean step(long[] from, int symbol, long[] to) {
+		Arrays.fill(to, 0L);
+		boolean any = false;
+		for (int w = 0; w < myWords; w++) {
+			long word = from[w];
+			while (word != 0) {
+				int s = (w << 6) + Long.numberOfTrailingZeros(word);
+				word &= word - 1;
+				long[] move = myMoves[s * mySymbolCount + symbol];
+				if (move != null) {
+					or(to, move);
+					any = true;
+				}
+			}
+		}
+		return any;
+	}
+
+	/**
+	 * Returns if a set of states contains a final state.
+	 */
+	public boolean isAccepting(long[] set) {
+		for (int w = 0; w < myWords; w++)
+			if ((set[w] & myFinal[w]) != 0)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Returns if the machine accepts the input.
+	 *
+	 * @param input
+	 *            the symbol IDs of the input
+	 */
+	public boolean accepts(int[] input) {
+		long[] current = myInitial.clone(), next = new long[myWords];
+		for (int i = 0; i < input.length; i++) {
+			if (!step(current, input[i], next))
+				return false;
+			long[] swap = current;
+			current = next;
+			next = swap;
+		}
+		return isAccepting(current);
+	}
+
+	/**
+	 * Returns if the machine accepts the input text. Text that cannot be
+	 * split into symbols of the alphabet is rejected.
+	 *
+	 * @param input
+	 *            the input text
+	 */
+	public boolean accepts(String input) {
+		int[] ids = mySymbols.encode(input);
+		return ids != null && accepts(ids);
+	}
+
+	/** Returns if a set of states contains a state. */
+	public static boolean contains(long[] set, int state) {
+		return (set[state >>> 6] & (1L << state)) != 0;
+	}
+
+	/** Adds a state to a set of states. */
+	public static void add(long[] set, int state) {
+		set[state >>> 6] |= 1L << state;
+	}
+
+	/** Adds all the states of one set to another. */
+	public static void or(long[] set, long[] other) {
+		for (int w = 0; w < set.length; w++)
+			set[w] |= other[w];
+	}
+
+	/** The states of the automaton, in order of index. */
+	private State[] myStates;
+
+	/** The symbol IDs. */
+	private SymbolTable mySymbols;
+
+	/** The number of states, including extra states. */
+	private int myStateCount;
+
+	/** The number of symbol IDs. */
+	private int mySymbolCount;
+
+	/** The number of words in a set of states. */
+	private int myWords;
+
+	/** The lambda closure of each state. */
+	private long[][] myClosures;
+
+	/** The closed moves for each state and symbol, row by row. */
+	private long[][] myMoves;
+
+	/** The set of final states. */
+	private long[] myFinal;
+
+	/** The closure of the initial state. */
+	private long[] myInitial;
+}
@@ -0,0 +1,64 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package automata.fsa;
+
+import java.util.Arrays;
+
+/**
+ * A set of states of an {@link NFATransitionTable}, as a hash key. The key
+ * holds on to the bit set it is given, which must not change while the key is
+ * in use.
+ */
+
+class StateSetKey {
+	/**
+	 * Instantiates a key for a set of states.
+	 *
+	 * @param set
+	 *            the bit set of states
+	 */
+	public StateSetKey(long[] set) {
+		mySet = set;
+		myHash = Arrays.hashCode(set);
+	}
+
+	/**
+	 * Returns the bit set of states.
+	 */
+	public long[] getSet() {
+		return mySet;
+	}
+
+	public int hashCode() {
+		return myHash;
+	}
+
+	public boolean equals(Object o) {
+		return o instanceof StateSetKey && ((StateSetKey) o).myHash == myHash
+				&& Arrays.equals(((StateSetKey) o).mySet, mySet);
+	}
+
+	/** The set of states. */
+	private long[] mySet;
+
+	/** The hash of the set. */
+	private int myHash;
+}
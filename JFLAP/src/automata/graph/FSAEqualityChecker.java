@@ -20,9 +20,11 @@
 
 package automata.graph;
 
+import automata.fsa.FSAEquivalenceChecker;
 import automata.fsa.NFAToDFA;
 import automata.fsa.Minimizer;
 import automata.fsa.FiniteStateAutomaton;
+import automata.fsa.NFATransitionTable;
 
 /**
  * This determines if two FSAs accept the same language.
@@ -43,6 +45,10 @@ public class FSAEqualityChecker {
 	 *         not
 	 */
 	public boolean equals(FiniteStateAutomaton fsa1, FiniteStateAutomaton fsa2) {
+		NFATransitionTable table1 = NFATransitionTable.compile(fsa1);
+		NFATransitionTable table2 = NFATransitionTable.compile(fsa2);
+		if (table1 != null && table2 != null)
+			return new FSAEquivalenceChecker(table1, table2).isEquivalent();
 		// Clone for safety.
 		fsa1 = (FiniteStateAutomaton) fsa1.clone();
 		fsa2 = (FiniteStateAutomaton) fsa2.clone();
@@ -66,6 +72,26 @@ public class FSAEqualityChecker {
 		return checker.equals(fsa1, fsa2);
 	}
 
+	/**
+	 * Returns the shortest string accepted by one of two FSAs but not the
+	 * other.
+	 * 
+	 * @param fsa1
+	 *            the first finite state automaton
+	 * @param fsa2
+	 *            the second finite state automaton
+	 * @return the string, or <CODE>null</CODE> if the automata accept the
+	 *         same language or one of them cannot be compiled
+	 */
+	public String getCounterexample(FiniteStateAutomaton fsa1,
+			FiniteStateAutomaton fsa2) {
+		NFATransitionTable table1 = NFATransitionTable.compile(fsa1);
+		NFATransitionTable table2 = NFATransitionTable.compile(fsa2);
+		if (table1 == null || table2 == null)
+			return null;
+		return new FSAEquivalenceChecker(table1, table2).getCounterexample();
+	}
+
 	/** The equality checker. */
 	private static DFAEqualityChecker checker = new DFAEqualityChecker();
 
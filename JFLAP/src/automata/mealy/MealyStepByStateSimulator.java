@@ -20,6 +20,9 @@
 
 package automata.mealy;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.*;
 import automata.*;
 
@@ -34,6 +37,10 @@ import automata.*;
  * tape in the simulation window. This does not deal with lambda
  * transitions.
  * 
+ * <p>A deterministic machine is run on whole inputs by a
+ * {@link MealyStreamTransducer} compiled from it, rather than a configuration
+ * at a time.
+ * 
  * @author Jinghui Lim
  * @see automata.mealy.MealyConfiguration
  *
@@ -103,16 +110,18 @@ public class MealyStepByStateSimulator extends AutomatonSimulator
     }
 
     /**
-     * Returns <code>true</code> if all the input has been processed and output 
-     * generated. This calls the {@link MealyConfiguration#isAccept()}. It 
-     * returns <code>false</code> otherwise.
+     * Returns <code>true</code> if one of the configurations has processed
+     * all the input and generated its output. This calls the
+     * {@link MealyConfiguration#isAccept()}. It returns <code>false</code>
+     * otherwise.
      * 
+     * @param configurations the configurations the machine could be in
      * @return <code>true</code> if all input has been processed, <code>false
      * </code> otherwise
      */
-    public boolean isAccepted() 
+    protected boolean isAccepted(Collection configurations) 
     {
-        Iterator it = myConfigurations.iterator();
+        Iterator it = configurations.iterator();
         while(it.hasNext())
         {
             MealyConfiguration config = (MealyConfiguration) it.next();
@@ -128,28 +137,71 @@ public class MealyStepByStateSimulator extends AutomatonSimulator
      * @param input the input string to run on the machine
      * @return <code>true</code> once the entire input string has been
      * processed.
-     * @see #isAccepted()
+     * @see #isAccepted(Collection)
      */
     public boolean simulateInput(String input) 
     {
-        myConfigurations.clear();
+        MealyStreamTransducer transducer = getTransducer();
+        if(transducer != null)
+        {
+            try
+            {
+                return transducer.transduce(new StringReader(input), new StringWriter());
+            }
+            catch(IOException e)
+            {
+                // Strings are not read or written with errors.
+            }
+        }
+        Set configurations = new HashSet();
         Configuration[] initialConfigs = getInitialConfigurations(input);
-        myConfigurations.addAll(Arrays.asList(initialConfigs));
+        configurations.addAll(Arrays.asList(initialConfigs));
 
-        while(!myConfigurations.isEmpty())
+        while(!configurations.isEmpty())
         {
-            if(isAccepted())
+            if(isAccepted(configurations))
                 return true;
             ArrayList configurationsToAdd = new ArrayList();
-            Iterator it = myConfigurations.iterator();
+            Iterator it = configurations.iterator();
             while(it.hasNext())
             {
                 MealyConfiguration config = (MealyConfiguration) it.next();
                 configurationsToAdd.addAll(stepConfiguration(config));
                 it.remove();
             }
-            myConfigurations.addAll(configurationsToAdd);
+            configurations.addAll(configurationsToAdd);
         }
         return false;
     }
+
+    /**
+     * Returns the machine compiled as a transducer, compiling it again if it
+     * has changed.
+     * 
+     * @return the transducer, or <code>null</code> if the machine is not
+     * deterministic or has a transition that reads nothing
+     */
+    private MealyStreamTransducer getTransducer()
+    {
+        int count = myAutomaton.getModificationCount();
+        if(count != myCompiledCount)
+        {
+            try
+            {
+                myTransducer = new MealyStreamTransducer((MealyMachine) myAutomaton);
+            }
+            catch(IllegalArgumentException e)
+            {
+                myTransducer = null;
+            }
+            myCompiledCount = count;
+        }
+        return myTransducer;
+    }
+
+    /** The machine compiled as a transducer, or <code>null</code>. */
+    private MealyStreamTransducer myTransducer = null;
+
+    /** The modification count of the machine when last compiled. */
+    private int myCompiledCount = -1;
 }
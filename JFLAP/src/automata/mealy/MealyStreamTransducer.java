@@ -0,0 +1,428 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package automata.mealy;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import JFLAPnew.formaldef.symbols.Symbol;
+import JFLAPnew.formaldef.symbols.SymbolString;
+import automata.State;
+import automata.Transition;
+
+/**
+ * A <code>MealyStreamTransducer</code> is a compiled form of a deterministic Mealy
+ * or Moore machine that translates a stream of input to a stream of output.
+ * Input is read a buffer at a time from a <code>Reader</code> or a
+ * <code>ReadableByteChannel</code>, and the output of each transition is
+ * written as soon as the transition is taken, so the memory used does not
+ * depend on the length of the input; the machine can translate input of any
+ * size.
+ *
+ * <p>Transitions are matched character by character, as the
+ * {@link MealyStepByStateSimulator} matches them. Their input labels are
+ * merged into a trie for each state, which is stored as a dense table of
+ * trie nodes by character classes, so a character costs two array lookups.
+ *
+ * <p>A transducer is a snapshot of its machine: use {@link #isCurrent} to
+ * see if the machine has changed since it was compiled.
+ *
+ * @see MealyStepByStateSimulator
+ * @see MooreStepByStateSimulator
+ */
+public class MealyStreamTransducer
+{
+    /** The node the transducer is in after input with no transition. */
+    public static final int DEAD = -1;
+
+    /**
+     * Compiles a Mealy or Moore machine.
+     *
+     * @param machine the machine to compile
+     * @throws IllegalArgumentException if the machine has no initial state,
+     * has a transition that reads nothing, or is not deterministic, i.e. the
+     * input of a transition out of a state is a prefix of the input of
+     * another
+     */
+    public MealyStreamTransducer(MealyMachine machine)
+    {
+        State initial = machine.getInitialState();
+        if(initial == null)
+            throw new IllegalArgumentException("The machine has no initial state.");
+        myMachine = machine;
+        myModificationCount = machine.getModificationCount();
+        myStates = machine.getStates();
+
+        Transition[] transitions = machine.getTransitions();
+        String[] inputs = new String[transitions.length];
+        TreeSet<Character> characters = new TreeSet<Character>();
+        int nodes = myStates.length;
+        for(int i = 0; i < transitions.length; i++)
+        {
+            inputs[i] = toString(getInput(transitions[i]));
+            if(inputs[i].length() == 0)
+                throw new IllegalArgumentException(
+                        "The machine has a transition that reads nothing.");
+            for(int j = 0; j < inputs[i].length(); j++)
+                characters.add(inputs[i].charAt(j));
+            nodes += inputs[i].length() - 1;
+        }
+
+        // Class 0 is every character that no transition reads.
+        myClassOf = new char[Character.MAX_VALUE + 1];
+        myClassCount = characters.size() + 1;
+        char c = 1;
+        for(char character : characters)
+            myClassOf[character] = c++;
+        myNext = new int[nodes * myClassCount];
+        myEmit = new int[nodes * myClassCount];
+        Arrays.fill(myNext, DEAD);
+        Arrays.fill(myEmit, -1);
+        myOutputs = new char[transitions.length][];
+
+        int nodeCount = myStates.length;
+        for(int i = 0; i < transitions.length; i++)
+        {
+            String input = inputs[i];
+            int node = indexOf(transitions[i].getFromState());
+            for(int j = 0; j < input.length() - 1; j++)
+            {
+                int cell = node * myClassCount + myClassOf[input.charAt(j)];
+                if(myNext[cell] == DEAD)
+                    myNext[cell] = nodeCount++;
+                else if(myEmit[cell] >= 0)
+                    throw nondeterministic(transitions[i]);
+                node = myNext[cell];
+            }
+            int cell = node * myClassCount
+                + myClassOf[input.charAt(input.length() - 1)];
+            if(myNext[cell] != DEAD)
+                throw nondeterministic(transitions[i]);
+            myNext[cell] = indexOf(transitions[i].getToState());
+            myEmit[cell] = i;
+            myOutputs[i] = toString(getOutput(transitions[i])).toCharArray();
+        }
+
+        myInitial = indexOf(initial);
+        myInitialOutput = machine instanceof MooreMachine ?
+                toString(((MooreMachine) machine).getOutput(initial)).toCharArray()
+                : new char[0];
+        myNode = myInitial;
+    }
+
+    /**
+     * Returns the exception for a transition whose input conflicts with that
+     * of another from the same state.
+     */
+    private static IllegalArgumentException nondeterministic(Transition transition)
+    {
+        return new IllegalArgumentException("The machine is not deterministic in "
+                + transition.getFromState() + ".");
+    }
+
+    /**
+     * Returns the input a transition of a Mealy or Moore machine reads.
+     */
+    private static SymbolString getInput(Transition transition)
+    {
+        if(transition instanceof MealyTransition)
+            return ((MealyTransition) transition).getInput();
+        return ((InputOutputTransition) transition).getInput();
+    }
+
+    /**
+     * Returns the output of a transition of a Mealy or Moore machine.
+     */
+    private static SymbolString getOutput(Transition transition)
+    {
+        if(transition instanceof MealyTransition)
+            return ((MealyTransition) transition).getOutput();
+        return ((InputOutputTransition) transition).getOutput();
+    }
+
+    /**
+     * Returns the characters of a string of symbols, which is empty for
+     * <code>null</code>.
+     */
+    private static String toString(SymbolString string)
+    {
+        if(string == null)
+            return "";
+        StringBuffer buffer = new StringBuffer();
+        for(Symbol symbol : string)
+            buffer.append(symbol.getString());
+        return buffer.toString();
+    }
+
+    /**
+     * Returns the index of a state, which is also the index of the root of
+     * its trie.
+     */
+    private int indexOf(State state)
+    {
+        int low = 0, high = myStates.length - 1;
+        while(low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int id = myStates[mid].getID();
+            if(id < state.getID())
+                low = mid + 1;
+            else if(id > state.getID())
+                high = mid - 1;
+            else
+                return mid;
+        }
+        throw new IllegalArgumentException(state + " is not in the machine.");
+    }
+
+    /**
+     * Puts the transducer back in the initial state, and writes the output
+     * of that state if the machine is a Moore machine.
+     *
+     * @param out where to write output
+     * @throws IOException if writing fails
+     */
+    public void reset(Writer out) throws IOException
+    {
+        myNode = myInitial;
+        myRead = 0;
+        out.write(myInitialOutput);
+    }
+
+    /**
+     * Translates some input, continuing from where the last input left off.
+     * Input may end in the middle of a transition; its output is written
+     * once the rest of its input is fed.
+     *
+     * @param input the input characters
+     * @param offset the index of the first character
+     * @param length the number of characters
+     * @param out where to write output
+     * @return <code>true</code> if every character so far was read by a
+     * transition, or <code>false</code> if the machine is stuck, in which
+     * case further input is ignored
+     * @throws IOException if writing fails
+     */
+    public boolean feed(char[] input, int offset, int length, Writer out)
+        throws IOException
+    {
+        int node = myNode;
+        if(node == DEAD)
+            return false;
+        int[] next = myNext, emit = myEmit;
+        char[] classOf = myClassOf;
+        char[] buffer = myBuffer;
+        int classes = myClassCount, used = 0, end = offset + length, i;
+        for(i = offset; i < end; i++)
+        {
+            int cell = node * classes + classOf[input[i]];
+            node = next[cell];
+            if(node == DEAD)
+                break;
+            int transition = emit[cell];
+            if(transition < 0)
+                continue;
+            char[] output = myOutputs[transition];
+            if(used + output.length > buffer.length)
+            {
+                out.write(buffer, 0, used);
+                used = 0;
+                if(output.length > buffer.length)
+                {
+                    out.write(output);
+                    continue;
+                }
+            }
+            System.arraycopy(output, 0, buffer, used, output.length);
+            used += output.length;
+        }
+        out.write(buffer, 0, used);
+        myRead += i - offset;
+        myNode = node;
+        return node != DEAD;
+    }
+
+    /**
+     * Translates all the input of a reader, from the initial state. Neither
+     * the reader nor the writer is closed.
+     *
+     * @param in the input
+     * @param out where to write output
+     * @return <code>true</code> if the machine read all the input and ended
+     * in a state, or <code>false</code> if it got stuck, in which case the
+     * output of the transitions taken before has been written
+     * @throws IOException if reading or writing fails
+     */
+    public boolean transduce(Reader in, Writer out) throws IOException
+    {
+        reset(out);
+        char[] input = new char[BUFFER_SIZE];
+        for(int length; (length = in.read(input)) >= 0; )
+            if(!feed(input, 0, length, out))
+                return false;
+        return isAccepting();
+    }
+
+    /**
+     * Translates all the input of a channel of bytes in some encoding, from
+     * the initial state. Neither the channel nor the writer is closed.
+     *
+     * @param in the input
+     * @param charset the encoding of the input
+     * @param out where to write output
+     * @return <code>true</code> if the machine read all the input and ended
+     * in a state, or <code>false</code> if it got stuck
+     * @throws IOException if reading or writing fails, or the input is not
+     * in the encoding
+     */
+    public boolean transduce(ReadableByteChannel in, Charset charset, Writer out)
+        throws IOException
+    {
+        reset(out);
+        CharsetDecoder decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+        ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+        boolean end;
+        CoderResult result;
+        do
+        {
+            end = in.read(bytes) < 0;
+            bytes.flip();
+            do
+            {
+                result = decoder.decode(bytes, chars, end);
+                if(result.isError())
+                    result.throwException();
+                if(!feed(chars, out))
+                    return false;
+            } while(result.isOverflow());
+            bytes.compact();
+        } while(!end);
+        do
+        {
+            result = decoder.flush(chars);
+            if(!feed(chars, out))
+                return false;
+        } while(result.isOverflow());
+        return isAccepting();
+    }
+
+    /**
+     * Translates the characters decoded into a buffer, and empties it.
+     */
+    private boolean feed(CharBuffer chars, Writer out) throws IOException
+    {
+        chars.flip();
+        boolean fed = feed(chars.array(), chars.position(), chars.remaining(), out);
+        chars.clear();
+        return fed;
+    }
+
+    /**
+     * Returns if the input so far has been read by whole transitions, i.e.
+     * the machine is in a state and not stuck.
+     */
+    public boolean isAccepting()
+    {
+        return myNode != DEAD && myNode < myStates.length;
+    }
+
+    /**
+     * Returns the state the machine is in, or <code>null</code> if it is in
+     * the middle of a transition or stuck.
+     */
+    public State getState()
+    {
+        return isAccepting() ? myStates[myNode] : null;
+    }
+
+    /**
+     * Returns the number of characters read by transitions since the last
+     * reset.
+     */
+    public long getCharactersRead()
+    {
+        return myRead;
+    }
+
+    /**
+     * Returns if this transducer still describes its machine, i.e. no state
+     * or transition event has happened since it was compiled.
+     */
+    public boolean isCurrent()
+    {
+        return myModificationCount == myMachine.getModificationCount();
+    }
+
+    /** The number of characters read or output at a time. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** The machine this was compiled from. */
+    private MealyMachine myMachine;
+
+    /** The modification count of the machine when compiled. */
+    private int myModificationCount;
+
+    /** The states, in order of index. */
+    private State[] myStates;
+
+    /** The class of each character, 0 for those no transition reads. */
+    private char[] myClassOf;
+
+    /** The number of character classes, i.e. the width of a row. */
+    private int myClassCount;
+
+    /** The next node for each node and class, row by row. */
+    private int[] myNext;
+
+    /** The transition completed by each node and class, or -1. */
+    private int[] myEmit;
+
+    /** The output of each transition. */
+    private char[][] myOutputs;
+
+    /** The index of the initial state. */
+    private int myInitial;
+
+    /** The output of the initial state of a Moore machine. */
+    private char[] myInitialOutput;
+
+    /** The current node, or {@link #DEAD}. */
+    private int myNode;
+
+    /** The number of characters read since the last reset. */
+    private long myRead;
+
+    /** Output waiting to be written. */
+    private char[] myBuffer = new char[BUFFER_SIZE];
+}
@@ -20,10 +20,20 @@
 
 package automata.pda;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
 /**
  * A character stack. Allows the pushing and popping of individual <CODE>char</CODE>s.
+ * <P>
+ * The characters are kept in an immutable linked list with the top of the
+ * stack at its head, so a stack only ever moves its pointer into the list.
+ * Copying a stack is therefore free, and copies share all the characters
+ * below the ones they push; pushing and popping a character take constant
+ * time, as do the height and the hash code, which every cell keeps for the
+ * stack beneath it.
  * 
  * @author Thomas Finley
  */
@@ -43,7 +53,14 @@ public class CharacterStack implements Serializable {
 	 *            the character stack to copy
 	 */
 	public CharacterStack(CharacterStack stack) {
-		this.buffer = new StringBuffer(stack.buffer.toString());
+		this.top = stack.top;
+	}
+
+	/**
+	 * Instantiates a character stack with the given cells.
+	 */
+	private CharacterStack(Cell top) {
+		this.top = top;
 	}
 
 	/**
@@ -53,8 +70,7 @@ public class CharacterStack implements Serializable {
 	 *            the character to push onto the stack
 	 */
 	public void push(char character) {
-		buffer.insert(0, character);
-		cachedHash = 0xdeadbeef;
+		top = new Cell(character, top);
 	}
 
 	/**
@@ -65,16 +81,23 @@ public class CharacterStack implements Serializable {
 	 *            the strings characters which we push onto the stack
 	 */
 	public void push(String string) {
-		buffer.insert(0, string);
-		cachedHash = 0xdeadbeef;
+		top = push(top, string);
+	}
+
+	/**
+	 * Returns the cells of a string pushed onto other cells.
+	 */
+	private static Cell push(Cell top, String string) {
+		for (int i = string.length() - 1; i >= 0; i--)
+			top = new Cell(string.charAt(i), top);
+		return top;
 	}
 
 	/**
 	 * Clears the stack.
 	 */
 	public void clear() {
-		buffer = new StringBuffer();
-		cachedHash = 0xdeadbeef;
+		top = null;
 	}
 
 	/**
@@ -83,7 +106,7 @@ public class CharacterStack implements Serializable {
 	 * @return the number of characters on this stack
 	 */
 	public int height() {
-		return buffer.length();
+		return top == null ? 0 : top.height;
 	}
 
 	/**
@@ -94,10 +117,11 @@ public class CharacterStack implements Serializable {
 	 *         the stack
 	 */
 	public char pop() {
-		char[] toReturn = new char[1];
-		buffer.getChars(0, 1, toReturn, 0);
-		buffer.deleteCharAt(0);
-		return toReturn[0];
+		if (top == null)
+			return 0;
+		char character = top.character;
+		top = top.next;
+		return character;
 	}
 
 	/**
@@ -112,20 +136,65 @@ public class CharacterStack implements Serializable {
 	 *         stack
 	 */
 	public String pop(int number) {
-		if (buffer.length() < number)
+		if (height() < number)
 			return null;
 		char[] c = new char[number];
-		buffer.getChars(0, number, c, 0);
-		buffer.delete(0, number);
+		for (int i = 0; i < number; i++) {
+			c[i] = top.character;
+			top = top.next;
+		}
 		return new String(c);
 	}
 
+	/**
+	 * Returns if the characters on top of this stack are those of a string,
+	 * the first character of the string being the top of the stack.
+	 * 
+	 * @param string
+	 *            the string to look for
+	 * @return <CODE>true</CODE> if popping the length of the string would
+	 *         return the string
+	 */
+	public boolean hasOnTop(String string) {
+		if (height() < string.length())
+			return false;
+		Cell cell = top;
+		for (int i = 0; i < string.length(); i++, cell = cell.next)
+			if (cell.character != string.charAt(i))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Returns a new stack that is this stack with one string popped off and
+	 * another pushed on. This stack is not changed, and shares its cells with
+	 * the new stack.
+	 * 
+	 * @param toPop
+	 *            the string to pop, top first
+	 * @param toPush
+	 *            the string to push; its first character ends on top
+	 * @return the new stack, or <CODE>null</CODE> if <CODE>toPop</CODE> is
+	 *         not on top of this stack
+	 */
+	public CharacterStack replaceTop(String toPop, String toPush) {
+		if (!hasOnTop(toPop))
+			return null;
+		Cell cell = top;
+		for (int i = 0; i < toPop.length(); i++)
+			cell = cell.next;
+		return new CharacterStack(push(cell, toPush));
+	}
+
 	/**
 	 * Returns a string representation of this object.
 	 * 
 	 * @return a string representation of this object
 	 */
 	public String toString() {
+		StringBuffer buffer = new StringBuffer(height());
+		for (Cell cell = top; cell != null; cell = cell.next)
+			buffer.append(cell.character);
 		return buffer.toString();
 	}
 
@@ -139,12 +208,16 @@ public class CharacterStack implements Serializable {
 	 *         otherwise
 	 */
 	public boolean equals(Object stack) {
-		try {
-			return ((CharacterStack) stack).buffer.toString().equals(
-					buffer.toString());
-		} catch (ClassCastException e) {
+		if (!(stack instanceof CharacterStack))
 			return false;
-		}
+		Cell a = top, b = ((CharacterStack) stack).top;
+		if (hashCode() != stack.hashCode() || height() != ((CharacterStack) stack).height())
+			return false;
+		// Stop as soon as the two stacks share their cells.
+		for (; a != b; a = a.next, b = b.next)
+			if (a.character != b.character)
+				return false;
+		return true;
 	}
 
 	/**
@@ -153,14 +226,48 @@ public class CharacterStack implements Serializable {
 	 * @return a hash value for this character stack
 	 */
 	public int hashCode() {
-		if (cachedHash != 0xdeadbeef)
-			return cachedHash;
-		return cachedHash = buffer.toString().hashCode();
+		return top == null ? 0 : top.hash;
+	}
+
+	/**
+	 * Writes the characters of the stack as a string, rather than as a chain
+	 * of cells.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeObject(toString());
+	}
+
+	/**
+	 * Reads the characters of the stack as written by <CODE>writeObject</CODE>.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+		in.defaultReadObject();
+		top = push(null, (String) in.readObject());
 	}
 
-	/** The string buffer. */
-	private StringBuffer buffer = new StringBuffer();
+	/**
+	 * A cell of the stack: a character, the cells below it, and the height
+	 * and hash of the stack it is the top of. Cells are never changed.
+	 */
+	private static class Cell {
+		public Cell(char character, Cell next) {
+			this.character = character;
+			this.next = next;
+			height = next == null ? 1 : next.height + 1;
+			hash = (next == null ? 0 : next.hash) * 31 + character;
+		}
+
+		final char character;
+
+		final Cell next;
+
+		final int height;
+
+		final int hash;
+	}
 
-	/** The cached hash value. */
-	private int cachedHash = 0xdeadbeef;
+	/** The top cell, or <CODE>null</CODE> if the stack is empty. */
+	private transient Cell top = null;
 }
@@ -0,0 +1,618 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package automata.pda;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+
+import JFLAPnew.formaldef.SymbolTable;
+import JFLAPnew.formaldef.symbols.Symbol;
+import JFLAPnew.formaldef.symbols.SymbolString;
+import automata.State;
+import automata.Transition;
+
+/**
+ * The <CODE>PDAAcceptor</CODE> decides if a pushdown automaton accepts an
+ * input in polynomial time, without enumerating configurations. It computes
+ * <I>summaries</I> in the manner of Earley's parser: a summary says that from
+ * some state at some input position, with some symbol on top of the stack,
+ * the automaton can pop that symbol and arrive at another state and position.
+ * Summaries for each (state, position, stack top) are found once and shared
+ * by every configuration that reaches it, which is the same sharing a
+ * graph-structured stack gives, so the number of distinct summaries, and the
+ * work, is polynomial in the length of the input.
+ * <P>
+ * Transitions are first broken into steps that read at most one symbol and
+ * pop exactly one symbol, through extra states. A transition that pops
+ * nothing becomes one step for each symbol that could be on the stack, and an
+ * internal marker below the bottom of stack symbol lets it fire when the
+ * stack is empty.
+ * <P>
+ * When an input is accepted, the transitions of an accepting run, and the
+ * configurations they pass through, are available from {@link #getWitness}.
+ * This class uses no GUI classes and never asks the user anything.
+ *
+ * @see PDAStepByStateSimulator
+ */
+
+public class PDAAcceptor {
+	/** Acceptance when the input is read and the stack is empty. */
+	public static final int EMPTY_STACK = PDAStepByStateSimulator.EMPTY_STACK;
+
+	/** Acceptance when the input is read and the state is final. */
+	public static final int FINAL_STATE = PDAStepByStateSimulator.FINAL_STATE;
+
+	/**
+	 * Compiles a pushdown automaton.
+	 *
+	 * @param automaton
+	 *            the automaton
+	 * @throws IllegalArgumentException
+	 *             if the automaton has no initial state or bottom of stack
+	 *             symbol, or a transition uses a symbol in none of its
+	 *             alphabets
+	 */
+	public PDAAcceptor(PushdownAutomaton automaton) {
+		if (automaton.getInitialState() == null)
+			throw new IllegalArgumentException("The automaton has no initial state.");
+		if (automaton.getBottomOfStackSymbol() == null)
+			throw new IllegalArgumentException(
+					"The automaton has no bottom of stack symbol.");
+		myAutomaton = automaton;
+		mySymbols = automaton.getSymbolTable();
+		myStates = automaton.getStates();
+		myBottom = mySymbols.getID(automaton.getBottomOfStackSymbol());
+		if (myBottom < 0)
+			throw new IllegalArgumentException(
+					"The bottom of stack symbol is in none of the alphabets.");
+
+		Transition[] transitions = automaton.getTransitions();
+		int[][] reads = new int[transitions.length][];
+		int[][] pops = new int[transitions.length][];
+		int[][] pushes = new int[transitions.length][];
+		// The symbols that may be on the stack.
+		myStackIndex = new int[mySymbols.size()];
+		Arrays.fill(myStackIndex, -1);
+		addStackSymbol(myBottom);
+		for (Symbol symbol : automaton.getStackAlphabet().getSymbols())
+			addStackSymbol(mySymbols.getID(symbol));
+		for (int t = 0; t < transitions.length; t++) {
+			PDATransition transition = (PDATransition) transitions[t];
+			reads[t] = encode(transition.getInputToRead());
+			pops[t] = encode(transition.getStringToPop());
+			pushes[t] = encode(transition.getStringToPush());
+			for (int i = 0; i < pops[t].length; i++)
+				addStackSymbol(pops[t][i]);
+			for (int i = 0; i < pushes[t].length; i++)
+				addStackSymbol(pushes[t][i]);
+		}
+		myMarker = myStackCount++;
+
+		myControlCount = myStates.length;
+		for (int t = 0; t < transitions.length; t++)
+			addRules((PDATransition) transitions[t], reads[t],
+					stackIndices(pops[t]), stackIndices(pushes[t]));
+		indexRules();
+		myRootPush = new int[] { myStackIndex[myBottom], myMarker };
+	}
+
+	/**
+	 * Returns the IDs of a string of symbols.
+	 */
+	private int[] encode(SymbolString string) {
+		int[] ids = mySymbols.encode(string);
+		for (int i = 0; i < ids.length; i++)
+			if (ids[i] < 0)
+				throw new IllegalArgumentException("The symbol " + string.get(i)
+						+ " is in none of the alphabets.");
+		return ids;
+	}
+
+	/**
+	 * Gives a symbol an index among the stack symbols, if it has none.
+	 */
+	private void addStackSymbol(int id) {
+		if (myStackIndex[id] < 0)
+			myStackIndex[id] = myStackCount++;
+	}
+
+	/**
+	 * Returns the stack indices of symbol IDs.
+	 */
+	private int[] stackIndices(int[] ids) {
+		int[] indices = new int[ids.length];
+		for (int i = 0; i < ids.length; i++)
+			indices[i] = myStackIndex[ids[i]];
+		return indices;
+	}
+
+	/**
+	 * Breaks a transition into steps that each read at most one symbol and
+	 * pop one symbol, through new states. The last step pushes.
+	 */
+	private void addRules(PDATransition transition, int[] read, int[] pop,
+			int[] push) {
+		int from = indexOf(transition.getFromState());
+		int to = indexOf(transition.getToState());
+		int steps = Math.max(1, Math.max(read.length, pop.length));
+		for (int s = 0; s < steps; s++) {
+			boolean last = s == steps - 1;
+			int next = last ? to : myControlCount++;
+			int symbol = s < read.length ? read[s] : -1;
+			int[] pushed = last ? push : new int[0];
+			if (s < pop.length) {
+				addRule(from, symbol, pop[s], pushed, next, last ? transition
+						: null);
+			} else {
+				// Pop nothing: pop whatever is there and put it back.
+				for (int y = 0; y < myStackCount; y++) {
+					int[] replaced = Arrays.copyOf(pushed, pushed.length + 1);
+					replaced[pushed.length] = y;
+					addRule(from, symbol, y, replaced, next, last ? transition
+							: null);
+				}
+			}
+			from = next;
+		}
+	}
+
+	/** Adds one step. */
+	private void addRule(int from, int read, int pop, int[] push, int to,
+			PDATransition transition) {
+		myRuleFrom.add(from);
+		myRuleRead.add(read);
+		myRulePop.add(pop);
+		myRulePush.add(push);
+		myRuleTo.add(to);
+		myRuleTransition.add(transition);
+	}
+
+	/**
+	 * Indexes the steps by the state they leave and the symbol they pop.
+	 */
+	private void indexRules() {
+		int cells = myControlCount * myStackCount;
+		int[] counts = new int[cells];
+		for (int r = 0; r < myRuleFrom.size(); r++)
+			counts[myRuleFrom.get(r) * myStackCount + myRulePop.get(r)]++;
+		myRulesByHead = new int[cells][];
+		for (int c = 0; c < cells; c++)
+			myRulesByHead[c] = new int[counts[c]];
+		for (int r = 0; r < myRuleFrom.size(); r++) {
+			int c = myRuleFrom.get(r) * myStackCount + myRulePop.get(r);
+			myRulesByHead[c][--counts[c]] = r;
+		}
+	}
+
+	/**
+	 * Returns the index of a state of the automaton, in order of ID.
+	 */
+	private int indexOf(State state) {
+		int low = 0, high = myStates.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int id = myStates[mid].getID();
+			if (id < state.getID())
+				low = mid + 1;
+			else if (id > state.getID())
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns if the automaton accepts the input text. Text that cannot be
+	 * split into symbols of the automaton is rejected.
+	 *
+	 * @param input
+	 *            the input
+	 * @param acceptance
+	 *            {@link #FINAL_STATE} or {@link #EMPTY_STACK}
+	 */
+	public boolean accepts(String input, int acceptance) {
+		int[] ids = mySymbols.encode(input);
+		if (ids == null) {
+			myWitness = null;
+			return false;
+		}
+		return accepts(ids, acceptance);
+	}
+
+	/**
+	 * Returns if the automaton accepts the input.
+	 *
+	 * @param input
+	 *            the symbol IDs of the input
+	 * @param acceptance
+	 *            {@link #FINAL_STATE} or {@link #EMPTY_STACK}
+	 */
+	public boolean accepts(int[] input, int acceptance) {
+		myWitness = null;
+		new Run(input, acceptance).saturate();
+		return myWitness != null;
+	}
+
+	/**
+	 * Returns an accepting run of the last input accepted.
+	 *
+	 * @return the steps of the run, starting from the initial configuration,
+	 *         or <CODE>null</CODE> if the last input was rejected
+	 */
+	public List<Step> getWitness() {
+		return myWitness;
+	}
+
+	/**
+	 * One configuration of an accepting run, with the transition that led to
+	 * it.
+	 */
+	public static class Step {
+		private Step(PDATransition transition, State state, int position,
+				SymbolString stack) {
+			myTransition = transition;
+			myState = state;
+			myPosition = position;
+			myStack = stack;
+		}
+
+		/**
+		 * Returns the transition taken to this configuration, or
+		 * <CODE>null</CODE> for the initial configuration.
+		 */
+		public PDATransition getTransition() {
+			return myTransition;
+		}
+
+		/** Returns the state. */
+		public State getState() {
+			return myState;
+		}
+
+		/** Returns the number of input symbols read. */
+		public int getInputPosition() {
+			return myPosition;
+		}
+
+		/** Returns the stack, top first. */
+		public SymbolString getStack() {
+			return myStack;
+		}
+
+		public String toString() {
+			return myState + " " + myPosition + " " + myStack;
+		}
+
+		private PDATransition myTransition;
+
+		private State myState;
+
+		private int myPosition;
+
+		private SymbolString myStack;
+	}
+
+	/**
+	 * An item: a step taken from a frame (state, position, stack top), and
+	 * how many of the symbols it pushed have since been popped, leaving the
+	 * automaton in some state at some position. The root item stands for
+	 * the initial stack pushed below everything.
+	 */
+	private static class Item {
+		public Item(int frame, int rule, int popped, int control,
+				int position, Item previous, Item completion) {
+			this.frame = frame;
+			this.rule = rule;
+			this.popped = popped;
+			this.control = control;
+			this.position = position;
+			this.previous = previous;
+			this.completion = completion;
+			hash = (((frame * 31 + rule) * 31 + popped) * 31 + control) * 31
+					+ position;
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+
+		public boolean equals(Object o) {
+			Item item = (Item) o;
+			return item.hash == hash && item.frame == frame
+					&& item.rule == rule && item.popped == popped
+					&& item.control == control && item.position == position;
+		}
+
+		final int frame, rule, popped, control, position, hash;
+
+		/** The item before the last pushed symbol was popped. */
+		final Item previous;
+
+		/** The completed item of the frame that popped it. */
+		final Item completion;
+	}
+
+	/**
+	 * A frame: a state, a position and a symbol on top of the stack, with the
+	 * (state, position) pairs reached by popping that symbol and the items
+	 * waiting for them.
+	 */
+	private static class Frame {
+		public Frame(int control, int position, Item creator) {
+			this.control = control;
+			this.position = position;
+			this.creator = creator;
+		}
+
+		final int control, position;
+
+		/** The item whose next symbol to pop made this frame. */
+		final Item creator;
+
+		/** The completed item for each exit (state, position). */
+		final HashMap<Long, Item> exits = new HashMap<Long, Item>();
+
+		final List<Item> exitList = new ArrayList<Item>();
+
+		final List<Item> waiters = new ArrayList<Item>();
+	}
+
+	/**
+	 * The saturation of the summaries for one input.
+	 */
+	private class Run {
+		public Run(int[] input, int acceptance) {
+			myInput = input;
+			myAcceptance = acceptance;
+		}
+
+		/**
+		 * Finds summaries until there are no more or the input is accepted.
+		 */
+		public void saturate() {
+			enqueue(new Item(-1, -1, 0, indexOf(myAutomaton.getInitialState()),
+					0, null, null));
+			while (!myWork.isEmpty() && myWitness == null)
+				advance(myWork.removeFirst());
+		}
+
+		private void enqueue(Item item) {
+			if (mySeen.add(item))
+				myWork.add(item);
+		}
+
+		private int[] pushOf(Item item) {
+			return item.rule < 0 ? myRootPush : myRulePush.get(item.rule);
+		}
+
+		private void advance(Item item) {
+			int[] push = pushOf(item);
+			if (item.popped == push.length) {
+				Frame frame = myFrames.get(item.frame);
+				Long exit = (long) item.control * (myInput.length + 1)
+						+ item.position;
+				if (frame.exits.containsKey(exit))
+					return;
+				frame.exits.put(exit, item);
+				frame.exitList.add(item);
+				for (int w = 0; w < frame.waiters.size(); w++) {
+					Item waiter = frame.waiters.get(w);
+					enqueue(new Item(waiter.frame, waiter.rule,
+							waiter.popped + 1, item.control, item.position,
+							waiter, item));
+				}
+				return;
+			}
+			int index = getFrame(item.control, item.position,
+					push[item.popped], item);
+			if (myWitness != null)
+				return;
+			Frame frame = myFrames.get(index);
+			frame.waiters.add(item);
+			for (int e = 0; e < frame.exitList.size(); e++) {
+				Item exit = frame.exitList.get(e);
+				enqueue(new Item(item.frame, item.rule, item.popped + 1,
+						exit.control, exit.position, item, exit));
+			}
+		}
+
+		/**
+		 * Returns the index of a frame, making it and starting its steps if
+		 * it is new.
+		 */
+		private int getFrame(int control, int position, int top, Item creator) {
+			long key = ((long) control * (myInput.length + 1) + position)
+					* myStackCount + top;
+			Integer index = myFrameIndex.get(key);
+			if (index != null)
+				return index;
+			index = myFrames.size();
+			myFrameIndex.put(key, index);
+			Frame frame = new Frame(control, position, creator);
+			myFrames.add(frame);
+			if (position == myInput.length && control < myStates.length
+					&& isAccepting(control, top)) {
+				myWitness = witness(frame);
+				return index;
+			}
+			int[] rules = myRulesByHead[control * myStackCount + top];
+			for (int i = 0; i < rules.length; i++) {
+				int r = rules[i], read = myRuleRead.get(r), next = position;
+				if (read >= 0) {
+					if (position == myInput.length || myInput[position] != read)
+						continue;
+					next++;
+				}
+				enqueue(new Item(index, r, 0, myRuleTo.get(r), next, null,
+						null));
+			}
+			return index;
+		}
+
+		/**
+		 * Returns if the automaton accepts in a state, once the input is read,
+		 * with a symbol on top of the stack. The stack is empty when the
+		 * marker is on top.
+		 */
+		private boolean isAccepting(int control, int top) {
+			if (myAcceptance == FINAL_STATE)
+				return myAutomaton.isFinalState(myStates[control]);
+			return top == myMarker;
+		}
+
+		/**
+		 * Builds the run that ends on entering a frame.
+		 */
+		private List<Step> witness(Frame frame) {
+			// The items that made each frame, from the goal back to the root.
+			LinkedList<Item> chain = new LinkedList<Item>();
+			for (Item creator = frame.creator; creator != null; creator = creator.frame < 0 ? null
+					: myFrames.get(creator.frame).creator)
+				chain.addFirst(creator);
+			List<PDATransition> transitions = new ArrayList<PDATransition>();
+			for (Item link : chain)
+				expand(link, transitions);
+			return replay(transitions);
+		}
+
+		/**
+		 * Adds the transitions that an item stands for, in order.
+		 */
+		private void expand(Item item, List<PDATransition> transitions) {
+			LinkedList<Item> stack = new LinkedList<Item>();
+			stack.addFirst(item);
+			while (!stack.isEmpty()) {
+				Item top = stack.removeFirst();
+				if (top.popped == 0) {
+					if (top.rule >= 0 && myRuleTransition.get(top.rule) != null)
+						transitions.add(myRuleTransition.get(top.rule));
+				} else {
+					stack.addFirst(top.completion);
+					stack.addFirst(top.previous);
+				}
+			}
+		}
+
+		/** The input. */
+		private int[] myInput;
+
+		/** The acceptance mode. */
+		private int myAcceptance;
+
+		/** The items found. */
+		private HashSet<Item> mySeen = new HashSet<Item>();
+
+		/** The items not yet advanced. */
+		private LinkedList<Item> myWork = new LinkedList<Item>();
+
+		/** The frames by state, position and stack top. */
+		private HashMap<Long, Integer> myFrameIndex = new HashMap<Long, Integer>();
+
+		/** The frames. */
+		private List<Frame> myFrames = new ArrayList<Frame>();
+	}
+
+	/**
+	 * Runs the automaton along transitions from the initial configuration,
+	 * recording each configuration.
+	 */
+	private List<Step> replay(List<PDATransition> transitions) {
+		List<Step> steps = new ArrayList<Step>();
+		// The stack, top last.
+		int[] stack = new int[16];
+		int height = 0, position = 0;
+		stack[height++] = myBottom;
+		State state = myAutomaton.getInitialState();
+		steps.add(new Step(null, state, position, stackString(stack, height)));
+		for (PDATransition transition : transitions) {
+			position += transition.getInputToRead().size();
+			height -= transition.getStringToPop().size();
+			int[] push = mySymbols.encode(transition.getStringToPush());
+			if (height + push.length > stack.length)
+				stack = Arrays.copyOf(stack, 2 * (height + push.length));
+			for (int i = push.length - 1; i >= 0; i--)
+				stack[height++] = push[i];
+			state = transition.getToState();
+			steps.add(new Step(transition, state, position, stackString(
+					stack, height)));
+		}
+		return steps;
+	}
+
+	/**
+	 * Returns the stack as a string of symbols, top first.
+	 */
+	private SymbolString stackString(int[] stack, int height) {
+		int[] ids = new int[height];
+		for (int i = 0; i < height; i++)
+			ids[i] = stack[height - 1 - i];
+		return mySymbols.decode(ids);
+	}
+
+	/** The automaton. */
+	private PushdownAutomaton myAutomaton;
+
+	/** The symbol IDs of the automaton. */
+	private SymbolTable mySymbols;
+
+	/** The states of the automaton, in order of ID. */
+	private State[] myStates;
+
+	/** The ID of the bottom of stack symbol. */
+	private int myBottom;
+
+	/** The stack index of each symbol ID, or -1. */
+	private int[] myStackIndex;
+
+	/** The number of stack indices, including the marker. */
+	private int myStackCount = 0;
+
+	/** The stack index of the marker below the bottom of stack symbol. */
+	private int myMarker;
+
+	/** The number of states, including those made to break up transitions. */
+	private int myControlCount;
+
+	/** What the root item pushes: the bottom of stack symbol on the marker. */
+	private int[] myRootPush;
+
+	/** The steps. */
+	private List<Integer> myRuleFrom = new ArrayList<Integer>(),
+			myRuleRead = new ArrayList<Integer>(),
+			myRulePop = new ArrayList<Integer>(),
+			myRuleTo = new ArrayList<Integer>();
+
+	private List<int[]> myRulePush = new ArrayList<int[]>();
+
+	/** The transition each step completes, or <CODE>null</CODE>. */
+	private List<PDATransition> myRuleTransition = new ArrayList<PDATransition>();
+
+	/** The steps for each state and symbol popped. */
+	private int[][] myRulesByHead;
+
+	/** The accepting run of the last input, if it was accepted. */
+	private List<Step> myWitness;
+}
@@ -21,10 +21,14 @@
 package automata.pda;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Set;
 
 import javax.swing.JOptionPane;
 
+import JFLAPnew.formaldef.SymbolTable;
 import debug.EDebug;
 
 import automata.Automaton;
@@ -107,18 +111,17 @@ public class PDAStepByStateSimulator extends AutomatonSimulator {
 			/** get all information from transition. */
 			String inputToRead = transition.getInputToRead();
 			String stringToPop = transition.getStringToPop();
-			CharacterStack tempStack = configuration.getStack();
-			/** copy stack object so as to not alter original. */
-			CharacterStack stack = new CharacterStack(tempStack);
-			String stackContents = stack.pop(stringToPop.length());
-			if (unprocessedInput.startsWith(inputToRead)
-					&& stringToPop.equals(stackContents)) {
+			if (!unprocessedInput.startsWith(inputToRead))
+				continue;
+			/** the new stack shares all but its top with the original. */
+			CharacterStack stack = configuration.getStack().replaceTop(
+					stringToPop, transition.getStringToPush());
+			if (stack != null) {
 				String input = "";
 				if (inputToRead.length() < unprocessedInput.length()) {
 					input = unprocessedInput.substring(inputToRead.length());
 				}
 				State toState = transition.getToState();
-				stack.push(transition.getStringToPush());
 				PDAConfiguration configurationToAdd = new PDAConfiguration(
 						toState, configuration, totalInput, input, stack, myAcceptance);
 				list.add(configurationToAdd);
@@ -143,15 +146,16 @@ public class PDAStepByStateSimulator extends AutomatonSimulator {
 	}
 
 	/**
-	 * Returns true if the simulation of the input string on the automaton left
-	 * the machine in a final state. If the entire input string is processed and
-	 * the machine is in a final state, return true.
+	 * Returns true if one of the configurations has processed the entire input
+	 * string and is in a final state, or has an empty stack, depending on how
+	 * the automaton accepts.
 	 * 
-	 * @return true if the simulation of the input string on the automaton left
-	 *         the machine in a final state.
+	 * @param configurations
+	 *            the configurations the machine could be in
+	 * @return true if one of the configurations is accepting
 	 */
-	public boolean isAccepted() {
-		Iterator it = myConfigurations.iterator();
+	protected boolean isAccepted(Collection configurations) {
+		Iterator it = configurations.iterator();
 		while (it.hasNext()) {
 			PDAConfiguration configuration = (PDAConfiguration) it.next();
 			if (myAcceptance == FINAL_STATE) {
@@ -179,19 +183,21 @@ public class PDAStepByStateSimulator extends AutomatonSimulator {
 	 * @return true if the automaton accepts the input
 	 */
 	public boolean simulateInput(String input) {
-		/** clear the configurations to begin new simulation. */
-		myConfigurations.clear();
+		PDAAcceptor acceptor = getAcceptor();
+		if (acceptor != null)
+			return acceptor.accepts(input, myAcceptance);
+		Set configurations = new HashSet();
 		Configuration[] initialConfigs = getInitialConfigurations(input);
 		for (int k = 0; k < initialConfigs.length; k++) {
 			PDAConfiguration initialConfiguration = (PDAConfiguration) initialConfigs[k];
-			myConfigurations.add(initialConfiguration);
+			configurations.add(initialConfiguration);
 		}
 		int count = 0;
-		while (!myConfigurations.isEmpty()) {
-			if (isAccepted())
+		while (!configurations.isEmpty()) {
+			if (isAccepted(configurations))
 				return true;
 			ArrayList configurationsToAdd = new ArrayList();
-			Iterator it = myConfigurations.iterator();
+			Iterator it = configurations.iterator();
 			while (it.hasNext()) {
 				PDAConfiguration configuration = (PDAConfiguration) it.next();
 				ArrayList configsToAdd = stepConfiguration(configuration);
@@ -209,11 +215,41 @@ public class PDAStepByStateSimulator extends AutomatonSimulator {
                     }
                 }
 			}
-			myConfigurations.addAll(configurationsToAdd);
+			configurations.addAll(configurationsToAdd);
 		}
 		return false;
 	}
 
+	/**
+	 * Returns the acceptance engine for the automaton, compiling it again if
+	 * the automaton or its alphabets have changed since it was last compiled.
+	 * 
+	 * @return the engine, or <CODE>null</CODE> if the automaton cannot be
+	 *         compiled, e.g. because it has no initial state
+	 */
+	public PDAAcceptor getAcceptor() {
+		if (mySymbols == null || !mySymbols.isCurrent()
+				|| myModificationCount != myAutomaton.getModificationCount()) {
+			myModificationCount = myAutomaton.getModificationCount();
+			mySymbols = myAutomaton.getSymbolTable();
+			try {
+				myAcceptor = new PDAAcceptor((PushdownAutomaton) myAutomaton);
+			} catch (IllegalArgumentException e) {
+				myAcceptor = null;
+			}
+		}
+		return myAcceptor;
+	}
+
+	/** The acceptance engine, or <CODE>null</CODE> if it cannot be compiled. */
+	private PDAAcceptor myAcceptor = null;
+
+	/** The modification count of the automaton when last compiled. */
+	private int myModificationCount;
+
+	/** The symbol table of the automaton when last compiled. */
+	private SymbolTable mySymbols = null;
+
 	/** The mode of acceptance (either by final state or empty stack). */
 	protected int myAcceptance;
 
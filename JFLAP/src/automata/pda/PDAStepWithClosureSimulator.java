@@ -77,20 +77,20 @@ public class PDAStepWithClosureSimulator extends PDAStepByStateSimulator {
 			/** get all information from transition. */
 			String inputToRead = transition.getInputToRead();
 			String stringToPop = transition.getStringToPop();
-			CharacterStack tempStack = configuration.getStack();
-			/** copy stack object so as to not alter original. */
-			CharacterStack stack = new CharacterStack(tempStack);
-			String stackContents = stack.pop(stringToPop.length());
-			if (unprocessedInput.startsWith(inputToRead)
-					&& stringToPop.equals(stackContents)) {
+			if (!unprocessedInput.startsWith(inputToRead))
+				continue;
+			/** the new stack shares all but its top with the original. */
+			CharacterStack stack = configuration.getStack().replaceTop(
+					stringToPop, transition.getStringToPush());
+			if (stack != null) {
 				String input = "";
 				if (inputToRead.length() < unprocessedInput.length()) {
 					input = unprocessedInput.substring(inputToRead.length());
 				}
 				State toState = transition.getToState();
-				stack.push(transition.getStringToPush());
 				State[] closure = ClosureTaker.getClosure(toState, myAutomaton);
 				for (int i = 0; i < closure.length; i++) {
+					/** the copies share all their cells. */
 					CharacterStack cstack = new CharacterStack(stack);
 					PDAConfiguration configurationToAdd = new PDAConfiguration(
 							closure[i], configuration, totalInput, input,
@@ -0,0 +1,671 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package automata.turing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import automata.State;
+import automata.Transition;
+import automata.event.AutomataStateEvent;
+import automata.event.AutomataStateListener;
+import automata.event.AutomataTransitionEvent;
+import automata.event.AutomataTransitionListener;
+
+/**
+ * A <CODE>TMDispatchTable</CODE> is a Turing machine, with its building
+ * blocks inlined, compiled for simulation. Each state with no machine inside
+ * it, at whatever depth, is a row of the table; its transitions are those
+ * out of the state itself, then those out of the block holding it, and so on
+ * out to the top machine, so a step never has to climb through the blocks.
+ * Entering a block enters the row its initial state leads to, found once,
+ * when the table is built. The blocks are found by walking down from the top
+ * machine, so the parent links of blocks read from files are not needed.
+ * <P>
+ * For each row, and each tape, the symbols named in the read labels of the
+ * row's transitions are kept in a sorted array, with the set of transitions
+ * that each symbol matches; wildcards (<CODE>~</CODE>), negations
+ * (<CODE>!</CODE>) and variable assignments (<CODE>}</CODE>) are resolved
+ * into those sets once. Finding the transition to take then needs one binary
+ * search per tape, and neither finding nor applying a transition allocates
+ * anything.
+ * <P>
+ * As in {@link TMSimulator}, transitions that read with <CODE>!</CODE> are
+ * tried after the others of the same state, and otherwise the first
+ * transition that matches is taken. Negations and variables only have their
+ * special meaning on one tape machines.
+ * <P>
+ * The table listens to every machine in the hierarchy and is out of date as
+ * soon as any of them changes. Replacing the machine inside a block is not
+ * heard, so a table should be built again for each run. A table is not safe
+ * for use by more than one thread at a time.
+ */
+
+public class TMDispatchTable {
+	/** The row of a block whose machine, or one inside it, has no initial state. */
+	public static final int NO_INITIAL_STATE = -2;
+
+	/**
+	 * Compiles a Turing machine and its building blocks.
+	 *
+	 * @param machine
+	 *            the top machine
+	 */
+	public TMDispatchTable(TuringMachine machine) {
+		myMachine = machine;
+		myTapeCount = machine.tapes();
+		List<TMState> rows = new ArrayList<TMState>();
+		List<int[]> orders = new ArrayList<int[]>();
+		List<TMTransition> transitions = new ArrayList<TMTransition>();
+		List<TMState> states = new ArrayList<TMState>();
+		inline(machine, new int[0], rows, orders, transitions, states);
+
+		myRows = rows.toArray(new TMState[rows.size()]);
+		myOrder = orders.toArray(new int[rows.size()][]);
+		myDispatch = new Dispatch[myRows.length][];
+		int words = 1;
+		for (int r = 0; r < myRows.length; r++) {
+			myDispatch[r] = new Dispatch[myTapeCount];
+			for (int tape = 0; tape < myTapeCount; tape++)
+				myDispatch[r][tape] = new Dispatch(transitions, myOrder[r], tape);
+			words = Math.max(words, (myOrder[r].length + 63) >> 6);
+		}
+		myScratch = new long[words];
+		for (int r = 0; r < myRows.length; r++)
+			myRowOf.put(myRows[r], r);
+		for (TMState state : states)
+			entryOf(state);
+
+		int n = transitions.size();
+		myTransitions = transitions.toArray(new TMTransition[n]);
+		myTarget = new int[n];
+		myWrite = new int[n][myTapeCount];
+		myMove = new int[n][myTapeCount];
+		myAssign = new int[n];
+		myAssignSet = new char[n][];
+		for (int t = 0; t < n; t++) {
+			TMTransition transition = myTransitions[t];
+			myTarget[t] = getRow(transition.getToState());
+			for (int tape = 0; tape < myTapeCount; tape++) {
+				char write = transition.getWrite(tape).charAt(0);
+				myWrite[t][tape] = write == '~' ? KEEP : write;
+				String direction = transition.getDirection(tape);
+				myMove[t][tape] = direction.equals("L") ? -1 : direction
+						.equals("R") ? 1 : 0;
+			}
+			String read = transition.getRead(0);
+			int assign = read.indexOf('}');
+			if (myTapeCount == 1 && assign >= 0) {
+				myAssign[t] = read.charAt(assign + 1);
+				myAssignSet[t] = setOf(read.substring(0, assign));
+			} else {
+				myAssign[t] = -1;
+			}
+		}
+	}
+
+	/**
+	 * Makes rows of the states of a machine with nothing inside them, and of
+	 * those inside its blocks.
+	 *
+	 * @param outer
+	 *            the transitions of the blocks around the machine, innermost
+	 *            first, to be tried after those of its states
+	 */
+	private void inline(TuringMachine machine, int[] outer, List<TMState> rows,
+			List<int[]> orders, List<TMTransition> transitions,
+			List<TMState> states) {
+		myMachines.add(machine);
+		machine.addStateListener(myWatcher);
+		machine.addTransitionListener(myWatcher);
+		State[] all = machine.getStates();
+		for (int s = 0; s < all.length; s++) {
+			TMState state = (TMState) all[s];
+			states.add(state);
+			Transition[] from = machine.getTransitionsFromState(state);
+			// Those that read with ! go last.
+			int[] order = new int[from.length + outer.length];
+			int count = 0;
+			for (int pass = 0; pass < 2; pass++)
+				for (int i = 0; i < from.length; i++) {
+					TMTransition transition = (TMTransition) from[i];
+					if (isNegation(transition) == (pass == 1)) {
+						order[count++] = transitions.size();
+						transitions.add(transition);
+					}
+				}
+			System.arraycopy(outer, 0, order, count, outer.length);
+			TuringMachine inner = state.getInnerTM();
+			if (inner.getStates().length != 0) {
+				inline(inner, order, rows, orders, transitions, states);
+			} else {
+				rows.add(state);
+				orders.add(order);
+			}
+		}
+	}
+
+	/**
+	 * Returns the row a state leads to, entering blocks through their
+	 * initial states, and remembers it.
+	 */
+	private int entryOf(TMState state) {
+		Integer row = myRowOf.get(state);
+		if (row != null)
+			return row;
+		TMState initial = (TMState) state.getInnerTM().getInitialState();
+		int entry = initial == null ? NO_INITIAL_STATE : entryOf(initial);
+		myRowOf.put(state, entry);
+		return entry;
+	}
+
+	/**
+	 * Returns if a transition reads with <CODE>!</CODE> on its first tape.
+	 */
+	private static boolean isNegation(TMTransition transition) {
+		return transition.getRead(0).charAt(0) == '!';
+	}
+
+	/**
+	 * Returns the symbols of a comma separated list.
+	 */
+	private static char[] setOf(String list) {
+		StringBuffer symbols = new StringBuffer();
+		String[] items = list.split(",");
+		for (int i = 0; i < items.length; i++)
+			if (items[i].length() > 0)
+				symbols.append(items[i].charAt(0));
+		return symbols.toString().toCharArray();
+	}
+
+	/**
+	 * The transitions out of one state as seen from one tape: the symbols
+	 * named in their read labels, and for each symbol, and for any other
+	 * symbol, the transitions that match it, as a bit set over the order the
+	 * transitions are tried in.
+	 */
+	private class Dispatch {
+		public Dispatch(List<TMTransition> transitions, int[] order, int tape) {
+			int words = Math.max(1, (order.length + 63) >> 6);
+			TreeSet<Character> named = new TreeSet<Character>();
+			for (int j = 0; j < order.length; j++)
+				name(transitions.get(order[j]).getRead(tape), named);
+			myKeys = new char[named.size()];
+			int k = 0;
+			for (Character c : named)
+				myKeys[k++] = c;
+			myMasks = new long[myKeys.length][words];
+			myOther = new long[words];
+			for (int j = 0; j < order.length; j++) {
+				String read = transitions.get(order[j]).getRead(tape);
+				for (k = 0; k < myKeys.length; k++)
+					if (matches(read, myKeys[k], true))
+						myMasks[k][j >> 6] |= 1L << j;
+				if (matches(read, '\0', false))
+					myOther[j >> 6] |= 1L << j;
+			}
+			myWinners = new int[myKeys.length];
+			for (k = 0; k < myKeys.length; k++)
+				myWinners[k] = first(myMasks[k]);
+			myOtherWinner = first(myOther);
+		}
+
+		/**
+		 * Adds the symbols a read label names.
+		 */
+		private void name(String read, TreeSet<Character> named) {
+			if (read.equals("~"))
+				return;
+			if (myTapeCount > 1) {
+				named.add(read.charAt(0));
+				return;
+			}
+			int assign = read.indexOf('}');
+			if (assign >= 0) {
+				char[] set = setOf(read.substring(0, assign));
+				for (int i = 0; i < set.length; i++)
+					named.add(set[i]);
+			} else if (read.charAt(0) == '!') {
+				named.add(read.charAt(1));
+			} else {
+				named.add(read.charAt(0));
+			}
+		}
+
+		/**
+		 * Returns if a read label matches a symbol.
+		 *
+		 * @param isNamed
+		 *            if the symbol is named by some label; if not, it stands
+		 *            for every symbol that is not
+		 */
+		private boolean matches(String read, char symbol, boolean isNamed) {
+			if (read.equals("~"))
+				return true;
+			if (myTapeCount > 1)
+				return isNamed && read.charAt(0) == symbol;
+			int assign = read.indexOf('}');
+			if (assign >= 0)
+				return isNamed
+						&& new String(setOf(read.substring(0, assign)))
+								.indexOf(symbol) >= 0;
+			if (read.charAt(0) == '!')
+				return !isNamed || read.charAt(1) != symbol;
+			return isNamed && read.charAt(0) == symbol;
+		}
+
+		/** Returns the set of transitions that match a symbol. */
+		public long[] getMask(char symbol) {
+			int k = Arrays.binarySearch(myKeys, symbol);
+			return k >= 0 ? myMasks[k] : myOther;
+		}
+
+		/** Returns the first transition that matches a symbol, or -1. */
+		public int getWinner(char symbol) {
+			int k = Arrays.binarySearch(myKeys, symbol);
+			return k >= 0 ? myWinners[k] : myOtherWinner;
+		}
+
+		/** The named symbols, in order. */
+		private char[] myKeys;
+
+		/** The transitions each named symbol matches. */
+		private long[][] myMasks;
+
+		/** The transitions every other symbol matches. */
+		private long[] myOther;
+
+		/** The first transition each named symbol matches, or -1. */
+		private int[] myWinners;
+
+		/** The first transition every other symbol matches, or -1. */
+		private int myOtherWinner;
+	}
+
+	/**
+	 * Returns the first member of a bit set, or -1 if it is empty.
+	 */
+	private static int first(long[] set) {
+		for (int w = 0; w < set.length; w++)
+			if (set[w] != 0)
+				return (w << 6) + Long.numberOfTrailingZeros(set[w]);
+		return -1;
+	}
+
+	/**
+	 * Returns if no machine in the hierarchy has changed since this table was
+	 * built.
+	 */
+	public boolean isCurrent() {
+		return !myWatcher.myChanged;
+	}
+
+	/**
+	 * Stops listening to the machines. The table is out of date afterwards.
+	 */
+	public void dispose() {
+		for (TuringMachine machine : myMachines) {
+			machine.removeStateListener(myWatcher);
+			machine.removeTransitionListener(myWatcher);
+		}
+		myMachines.clear();
+		myWatcher.myChanged = true;
+	}
+
+	/**
+	 * Returns the top machine this table was built from.
+	 */
+	public TuringMachine getMachine() {
+		return myMachine;
+	}
+
+	/**
+	 * Returns the number of rows, the states with no machine inside them.
+	 */
+	public int getRowCount() {
+		return myRows.length;
+	}
+
+	/**
+	 * Returns the state of a row.
+	 */
+	public TMState getState(int row) {
+		return myRows[row];
+	}
+
+	/**
+	 * Returns the row a machine in a state is really in: the row of the state
+	 * itself, or for a block, the row its initial state leads to.
+	 *
+	 * @param state
+	 *            a state of the machine or of one of its blocks
+	 * @return the row, {@link #NO_INITIAL_STATE} if a block entered has no
+	 *         initial state, or -1 if the state is not in the hierarchy
+	 */
+	public int getRow(State state) {
+		Integer row = myRowOf.get(state);
+		return row == null ? -1 : row;
+	}
+
+	/**
+	 * Finds the transition to take from a row with the given symbols under
+	 * the heads of the tapes.
+	 *
+	 * @param row
+	 *            the row
+	 * @param tapes
+	 *            the tapes
+	 * @return the index of the transition, or -1 if no transition matches, in
+	 *         which case the machine halts
+	 */
+	public int find(int row, Tape[] tapes) {
+		Dispatch[] dispatch = myDispatch[row];
+		int j;
+		if (dispatch.length == 1) {
+			j = dispatch[0].getWinner(tapes[0].readChar());
+		} else {
+			long[] mask = dispatch[0].getMask(tapes[0].readChar());
+			int words = mask.length;
+			System.arraycopy(mask, 0, myScratch, 0, words);
+			for (int tape = 1; tape < dispatch.length; tape++) {
+				mask = dispatch[tape].getMask(tapes[tape].readChar());
+				for (int w = 0; w < words; w++)
+					myScratch[w] &= mask[w];
+			}
+			j = -1;
+			for (int w = 0; w < words && j < 0; w++)
+				if (myScratch[w] != 0)
+					j = (w << 6) + Long.numberOfTrailingZeros(myScratch[w]);
+		}
+		return j < 0 ? -1 : myOrder[row][j];
+	}
+
+	/**
+	 * Finds every transition that could be taken from a row with the given
+	 * symbols under the heads of the tapes, for machines that are not
+	 * deterministic. Unlike {@link #find}, this may be called by many threads
+	 * at once.
+	 *
+	 * @param row
+	 *            the row
+	 * @param tapes
+	 *            the tapes
+	 * @param transitions
+	 *            where to put the indices of the transitions, at least
+	 *            {@link #getMaxBranching} long
+	 * @return the number of transitions found
+	 */
+	public int findAll(int row, Tape[] tapes, int[] transitions) {
+		Dispatch[] dispatch = myDispatch[row];
+		int[] order = myOrder[row];
+		int count = 0;
+		for (int w = 0; w << 6 < order.length; w++) {
+			long bits = -1L;
+			for (int tape = 0; tape < dispatch.length; tape++)
+				bits &= dispatch[tape].getMask(tapes[tape].readChar())[w];
+			for (; bits != 0; bits &= bits - 1)
+				transitions[count++] = order[(w << 6)
+						+ Long.numberOfTrailingZeros(bits)];
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the most transitions any row has.
+	 */
+	public int getMaxBranching() {
+		int most = 0;
+		for (int r = 0; r < myOrder.length; r++)
+			most = Math.max(most, myOrder[r].length);
+		return most;
+	}
+
+	/**
+	 * Applies a transition to the tapes: binds its variable, if it has one,
+	 * to the symbol under the head, writes, and moves the heads. On a one
+	 * tape machine, a written symbol that is a bound variable writes the
+	 * variable's value.
+	 *
+	 * @param transition
+	 *            the index of the transition
+	 * @param tapes
+	 *            the tapes
+	 * @param bindings
+	 *            the variables of the run
+	 */
+	public void apply(int transition, Tape[] tapes, Bindings bindings) {
+		int[] write = myWrite[transition], move = myMove[transition];
+		if (myTapeCount == 1) {
+			Tape tape = tapes[0];
+			if (myAssign[transition] >= 0)
+				bindings.bind((char) myAssign[transition], tape.readChar());
+			if (write[0] != KEEP) {
+				char symbol = (char) write[0];
+				char value = bindings.get(symbol);
+				tape.writeChar(value == Bindings.UNBOUND ? symbol : value);
+			}
+			tape.moveHead(move[0]);
+			return;
+		}
+		for (int i = 0; i < myTapeCount; i++) {
+			if (write[i] != KEEP)
+				tapes[i].writeChar((char) write[i]);
+			tapes[i].moveHead(move[i]);
+		}
+	}
+
+	/**
+	 * Returns if a transition assigns a variable from a set of symbols that
+	 * holds a bound variable, which is an error in the machine.
+	 *
+	 * @param transition
+	 *            the index of the transition
+	 * @param bindings
+	 *            the variables of the run
+	 */
+	public boolean assignsFromVariable(int transition, Bindings bindings) {
+		char[] set = myAssignSet[transition];
+		if (set == null)
+			return false;
+		for (int i = 0; i < set.length; i++)
+			if (bindings.get(set[i]) != Bindings.UNBOUND)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Returns the number of transitions in the hierarchy.
+	 */
+	public int getTransitionCount() {
+		return myTransitions.length;
+	}
+
+	/**
+	 * Returns a transition.
+	 *
+	 * @param transition
+	 *            the index of the transition
+	 */
+	public TMTransition getTransition(int transition) {
+		return myTransitions[transition];
+	}
+
+	/**
+	 * Returns the row a transition leads to, as {@link #getRow} does for its
+	 * state.
+	 *
+	 * @param transition
+	 *            the index of the transition
+	 */
+	public int getTarget(int transition) {
+		return myTarget[transition];
+	}
+
+	/**
+	 * Hears every change to the machines.
+	 */
+	private static class Watcher implements AutomataStateListener,
+			AutomataTransitionListener {
+		public void automataStateChange(AutomataStateEvent event) {
+			myChanged = true;
+		}
+
+		public void automataTransitionChange(AutomataTransitionEvent event) {
+			myChanged = true;
+		}
+
+		/** Whether a machine has changed. */
+		private boolean myChanged = false;
+	}
+
+	/**
+	 * The values of the variables of a run of a one tape machine, which
+	 * transitions assign with <CODE>}</CODE>.
+	 */
+	public static class Bindings {
+		/** The value of a variable that is not bound. */
+		public static final char UNBOUND = '\uFFFF';
+
+		/**
+		 * Instantiates bindings with no variables bound.
+		 */
+		public Bindings() {
+		}
+
+		/**
+		 * Instantiates a copy of some bindings.
+		 */
+		public Bindings(Bindings bindings) {
+			myValues = bindings.myValues.clone();
+		}
+
+		/**
+		 * Returns the value of a variable, or {@link #UNBOUND}.
+		 */
+		public char get(char variable) {
+			return variable < myValues.length ? myValues[variable] : UNBOUND;
+		}
+
+		/**
+		 * Binds a variable to a value.
+		 */
+		public void bind(char variable, char value) {
+			if (variable >= myValues.length) {
+				int old = myValues.length;
+				myValues = Arrays.copyOf(myValues, variable + 1);
+				Arrays.fill(myValues, old, myValues.length, UNBOUND);
+			}
+			myValues[variable] = value;
+		}
+
+		/**
+		 * Unbinds every variable.
+		 */
+		public void clear() {
+			myValues = new char[0];
+		}
+
+		/**
+		 * Returns the variables that are bound, in order.
+		 */
+		public char[] getVariables() {
+			StringBuffer variables = new StringBuffer();
+			for (int i = 0; i < myValues.length; i++)
+				if (myValues[i] != UNBOUND)
+					variables.append((char) i);
+			return variables.toString().toCharArray();
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Bindings))
+				return false;
+			char[] other = ((Bindings) o).myValues;
+			int length = Math.max(myValues.length, other.length);
+			for (int i = 0; i < length; i++)
+				if (get((char) i) != ((Bindings) o).get((char) i))
+					return false;
+			return true;
+		}
+
+		public int hashCode() {
+			int hash = 0;
+			for (int i = 0; i < myValues.length; i++)
+				if (myValues[i] != UNBOUND)
+					hash = 31 * hash + i * 65536 + myValues[i];
+			return hash;
+		}
+
+		/** The value of each variable, by its character. */
+		private char[] myValues = new char[0];
+	}
+
+	/** A write that leaves the symbol under the head. */
+	private static final int KEEP = -1;
+
+	/** The top machine. */
+	private TuringMachine myMachine;
+
+	/** The machines of the hierarchy. */
+	private List<TuringMachine> myMachines = new ArrayList<TuringMachine>();
+
+	/** The listener to the machines. */
+	private Watcher myWatcher = new Watcher();
+
+	/** The number of tapes. */
+	private int myTapeCount;
+
+	/** The state of each row. */
+	private TMState[] myRows;
+
+	/** The row each state of the hierarchy leads to. */
+	private Map<State, Integer> myRowOf = new IdentityHashMap<State, Integer>();
+
+	/** The transitions of each row, in the order they are tried. */
+	private int[][] myOrder;
+
+	/** The dispatch for each row and tape. */
+	private Dispatch[][] myDispatch;
+
+	/** The transitions. */
+	private TMTransition[] myTransitions;
+
+	/** The row each transition leads to. */
+	private int[] myTarget;
+
+	/** The symbol each transition writes on each tape, or KEEP. */
+	private int[][] myWrite;
+
+	/** The move of each transition on each tape: -1, 0 or 1. */
+	private int[][] myMove;
+
+	/** The variable each transition assigns, or -1. */
+	private int[] myAssign;
+
+	/** The symbols each transition assigns from, or null. */
+	private char[][] myAssignSet;
+
+	/** A bit set for intersecting the transitions each tape matches. */
+	private long[] myScratch;
+}
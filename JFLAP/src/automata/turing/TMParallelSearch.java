@@ -0,0 +1,440 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package automata.turing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import automata.State;
+
+/**
+ * A <CODE>TMParallelSearch</CODE> runs a Turing machine that need not be
+ * deterministic, following every transition that can be taken from each
+ * configuration, with the branches spread over the threads of a fork/join
+ * pool. The configurations reached are expanded a frontier at a time, so
+ * the search is close to breadth first and no branch starves the others:
+ * the range of each frontier is split among the threads, which steal work
+ * from each other, and each configuration is followed until it branches, up
+ * to a number of steps. The search ends as soon as any branch accepts, when
+ * every branch has halted without accepting, or when a limit on the number
+ * of configurations is reached.
+ * <P>
+ * Each branch has its own copies of the tapes, which share their cells with
+ * the tapes they were copied from until they are written, so a branch costs
+ * little until it changes something. Configurations already reached by any
+ * branch are not followed again: each is recorded in a shared set as a 64 bit
+ * fingerprint of its state, its variables and the hashes of its tapes. Two
+ * different configurations could in principle have the same fingerprint, but
+ * the chance of that is negligible next to the limit on configurations.
+ *
+ * @see TMDispatchTable#findAll
+ * @see TMRunner
+ */
+
+public class TMParallelSearch {
+	/** The result of a search in which some branch accepted. */
+	public static final int ACCEPTED = 0;
+
+	/** The result of a search in which every branch halted without accepting. */
+	public static final int REJECTED = 1;
+
+	/** The result of a search stopped by the limit on configurations. */
+	public static final int BRANCH_LIMIT = 2;
+
+	/** The result of a search stopped by {@link #cancel}. */
+	public static final int CANCELLED = 3;
+
+	/**
+	 * Instantiates a search of a machine.
+	 *
+	 * @param machine
+	 *            the machine
+	 * @param acceptByFinalState
+	 *            if entering a final state of the top machine accepts
+	 * @param acceptByHalting
+	 *            if halting accepts
+	 */
+	public TMParallelSearch(TuringMachine machine, boolean acceptByFinalState,
+			boolean acceptByHalting) {
+		myMachine = machine;
+		myAcceptByFinalState = acceptByFinalState;
+		myAcceptByHalting = acceptByHalting;
+	}
+
+	/**
+	 * Sets the most configurations a search may reach before it gives up.
+	 *
+	 * @param limit
+	 *            the limit, which must be positive
+	 */
+	public void setBranchLimit(long limit) {
+		if (limit <= 0)
+			throw new IllegalArgumentException("The limit must be positive.");
+		myBranchLimit = limit;
+	}
+
+	/**
+	 * Sets the pool that searches run in.
+	 *
+	 * @param pool
+	 *            the pool, or <CODE>null</CODE> for the common pool
+	 */
+	public void setPool(ForkJoinPool pool) {
+		myPool = pool;
+	}
+
+	/**
+	 * Searches with the same input on every tape.
+	 *
+	 * @param input
+	 *            the input
+	 * @return {@link #ACCEPTED}, {@link #REJECTED}, {@link #BRANCH_LIMIT} or
+	 *         {@link #CANCELLED}
+	 */
+	public int search(String input) {
+		String[] inputs = new String[myMachine.tapes()];
+		for (int i = 0; i < inputs.length; i++)
+			inputs[i] = input;
+		return search(inputs);
+	}
+
+	/**
+	 * Searches with an input for each tape. This blocks until the search
+	 * ends.
+	 *
+	 * @param inputs
+	 *            the inputs
+	 * @return {@link #ACCEPTED}, {@link #REJECTED}, {@link #BRANCH_LIMIT} or
+	 *         {@link #CANCELLED}
+	 * @throws IllegalArgumentException
+	 *             if the machine has no initial state
+	 * @throws IllegalStateException
+	 *             if some branch enters a building block with no initial state
+	 */
+	public int search(String[] inputs) {
+		TMState initial = (TMState) myMachine.getInitialState();
+		if (initial == null)
+			throw new IllegalArgumentException("The machine has no initial state.");
+		myTable = new TMDispatchTable(myMachine);
+		try {
+			myFinal = new boolean[myTable.getTransitionCount()];
+			for (int t = 0; t < myFinal.length; t++)
+				myFinal[t] = isTopFinal(myTable.getTransition(t).getToState());
+			myVisited = ConcurrentHashMap.<Long> newKeySet();
+			myCount = new AtomicLong();
+			myAccepted = new AtomicReference<Node>();
+			myLimitReached = false;
+			myCancelled = false;
+			myStopped = false;
+
+			Tape[] tapes = new Tape[inputs.length];
+			for (int i = 0; i < tapes.length; i++)
+				tapes[i] = new Tape(inputs[i]);
+			Node root = new Node(initial, rowOf(initial), tapes,
+					new TMDispatchTable.Bindings(), 0);
+			myVisited.add(root.fingerprint());
+			myCount.incrementAndGet();
+			if (myAcceptByFinalState && isTopFinal(initial))
+				accept(root);
+			else
+				explore(root);
+		} finally {
+			myTable.dispose();
+		}
+		if (myAccepted.get() != null)
+			return ACCEPTED;
+		if (myCancelled)
+			return CANCELLED;
+		return myLimitReached ? BRANCH_LIMIT : REJECTED;
+	}
+
+	/**
+	 * Expands the configurations reached, a frontier at a time, until the
+	 * search ends.
+	 */
+	private void explore(Node root) {
+		ForkJoinPool pool = myPool == null ? ForkJoinPool.commonPool() : myPool;
+		List<Node> frontier = new ArrayList<Node>();
+		frontier.add(root);
+		while (!frontier.isEmpty() && !myStopped) {
+			int grain = Math.max(1, frontier.size()
+					/ (8 * pool.getParallelism()));
+			frontier = pool.invoke(new Expand(frontier, 0, frontier.size(),
+					grain));
+		}
+	}
+
+	/**
+	 * Asks a search in progress to stop. The search returns
+	 * {@link #CANCELLED}, unless some branch has already accepted.
+	 */
+	public void cancel() {
+		myCancelled = true;
+		myStopped = true;
+	}
+
+	/**
+	 * Returns if a state is a final state of the top machine.
+	 */
+	private boolean isTopFinal(State state) {
+		return state.getAutomaton() == myMachine && myMachine.isFinalState(state);
+	}
+
+	/**
+	 * Returns the row of a state.
+	 */
+	private int rowOf(State state) {
+		int row = myTable.getRow(state);
+		if (row == TMDispatchTable.NO_INITIAL_STATE)
+			throw new IllegalStateException(
+					"A building block has no initial state.");
+		return row;
+	}
+
+	/**
+	 * Records that a branch accepted, if none has yet, and stops the others.
+	 */
+	private void accept(Node node) {
+		myAccepted.compareAndSet(null, node);
+		myStopped = true;
+	}
+
+	/**
+	 * Expands a range of the frontier, splitting it among the threads of the
+	 * pool, and returns the configurations the range branches into.
+	 */
+	private class Expand extends RecursiveTask<List<Node>> {
+		/** Tasks are never serialized, since they refer to the search. */
+		private static final long serialVersionUID = 1L;
+
+		public Expand(List<Node> frontier, int low, int high, int grain) {
+			myFrontier = frontier;
+			myLow = low;
+			myHigh = high;
+			myGrain = grain;
+		}
+
+		protected List<Node> compute() {
+			if (myHigh - myLow > myGrain) {
+				int middle = (myLow + myHigh) >>> 1;
+				Expand left = new Expand(myFrontier, myLow, middle, myGrain);
+				left.fork();
+				List<Node> next = new Expand(myFrontier, middle, myHigh, myGrain)
+						.compute();
+				next.addAll(left.join());
+				return next;
+			}
+			List<Node> next = new ArrayList<Node>();
+			int[] transitions = new int[Math.max(1, myTable.getMaxBranching())];
+			for (int i = myLow; i < myHigh && !myStopped; i++) {
+				Node node = myFrontier.get(i);
+				for (int steps = 0; node != null && !myStopped; steps++) {
+					if (steps == CHAIN_STEPS) {
+						next.add(node);
+						break;
+					}
+					node = expand(node, next, transitions);
+				}
+			}
+			return next;
+		}
+
+		/**
+		 * Takes every transition from a configuration.
+		 *
+		 * @return the one new configuration reached, to be followed at once,
+		 *         or <CODE>null</CODE> if there were none, or several, which
+		 *         are added to the next frontier
+		 */
+		private Node expand(Node node, List<Node> next, int[] transitions) {
+			int count = myTable.findAll(node.myRow, node.myTapes, transitions);
+			if (count == 0) {
+				if (myAcceptByHalting)
+					accept(node);
+				return null;
+			}
+			Node first = null;
+			int found = 0;
+			for (int i = 0; i < count; i++) {
+				// The last transition can change this configuration itself.
+				Tape[] tapes = node.myTapes;
+				TMDispatchTable.Bindings bindings = node.myBindings;
+				if (i < count - 1) {
+					tapes = new Tape[tapes.length];
+					for (int j = 0; j < tapes.length; j++)
+						tapes[j] = new Tape(node.myTapes[j]);
+					bindings = new TMDispatchTable.Bindings(bindings);
+				}
+				int t = transitions[i];
+				myTable.apply(t, tapes, bindings);
+				TMState to = (TMState) myTable.getTransition(t).getToState();
+				Node child = new Node(to, rowOf(to), tapes, bindings,
+						node.mySteps + 1);
+				if (!myVisited.add(child.fingerprint()))
+					continue;
+				if (myCount.incrementAndGet() > myBranchLimit) {
+					myLimitReached = true;
+					myStopped = true;
+					return null;
+				}
+				if (myAcceptByFinalState && myFinal[t]) {
+					accept(child);
+					return null;
+				}
+				if (found++ == 0) {
+					first = child;
+				} else {
+					if (found == 2)
+						next.add(first);
+					next.add(child);
+				}
+			}
+			return found == 1 ? first : null;
+		}
+
+		/** The frontier. */
+		private List<Node> myFrontier;
+
+		/** The range of the frontier to expand. */
+		private int myLow, myHigh;
+
+		/** The size of a range not worth splitting. */
+		private int myGrain;
+	}
+
+	/**
+	 * A configuration of a branch.
+	 */
+	private static class Node {
+		public Node(TMState state, int row, Tape[] tapes,
+				TMDispatchTable.Bindings bindings, long steps) {
+			myState = state;
+			myRow = row;
+			myTapes = tapes;
+			myBindings = bindings;
+			mySteps = steps;
+		}
+
+		/**
+		 * Returns the fingerprint of the configuration, which is the same for
+		 * equal configurations.
+		 */
+		public long fingerprint() {
+			long hash = myRow * 0x9E3779B97F4A7C15L + myBindings.hashCode();
+			for (int i = 0; i < myTapes.length; i++)
+				hash = (hash ^ myTapes[i].getContentHash()) * 0xC2B2AE3D27D4EB4FL;
+			hash ^= hash >>> 33;
+			hash *= 0xFF51AFD7ED558CCDL;
+			return hash ^ (hash >>> 33);
+		}
+
+		private TMState myState;
+
+		private int myRow;
+
+		private Tape[] myTapes;
+
+		private TMDispatchTable.Bindings myBindings;
+
+		private long mySteps;
+	}
+
+	/**
+	 * Returns the configuration the last search accepted in, with copies of
+	 * the tapes, or <CODE>null</CODE> if it did not accept.
+	 */
+	public TMConfiguration getAcceptingConfiguration() {
+		Node node = myAccepted == null ? null : myAccepted.get();
+		if (node == null)
+			return null;
+		List<AcceptanceFilter> filters = new ArrayList<AcceptanceFilter>();
+		if (myAcceptByFinalState)
+			filters.add(new AcceptByFinalStateFilter());
+		if (myAcceptByHalting)
+			filters.add(new AcceptByHaltingFilter());
+		Tape[] tapes = new Tape[node.myTapes.length];
+		for (int i = 0; i < tapes.length; i++)
+			tapes[i] = new Tape(node.myTapes[i]);
+		return new TMConfiguration(node.myState, null, tapes, filters
+				.toArray(new AcceptanceFilter[0]));
+	}
+
+	/**
+	 * Returns the number of steps the accepting branch of the last search
+	 * took, or -1 if it did not accept.
+	 */
+	public long getAcceptingSteps() {
+		Node node = myAccepted == null ? null : myAccepted.get();
+		return node == null ? -1 : node.mySteps;
+	}
+
+	/**
+	 * Returns the number of distinct configurations the last search reached.
+	 */
+	public long getConfigurationCount() {
+		return myCount == null ? 0 : Math.min(myCount.get(), myBranchLimit);
+	}
+
+	/** The most steps a branch is followed for in one frontier. */
+	private static final int CHAIN_STEPS = 4096;
+
+	/** The machine. */
+	private TuringMachine myMachine;
+
+	/** How the machine accepts. */
+	private boolean myAcceptByFinalState, myAcceptByHalting;
+
+	/** The most configurations to reach. */
+	private long myBranchLimit = 1000000;
+
+	/** The pool, or <CODE>null</CODE> for the common pool. */
+	private ForkJoinPool myPool = null;
+
+	/** The compiled machine of the search in progress. */
+	private TMDispatchTable myTable;
+
+	/** For each transition, if it enters a final state of the top machine. */
+	private boolean[] myFinal;
+
+	/** The fingerprints of the configurations reached. */
+	private Set<Long> myVisited;
+
+	/** The number of configurations reached. */
+	private AtomicLong myCount;
+
+	/** The first configuration found to accept. */
+	private AtomicReference<Node> myAccepted;
+
+	/** Whether the limit on configurations was reached. */
+	private volatile boolean myLimitReached;
+
+	/** Whether the search was cancelled. */
+	private volatile boolean myCancelled;
+
+	/** Whether every branch should stop. */
+	private volatile boolean myStopped;
+}
@@ -0,0 +1,63 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+package automata.turing;
+
+import java.awt.Point;
+
+import automata.State;
+
+/**
+ * Tester for the parallel search of a nondeterministic Turing machine. The
+ * machine guesses where "ab" starts in its input, and accepts by final state
+ * if it guessed right, so it accepts exactly the strings that contain "ab".
+ */
+public class TMParallelSearchTester {
+
+	public static void main(String[] args)
+	{
+		TuringMachine tm = new TuringMachine(1);
+		State q0 = tm.createState(new Point(0, 0));
+		State q1 = tm.createState(new Point(100, 0));
+		State q2 = tm.createState(new Point(200, 0));
+		tm.setInitialState(q0);
+		tm.addFinalState(q2);
+		tm.addTransition(new TMTransition(q0, q0, "a", "a", "R"));
+		tm.addTransition(new TMTransition(q0, q0, "b", "b", "R"));
+		tm.addTransition(new TMTransition(q0, q1, "a", "a", "R"));
+		tm.addTransition(new TMTransition(q1, q2, "b", "b", "R"));
+
+		String[] inputs = { "ab", "bbab", "aaaab", "ba", "aaa", "" };
+		boolean[] expected = { true, true, true, false, false, false };
+		TMParallelSearch search = new TMParallelSearch(tm, true, false);
+		for (int i = 0; i < inputs.length; i++) {
+			int result = search.search(inputs[i]);
+			boolean accepted = result == TMParallelSearch.ACCEPTED;
+			System.out.println("\"" + inputs[i] + "\" "
+					+ (accepted ? "accepted" : "rejected") + " after "
+					+ search.getConfigurationCount() + " configurations"
+					+ (accepted == expected[i] ? "" : " (WRONG)"));
+		}
+
+		search.setBranchLimit(2);
+		System.out.println("Limited to 2: "
+				+ (search.search("aaaab") == TMParallelSearch.BRANCH_LIMIT ? "gave up"
+						: "did not give up (WRONG)"));
+	}
+}
@@ -0,0 +1,526 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package automata.turing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import automata.State;
+
+/**
+ * A <CODE>TMRunner</CODE> runs a deterministic Turing machine, with its
+ * building blocks, for as long as it is allowed to, without any user
+ * interface. A run stops when the machine accepts or halts, when it is found
+ * to loop forever, when a budget of steps or time is spent, or when a
+ * progress monitor asks it to; a run that is stopped can be continued, and
+ * can be saved to a file and restored, even in another process.
+ * <P>
+ * Loops are found with Brent's algorithm: the configuration at each power of
+ * two steps is saved, and each later configuration is compared with it,
+ * first by state and the hashes of the tapes. A configuration that comes
+ * back, even shifted along the tapes, means the machine never halts.
+ *
+ * @see TMDispatchTable
+ */
+
+public class TMRunner {
+	/** The result of a run in which the machine accepted. */
+	public static final int ACCEPTED = 0;
+
+	/** The result of a run in which the machine halted without accepting. */
+	public static final int REJECTED = 1;
+
+	/** The result of a run in which a configuration came back. */
+	public static final int CYCLE = 2;
+
+	/** The result of a run that spent its budget of steps. */
+	public static final int STEP_LIMIT = 3;
+
+	/** The result of a run that spent its budget of time. */
+	public static final int TIME_LIMIT = 4;
+
+	/** The result of a run that its progress monitor stopped. */
+	public static final int CANCELLED = 5;
+
+	/**
+	 * A <CODE>Progress</CODE> monitor hears how a run is going.
+	 */
+	public static interface Progress {
+		/**
+		 * Reports on a run.
+		 *
+		 * @param runner
+		 *            the runner, from which the step count and other
+		 *            figures can be read
+		 * @return <CODE>true</CODE> if the run should go on
+		 */
+		public boolean report(TMRunner runner);
+	}
+
+	/**
+	 * Instantiates a runner for a machine.
+	 *
+	 * @param machine
+	 *            the top machine
+	 * @param acceptByFinalState
+	 *            if reaching a final state of the top machine accepts
+	 * @param acceptByHalting
+	 *            if halting accepts
+	 */
+	public TMRunner(TuringMachine machine, boolean acceptByFinalState,
+			boolean acceptByHalting) {
+		myMachine = machine;
+		myAcceptByFinalState = acceptByFinalState;
+		myAcceptByHalting = acceptByHalting;
+	}
+
+	/**
+	 * Starts a run with the same input on every tape.
+	 *
+	 * @param input
+	 *            the input
+	 */
+	public void start(String input) {
+		String[] inputs = new String[myMachine.tapes()];
+		for (int i = 0; i < inputs.length; i++)
+			inputs[i] = input;
+		start(inputs);
+	}
+
+	/**
+	 * Starts a run with an input for each tape.
+	 *
+	 * @param inputs
+	 *            the inputs
+	 */
+	public void start(String[] inputs) {
+		Tape[] tapes = new Tape[inputs.length];
+		for (int i = 0; i < tapes.length; i++)
+			tapes[i] = new Tape(inputs[i]);
+		start((TMState) myMachine.getInitialState(), tapes,
+				new TMDispatchTable.Bindings(), 0, 0);
+	}
+
+	/**
+	 * Starts a run from a configuration, with no variables bound. The
+	 * configuration is not changed.
+	 *
+	 * @param configuration
+	 *            the configuration
+	 */
+	public void start(TMConfiguration configuration) {
+		Tape[] tapes = configuration.getTapes();
+		Tape[] copies = new Tape[tapes.length];
+		for (int i = 0; i < tapes.length; i++)
+			copies[i] = new Tape(tapes[i]);
+		start((TMState) configuration.getCurrentState(), copies,
+				new TMDispatchTable.Bindings(), 0, 0);
+	}
+
+	/**
+	 * Starts a run in a state, with the machine compiled again.
+	 */
+	private void start(TMState state, Tape[] tapes,
+			TMDispatchTable.Bindings bindings, long steps, long elapsed) {
+		if (state == null)
+			throw new IllegalArgumentException("The machine has no initial state.");
+		if (myTable != null)
+			myTable.dispose();
+		myTable = new TMDispatchTable(myMachine);
+		myFinal = new boolean[myTable.getTransitionCount()];
+		for (int t = 0; t < myFinal.length; t++) {
+			State to = myTable.getTransition(t).getToState();
+			myFinal[t] = isTopFinal(to);
+		}
+		myState = state;
+		myTapes = tapes;
+		myBindings = bindings;
+		mySteps = steps;
+		myElapsed = elapsed;
+		myResult = -1;
+		myCycleLength = 0;
+		mySaved = null;
+		myPower = 1;
+		myLambda = 0;
+	}
+
+	/**
+	 * Returns if a state is a final state of the top machine.
+	 */
+	private boolean isTopFinal(State state) {
+		return state.getAutomaton() == myMachine && myMachine.isFinalState(state);
+	}
+
+	/**
+	 * Runs the machine until it stops or a budget is spent. A run stopped by
+	 * a budget or a monitor can be continued by calling this again.
+	 *
+	 * @param maxSteps
+	 *            the most steps to take in this call
+	 * @param maxMillis
+	 *            the most time to take in this call, in milliseconds, or 0
+	 *            for no limit
+	 * @return {@link #ACCEPTED}, {@link #REJECTED}, {@link #CYCLE},
+	 *         {@link #STEP_LIMIT}, {@link #TIME_LIMIT} or {@link #CANCELLED}
+	 * @throws IllegalStateException
+	 *             if no run has been started, or the machine enters a
+	 *             building block with no initial state
+	 */
+	public int run(long maxSteps, long maxMillis) {
+		if (myTable == null)
+			throw new IllegalStateException("No run has been started.");
+		if (myResult >= 0)
+			return myResult;
+		long start = System.nanoTime();
+		long deadline = maxMillis > 0 ? start + maxMillis * 1000000L
+				: Long.MAX_VALUE;
+		long stop = maxSteps >= Long.MAX_VALUE - mySteps ? Long.MAX_VALUE
+				: mySteps + maxSteps;
+		try {
+			if (mySteps == 0 && myAcceptByFinalState && isTopFinal(myState))
+				return myResult = ACCEPTED;
+			int row = rowOf(myState);
+			Tape[] tapes = myTapes;
+			while (true) {
+				if (mySteps >= stop)
+					return STEP_LIMIT;
+				if ((mySteps & CHECK_MASK) == 0) {
+					if (System.nanoTime() >= deadline)
+						return TIME_LIMIT;
+					if (myProgress != null && mySteps % myInterval == 0
+							&& !myProgress.report(this))
+						return CANCELLED;
+				}
+				int transition = myTable.find(row, tapes);
+				if (transition < 0)
+					return myResult = myAcceptByHalting ? ACCEPTED : REJECTED;
+				myTable.apply(transition, tapes, myBindings);
+				mySteps++;
+				myState = (TMState) myTable.getTransition(transition)
+						.getToState();
+				row = rowOf(myState);
+				if (myAcceptByFinalState && myFinal[transition])
+					return myResult = ACCEPTED;
+				if (isRepeat(row))
+					return myResult = CYCLE;
+			}
+		} finally {
+			myElapsed += System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * Returns the row of a state.
+	 */
+	private int rowOf(State state) {
+		int row = myTable.getRow(state);
+		if (row == TMDispatchTable.NO_INITIAL_STATE)
+			throw new IllegalStateException(
+					"A building block has no initial state.");
+		return row;
+	}
+
+	/**
+	 * Takes a step of Brent's algorithm.
+	 *
+	 * @return <CODE>true</CODE> if the configuration is the saved one
+	 */
+	private boolean isRepeat(int row) {
+		if (mySaved != null && row == mySavedRow
+				&& myBindings.equals(mySavedBindings)) {
+			boolean same = true;
+			for (int i = 0; i < myTapes.length && same; i++)
+				same = myTapes[i].getContentHash() == mySavedHashes[i]
+						&& myTapes[i].equals(mySaved[i]);
+			if (same) {
+				myCycleLength = myLambda + 1;
+				return true;
+			}
+		}
+		if (++myLambda >= myPower || mySaved == null) {
+			// Save this configuration, and wait twice as long.
+			mySavedRow = row;
+			mySavedBindings = new TMDispatchTable.Bindings(myBindings);
+			mySaved = new Tape[myTapes.length];
+			mySavedHashes = new long[myTapes.length];
+			for (int i = 0; i < myTapes.length; i++) {
+				mySaved[i] = new Tape(myTapes[i]);
+				mySavedHashes[i] = myTapes[i].getContentHash();
+			}
+			if (myLambda >= myPower)
+				myPower *= 2;
+			myLambda = 0;
+		}
+		return false;
+	}
+
+	/**
+	 * Sets the monitor told of the progress of runs.
+	 *
+	 * @param progress
+	 *            the monitor, or <CODE>null</CODE> for none
+	 * @param interval
+	 *            the number of steps between reports, which is rounded up to
+	 *            a multiple of 1024
+	 */
+	public void setProgress(Progress progress, long interval) {
+		myProgress = progress;
+		myInterval = Math.max(1, (interval + CHECK_MASK) / (CHECK_MASK + 1))
+				* (CHECK_MASK + 1);
+	}
+
+	/**
+	 * Returns the number of steps taken in the run.
+	 */
+	public long getStepCount() {
+		return mySteps;
+	}
+
+	/**
+	 * Returns the time spent running, over all calls and restores, in
+	 * milliseconds.
+	 */
+	public long getElapsedMillis() {
+		return myElapsed / 1000000L;
+	}
+
+	/**
+	 * Returns the average number of steps taken per second.
+	 */
+	public double getStepsPerSecond() {
+		return myElapsed == 0 ? 0 : mySteps * 1e9 / myElapsed;
+	}
+
+	/**
+	 * Returns the length of the loop found, if the result was
+	 * {@link #CYCLE}, or else 0.
+	 */
+	public long getCycleLength() {
+		return myCycleLength;
+	}
+
+	/**
+	 * Returns the current configuration, with copies of the tapes.
+	 */
+	public TMConfiguration getConfiguration() {
+		List<AcceptanceFilter> filters = new ArrayList<AcceptanceFilter>();
+		if (myAcceptByFinalState)
+			filters.add(new AcceptByFinalStateFilter());
+		if (myAcceptByHalting)
+			filters.add(new AcceptByHaltingFilter());
+		Tape[] tapes = new Tape[myTapes.length];
+		for (int i = 0; i < tapes.length; i++)
+			tapes[i] = new Tape(myTapes[i]);
+		return new TMConfiguration(myState, null, tapes, filters
+				.toArray(new AcceptanceFilter[0]));
+	}
+
+	/**
+	 * Returns the variables bound in the run.
+	 */
+	public TMDispatchTable.Bindings getBindings() {
+		return myBindings;
+	}
+
+	/**
+	 * Writes the run to a file.
+	 *
+	 * @param file
+	 *            the file
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public void save(File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file)));
+		try {
+			save(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes the run: the step count and time, the state, as the IDs of the
+	 * blocks down to it, the section of each tape that is not blank with the
+	 * position of the head, and the variables bound.
+	 *
+	 * @param out
+	 *            where to write
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public void save(DataOutput out) throws IOException {
+		if (myTable == null)
+			throw new IllegalStateException("No run has been started.");
+		out.writeInt(MAGIC);
+		out.writeLong(mySteps);
+		out.writeLong(myElapsed);
+		List<Integer> path = new ArrayList<Integer>();
+		for (TMState state = myState; state != null; state = ((TuringMachine) state
+				.getAutomaton()).getParent())
+			path.add(0, state.getID());
+		out.writeInt(path.size());
+		for (int id : path)
+			out.writeInt(id);
+		out.writeInt(myTapes.length);
+		for (int i = 0; i < myTapes.length; i++) {
+			String contents = myTapes[i].getContents();
+			int first = 0, last = contents.length() - 1;
+			while (first <= last && contents.charAt(first) == Tape.BLANK)
+				first++;
+			while (last >= first && contents.charAt(last) == Tape.BLANK)
+				last--;
+			out.writeInt(last - first + 1);
+			out.writeChars(contents.substring(first, last + 1));
+			out.writeInt(myTapes[i].getTapeHead() - first);
+		}
+		char[] variables = myBindings.getVariables();
+		out.writeInt(variables.length);
+		for (int i = 0; i < variables.length; i++) {
+			out.writeChar(variables[i]);
+			out.writeChar(myBindings.get(variables[i]));
+		}
+	}
+
+	/**
+	 * Reads a run saved from this machine from a file, to be continued.
+	 *
+	 * @param file
+	 *            the file
+	 * @throws IOException
+	 *             if the file cannot be read, or is not a saved run of this
+	 *             machine
+	 */
+	public void restore(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)));
+		try {
+			restore(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads a run saved from this machine, to be continued.
+	 *
+	 * @param in
+	 *            where to read
+	 * @throws IOException
+	 *             if reading fails, or what is read is not a saved run of
+	 *             this machine
+	 */
+	public void restore(DataInput in) throws IOException {
+		if (in.readInt() != MAGIC)
+			throw new IOException("Not a saved Turing machine run.");
+		long steps = in.readLong(), elapsed = in.readLong();
+		TuringMachine machine = myMachine;
+		TMState state = null;
+		for (int depth = in.readInt(); depth > 0; depth--) {
+			if (state != null)
+				machine = state.getInnerTM();
+			state = (TMState) machine.getStateWithID(in.readInt());
+			if (state == null)
+				throw new IOException("The saved state is not in the machine.");
+		}
+		Tape[] tapes = new Tape[in.readInt()];
+		for (int i = 0; i < tapes.length; i++) {
+			char[] contents = new char[in.readInt()];
+			for (int j = 0; j < contents.length; j++)
+				contents[j] = in.readChar();
+			tapes[i] = new Tape(new String(contents), in.readInt());
+		}
+		TMDispatchTable.Bindings bindings = new TMDispatchTable.Bindings();
+		for (int count = in.readInt(); count > 0; count--) {
+			char variable = in.readChar();
+			bindings.bind(variable, in.readChar());
+		}
+		start(state, tapes, bindings, steps, elapsed);
+	}
+
+	/** The first int of a saved run. */
+	private static final int MAGIC = 0x4A544D52;
+
+	/** Time and progress are checked when these bits of the step count are 0. */
+	private static final long CHECK_MASK = 1023;
+
+	/** The top machine. */
+	private TuringMachine myMachine;
+
+	/** How the machine accepts. */
+	private boolean myAcceptByFinalState, myAcceptByHalting;
+
+	/** The compiled machine, once a run has started. */
+	private TMDispatchTable myTable = null;
+
+	/** Whether each transition goes to a final state of the top machine. */
+	private boolean[] myFinal;
+
+	/** The state of the machine. */
+	private TMState myState;
+
+	/** The tapes. */
+	private Tape[] myTapes;
+
+	/** The variables. */
+	private TMDispatchTable.Bindings myBindings;
+
+	/** The number of steps taken. */
+	private long mySteps;
+
+	/** The time spent running, in nanoseconds. */
+	private long myElapsed;
+
+	/** The result, once the run is over, or -1. */
+	private int myResult;
+
+	/** The length of the loop found. */
+	private long myCycleLength;
+
+	/** The monitor, if any. */
+	private Progress myProgress = null;
+
+	/** The steps between reports. */
+	private long myInterval = CHECK_MASK + 1;
+
+	/** The configuration saved for Brent's algorithm. */
+	private int mySavedRow;
+
+	private Tape[] mySaved;
+
+	private long[] mySavedHashes;
+
+	private TMDispatchTable.Bindings mySavedBindings;
+
+	/** The steps to wait before saving again, and the steps waited. */
+	private long myPower, myLambda;
+}
@@ -0,0 +1,69 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+package automata.turing;
+
+import java.awt.Point;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import automata.State;
+
+/**
+ * Tester for saving and restoring a run inside a building block. The machine
+ * starts in a block that moves right over a's. A run of a clone of the machine
+ * is saved, and restored in a run of the machine itself, which only finds the
+ * state if the blocks of the clone know the states they are in.
+ */
+public class TMRunnerTester {
+
+	public static void main(String[] args) throws IOException
+	{
+		TuringMachine tm = new TuringMachine(1);
+		TMState block = (TMState) tm.createState(new Point(0, 0));
+		tm.setInitialState(block);
+		TuringMachine inner = block.getInnerTM();
+		State walk = inner.createState(new Point(0, 0));
+		inner.setInitialState(walk);
+		inner.addTransition(new TMTransition(walk, walk, "a", "a", "R"));
+
+		TMRunner cloned = new TMRunner((TuringMachine) tm.clone(), true, false);
+		cloned.start("aaaaaa");
+		System.out.println("Run of the clone: " + cloned.run(3, 0)
+				+ " (expected " + TMRunner.STEP_LIMIT + ")");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		cloned.save(new DataOutputStream(bytes));
+
+		TMRunner runner = new TMRunner(tm, true, false);
+		runner.restore(new DataInputStream(new ByteArrayInputStream(bytes
+				.toByteArray())));
+		TMConfiguration config = runner.getConfiguration();
+		System.out.println("Restored in " + config.getCurrentState() + " of "
+				+ (config.getCurrentState().getAutomaton() == inner ? "the block"
+						: "another machine (WRONG)")
+				+ " after " + runner.getStepCount() + " steps, head at "
+				+ config.getTapes()[0].getTapeHead() + " (expected 3)");
+		System.out.println("Continued: " + runner.run(100, 0) + " (expected "
+				+ TMRunner.REJECTED + ") after " + runner.getStepCount()
+				+ " steps");
+	}
+}
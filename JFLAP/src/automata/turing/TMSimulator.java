@@ -22,18 +22,14 @@ package automata.turing;
 
 import java.util.List;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Map;
-import java.util.Stack;
-import java.util.Comparator;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 import automata.Automaton;
 import automata.AutomatonSimulator;
 import automata.Configuration;
-import automata.State;
-import automata.Transition;
 import gui.environment.Universe;
 import gui.errors.JFLAPError;
 
@@ -58,6 +54,22 @@ public class TMSimulator extends AutomatonSimulator {
 	 *             if this automaton is not a Turing machine
 	 */
 	public TMSimulator(Automaton automaton) {
+		this(automaton, getProfileFilters());
+	}
+
+	/**
+	 * Creates a TM simulator for the given automaton that accepts as the
+	 * given filters do, rather than as the current profile says.
+	 * 
+	 * @param automaton
+	 *            the machine to simulate
+	 * @param filters
+	 *            the acceptance filters; a configuration is accepted if any
+	 *            of them accepts it
+	 * @throws IllegalArgumentException
+	 *             if this automaton is not a Turing machine
+	 */
+	public TMSimulator(Automaton automaton, AcceptanceFilter[] filters) {
 		super(automaton);
 		if (!(automaton instanceof TuringMachine))
 			throw new IllegalArgumentException(
@@ -78,14 +90,19 @@ public class TMSimulator extends AutomatonSimulator {
 //
 //       //END MERLIN MERLIN MERLIN MERLIN MERLIN// //this code is only for show, it should be moved into a setting with a better UI before release//
 
-          
+        myFilters = (AcceptanceFilter[]) filters.clone();
+	}
+
+	/**
+	 * Returns the acceptance filters the current profile has turned on.
+	 */
+	private static AcceptanceFilter[] getProfileFilters() {
         List<AcceptanceFilter> tlist = new ArrayList<AcceptanceFilter>();
         
         if (Universe.curProfile.getAcceptByFinalState()) tlist.add(new AcceptByFinalStateFilter());
         if (Universe.curProfile.getAcceptByHalting()) tlist.add(new AcceptByHaltingFilter());
 
-
-        myFilters = tlist.toArray(new AcceptanceFilter[0]);
+        return tlist.toArray(new AcceptanceFilter[0]);
 	}
 
 	/**
@@ -117,6 +134,11 @@ public class TMSimulator extends AutomatonSimulator {
 	 */
 	public Configuration[] getInitialConfigurations(String[] inputs) {
 		inputStrings = (String[]) inputs.clone();
+		myBindings.clear();
+		// Blocks may have been replaced since the last run.
+		if (myTable != null)
+			myTable.dispose();
+		myTable = null;
 		Tape[] tapes = new Tape[inputs.length];
 		for (int i = 0; i < tapes.length; i++)
 			tapes[i] = new Tape(inputs[i]);
@@ -132,73 +154,25 @@ public class TMSimulator extends AutomatonSimulator {
 	
 
     /**
-      * A vision and a dream, that another take this responsibility.
-      * 
-      * This method figures out whether a particular transition is matched by a particular array of tapes. 
-      *
-      */
-    private boolean matches(Tape[] tapes, TMTransition tmt){
-        assert tapes.length == tmt.tapes(); //make sure they address the same number of tapes
-
-        //for MULTITAPE turing Machine
-        if (tapes.length > 1){
-            for (int i = 0; i < tapes.length; i++){
-                char underHead = tapes[i].readChar();
-                char toMatch  = tmt.getRead(i).charAt(0);
-
-//                if (toMatch == '!'){
-//                    toMatch = tmt.getRead(i).charAt(1);
-//                    if (underHead == toMatch)
-//                        return false;
-//                }
-                 if (underHead != toMatch && toMatch != '~')
-                    return false;
-                //would like to get priorities right for each tape, because the ! parameter shoudl not introduce arbitrary nondeterminism unless we want it to
-            }
-            return true;
+     * Returns the machine compiled with its building blocks inlined, compiling it again if any machine of the hierarchy has changed.
+     */
+    public TMDispatchTable getDispatchTable(){
+        if (myTable == null || !myTable.isCurrent()){
+            if (myTable != null)
+                myTable.dispose();
+            myTable = new TMDispatchTable((TuringMachine) myAutomaton);
         }
+        return myTable;
+    }
 
-        assert tapes.length == 1;
-
-        //fancy features only work on single-tape machines
-        char underHead = tapes[0].readChar();
-        String strtoMatch = tmt.getRead(0);
-        
-        int assignIndex = strtoMatch.indexOf('}');
-        int bangIndex = strtoMatch.indexOf('!');
-
-        //MERLIN MERLIN MERLIN MERLIN MERLIN//
-        //this should have been taken care of during the editing phase - probably put in a re-check on load from save, for legacy issues
-        assert assignIndex == -1 || bangIndex == -1; //both cannot coexist
-
-        if (assignIndex == -1 && bangIndex == -1){ //ordinary case
-            return underHead == strtoMatch.charAt(0) || strtoMatch.charAt(0) == '~'; 
-            
-            //watch out for recognizing a variable
-        }
-        else if (assignIndex != -1){
-            String[] characters = strtoMatch.substring(0, assignIndex).split(",");
-            boolean flag = false; //this would not be needed, but we want to go through and do error checking on the transition as well
-            for (int i = 0; i < characters.length; i++){
-                assert characters[i].length() == 1;
-                if (varToChar.containsKey(characters[i])){
-                    //warn the user that they are attempting something erroneous
-                    //MERLIN MERLIN MERLIN MERLIN MERLIN//
-                    JFLAPError.ILLEGAL_VAR_LOC.show();
-
-                }
-                if (characters[i].charAt(0) == underHead) flag = true;; //take care of assignment somewhere else //here, it's only alphabet letters
-            }
-            if (flag) return flag;
-        }
-        else{
-            assert bangIndex == 0;
-            return underHead != strtoMatch.charAt(1); 
-        }
-        
-        assert false; //should never get down here
-        return true;
-        
+    /**
+     * Stops the compiled machine listening to the machines it was built from.
+     * A simulator made for one run should be disposed of when the run ends.
+     */
+    public void dispose(){
+        if (myTable != null)
+            myTable.dispose();
+        myTable = null;
     }
 
     /**
@@ -224,108 +198,22 @@ public class TMSimulator extends AutomatonSimulator {
      * @return ArrayList containing the single configuration, or null if there are no valid transitions.
 	 */
 	public ArrayList stepConfiguration(Configuration config) { //one step, and will dig into building blocks if necessary
-		
-        //MERLIN MERLIN MERLIN MERLIN MERLIN//
-
-        
 		ArrayList list = new ArrayList();
 		TMConfiguration configuration = (TMConfiguration) config;
-
-
-		TMState currentState = (TMState) configuration.getCurrentState(); //innerTM should never be null; because of the way we set it up in the constructor and in the restoration phase.
-        TuringMachine tmp = null; //just a literally tmp, like /tmp
-        
-        int times = 0;
-        while ((tmp = currentState.getInnerTM()).getStates().length != 0){
-            EDebug.print(times++);
-            currentState = (TMState) tmp.getInitialState();
-
-            //check that the initial state exists
-            if (currentState == null) {
-                    JFLAPError.NO_INIT_STATE_BB.show();
-
-                    return list;
-            }
+        TMState next;
+        try {
+            next = step((TMState) configuration.getCurrentState(), configuration.getTapes());
+        } catch (IllegalStateException e) {
+            JFLAPError.NO_INIT_STATE_BB.show();
+            return list;
         }
-        
-        assert(tmp == currentState.getInnerTM());
-        assert(tmp.getParent() == currentState);
-
-        Transition[] trans = currentState.getAutomaton().getTransitionsFromState(currentState);
-        TMTransition tmt = null;
-        boolean success = false;
-outer:  while (true){
-
-            //sort the ones with the ! symbol to be the later ones. If there are multiple !, then the choice is arbitrary.
-            Arrays.sort(trans, new Comparator<Transition>(){
-                    public int compare (Transition a, Transition b){ //variables are only allowed with SINGLE TAPE, and same with NOT
-                        
-                        TMTransition tma = (TMTransition) a;
-                        TMTransition tmb = (TMTransition) b;
-                        
-                        char fa = tma.getRead(0).charAt(0);
-                        char fb = tmb.getRead(0).charAt(0);
-                        return (fa == '!')?(fb == '!' ? 0 : 1) : (fb == '!' ? 1 : 0);
-                    }
-                    });
-
-            //go through transitions at current level
-            for (int i = 0; i < trans.length; i++){
-                tmt = (TMTransition) trans[i];
-
-                if (matches(configuration.getTapes(), tmt)){
-                    success = true;
-                    break outer;
-                }
-                //tilda means to read nothing or write nothing, and it seems to be explicitly written for turing machines, rather differently from other automata
-            }
-
-            //rise a level above.
-            if (tmp.getParent() != null) //if this fails, that means that you forgot to set the parent in the XML encoder
-            {
-                currentState = tmp.getParent();
-                tmp = (TuringMachine) currentState.getAutomaton();
-                trans = tmp.getTransitionsFromState(currentState); //this line does not matter right now
-            }
-            else{
-                break; //halting condition
-            }
-            
+        if (myIllegalVariable){
+            myIllegalVariable = false;
+            JFLAPError.ILLEGAL_VAR_LOC.show();
         }
-        
-
-        if (success){ //if variables are used then they will be common to all tapes...
-            if (configuration.getTapes().length > 1){
-                for (int k = 0; k < configuration.getTapes().length; k++){
-                    configuration.getTapes()[k].writeChar(tmt.getWrite(k).charAt(0) == '~' ?
-                    configuration.getTapes()[k].readChar():
-                    tmt.getWrite(k).charAt(0));
-                    configuration.getTapes()[k].moveHead(tmt.getDirection(k));
-                    list.add(new TMConfiguration(tmt.getToState(), null, configuration.getTapes(), myFilters));
-                } 
-            }
-            else{ //only do variable assignments for the one-tape Turing machine...
-
-            //do necessary variable assignments
-            String st = tmt.getRead(0);
-            int assignIndex = st.indexOf('}');
-            
-            if (assignIndex != -1){
-                String s = "" + st.charAt(assignIndex+1);
-                varToChar.put(s, configuration.getTapes()[0].readChar()+"");
-            }
 
-            //perform the operations on the tape, and return a new TMConfiguration that represents the new position
-            configuration.getTapes()[0].writeChar(tmt.getWrite(0).charAt(0) == '~'? 
-                    configuration.getTapes()[0].readChar():
-                    (varToChar.containsKey(tmt.getWrite(0).charAt(0)+"")?
-                     varToChar.get(tmt.getWrite(0).charAt(0)+"").charAt(0)
-                     :tmt.getWrite(0).charAt(0)));
-
-            configuration.getTapes()[0].moveHead(tmt.getDirection(0));
-            list.add(new TMConfiguration(tmt.getToState(), null, configuration.getTapes(), myFilters)); //no going back - we are in a deterministic world. If you freeze, then you will not go forward either.
-
-            }
+        if (next != null){
+            list.add(new TMConfiguration(next, null, configuration.getTapes(), myFilters)); //no going back - we are in a deterministic world. If you freeze, then you will not go forward either.
         }
         else{
 
@@ -341,14 +229,34 @@ outer:  while (true){
 	}
 
 	/**
-	 * Returns true if the simulation of the input string on the automaton left
-	 * the machine in a final state. This method does not appear to be used. It is only left here because the class from which it inherited requires it.
+	 * Takes one step of the machine in place: enters building blocks from
+	 * the given state, finds the transition to take, from the state or the
+	 * blocks around it, and applies it to the tapes. Nothing is allocated
+	 * unless a machine has changed and must be compiled again, and no
+	 * dialogs are shown; {@link #stepConfiguration} shows the errors.
 	 * 
-	 * @return true if the simulation of the input string on the automaton left
-	 *         the machine in a final state
+	 * @param state
+	 *            the current state
+	 * @param tapes
+	 *            the tapes, which are changed by the step
+	 * @return the state the machine is in after the step, or <CODE>null</CODE>
+	 *         if no transition matches and the machine halts
+	 * @throws IllegalStateException
+	 *             if a building block entered has no initial state
 	 */
-	public boolean isAccepted() {
-		return false;
+	public TMState step(TMState state, Tape[] tapes) {
+        TMDispatchTable table = getDispatchTable();
+        int row = table.getRow(state);
+        if (row == TMDispatchTable.NO_INITIAL_STATE)
+            throw new IllegalStateException("A building block has no initial state.");
+        int transition = row < 0 ? -1 : table.find(row, tapes);
+        if (transition < 0)
+            return null;
+
+        if (table.assignsFromVariable(transition, myBindings))
+            myIllegalVariable = true;
+        table.apply(transition, tapes, myBindings);
+        return (TMState) table.getTransition(transition).getToState();
 	}
 
 	/**
@@ -359,27 +267,24 @@ outer:  while (true){
 	 * @return true if the automaton accepts the input
 	 */
 	public boolean simulateInput(String input) {
-		/** clear the configurations to begin new simulation. */
         //System.out.println("In Simulate Input");
-		myConfigurations.clear();
+		Set configurations = new HashSet();
 		Configuration[] initialConfigs = getInitialConfigurations(input);
 		for (int k = 0; k < initialConfigs.length; k++) {
 			TMConfiguration initialConfiguration = (TMConfiguration) initialConfigs[k];
-			myConfigurations.add(initialConfiguration);
+			configurations.add(initialConfiguration);
 		}
-		while (!myConfigurations.isEmpty()) {
+		while (!configurations.isEmpty()) {
 			//System.out.println("HERE!!!!!");
-			if (isAccepted())
-				return true;
 			ArrayList configurationsToAdd = new ArrayList();
-			Iterator it = myConfigurations.iterator();
+			Iterator it = configurations.iterator();
 			while (it.hasNext()) {
 				TMConfiguration configuration = (TMConfiguration) it.next();
 				ArrayList configsToAdd = stepConfiguration(configuration);
 				configurationsToAdd.addAll(configsToAdd);
 				it.remove();
 			}
-			myConfigurations.addAll(configurationsToAdd);
+			configurations.addAll(configurationsToAdd);
 		}
 		return false;
 	}
@@ -390,7 +295,14 @@ outer:  while (true){
 
 	private String inputStrings[];
 
-	private Map <String, String> varToChar= new HashMap<String, String>();
+	/** The variables of the current run. */
+	private TMDispatchTable.Bindings myBindings = new TMDispatchTable.Bindings();
+
+	/** Whether a step has assigned a variable from a set holding a bound variable. */
+	private boolean myIllegalVariable = false;
+
+	/** The machine compiled with its building blocks, if it has been. */
+	private TMDispatchTable myTable = null;
 
     private AcceptanceFilter[] myFilters;
 
@@ -45,7 +45,7 @@ public class TMState extends State{
     public TMState(TMState copyMe){ //do we really need a pointer to the parent?
         this(copyMe.getID(), (Point)copyMe.getPoint().clone(), copyMe.getAutomaton());
 
-        myInnerTuringMachine = (TuringMachine) copyMe.getInnerTM().clone(); //this should result in recursion until we reach a TMState whose inner TM does not contain states.
+        setInnerTM((TuringMachine) copyMe.getInnerTM().clone()); //this should result in recursion until we reach a TMState whose inner TM does not contain states.
     }
 
     public void setInnerTM(TuringMachine tm){
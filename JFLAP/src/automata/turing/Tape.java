@@ -21,10 +21,24 @@
 package automata.turing;
 
 import java.io.Serializable;
+import java.util.Arrays;
 
 /**
  * A tape for a Turing machine. The tape head can move across the tape, reading
  * and writing individual characters.
+ * <P>
+ * The cells are kept in an array that grows at either end, with the cell the
+ * input started in at an origin offset into the array, so reading, writing
+ * and moving the head take constant time. The tape also keeps a polynomial
+ * hash of the cells that are not blank, updated on each write, and a range
+ * that holds them. Erasing the cell at an end of that range leaves the range
+ * as it was; it is narrowed to the cells that are not blank when the tape is
+ * next hashed or compared, which takes time in the number of blanks passed
+ * over, so tapes can be hashed and told apart without being scanned.
+ * <P>
+ * Copies of a tape share its cells until one of them writes, so copying a
+ * tape takes constant time, and a copy can be used in another thread from
+ * its original.
  * 
  * @author Ryan Cavalcante
  */
@@ -45,11 +59,22 @@ public class Tape implements Serializable {
 	 *            the input string to write to the tape
 	 */
 	public Tape(String input) {
-		buffer = new StringBuffer();
-		if (input.equals(""))
-			input = "" + BLANK;
-		buffer.insert(0, input);
-		tapeHead = 0;
+		load(input.equals("") ? "" + BLANK : input, 0);
+	}
+
+	/**
+	 * Instantiates a tape holding <CODE>contents</CODE> from the first cell
+	 * on, with blanks elsewhere, and the tape head at a cell that need not be
+	 * in the contents.
+	 * 
+	 * @param contents
+	 *            the contents of the tape
+	 * @param head
+	 *            the position of the head, with 0 the first cell of the
+	 *            contents
+	 */
+	public Tape(String contents, int head) {
+		load(contents, head);
 	}
 
 	/**
@@ -59,9 +84,43 @@ public class Tape implements Serializable {
 	 *            the tape to copy
 	 */
 	public Tape(Tape tape) {
-		this.buffer = new StringBuffer(tape.buffer.toString());
-		tapeHead = tape.getTapeHead();
-		cachedHash = tape.cachedHash;
+		myCells = tape.myCells;
+		myShared = tape.myShared = true;
+		myOrigin = tape.myOrigin;
+		myHead = tape.myHead;
+		myLow = tape.myLow;
+		myHigh = tape.myHigh;
+		myFirst = tape.myFirst;
+		myLast = tape.myLast;
+		myNonBlank = tape.myNonBlank;
+		myHash = tape.myHash;
+		myHeadPower = tape.myHeadPower;
+	}
+
+	/**
+	 * Puts contents on the tape, from position 0, with the head at a
+	 * position.
+	 */
+	private void load(String contents, int head) {
+		myCells = new char[Math.max(contents.length(), MINIMUM_CAPACITY)];
+		myShared = false;
+		contents.getChars(0, contents.length(), myCells, 0);
+		Arrays.fill(myCells, contents.length(), myCells.length, BLANK);
+		myOrigin = 0;
+		myLow = 0;
+		myHigh = contents.length() - 1;
+		myNonBlank = 0;
+		myHash = 0;
+		myHeadPower = 1;
+		for (myHead = 0; myHead < contents.length(); myHead++) {
+			char c = myCells[myHead];
+			myCells[myHead] = BLANK;
+			writeChar(c);
+			myHeadPower *= BASE;
+		}
+		myHead = head;
+		myHeadPower = power(head);
+		ensureCell(head);
 	}
 
 	/**
@@ -71,21 +130,70 @@ public class Tape implements Serializable {
 	 *            the character to write to the tape.
 	 */
 	public void writeChar(char character) {
-		buffer.deleteCharAt(tapeHead);
-		buffer.insert(tapeHead, character);
-		cachedHash = 0xdeadbeef;
+		int index = myHead + myOrigin;
+		char old = myCells[index];
+		if (old == character)
+			return;
+		if (myShared) {
+			myCells = myCells.clone();
+			myShared = false;
+		}
+		myCells[index] = character;
+		myHash += (long) ((character ^ BLANK) - (old ^ BLANK)) * myHeadPower;
+		if (old == BLANK) {
+			if (myNonBlank++ == 0) {
+				myFirst = myLast = myHead;
+			} else {
+				myFirst = Math.min(myFirst, myHead);
+				myLast = Math.max(myLast, myHead);
+			}
+		} else if (character == BLANK) {
+			// The range is narrowed when it is next needed.
+			myNonBlank--;
+		}
 	}
 
 	/**
-	 * Writes <CODE>symbol</CODE> to the tape.
+	 * Narrows the range of cells that are not blank past any blanks left at
+	 * its ends by erasing.
+	 */
+	private void trim() {
+		if (myNonBlank == 0)
+			return;
+		while (myCells[myFirst + myOrigin] == BLANK)
+			myFirst++;
+		while (myCells[myLast + myOrigin] == BLANK)
+			myLast--;
+	}
+
+	/**
+	 * Writes <CODE>symbol</CODE> to the tape. A symbol of more than one
+	 * character replaces the character under the head and pushes the rest of
+	 * the tape to the right.
 	 * 
 	 * @param symbol
 	 *            the symbol to write to the tape.
 	 */
 	public void write(String symbol) {
-		buffer.deleteCharAt(tapeHead);
-		buffer.insert(tapeHead, symbol);
-		cachedHash = 0xdeadbeef;
+		if (symbol.length() == 1) {
+			writeChar(symbol.charAt(0));
+			return;
+		}
+		String contents = getContents();
+		int head = getTapeHead(), low = myLow;
+		load(contents.substring(0, head) + symbol
+				+ contents.substring(head + 1), head);
+		// Keep the positions of cells to the left of the head.
+		myOrigin -= low;
+		myLow += low;
+		myHigh += low;
+		myHead += low;
+		if (myNonBlank > 0) {
+			myFirst += low;
+			myLast += low;
+		}
+		myHash = myHash * power(low);
+		myHeadPower = power(myHead);
 	}
 
 	/**
@@ -94,9 +202,7 @@ public class Tape implements Serializable {
 	 * @return the character pointed to by the tape head.
 	 */
 	public char readChar() {
-		char[] toReturn = new char[1];
-		buffer.getChars(tapeHead, tapeHead + 1, toReturn, 0);
-		return toReturn[0];
+		return myCells[myHead + myOrigin];
 	}
 
 	/**
@@ -106,9 +212,7 @@ public class Tape implements Serializable {
 	 *         head.
 	 */
 	public String read() {
-		char[] toReturn = new char[1];
-		buffer.getChars(tapeHead, tapeHead + 1, toReturn, 0);
-		return new String(toReturn);
+		return String.valueOf(readChar());
 	}
 
 	/**
@@ -123,10 +227,10 @@ public class Tape implements Serializable {
 		try {
 			switch (direction.charAt(0)) {
 			case 'L':
-				tapeHead--;
+				moveHead(-1);
 				break;
 			case 'R':
-				tapeHead++;
+				moveHead(1);
 				break;
 			case 'S':
 				break;
@@ -138,29 +242,60 @@ public class Tape implements Serializable {
 			throw new IllegalArgumentException(
 					"Tape direction is empty string!");
 		}
+	}
 
-		/**
-		 * If the tape head is moved to an index out of the range of the buffer,
-		 * the buffer needs to grow accordingly, filled with blanks where
-		 * appropriate.
-		 */
-
-		if (tapeHead >= buffer.length()) {
-			int bufferLength = buffer.length();
-			buffer.setLength(tapeHead + 1);
-			for (int k = bufferLength; k < buffer.length(); k++) {
-				buffer.deleteCharAt(k);
-				buffer.insert(k, BLANK);
-			}
-		} else if (tapeHead < 0) {
-			int numToInsert = Math.abs(tapeHead);
-			char[] toInsert = new char[numToInsert];
-			for (int i = 0; i < numToInsert; i++) {
-				toInsert[i] = BLANK;
-			}
-			buffer.insert(0, toInsert);
-			tapeHead = 0;
+	/**
+	 * Moves the tape head some number of cells, to the right if the number
+	 * is positive and to the left if it is negative.
+	 * 
+	 * @param offset
+	 *            the number of cells to move the tape head
+	 */
+	public void moveHead(int offset) {
+		if (offset == 0)
+			return;
+		myHead += offset;
+		if (offset == 1)
+			myHeadPower *= BASE;
+		else if (offset == -1)
+			myHeadPower *= INVERSE_BASE;
+		else
+			myHeadPower = power(myHead);
+		ensureCell(myHead);
+	}
+
+	/**
+	 * Makes sure that the array holds a position, growing it at the end where
+	 * the position is, and that the position counts as visited.
+	 */
+	private void ensureCell(int position) {
+		int index = position + myOrigin;
+		if (index < 0 || index >= myCells.length) {
+			int grow = Math.max(myCells.length, Math.max(-index, index
+					- myCells.length + 1));
+			char[] cells = new char[myCells.length + grow];
+			int shift = index < 0 ? grow : 0;
+			Arrays.fill(cells, BLANK);
+			System.arraycopy(myCells, 0, cells, shift, myCells.length);
+			myCells = cells;
+			myShared = false;
+			myOrigin += shift;
+		}
+		myLow = Math.min(myLow, position);
+		myHigh = Math.max(myHigh, position);
+	}
+
+	/**
+	 * Returns <CODE>BASE</CODE> to a power, which may be negative.
+	 */
+	private static long power(int exponent) {
+		long base = exponent < 0 ? INVERSE_BASE : BASE, result = 1;
+		for (long e = Math.abs((long) exponent); e > 0; e >>= 1) {
+			if ((e & 1) != 0)
+				result *= base;
+			base *= base;
 		}
+		return result;
 	}
 
 	/**
@@ -170,7 +305,7 @@ public class Tape implements Serializable {
 	 * @return the contents of the tape as a string
 	 */
 	public String getContents() {
-		return buffer.toString();
+		return new String(myCells, myLow + myOrigin, myHigh - myLow + 1);
 	}
 
 	/**
@@ -183,10 +318,10 @@ public class Tape implements Serializable {
 	 * @return the output of the tape
 	 */
 	public String getOutput() {
-		int nextBlank = buffer.indexOf("" + BLANK, getTapeHead());
-		if (nextBlank == -1)
-			nextBlank = buffer.length();
-		return buffer.substring(getTapeHead(), nextBlank);
+		int start = myHead + myOrigin, end = start, limit = myHigh + myOrigin;
+		while (end <= limit && myCells[end] != BLANK)
+			end++;
+		return new String(myCells, start, end - start);
 	}
 
 	/**
@@ -197,7 +332,7 @@ public class Tape implements Serializable {
 	 *         to.
 	 */
 	public int getTapeHead() {
-		return tapeHead;
+		return myHead - myLow;
 	}
 
 	/**
@@ -206,37 +341,31 @@ public class Tape implements Serializable {
 	 * @return a string representation of the tape object.
 	 */
 	public String toString() {
-		return "[" + buffer.toString() + "]" + " TAPE HEAD AT " + tapeHead;
+		return "[" + getContents() + "]" + " TAPE HEAD AT " + getTapeHead();
 	}
 
 	/**
-	 * Retrieves the "non-trivial" section of the tape. What is meant by
-	 * non-trivial is the section of tape modulo a prefix and suffix of blank
-	 * tape symbols.
+	 * Returns a 64 bit hash of the "non-trivial" section of the tape, the
+	 * section of tape modulo a prefix and suffix of blank tape symbols, and of
+	 * the position of the head in it. Tapes that are equal have the same hash.
+	 * This takes time logarithmic in the distance of the section from where
+	 * the input started, plus the number of blanks erased at the ends of the
+	 * section since it was last found.
 	 * 
-	 * @param section
-	 *            an array of two intergers, which will hold, when finished, the
-	 *            index of the first non-blank character in the first entry, and
-	 *            the index of the first blank character of the suffix. Here,
-	 *            <CODE>section[1]-section[0]</CODE> is the length of the
-	 *            non-trivial section.
+	 * @return the hash of the tape
 	 */
-	private void nonTrivial(int[] section) {
-		int s, e;
-		for (e = buffer.length() - 1; e > 0 && buffer.charAt(e) == BLANK; e--)
-			;
-		if (buffer.charAt(e) != BLANK)
-			e++;
-		for (s = 0; s < e && buffer.charAt(s) == BLANK; s++)
-			;
-		section[0] = s;
-		section[1] = e;
+	public long getContentHash() {
+		if (myNonBlank == 0)
+			return 0;
+		trim();
+		return myHash * power(-myFirst) * BASE + (myHead - myFirst);
 	}
 
 	/**
 	 * Compares two tapes for equality. Two tapes are equal if they contain the
 	 * same characters and are at the same position in the tape, modulo a prefix
-	 * of some blank characters.
+	 * of some blank characters. Tapes of blanks only are equal wherever their
+	 * heads are.
 	 * 
 	 * @param tape
 	 *            the tape to compare against for equality
@@ -246,29 +375,26 @@ public class Tape implements Serializable {
 	public boolean equals(Object tape) {
 		if (tape == this)
 			return true;
-		Tape t;
-		try {
-			t = (Tape) tape;
-		} catch (ClassCastException e) {
+		if (!(tape instanceof Tape))
 			return false;
-		}
-		// These variables are necessary for going into the tape so we
-		// can consider everything other than the "blank" prefix.
-		int[] first = new int[2], second = new int[2];
-		// Do not consider the blank prefixes.
-		this.nonTrivial(first);
-		t.nonTrivial(second);
-		// If they're not the same length, who cares?
-		if (first[1] - first[0] != second[1] - second[0])
+		Tape t = (Tape) tape;
+		if (myNonBlank != t.myNonBlank)
 			return false;
-		// If they're at different positions, who cares?
-		if (tapeHead - first[0] != t.tapeHead - second[0])
+		if (myNonBlank == 0)
+			return true;
+		// Do not consider the blank prefixes or suffixes.
+		trim();
+		t.trim();
+		int length = myLast - myFirst;
+		if (length != t.myLast - t.myFirst
+				|| myHead - myFirst != t.myHead - t.myFirst
+				|| getContentHash() != t.getContentHash())
 			return false;
-		// If all else fails, compare the characters.
-		for (; first[0] < first[1]; first[0]++, second[0]++)
-			if (buffer.charAt(first[0]) != t.buffer.charAt(second[0]))
+		// The hashes agree, so the characters are almost surely equal.
+		int i = myFirst + myOrigin, j = t.myFirst + t.myOrigin;
+		for (int k = 0; k <= length; k++)
+			if (myCells[i + k] != t.myCells[j + k])
 				return false;
-		// We've made it!
 		return true;
 	}
 
@@ -278,21 +404,62 @@ public class Tape implements Serializable {
 	 * @return a hash code for this tape
 	 */
 	public int hashCode() {
-		if (cachedHash != 0xdeadbeef)
-			return cachedHash;
-		int[] bounds = new int[2];
-		this.nonTrivial(bounds);
-		return cachedHash = buffer.substring(bounds[0], bounds[1]).hashCode();
+		long hash = getContentHash();
+		return (int) (hash ^ (hash >>> 32));
 	}
 
-	/** The string buffer. */
-	private StringBuffer buffer = new StringBuffer();
+	/** The cells, with position 0 at the origin. */
+	private char[] myCells;
+
+	/** Whether the cells may be shared with another tape. */
+	private boolean myShared;
 
-	/** The tape head (index in buffer). */
-	private int tapeHead;
+	/** The index in the cells of position 0. */
+	private int myOrigin;
 
-	/** The cached hash code, since it takes a bit to compute. */
-	private int cachedHash = 0xdeadbeef;
+	/** The position of the tape head. */
+	private int myHead;
+
+	/** The leftmost and rightmost positions ever on the tape. */
+	private int myLow, myHigh;
+
+	/**
+	 * Positions at or outside the leftmost and rightmost positions that are
+	 * not blank, if any; they are those positions after {@link #trim}.
+	 */
+	private int myFirst, myLast;
+
+	/** The number of cells that are not blank. */
+	private int myNonBlank;
+
+	/**
+	 * The sum of each character, exclusive or the blank, times
+	 * <CODE>BASE</CODE> to the power of its position.
+	 */
+	private long myHash;
+
+	/** <CODE>BASE</CODE> to the power of the position of the head. */
+	private long myHeadPower;
+
+	/** The base of the hash, which is odd and so has an inverse. */
+	private static final long BASE = 0x9E3779B97F4A7C15L;
+
+	/** The inverse of the base modulo 2<SUP>64</SUP>. */
+	private static final long INVERSE_BASE = inverse(BASE);
+
+	/** The smallest array of cells. */
+	private static final int MINIMUM_CAPACITY = 16;
+
+	/**
+	 * Returns the inverse of an odd number modulo 2<SUP>64</SUP>, by Newton's
+	 * iteration.
+	 */
+	private static long inverse(long odd) {
+		long inverse = odd;
+		for (int i = 0; i < 5; i++)
+			inverse *= 2 - odd * inverse;
+		return inverse;
+	}
 
 	/** The blank tape symbol. */
 	public static final char BLANK = '\u25A1';
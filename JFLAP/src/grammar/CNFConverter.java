@@ -58,7 +58,7 @@ public class CNFConverter {
 	 * @throws IllegalArgumentException
 	 *             if the string has anything that interferes with productions
 	 */
-	public LinkedList<? extends Symbol> separateString(String string) {
+	public SymbolString separateString(String string) {
 		return SymbolString.createFromString(string, grammar);
 	}
 
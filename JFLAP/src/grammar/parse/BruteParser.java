@@ -22,9 +22,14 @@ package grammar.parse;
 
 import grammar.Grammar;
 import grammar.Production;
+import gui.environment.Profile;
+import gui.environment.Universe;
 import gui.errors.BooleanWrapper;
 
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import JFLAPnew.formaldef.symbols.Symbol;
 import JFLAPnew.formaldef.symbols.SymbolString;
@@ -33,6 +38,12 @@ import JFLAPnew.formaldef.symbols.terminal.Terminal;
 /**
  * The <CODE>BruteParser</CODE> is an abstract class that will perform a brute
  * force parse of a grammar.
+ * <P>
+ * The parse runs on threads of its own. A parser whose {@link #parse} may be
+ * called by several threads at once says so through {@link #isParallel},
+ * and then runs on as many threads as {@link #setThreads} asks, by default
+ * one for each processor. While the parse runs, listeners hear of its
+ * progress now and then, not on every step.
  * 
  * @author Thomas Finley
  */
@@ -55,7 +66,7 @@ public abstract class BruteParser {
 
 	/**
 	 * This factory method will return a brute force parser appropriate for the
-	 * grammar.
+	 * grammar, with the limits the current profile sets.
 	 * 
 	 * @param grammar
 	 *            the grammar to get a brute force parser for
@@ -63,9 +74,20 @@ public abstract class BruteParser {
 	 *            the target string
 	 */
 	public static BruteParser get(Grammar grammar, String target) {
-		if (Unrestricted.isUnrestricted(grammar))
-			return new UnrestrictedBruteParser(grammar, target);
-		return new RestrictedBruteParser(grammar, target);
+		Profile profile = Universe.curProfile;
+		BruteParser parser;
+		if (Unrestricted.isUnrestricted(grammar)) {
+			UnrestrictedBruteParser unrestricted = new UnrestrictedBruteParser(
+					grammar, target);
+			unrestricted.setNodeBudget(profile.brute_node_budget);
+			unrestricted.setTimeBudget(1000L * profile.brute_time_budget);
+			parser = unrestricted;
+		} else
+			parser = new ContextFreeBruteParser(grammar, SymbolString
+					.createFromString(target, grammar));
+		if (profile.brute_threads > 0)
+			parser.setThreads(profile.brute_threads);
+		return parser;
 	}
 
 	/**
@@ -83,8 +105,8 @@ public abstract class BruteParser {
 		if (grammar == null)
 			return new BooleanWrapper(false, "This grammar accepts no language.");
 		queue.add(new ParseNode(new SymbolString(grammar.getStartVariable()), P, S));
-		consideredNodes = 0;
-		deletedNodes = 0;
+		consideredNodes.reset();
+		deletedNodes.reset();
 
 		smaller = Collections.unmodifiableSet(Unrestricted
 				.smallerSymbols(grammar));
@@ -107,26 +129,75 @@ public abstract class BruteParser {
 	public synchronized boolean start() {
 		if (isActive() || isFinished())
 			return false;
-		parseThread = new Thread() {
-			public void run() {
-				while (parseThread != null)
-					parse();
-			}
-		};
-		parseThread.start();
+		final Thread[] threads = new Thread[isParallel() ? this.threads : 1];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread("Brute parser") {
+				public void run() {
+					try {
+						while (parseThreads == threads) {
+							parse();
+							progress();
+						}
+					} catch (Throwable e) {
+						// The parse cannot go on. Ending it stops the other
+						// threads and tells the listeners, rather than leave
+						// it seeming to run with no thread left.
+						finish(null);
+					}
+				}
+			};
+			threads[i].setDaemon(true);
+		}
+		parseThreads = threads;
+		for (int i = 0; i < threads.length; i++)
+			threads[i].start();
 		distributeEvent(new BruteParserEvent(this, BruteParserEvent.START));
 		return true;
 	}
 
 	/**
-	 * This will pause the parsing. At the end of this method the parsing thread
-	 * will probably not halt.
+	 * This will pause the parsing. At the end of this method the parsing
+	 * threads will probably not halt.
 	 */
 	public synchronized void pause() {
-		parseThread = null;
+		parseThreads = null;
 		distributeEvent(new BruteParserEvent(this, BruteParserEvent.PAUSE));
 	}
 
+	/**
+	 * Returns if {@link #parse} may be called by several threads at once, so
+	 * that the parse can run on more than one. By default it may not.
+	 * 
+	 * @return <CODE>true</CODE> if the parse can run on several threads
+	 */
+	protected boolean isParallel() {
+		return false;
+	}
+
+	/**
+	 * Sets the number of threads the parse runs on, if it can run on more
+	 * than one. This takes effect the next time the parse is started or
+	 * resumed.
+	 * 
+	 * @param threads
+	 *            the number of threads
+	 */
+	public synchronized void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Distributes a progress event, unless one was distributed recently.
+	 * When several threads call this at once, only one event goes out.
+	 */
+	private void progress() {
+		long now = System.nanoTime(), last = lastProgress.get();
+		if (now - last < PROGRESS_INTERVAL || isDone
+				|| !lastProgress.compareAndSet(last, now))
+			return;
+		distributeEvent(new BruteParserEvent(this, BruteParserEvent.PROGRESS));
+	}
+
 	/**
 	 * Returns if the parser is currently in the process of parsing.
 	 * 
@@ -134,7 +205,7 @@ public abstract class BruteParser {
 	 *         <CODE>false</CODE> if the parser thread is inactive
 	 */
 	public synchronized boolean isActive() {
-		return parseThread != null;
+		return parseThreads != null;
 	}
 
 	/**
@@ -198,7 +269,7 @@ public abstract class BruteParser {
 					if (alreadyEncountered.add(a)) {
 						node = new ParseNode(a, p, newS);
 						possibilities.add(node);
-						beingConsideredNodes++;
+						beingConsideredNodes.increment();
 					}
 				} else {
 					Production[] newP = new Production[p.length + 1];
@@ -213,7 +284,7 @@ public abstract class BruteParser {
 					if (alreadyEncountered.add(a)) {
 						node = new ParseNode(a, newP, newS);
 						possibilities.add(node);
-						beingConsideredNodes++;
+						beingConsideredNodes.increment();
 					}
 				}
 			}
@@ -243,7 +314,7 @@ public abstract class BruteParser {
 		try {
 			while (node.isLeaf()) {
 				((ParseNode) node.getParent()).remove(node);
-				deletedNodes++;
+				deletedNodes.increment();
 				node = (ParseNode) node.getParent();
 			}
 		} catch (NullPointerException e) {
@@ -257,7 +328,7 @@ public abstract class BruteParser {
 	 * @return number of nodes in the tree whose paths have not been ruled out
 	 */
 	public int getCurrentNodeCount() {
-		return consideredNodes - deletedNodes;
+		return (int) (consideredNodes.sum() - deletedNodes.sum());
 	}
 
 	/**
@@ -267,7 +338,7 @@ public abstract class BruteParser {
 	 *         by now
 	 */
 	public int getTotalNodeCount() {
-		return consideredNodes;
+		return consideredNodes.intValue();
 	}
 
 	/**
@@ -275,7 +346,7 @@ public abstract class BruteParser {
 	 * nodes have not yet been added.
 	 */
 	public int getConsiderationNodeCount() {
-		return beingConsideredNodes;
+		return beingConsideredNodes.intValue();
 	}
 
 	/**
@@ -293,20 +364,53 @@ public abstract class BruteParser {
 	}
 
 	/**
-	 * The parsing method.
+	 * Ends the parse, and tells the listeners. Only the first call has any
+	 * effect, so that each thread of a parse may call this when it sees the
+	 * parse is over.
+	 * 
+	 * @param node
+	 *            the answer node, or <CODE>null</CODE> if the target cannot
+	 *            be derived
+	 */
+	protected synchronized void finish(ParseNode node) {
+		finish(node != null, node);
+	}
+
+	/**
+	 * Ends the parse, and tells the listeners. A parser that accepts without
+	 * an answer node must build one in {@link #getAnswer} when asked.
+	 * 
+	 * @param accepted
+	 *            if the target can be derived
+	 * @param node
+	 *            the answer node, or <CODE>null</CODE> if there is none yet
 	 */
-	private synchronized void parse() {
+	protected synchronized void finish(boolean accepted, ParseNode node) {
+		if (isDone)
+			return;
+		answer = node;
+		isDone = true;
+		parseThreads = null;
+		queue.clear();
+		distributeEvent(new BruteParserEvent(this,
+				accepted ? BruteParserEvent.ACCEPT : BruteParserEvent.REJECT));
+	}
+
+	/**
+	 * The parsing method. This is called by the parsing thread over and over
+	 * until the parse is finished or paused, and does one step of the parse
+	 * each time.
+	 */
+	protected synchronized void parse() {
 		if (queue.isEmpty()) {
-			isDone = true;
-			parseThread = null;
-			distributeEvent(new BruteParserEvent(this, BruteParserEvent.REJECT));
+			finish(null);
 			return;
 		}
 		// Get one element.
 		ParseNode node = (ParseNode) queue.removeFirst();
-		beingConsideredNodes = 0;
+		beingConsideredNodes.reset();
 		List pos = getPossibilities(node.getDerivation());
-		beingConsideredNodes = 0;
+		beingConsideredNodes.reset();
 		Iterator it = pos.iterator();
 		while (it.hasNext()) {
 			ParseNode pNode = (ParseNode) it.next();
@@ -317,15 +421,10 @@ public abstract class BruteParser {
 			pNode = new ParseNode(pNode);
 			node.add(pNode);
 			queue.add(pNode);
-			consideredNodes++;
+			consideredNodes.increment();
 
 			if (pNode.getDerivation().equals(target)) {
-				answer = pNode;
-				isDone = true;
-				parseThread = null;
-				queue.clear();
-				distributeEvent(new BruteParserEvent(this,
-						BruteParserEvent.ACCEPT));
+				finish(pNode);
 				return;
 			}
 		}
@@ -366,8 +465,11 @@ public abstract class BruteParser {
 			it.next().bruteParserStateChange(event);
 	}
 
-	/** The set of listeners. */
-	protected Set<BruteParserListener> listeners = new HashSet<BruteParserListener>();
+	/**
+	 * The set of listeners, which events may be distributed to from any
+	 * thread of the parse.
+	 */
+	protected Set<BruteParserListener> listeners = new CopyOnWriteArraySet<BruteParserListener>();
 
 	/** This is the grammar. */
 	protected Grammar grammar;
@@ -379,13 +481,22 @@ public abstract class BruteParser {
 	protected SymbolString target;
 
 	/** This should be set to done when the operation has completed. */
-	private boolean isDone = false;
+	private volatile boolean isDone = false;
 
 	/**
-	 * This is the thread that does the parsing; if the value is <CODE>null</CODE>
-	 * that indicates that no parsing thread exists yet.
+	 * These are the threads that do the parsing; if the value is <CODE>null</CODE>
+	 * that indicates that no parsing threads are running.
 	 */
-	private Thread parseThread = null;
+	private volatile Thread[] parseThreads = null;
+
+	/** The number of threads to parse on, if the parse can use several. */
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	/** The least time between progress events, in nanoseconds. */
+	private static final long PROGRESS_INTERVAL = 50000000L;
+
+	/** The time of the last progress event. */
+	private final AtomicLong lastProgress = new AtomicLong(System.nanoTime());
 
 	/** This set holds those strings already added to the tree. */
 	private Set<SymbolString> alreadyAdded = new HashSet<SymbolString>();
@@ -400,13 +511,13 @@ public abstract class BruteParser {
 	protected LinkedList<ParseNode> queue = new LinkedList<ParseNode>();
 
 	/** The number of explored nodes. */
-	private int consideredNodes = 0;
+	private final LongAdder consideredNodes = new LongAdder();
 
 	/** The number of unexplored but perhaps soon to be explored nodes. */
-	private int beingConsideredNodes = 0;
+	private final LongAdder beingConsideredNodes = new LongAdder();
 
 	/** The number of deleted nodes. */
-	private int deletedNodes = 0;
+	private final LongAdder deletedNodes = new LongAdder();
 
 	/** The "answer" to the parse question. */
 	private ParseNode answer = null;
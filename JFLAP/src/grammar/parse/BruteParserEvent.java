@@ -24,7 +24,8 @@ import java.util.EventObject;
 
 /**
  * This is an event that is thrown from a brute parser whenever it starts,
- * pauses, accepts, or rejects a string.
+ * pauses, accepts, or rejects a string, and now and then while it runs to
+ * report its progress.
  * 
  * @see grammar.parse.BruteParser#addBruteParserListener
  * 
@@ -91,6 +92,17 @@ public class BruteParserEvent extends EventObject {
 		return type == REJECT;
 	}
 
+	/**
+	 * Returns true if this event only reports that the parser is still
+	 * running. Such events come at most every so often, however many
+	 * threads the parser runs on.
+	 * 
+	 * @return if this event is of type progress
+	 */
+	public boolean isProgress() {
+		return type == PROGRESS;
+	}
+
 	/**
 	 * Returns the type of event this is.
 	 */
@@ -102,5 +114,6 @@ public class BruteParserEvent extends EventObject {
 	private int type;
 
 	/** The type of events. */
-	public static final int START = 0, PAUSE = 1, ACCEPT = 2, REJECT = 3;
+	public static final int START = 0, PAUSE = 1, ACCEPT = 2, REJECT = 3,
+			PROGRESS = 4;
 }
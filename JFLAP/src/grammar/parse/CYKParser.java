@@ -1,7 +1,7 @@
 /*
  *  JFLAP - Formal Languages and Automata Package
- * 
- * 
+ *
+ *
  *  Susan H. Rodger
  *  Computer Science Department
  *  Duke University
@@ -17,292 +17,439 @@
 
 
 
+
 package grammar.parse;
 
 import grammar.Grammar;
 import grammar.Production;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import JFLAPnew.formaldef.symbols.Symbol;
 import JFLAPnew.formaldef.symbols.SymbolString;
 import JFLAPnew.formaldef.symbols.variable.Variable;
 
 /**
- * CYK Parser 
+ * CYK Parser
  * It parses grammar that is in CNF form and returns whether the String is accepted by language or not.
- * 
+ * <P>
+ * The grammar is compiled into numbered variables, with the productions
+ * <I>A</I>&rarr;<I>BC</I> indexed by <I>B</I> and <I>C</I> to the set of
+ * every such <I>A</I>. The chart holds a bit set of variables for each
+ * substring, all in one <CODE>long</CODE> array, so filling a cell is a
+ * matter of and-ing and or-ing words. Each cell is kept twice, once in rows
+ * by where its substring starts and once by where it ends, so the cells a
+ * cell is made from are read in order. The cells for substrings of one
+ * length do not depend on each other, and are filled in parallel when there
+ * are enough of them.
+ * <P>
+ * The compiled grammar is not changed by parsing, so one parser may be used
+ * by many threads with {@link #solveAll}; {@link #solve} and
+ * {@link #getTrace} keep the chart of the last string, and are for one
+ * thread.
+ *
  * @author Kyung Min (Jason) Lee
  *
  */
 
 public class CYKParser {
-	
-	/** Production array that will contain all the productions of grammar */ 
-	private Production[] myProductions;
-
-	/** Start variable of the grammar */
-	private static Variable START_VARIABLE;
-	
-	/** Length of the input String */
-	private int myTargetLength;
-	
-	/** Productions that leads to the answer */
-	private ArrayList <Production> myAnswerProductions;
-	
-	/** Map to store the result of subparts */
-	private HashMap <String, HashSet<SymbolString>> myMap;
-	
-	/** Input string that CYK is trying to parse */
-	private SymbolString myTarget;
-	
-	private OrderCorrectly myOrderComparator;
+
 	/**
 	 * Constructor for CYK Parser
 	 * @param grammar Grammar that is going to be used in CYK Parsing (It has to be in CNF Form)
 	 */
 	public CYKParser(Grammar grammar)
 	{
-		myProductions=grammar.getProductions();
-		START_VARIABLE=grammar.getStartVariable();
-	//	System.out.println("GRAMMAR = "+Arrays.asList(grammar.getProductions()));
-	}
-	
-	/**
-	 * Check whether the grammar accepts the string or not 
-	 * using DP
-	 */
-	public boolean solve(SymbolString target)
-	{
-		myMap=new HashMap <String, HashSet<String>>();
-		int targetLength=target.size();
-		myTargetLength=targetLength;
-		myTarget=target;
-		
-		if (target.equals(""))
-			return false;
-		
-		for (int i=0; i<targetLength; i++)
-		{
-			SymbolString a=target.subList(i,i+1);
-			HashSet<SymbolString> temp=new HashSet <SymbolString>();
-			int count=0;
+		Production[] productions=grammar.getProductions();
+		myStart=grammar.getStartVariable()==null ? -1 : number(grammar.getStartVariable());
+		for (int i=0; i<productions.length; i++)
+			number(productions[i].getLHS().getFirst());
+		myVariableCount=myVariables.size();
+		myWords=Math.max(1, (myVariableCount+63)/64);
 
-			for (int j=0; j<myProductions.length; j++)
+		// Index the productions A->a by terminal and A->BC by B and C.
+		Map<Symbol, long[]> terminals=new HashMap<Symbol, long[]>();
+		List<Map<Integer, long[]>> binary=new ArrayList<Map<Integer, long[]>>();
+		for (int v=0; v<myVariableCount; v++)
+			binary.add(new TreeMap<Integer, long[]>());
+		for (int i=0; i<productions.length; i++)
+		{
+			int a=myNumbers.get(productions[i].getLHS().getFirst());
+			SymbolString rhs=productions[i].getRHS();
+			if (rhs.size()==0 && a==myStart)
+				myDerivesEmpty=productions[i];
+			else if (rhs.size()==1 && !(rhs.get(0) instanceof Variable))
 			{
-				if (myProductions[j].getRHS().equals(a))
-				{
-					count++;
-					temp.add(myProductions[j].getLHS());
-				}
+				long[] mask=terminals.get(rhs.get(0));
+				if (mask==null)
+					terminals.put(rhs.get(0), mask=new long[myWords]);
+				mask[a>>>6]|=1L<<a;
+				myTerminalProductions.put(key(a, rhs.get(0)), productions[i]);
 			}
-			String key=i+","+i;
-			myMap.put(key, temp);
-			if (count==0)
+			else if (rhs.size()==2 && rhs.get(0) instanceof Variable
+					&& rhs.get(1) instanceof Variable
+					&& myNumbers.containsKey(rhs.get(0))
+					&& myNumbers.containsKey(rhs.get(1)))
 			{
-				return false;
+				int b=myNumbers.get(rhs.get(0)), c=myNumbers.get(rhs.get(1));
+				long[] mask=binary.get(b).get(c);
+				if (mask==null)
+					binary.get(b).put(c, mask=new long[myWords]);
+				mask[a>>>6]|=1L<<a;
+				myBinaryProductions.put(key(a, b, c), productions[i]);
 			}
-			count=0;
-				
+			// Anything else is not in CNF, and is ignored.
 		}
-		//System.out.println(myMap);
-		
-		int increment=1;
-		for (int i=0; i<targetLength; i++)
+		myTerminals=terminals;
+		myRightOf=new int[myVariableCount][];
+		myMasks=new long[myVariableCount][];
+		for (int b=0; b<myVariableCount; b++)
 		{
-			for (int j=0; j<targetLength; j++)
+			Map<Integer, long[]> byC=binary.get(b);
+			myRightOf[b]=new int[byC.size()];
+			myMasks[b]=new long[byC.size()*myWords];
+			int j=0;
+			for (Map.Entry<Integer, long[]> entry : byC.entrySet())
 			{
-				if (targetLength<=j+increment)
-					break;
-				int k=j+increment;
-				checkProductions(j,k);
-				
-			//	System.out.print(myMap.get(j+","+k));
+				myRightOf[b][j]=entry.getKey();
+				System.arraycopy(entry.getValue(), 0, myMasks[b], j*myWords, myWords);
+				j++;
 			}
-			//System.out.println();
-			increment++;
 		}
-		
-		if (increment==2)
+	}
+
+	/**
+	 * Returns the number of a variable, giving it one if it has none.
+	 */
+	private int number(Symbol variable)
+	{
+		Integer n=myNumbers.get(variable);
+		if (n!=null)
+			return n;
+		myNumbers.put(variable, myVariables.size());
+		myVariables.add(variable);
+		return myVariables.size()-1;
+	}
+
+	/**
+	 * Returns the key of a production <I>A</I>&rarr;<I>a</I>.
+	 */
+	private static List<Object> key(int a, Symbol terminal)
+	{
+		return Arrays.<Object>asList(a, terminal);
+	}
+
+	/**
+	 * Returns the key of a production <I>A</I>&rarr;<I>BC</I>.
+	 */
+	private long key(int a, int b, int c)
+	{
+		return ((long) a*myVariableCount+b)*myVariableCount+c;
+	}
+
+	/**
+	 * Check whether the grammar accepts the string or not
+	 * using DP
+	 */
+	public boolean solve(SymbolString target)
+	{
+		myTarget=target;
+		myChart=fill(target);
+		return accepts(myChart, target.size());
+	}
+
+	/**
+	 * Checks whether the grammar accepts each of many strings, with the
+	 * strings parsed in parallel. This does not change the string or the
+	 * trace of {@link #solve}.
+	 *
+	 * @param targets the strings to parse
+	 * @return whether each string is accepted
+	 */
+	public boolean[] solveAll(final SymbolString[] targets)
+	{
+		final boolean[] results=new boolean[targets.length];
+		ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+			protected void compute() {
+				solveAll(targets, results, 0, targets.length);
+			}
+		});
+		return results;
+	}
+
+	/**
+	 * Parses a range of strings, splitting the range in parallel.
+	 */
+	private void solveAll(final SymbolString[] targets, final boolean[] results, final int from, final int to)
+	{
+		if (to-from==0)
+			return;
+		if (to-from==1)
 		{
-			return myMap.get("0,"+(targetLength-1)).contains(START_VARIABLE);
+			results[from]=accepts(fill(targets[from]), targets[from].size());
+			return;
 		}
+		final int mid=(from+to)>>>1;
+		RecursiveAction.invokeAll(new RecursiveAction() {
+			protected void compute() {
+				solveAll(targets, results, from, mid);
+			}
+		}, new RecursiveAction() {
+			protected void compute() {
+				solveAll(targets, results, mid, to);
+			}
+		});
+	}
 
-		if (myMap.get("0,"+(targetLength-1)).contains(START_VARIABLE))
-			return true;
-		else
+	/**
+	 * Returns if the chart of a string has the start variable for the whole
+	 * string.
+	 */
+	private boolean accepts(long[] chart, int length)
+	{
+		if (length==0)
+			return myDerivesEmpty!=null;
+		if (chart==null || myStart<0)
 			return false;
-	
+		return (chart[byStart(length, 0, length-1)+(myStart>>>6)] & 1L<<myStart)!=0;
+	}
+
+	/**
+	 * Returns the index of the cell for the substring from its first to its
+	 * last position, in the rows by start, for a string of length <CODE>n</CODE>.
+	 */
+	private int byStart(int n, int first, int last)
+	{
+		return (first*n+last)*myWords;
+	}
+
+	/**
+	 * Returns the index of the cell for the substring from its first to its
+	 * last position, in the rows by end, for a string of length <CODE>n</CODE>.
+	 */
+	private int byEnd(int n, int first, int last)
+	{
+		return (n*n+last*n+first)*myWords;
 	}
-	
+
 	/**
-	 * Helper method of solve method that checks the surrounding production
-	 * @param x
-	 * @param y
+	 * Fills the chart for a string.
+	 *
+	 * @return the chart, or <CODE>null</CODE> if some terminal of the string
+	 * is derived by no variable
 	 */
-	private void checkProductions(int x,int y)
+	private long[] fill(SymbolString target)
 	{
-		HashSet <String> tempSet=new HashSet <String>();
-		
-		for (int i=0; i<myProductions.length; i++)
+		final int n=target.size();
+		if (n==0)
+			return null;
+		final long[] chart=new long[2*n*n*myWords];
+		for (int i=0; i<n; i++)
 		{
-			for (int k=x; k<y; k++)
+			long[] mask=myTerminals.get(target.get(i));
+			if (mask==null)
+				return null;
+			System.arraycopy(mask, 0, chart, byStart(n, i, i), myWords);
+			System.arraycopy(mask, 0, chart, byEnd(n, i, i), myWords);
+		}
+		for (int length=2; length<=n; length++)
+		{
+			int cells=n-length+1;
+			if ((long) cells*(length-1)<PARALLEL_WORK)
+				fill(chart, n, length, 0, cells);
+			else
+				ForkJoinPool.commonPool().invoke(new Diagonal(chart, n, length, 0, cells));
+		}
+		return chart;
+	}
+
+	/**
+	 * Fills the cells of a length for a range of starting positions.
+	 */
+	private void fill(long[] chart, int n, int length, int from, int to)
+	{
+		int words=myWords;
+		for (int i=from; i<to; i++)
+		{
+			int last=i+length-1;
+			int result=byStart(n, i, last);
+			// The left parts start at i, and the right parts end at last.
+			int left=byStart(n, i, i), right=byEnd(n, i+1, last);
+			if (words==1)
 			{
-				String key1=x+","+k;
-				String key2=(k+1)+","+y;
-				for (String A : myMap.get(key1))
+				// With no more than 64 variables a cell is one word.
+				long cell=0;
+				for (int k=1; k<length; k++, left++, right++)
 				{
-					for (String B : myMap.get(key2))
+					long rightCell=chart[right];
+					if (rightCell==0)
+						continue;
+					for (long bits=chart[left]; bits!=0; bits&=bits-1)
+					{
+						int b=Long.numberOfTrailingZeros(bits);
+						int[] rightOf=myRightOf[b];
+						long[] masks=myMasks[b];
+						for (int j=0; j<rightOf.length; j++)
+							if ((rightCell & 1L<<rightOf[j])!=0)
+								cell|=masks[j];
+					}
+				}
+				chart[result]=cell;
+				chart[byEnd(n, i, last)]=cell;
+				continue;
+			}
+			for (int k=1; k<length; k++, left+=words, right+=words)
+			{
+				for (int w=0; w<words; w++)
+					for (long bits=chart[left+w]; bits!=0; bits&=bits-1)
 					{
-						String target=A+B;
-						if (myProductions[i].getRHS().equals(target))
+						int b=w<<6 | Long.numberOfTrailingZeros(bits);
+						int[] rightOf=myRightOf[b];
+						long[] masks=myMasks[b];
+						for (int j=0; j<rightOf.length; j++)
 						{
-							HashSet <String> temp2Set=new HashSet <String>();
-							tempSet.add(myProductions[i].getLHS());
-							temp2Set.add("0"+A+"/"+key1);
-							temp2Set.add("1"+B+"/"+key2);
-
-							String tempKey=x+","+y+myProductions[i].getLHS();
-							if (myMap.get(tempKey)!=null)
-								temp2Set.addAll(myMap.get(tempKey));
-
-							myMap.put(tempKey, temp2Set);
+							int c=rightOf[j];
+							if ((chart[right+(c>>>6)] & 1L<<c)!=0)
+								for (int x=0; x<words; x++)
+									chart[result+x]|=masks[j*words+x];
 						}
 					}
-				}
 			}
+			System.arraycopy(chart, result, chart, byEnd(n, i, last), words);
 		}
-		String key=x+","+y;
-		myMap.put(key, tempSet);
 	}
-	
+
 	/**
-	 * Method for getting the trace of how the parser achieved the target String
-	 * @return ArrayList of Productions that was applied to attain target String
+	 * Fills the cells of one length, splitting the positions in parallel.
 	 */
-	public ArrayList <Production> getTrace()
+	private class Diagonal extends RecursiveAction
 	{
-		myAnswerProductions=new ArrayList <Production>();
-		myOrderComparator=new OrderCorrectly();
-		
-	//	System.out.println("WHOLE MAP = "+myMap);
-		
-		getMoreProductions(START_VARIABLE, "0,"+(myTargetLength-1));
-		
-	//	System.out.println(myAnswerProductions);
-		
-		return myAnswerProductions;
+		public Diagonal(long[] chart, int n, int length, int from, int to)
+		{
+			myChartCells=chart;
+			myLength=n;
+			myCellLength=length;
+			myFrom=from;
+			myTo=to;
+		}
+
+		protected void compute()
+		{
+			if (myTo-myFrom<=1 || (long) (myTo-myFrom)*(myCellLength-1)<PARALLEL_WORK)
+			{
+				fill(myChartCells, myLength, myCellLength, myFrom, myTo);
+				return;
+			}
+			int mid=(myFrom+myTo)>>>1;
+			invokeAll(new Diagonal(myChartCells, myLength, myCellLength, myFrom, mid),
+					new Diagonal(myChartCells, myLength, myCellLength, mid, myTo));
+		}
+
+		private long[] myChartCells;
+
+		private int myLength, myCellLength, myFrom, myTo;
 	}
-	
+
 	/**
-	 * Helper method of getTrace method which recursively backtracks how Parser achieved the target String
-	 * @param variable Variable that we are chekcing
-	 * @param location Location of the variable
+	 * Method for getting the trace of how the parser achieved the target String
+	 * @return ArrayList of Productions that was applied to attain target String
 	 */
-	private void getMoreProductions(String variable, String location)
+	public ArrayList <Production> getTrace()
 	{
-	//	//System.out.println("WHOLE MAP = "+myMap);
-		if (myMap.get(location+variable)==null)
+		ArrayList<Production> trace=new ArrayList<Production>();
+		int n=myTarget.size();
+		if (n==0)
 		{
-		//	//System.out.println("Location inside = "+location);
-		//	//System.out.println("Variable inside = "+variable);
-			int loc=Integer.parseInt(location.substring(0,location.indexOf(",")));
-			myAnswerProductions.add(new Production(variable, myTarget.substring(loc,loc+1)));
-			return;
-			
+			if (myDerivesEmpty!=null)
+				trace.add(myDerivesEmpty);
+			return trace;
 		}
-		
-	/*	//System.out.println("Map = "+myMap.get(location+variable));
-		//System.out.println("Location = "+location);
-		//System.out.println("Variable = "+variable);*/
-		
-		ArrayList <String> optionsA=new ArrayList <String>();
-		ArrayList <String> optionsB=new ArrayList <String>();
-		
-		String[] A=new String[2];
-		String[] B=new String[2];
-		for (String var : myMap.get(location+variable))
+		if (!accepts(myChart, n))
+			return trace;
+		// Each entry is a variable, the start and the length of its
+		// substring; the left child is pushed last, so the trace is a
+		// leftmost derivation.
+		int[] stack=new int[3*(n+1)];
+		int size=0;
+		stack[size++]=myStart;
+		stack[size++]=0;
+		stack[size++]=n;
+		while (size>0)
 		{
-			if (var.startsWith("0"))
-				optionsA.add(var);
-			else
-				optionsB.add(var);
-		}
-		Collections.sort(optionsA, myOrderComparator);
-		Collections.sort(optionsB, myOrderComparator);
-		
-	//	//System.out.println("AAA = "+optionsA);
-	//	//System.out.println("BBB = "+optionsB);
-		
-	
-		
-		boolean isDone=false;
-		for (int i=0; i<optionsA.size(); i++)
-		{
-			int index=optionsA.get(i).indexOf("/");
-			String a=optionsA.get(i).substring(1, index);
-			String locA=optionsA.get(i).substring(index+1);
-			
-			for (int j=0; j<optionsB.size(); j++)
+			int length=stack[--size], start=stack[--size], a=stack[--size];
+			if (length==1)
+			{
+				trace.add(myTerminalProductions.get(key(a, myTarget.get(start))));
+				continue;
+			}
+			// The chart has a, so some split and production derive it.
+			search:
+			for (int k=1; k<length; k++)
 			{
-				index=optionsB.get(i).indexOf("/");
-				String b=optionsB.get(i).substring(1, index);
-				String locB=optionsB.get(i).substring(index+1);
-				
-				Production p=new Production(variable, a+b);
-				for (int k=0; k<myProductions.length; k++)
+				int left=byStart(n, start, start+k-1), right=byStart(n, start+k, start+length-1);
+				for (int b=0; b<myVariableCount; b++)
 				{
-					if (myProductions[k].getLHS().equals(p.getLHS()) &&
-							myProductions[k].getRHS().equals(p.getRHS()))
+					if ((myChart[left+(b>>>6)] & 1L<<b)==0)
+						continue;
+					for (int j=0; j<myRightOf[b].length; j++)
 					{
-						A[0]=a;
-						A[1]=locA;
-						B[0]=b;
-						B[1]=locB;
-						isDone=true;
-						break;
+						int c=myRightOf[b][j];
+						if ((myChart[right+(c>>>6)] & 1L<<c)==0
+								|| (myMasks[b][j*myWords+(a>>>6)] & 1L<<a)==0)
+							continue;
+						trace.add(myBinaryProductions.get(key(a, b, c)));
+						stack[size++]=c;
+						stack[size++]=start+k;
+						stack[size++]=length-k;
+						stack[size++]=b;
+						stack[size++]=start;
+						stack[size++]=k;
+						break search;
 					}
 				}
-				if (isDone)
-					break;
 			}
-			if (isDone)
-				break;
 		}
-		
-	//	//System.out.println("Selected = "+A[0]+" at "+A[1]);
-	//	//System.out.println("Selected = "+B[0]+" at "+B[1]);
-		
-		myAnswerProductions.add(new Production(variable, A[0]+B[0]));
-		getMoreProductions(A[0],A[1]);
-		getMoreProductions(B[0],B[1]);
-		
+		return trace;
 	}
-}
 
-final class OrderCorrectly implements Comparator
-{
-	public int compare(Object o1, Object o2) {
-		String str1=(String) o1;
-		String str2=(String) o2;
-		int index1=str1.indexOf("/");
-		String loc1=str1.substring(index1+1);
-		int index1_1=loc1.indexOf(",");
-		int lc1_1=Integer.parseInt(loc1.substring(0,index1_1));
-		int lc1_2=Integer.parseInt(loc1.substring(index1_1+1));
-	
-		int index2=str2.indexOf("/");
-		String loc2=str2.substring(index2+1);
-		int index2_1=loc2.indexOf(",");
-		int lc2_1=Integer.parseInt(loc2.substring(0,index2_1));
-		int lc2_2=Integer.parseInt(loc2.substring(index2_1+1));
-		
-		if (lc1_1==lc2_1)
-		{
-			return lc1_2-lc2_2;
-		}
-		
-		return lc1_1-lc2_1;
-	}
-	
-}
\ No newline at end of file
+	/** The least number of cell and split pairs worth filling in parallel. */
+	private static final int PARALLEL_WORK=4096;
+
+	/** The variables by number, and the number of each. */
+	private ArrayList<Symbol> myVariables=new ArrayList<Symbol>();
+
+	private Map<Symbol, Integer> myNumbers=new HashMap<Symbol, Integer>();
+
+	/** The number of variables, and of words in a bit set of them. */
+	private int myVariableCount, myWords;
+
+	/** The number of the start variable. */
+	private int myStart;
+
+	/** The start variable's lambda production, or <CODE>null</CODE>. */
+	private Production myDerivesEmpty=null;
+
+	/** The variables that derive each terminal. */
+	private Map<Symbol, long[]> myTerminals;
+
+	/**
+	 * For each <I>B</I>, every <I>C</I> with a production <I>A</I>&rarr;<I>BC</I>,
+	 * in order, and the set of such <I>A</I> for each.
+	 */
+	private int[][] myRightOf;
+
+	private long[][] myMasks;
+
+	/** The productions, by their variables and terminal. */
+	private Map<List<Object>, Production> myTerminalProductions=new HashMap<List<Object>, Production>();
+
+	private Map<Long, Production> myBinaryProductions=new HashMap<Long, Production>();
+
+	/** Input string that CYK is trying to parse */
+	private SymbolString myTarget;
+
+	/** The chart of the last string solved, or <CODE>null</CODE>. */
+	private long[] myChart;
+}
@@ -0,0 +1,104 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package grammar.parse;
+
+import grammar.Grammar;
+import JFLAPnew.formaldef.symbols.SymbolString;
+
+/**
+ * This is the brute parser for a context free grammar. Rather than searching
+ * derivations, it parses the target with an {@link EarleyParser} in one step,
+ * and answers with a leftmost derivation, which is built the first time it is
+ * asked for.
+ */
+
+public class ContextFreeBruteParser extends BruteParser {
+	/**
+	 * Creates a new context free brute parser.
+	 * 
+	 * @param grammar
+	 *            the context free grammar to parse
+	 * @param target
+	 *            the target string
+	 */
+	public ContextFreeBruteParser(Grammar grammar, SymbolString target) {
+		super(grammar, target);
+	}
+
+	/**
+	 * Parses the target.
+	 */
+	protected synchronized void parse() {
+		// The grammar is left unset if it derives nothing, or the target is
+		// not all terminals.
+		if (grammar == null) {
+			finish(null);
+			return;
+		}
+		parser = new EarleyParser(grammar);
+		finish(parser.parse(target), null);
+	}
+
+	/**
+	 * Returns a leftmost derivation of the target, building it from the
+	 * chart on the first call.
+	 * 
+	 * @return the answer node for the parse, or <CODE>null</CODE> if the
+	 *         target cannot be derived, or the parse is not finished
+	 */
+	public synchronized ParseNode getAnswer() {
+		if (answer == null && isFinished() && parser != null)
+			answer = parser.getAnswer();
+		return answer;
+	}
+
+	/**
+	 * Returns the shared packed parse forest of all derivations of the
+	 * target.
+	 * 
+	 * @return the forest, or <CODE>null</CODE> if the parse is not finished
+	 *         or the target cannot be derived
+	 */
+	public synchronized EarleyParser.ForestNode getForest() {
+		return parser == null ? null : parser.getForest();
+	}
+
+	/**
+	 * Returns the number of items in the chart of the parse.
+	 */
+	public int getTotalNodeCount() {
+		return parser == null ? 0 : parser.getItemCount();
+	}
+
+	public int getCurrentNodeCount() {
+		return getTotalNodeCount();
+	}
+
+	public int getConsiderationNodeCount() {
+		return 0;
+	}
+
+	/** The parser, once the parse has started. */
+	private volatile EarleyParser parser = null;
+
+	/** The answer node, once it has been built. */
+	private ParseNode answer = null;
+}
@@ -0,0 +1,788 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package grammar.parse;
+
+import grammar.Grammar;
+import grammar.Production;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import JFLAPnew.formaldef.symbols.Symbol;
+import JFLAPnew.formaldef.symbols.SymbolString;
+import JFLAPnew.formaldef.symbols.variable.Variable;
+
+/**
+ * The <CODE>EarleyParser</CODE> parses strings with any context free grammar,
+ * including ambiguous, left recursive and lambda producing ones, in time cubic
+ * in the length of the string, and close to linear for unambiguous grammars.
+ * <P>
+ * The grammar is compiled once into arrays over integer symbol numbers, and
+ * each parse fills a chart of Earley items, with lambda productions handled
+ * as by Aycock and Horspool so that every item is added only once, and right
+ * recursion handled as by Leo so that it takes linear time: a chain of
+ * completions that has only one way to go is completed in one step, and the
+ * items skipped are only added if something asks for them. Each item
+ * remembers the items that first justified it, so one derivation can be read
+ * out in time linear in its size with {@link #getAnswer}. All derivations are
+ * available as a shared packed parse forest from {@link #getForest}, which is
+ * built lazily from the chart.
+ */
+
+public class EarleyParser {
+	/**
+	 * Compiles a grammar for parsing.
+	 *
+	 * @param grammar
+	 *            a grammar whose productions each have a single variable on
+	 *            the left hand side
+	 * @throws IllegalArgumentException
+	 *             if a production has something else on its left hand side
+	 */
+	public EarleyParser(Grammar grammar) {
+		Production[] productions = grammar.getProductions();
+		myProductions = productions;
+		Map<Symbol, Integer> numbers = new HashMap<Symbol, Integer>();
+		ArrayList<Symbol> symbols = new ArrayList<Symbol>();
+		// Variables are numbered first.
+		for (int i = 0; i < productions.length; i++) {
+			SymbolString lhs = productions[i].getLHS();
+			if (lhs.size() != 1 || !(lhs.getFirst() instanceof Variable))
+				throw new IllegalArgumentException(productions[i]
+						+ " is not context free.");
+			number(lhs.getFirst(), numbers, symbols);
+		}
+		for (int i = 0; i < productions.length; i++)
+			for (Symbol symbol : productions[i].getRHS())
+				if (symbol instanceof Variable)
+					number(symbol, numbers, symbols);
+		myVariables = symbols.size();
+		for (int i = 0; i < productions.length; i++)
+			for (Symbol symbol : productions[i].getRHS())
+				number(symbol, numbers, symbols);
+		myNumbers = numbers;
+		mySymbols = symbols.toArray(new Symbol[0]);
+		Integer start = grammar.getStartVariable() == null ? null : numbers
+				.get(grammar.getStartVariable());
+		myStart = start == null ? -1 : start.intValue();
+
+		// Each production with the dot before each symbol and at the end is
+		// a rule.
+		int rules = 0;
+		myLHS = new int[productions.length];
+		myRHS = new int[productions.length][];
+		myFirstRule = new int[productions.length];
+		int[] count = new int[myVariables];
+		for (int p = 0; p < productions.length; p++) {
+			myLHS[p] = numbers.get(productions[p].getLHS().getFirst());
+			SymbolString rhs = productions[p].getRHS();
+			myRHS[p] = new int[rhs.size()];
+			for (int i = 0; i < myRHS[p].length; i++)
+				myRHS[p][i] = numbers.get(rhs.get(i));
+			myFirstRule[p] = rules;
+			rules += myRHS[p].length + 1;
+			count[myLHS[p]]++;
+		}
+		myRuleProduction = new int[rules];
+		myRuleNext = new int[rules];
+		for (int p = 0; p < productions.length; p++)
+			for (int d = 0; d <= myRHS[p].length; d++) {
+				myRuleProduction[myFirstRule[p] + d] = p;
+				myRuleNext[myFirstRule[p] + d] = d < myRHS[p].length ? myRHS[p][d]
+						: -1;
+			}
+		myProductionsOf = new int[myVariables][];
+		for (int v = 0; v < myVariables; v++)
+			myProductionsOf[v] = new int[count[v]];
+		Arrays.fill(count, 0);
+		for (int p = 0; p < productions.length; p++)
+			myProductionsOf[myLHS[p]][count[myLHS[p]]++] = p;
+
+		// Find the lambda productions in rounds, so that each variable that
+		// derives lambda has a production that derives it without cycles.
+		myNullable = new boolean[myVariables];
+		myLambdaProduction = new int[myVariables];
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			boolean[] nullable = myNullable.clone();
+			for (int p = 0; p < productions.length; p++) {
+				if (nullable[myLHS[p]])
+					continue;
+				boolean all = true;
+				for (int i = 0; all && i < myRHS[p].length; i++)
+					all = myRHS[p][i] < myVariables && myNullable[myRHS[p][i]];
+				if (all) {
+					nullable[myLHS[p]] = true;
+					myLambdaProduction[myLHS[p]] = p;
+					changed = true;
+				}
+			}
+			myNullable = nullable;
+		}
+	}
+
+	/**
+	 * Gives a symbol the next number, if it has none.
+	 */
+	private static void number(Symbol symbol, Map<Symbol, Integer> numbers,
+			ArrayList<Symbol> symbols) {
+		if (numbers.containsKey(symbol))
+			return;
+		numbers.put(symbol, symbols.size());
+		symbols.add(symbol);
+	}
+
+	/**
+	 * Parses a string.
+	 *
+	 * @param target
+	 *            the string of terminals to parse
+	 * @return if the grammar derives the string
+	 */
+	public boolean parse(SymbolString target) {
+		int n = target.size();
+		myLength = n;
+		myInput = new int[n];
+		for (int i = 0; i < n; i++) {
+			Integer number = myNumbers.get(target.get(i));
+			myInput[i] = number == null || number < myVariables ? -1
+					: number.intValue();
+		}
+		myItemCount = 0;
+		myItems = new LongIntMap();
+		myLeo = new LongIntMap();
+		myLeoCount = 0;
+		mySetStart = new int[n + 2];
+		myMaterialized = new boolean[n + 1];
+		myWaiting = new int[(n + 1) * myVariables];
+		Arrays.fill(myWaiting, -1);
+		myForest = null;
+		myAccepted = -1;
+		if (myStart < 0)
+			return false;
+
+		// The items of the last set that read the next terminal.
+		int[] scanned = new int[16];
+		int scans = 0;
+		for (int k = 0; k <= n; k++) {
+			int first = mySetStart[k] = myItemCount;
+			if (k == 0)
+				for (int p : myProductionsOf[myStart])
+					add(0, myFirstRule[p], 0, -1, NONE);
+			for (int i = 0; i < scans; i++)
+				add(k, myItemRule[scanned[i]] + 1, myItemOrigin[scanned[i]],
+						scanned[i], SCAN);
+			scans = 0;
+			for (int item = first; item < myItemCount; item++) {
+				int rule = myItemRule[item], origin = myItemOrigin[item];
+				int next = myRuleNext[rule];
+				if (next < 0) {
+					// Complete: advance every item in the origin waiting on
+					// this variable, or go to the top of its chain.
+					int variable = myLHS[myRuleProduction[rule]];
+					int top = origin < k ? leo(origin, variable) : NO_LEO;
+					if (top >= 0)
+						add(k, myLeoRule[top], myLeoOrigin[top], LEO, item);
+					else
+						for (int w = myWaiting[origin * myVariables + variable]; w >= 0; w = myWaitNext[w])
+							add(k, myItemRule[w] + 1, myItemOrigin[w], w, item);
+				} else if (next < myVariables) {
+					for (int p : myProductionsOf[next])
+						add(k, myFirstRule[p], k, -1, NONE);
+					if (myNullable[next])
+						add(k, rule + 1, origin, item, NULLED);
+				} else if (k < n && myInput[k] == next) {
+					if (scans == scanned.length)
+						scanned = Arrays.copyOf(scanned, scans * 2);
+					scanned[scans++] = item;
+				}
+			}
+			// Stop if nothing reads the next terminal.
+			if (scans == 0 && k < n)
+				return false;
+		}
+		mySetStart[n + 1] = myItemCount;
+		materialize(n);
+		for (int p : myProductionsOf[myStart]) {
+			int item = myItems.get(key(n, myFirstRule[p] + myRHS[p].length, 0));
+			if (item >= 0 && (myAccepted < 0 || item < myAccepted))
+				myAccepted = item;
+		}
+		return myAccepted >= 0;
+	}
+
+	/**
+	 * Returns the key of an item in the chart.
+	 */
+	private long key(int set, int rule, int origin) {
+		return ((long) set * myRuleNext.length + rule) * (myLength + 1)
+				+ origin;
+	}
+
+	/**
+	 * Returns the top of the chain of completions that completing a variable
+	 * from a set starts, if there is only one item in the set waiting on the
+	 * variable and the variable is the last symbol of its production.
+	 *
+	 * @return the index of the top, or {@link #NO_LEO}
+	 */
+	private int leo(int set, int variable) {
+		long key = (long) set * myVariables + variable;
+		int top = myLeo.get(key);
+		if (top != -1)
+			return top;
+		// A cycle of chains ends where it started.
+		myLeo.put(key, NO_LEO);
+		int w = myWaiting[set * myVariables + variable];
+		if (w < 0 || myWaitNext[w] >= 0 || myRuleNext[myItemRule[w] + 1] >= 0)
+			return NO_LEO;
+		int rule = myItemRule[w] + 1, origin = myItemOrigin[w];
+		top = leo(origin, myLHS[myRuleProduction[rule]]);
+		if (top < 0) {
+			if (myLeoCount == myLeoRule.length) {
+				myLeoRule = Arrays.copyOf(myLeoRule, myLeoCount * 2);
+				myLeoOrigin = Arrays.copyOf(myLeoOrigin, myLeoCount * 2);
+			}
+			top = myLeoCount++;
+			myLeoRule[top] = rule;
+			myLeoOrigin[top] = origin;
+		}
+		myLeo.put(key, top);
+		return top;
+	}
+
+	/**
+	 * Adds the items skipped by the chains of completions of a set.
+	 */
+	private void materialize(int set) {
+		if (myMaterialized[set])
+			return;
+		myMaterialized[set] = true;
+		for (int item = mySetStart[set]; item < mySetStart[set + 1]; item++)
+			if (myItemLeft[item] == LEO)
+				materialize(item, set);
+	}
+
+	/**
+	 * Adds the items skipped by the chain of completions that led to an item,
+	 * and gives it the item it advanced.
+	 */
+	private void materialize(int top, int set) {
+		long topKey = key(set, myItemRule[top], myItemOrigin[top]);
+		for (int child = myItemChild[top];;) {
+			int origin = myItemOrigin[child];
+			int w = myWaiting[origin * myVariables
+					+ myLHS[myRuleProduction[myItemRule[child]]]];
+			long key = key(set, myItemRule[w] + 1, myItemOrigin[w]);
+			if (key == topKey) {
+				myItemLeft[top] = w;
+				myItemChild[top] = child;
+				return;
+			}
+			add(set, myItemRule[w] + 1, myItemOrigin[w], w, child);
+			child = myItems.get(key);
+		}
+	}
+
+	/**
+	 * Returns the set of an item added while parsing.
+	 */
+	private int setOf(int item) {
+		int low = 0, high = myLength;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (mySetStart[mid] <= item)
+				low = mid;
+			else
+				high = mid - 1;
+		}
+		return low;
+	}
+
+	/**
+	 * Adds an item to a set, if it is not there already.
+	 *
+	 * @param left
+	 *            the item this advances, {@link #LEO}, or -1
+	 * @param child
+	 *            the completed item this advances over, or {@link #NONE},
+	 *            {@link #SCAN} or {@link #NULLED}
+	 */
+	private void add(int set, int rule, int origin, int left, int child) {
+		long key = key(set, rule, origin);
+		if (myItems.get(key) >= 0)
+			return;
+		if (myItemCount == myItemRule.length) {
+			int size = myItemCount * 2;
+			myItemRule = Arrays.copyOf(myItemRule, size);
+			myItemOrigin = Arrays.copyOf(myItemOrigin, size);
+			myItemLeft = Arrays.copyOf(myItemLeft, size);
+			myItemChild = Arrays.copyOf(myItemChild, size);
+			myWaitNext = Arrays.copyOf(myWaitNext, size);
+		}
+		int item = myItemCount++;
+		myItems.put(key, item);
+		myItemRule[item] = rule;
+		myItemOrigin[item] = origin;
+		myItemLeft[item] = left;
+		myItemChild[item] = child;
+		int next = myRuleNext[rule];
+		if (next >= 0 && next < myVariables) {
+			myWaitNext[item] = myWaiting[set * myVariables + next];
+			myWaiting[set * myVariables + next] = item;
+		}
+	}
+
+	/**
+	 * Returns the number of items in the chart of the last parse.
+	 *
+	 * @return the number of items
+	 */
+	public int getItemCount() {
+		return myItemCount;
+	}
+
+	/**
+	 * Returns a leftmost derivation of the string of the last parse, as a
+	 * chain of parse nodes like those of the brute force parser: the root
+	 * holds the start variable, and each node below it replaces the leftmost
+	 * variable of its parent with one production.
+	 *
+	 * @return the last node of the chain, which holds the string, or <CODE>null</CODE>
+	 *         if the last parse did not succeed
+	 */
+	public ParseNode getAnswer() {
+		if (myAccepted < 0)
+			return null;
+		ParseNode node = new ParseNode(new SymbolString(mySymbols[myStart]),
+				new Production[0], new int[0]);
+		SymbolString derivation = node.getDerivation();
+		// Entries are completed items, or -2 - v for a variable v that
+		// derives lambda.
+		int[] stack = new int[16];
+		int size = 0;
+		stack[size++] = myAccepted;
+		int[] children = new int[16];
+		while (size > 0) {
+			int top = stack[--size];
+			int production, count = 0;
+			if (top >= 0) {
+				if (myItemLeft[top] == LEO)
+					materialize(top, setOf(top));
+				int rule = myItemRule[top];
+				production = myRuleProduction[rule];
+				// Walk back along the items of the production for the
+				// children, last first.
+				for (int item = top; myItemLeft[item] >= 0; item = myItemLeft[item]) {
+					int child = myItemChild[item];
+					if (child == SCAN)
+						continue;
+					if (child == NULLED)
+						child = -2 - myRuleNext[myItemRule[item] - 1];
+					if (count == children.length)
+						children = Arrays.copyOf(children, count * 2);
+					children[count++] = child;
+				}
+			} else {
+				production = myLambdaProduction[-2 - top];
+				for (int i = myRHS[production].length - 1; i >= 0; i--) {
+					if (count == children.length)
+						children = Arrays.copyOf(children, count * 2);
+					children[count++] = -2 - myRHS[production][i];
+				}
+			}
+			// Leftmost first: the children are pushed last first.
+			if (size + count > stack.length)
+				stack = Arrays.copyOf(stack, Math.max(stack.length * 2, size
+						+ count));
+			System.arraycopy(children, 0, stack, size, count);
+			size += count;
+
+			int position = 0;
+			while (!(derivation.get(position) instanceof Variable))
+				position++;
+			Production p = myProductions[production];
+			SymbolString next = new SymbolString(derivation.subList(0,
+					position));
+			next.addAll(p.getRHS());
+			next.addAll(derivation.subList(position + 1));
+			ParseNode child = new ParseNode(next, new Production[] { p },
+					new int[] { position });
+			node.add(child);
+			node = child;
+			derivation = next;
+		}
+		return node;
+	}
+
+	/**
+	 * Returns the shared packed parse forest of the last parse. Its nodes are
+	 * built as they are visited.
+	 *
+	 * @return the node for the start variable over the whole string, or <CODE>null</CODE>
+	 *         if the last parse did not succeed
+	 */
+	public ForestNode getForest() {
+		if (myAccepted < 0)
+			return null;
+		if (myForest == null)
+			myForest = new HashMap<Long, ForestNode>();
+		return symbolNode(myStart, 0, myLength);
+	}
+
+	/**
+	 * Returns if a variable derives a part of the string, given the chart.
+	 */
+	private boolean derives(int variable, int start, int end) {
+		materialize(end);
+		for (int p : myProductionsOf[variable])
+			if (myItems.get(key(end, myFirstRule[p] + myRHS[p].length, start)) >= 0)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Returns the forest node of a symbol over a part of the string.
+	 */
+	private ForestNode symbolNode(int symbol, int start, int end) {
+		Long key = Long.valueOf(((long) symbol * (myLength + 1) + start)
+				* (myLength + 1) + end);
+		ForestNode node = myForest.get(key);
+		if (node == null) {
+			node = new ForestNode(-1, symbol, start, end);
+			myForest.put(key, node);
+		}
+		return node;
+	}
+
+	/**
+	 * Returns the forest node of the first symbols of a production, up to a
+	 * rule, over a part of the string.
+	 */
+	private ForestNode ruleNode(int rule, int start, int end) {
+		Long key = Long.valueOf(-1 - (((long) rule * (myLength + 1) + start)
+				* (myLength + 1) + end));
+		ForestNode node = myForest.get(key);
+		if (node == null) {
+			node = new ForestNode(rule, -1, start, end);
+			myForest.put(key, node);
+		}
+		return node;
+	}
+
+	/**
+	 * A node of a shared packed parse forest. A symbol node stands for all
+	 * the ways a symbol derives a part of the string; each of its families is
+	 * a single node for one production. A production node stands for all the
+	 * ways the first symbols of a production derive a part of the string;
+	 * each of its families is the node for all but the last of those symbols,
+	 * unless there are none, and then the node for the last symbol. Nodes
+	 * with more than one family are where the grammar is ambiguous.
+	 */
+	public class ForestNode {
+		private ForestNode(int rule, int symbol, int start, int end) {
+			myRule = rule;
+			mySymbol = symbol;
+			myStartIndex = start;
+			myEndIndex = end;
+		}
+
+		/**
+		 * Returns the symbol of a symbol node.
+		 *
+		 * @return the symbol, or <CODE>null</CODE> for a production node
+		 */
+		public Symbol getSymbol() {
+			return mySymbol < 0 ? null : mySymbols[mySymbol];
+		}
+
+		/**
+		 * Returns the production of a production node.
+		 *
+		 * @return the production, or <CODE>null</CODE> for a symbol node
+		 */
+		public Production getProduction() {
+			return myRule < 0 ? null
+					: myProductions[myRuleProduction[myRule]];
+		}
+
+		/**
+		 * Returns the number of symbols of the production a production node
+		 * covers.
+		 *
+		 * @return the number of symbols, or 0 for a symbol node
+		 */
+		public int getSymbolCount() {
+			return myRule < 0 ? 0 : myRule
+					- myFirstRule[myRuleProduction[myRule]];
+		}
+
+		/**
+		 * Returns the index of the first terminal of the string covered.
+		 */
+		public int getStart() {
+			return myStartIndex;
+		}
+
+		/**
+		 * Returns the index after the last terminal of the string covered.
+		 */
+		public int getEnd() {
+			return myEndIndex;
+		}
+
+		/**
+		 * Returns the ways this node derives its part of the string. A
+		 * terminal has none.
+		 *
+		 * @return a list of arrays of child nodes, left to right
+		 */
+		public List<ForestNode[]> getFamilies() {
+			if (myFamilies != null)
+				return myFamilies;
+			myFamilies = new ArrayList<ForestNode[]>();
+			int start = myStartIndex, end = myEndIndex;
+			if (myRule < 0) {
+				materialize(end);
+				if (mySymbol < myVariables)
+					for (int p : myProductionsOf[mySymbol]) {
+						int last = myFirstRule[p] + myRHS[p].length;
+						if (myItems.get(key(end, last, start)) >= 0)
+							myFamilies.add(new ForestNode[] { ruleNode(last,
+									start, end) });
+					}
+				return myFamilies;
+			}
+			int count = getSymbolCount();
+			if (count == 0) {
+				myFamilies.add(new ForestNode[0]);
+				return myFamilies;
+			}
+			int symbol = myRHS[myRuleProduction[myRule]][count - 1];
+			for (int k = start; k <= end; k++) {
+				if (count == 1 ? k != start : myItems.get(key(k, myRule - 1,
+						start)) < 0)
+					continue;
+				if (symbol < myVariables ? !derives(symbol, k, end)
+						: k + 1 != end || myInput[k] != symbol)
+					continue;
+				ForestNode last = symbolNode(symbol, k, end);
+				myFamilies.add(count == 1 ? new ForestNode[] { last }
+						: new ForestNode[] { ruleNode(myRule - 1, start, k),
+								last });
+			}
+			return myFamilies;
+		}
+
+		/**
+		 * Returns if there is more than one way to derive the part of the
+		 * string covered.
+		 */
+		public boolean isAmbiguous() {
+			return getFamilies().size() > 1;
+		}
+
+		public String toString() {
+			String name = myRule < 0 ? getSymbol().toString() : getProduction()
+					+ "/" + getSymbolCount();
+			return name + "[" + myStartIndex + "," + myEndIndex + "]";
+		}
+
+		/** The rule of a production node, or -1. */
+		private int myRule;
+
+		/** The symbol of a symbol node, or -1. */
+		private int mySymbol;
+
+		/** The part of the string covered. */
+		private int myStartIndex, myEndIndex;
+
+		/** The families, once found. */
+		private List<ForestNode[]> myFamilies = null;
+	}
+
+	/**
+	 * A map from keys that are not negative to item numbers, by open
+	 * addressing.
+	 */
+	private static class LongIntMap {
+		/**
+		 * Returns the item for a key, or -1.
+		 */
+		public int get(long key) {
+			int mask = myKeys.length - 1;
+			for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+				if (myKeys[i] == key)
+					return myValues[i];
+				if (myKeys[i] < 0)
+					return -1;
+			}
+		}
+
+		/**
+		 * Maps a key to an item.
+		 */
+		public void put(long key, int value) {
+			if (2 * (mySize + 1) > myKeys.length) {
+				long[] keys = myKeys;
+				int[] values = myValues;
+				myKeys = new long[keys.length * 2];
+				myValues = new int[keys.length * 2];
+				Arrays.fill(myKeys, -1);
+				mySize = 0;
+				for (int i = 0; i < keys.length; i++)
+					if (keys[i] >= 0)
+						put(keys[i], values[i]);
+			}
+			int mask = myKeys.length - 1, i = hash(key) & mask;
+			while (myKeys[i] >= 0 && myKeys[i] != key)
+				i = (i + 1) & mask;
+			if (myKeys[i] < 0)
+				mySize++;
+			myKeys[i] = key;
+			myValues[i] = value;
+		}
+
+		private static int hash(long key) {
+			key *= 0x9E3779B97F4A7C15L;
+			return (int) (key ^ (key >>> 32));
+		}
+
+		private long[] myKeys = newKeys(64);
+
+		private int[] myValues = new int[64];
+
+		private int mySize = 0;
+
+		private static long[] newKeys(int size) {
+			long[] keys = new long[size];
+			Arrays.fill(keys, -1);
+			return keys;
+		}
+	}
+
+	/** The child of an item that was predicted. */
+	private static final int NONE = -1;
+
+	/** The child of an item that advanced over a terminal. */
+	private static final int SCAN = -2;
+
+	/** The child of an item that advanced over a variable deriving lambda. */
+	private static final int NULLED = -3;
+
+	/** The left of an item at the top of a chain of completions. */
+	private static final int LEO = -2;
+
+	/** No chain of completions. */
+	private static final int NO_LEO = -2;
+
+	/** The productions of the grammar, by number. */
+	private Production[] myProductions;
+
+	/** The symbols by number, variables first. */
+	private Symbol[] mySymbols;
+
+	/** The number of each symbol. */
+	private Map<Symbol, Integer> myNumbers;
+
+	/** The number of variables. */
+	private int myVariables;
+
+	/** The start variable, or -1 if it has no productions. */
+	private int myStart;
+
+	/** The left and right hand side of each production. */
+	private int[] myLHS;
+
+	private int[][] myRHS;
+
+	/** The first rule of each production, with the dot at the start. */
+	private int[] myFirstRule;
+
+	/** The production of each rule. */
+	private int[] myRuleProduction;
+
+	/** The symbol after the dot of each rule, or -1 at the end. */
+	private int[] myRuleNext;
+
+	/** The productions of each variable. */
+	private int[][] myProductionsOf;
+
+	/** Whether each variable derives lambda. */
+	private boolean[] myNullable;
+
+	/** A production that derives lambda without cycles, for each variable. */
+	private int[] myLambdaProduction;
+
+	/** The symbol numbers of the string of the last parse. */
+	private int[] myInput;
+
+	private int myLength;
+
+	/** The items of the chart, by set, rule and origin. */
+	private LongIntMap myItems;
+
+	/** The number of items. */
+	private int myItemCount;
+
+	/** The rule and origin of each item. */
+	private int[] myItemRule = new int[64], myItemOrigin = new int[64];
+
+	/**
+	 * The item each item advanced, -1 if it was predicted, or {@link #LEO}
+	 * until the chain it tops is materialized.
+	 */
+	private int[] myItemLeft = new int[64];
+
+	/** What each item advanced over. */
+	private int[] myItemChild = new int[64];
+
+	/**
+	 * The last item of each set waiting on each variable, or -1, and the
+	 * item waiting before each.
+	 */
+	private int[] myWaiting, myWaitNext = new int[64];
+
+	/** The first item of each set while parsing. */
+	private int[] mySetStart;
+
+	/** Whether the chains of completions of each set are materialized. */
+	private boolean[] myMaterialized;
+
+	/** The top of the chain of completions of each set and variable. */
+	private LongIntMap myLeo;
+
+	/** The rule and origin of the top of each chain of completions. */
+	private int[] myLeoRule = new int[16], myLeoOrigin = new int[16];
+
+	/** The number of tops of chains. */
+	private int myLeoCount;
+
+	/** The accepting item, or -1. */
+	private int myAccepted = -1;
+
+	/** The forest nodes built so far. */
+	private Map<Long, ForestNode> myForest = null;
+}
@@ -0,0 +1,531 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package grammar.parse;
+
+import grammar.Grammar;
+import grammar.Production;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import JFLAPnew.formaldef.symbols.Symbol;
+import JFLAPnew.formaldef.symbols.SymbolString;
+import JFLAPnew.formaldef.symbols.variable.Variable;
+
+/**
+ * A <CODE>FirstFollow</CODE> keeps the FIRST and FOLLOW sets of the
+ * variables of a context free grammar, and which variables derive lambda, up
+ * to date as the grammar is edited. The sets are bit sets over the
+ * terminals, and are found with work lists: a production is looked at again
+ * only when a set it reads has grown.
+ * <P>
+ * When the productions change, only the variables whose sets can depend on
+ * the productions added or removed have their sets cleared and found again;
+ * the sets of the other variables are left as they were.
+ *
+ * @see Operations#first(Grammar)
+ * @see Operations#follow(Grammar)
+ */
+
+public class FirstFollow {
+	/**
+	 * Instantiates the sets of a grammar with no productions. Call
+	 * {@link #update} to give it the productions of a grammar.
+	 */
+	public FirstFollow() {
+	}
+
+	/**
+	 * Brings the sets up to date with the productions and start variable of a
+	 * grammar.
+	 *
+	 * @param grammar
+	 *            the grammar
+	 * @return <CODE>true</CODE> if the grammar had changed since the last
+	 *         update
+	 * @throws IllegalArgumentException
+	 *             if a production has anything but one variable on its left
+	 */
+	public boolean update(Grammar grammar) {
+		Production[] productions = grammar.getProductions();
+		HashSet<Production> current = new HashSet<Production>();
+		ArrayList<Integer> changed = new ArrayList<Integer>();
+		for (int i = 0; i < productions.length; i++) {
+			if (!current.add(productions[i])
+					|| myIndex.containsKey(productions[i]))
+				continue;
+			changed.add(add(productions[i]));
+		}
+		for (Map.Entry<Production, Integer> entry : myIndex.entrySet())
+			if (!current.contains(entry.getKey()))
+				changed.add(entry.getValue());
+		Variable start = grammar.getStartVariable();
+		int oldStart = myStart;
+		myStart = start == null ? -1 : variable(start);
+		if (changed.isEmpty() && oldStart == myStart)
+			return false;
+		for (int p : changed)
+			if (!myLive[p])
+				myLive[p] = true;
+			else if (!current.contains(myProductions[p])) {
+				myLive[p] = false;
+				myIndex.remove(myProductions[p]);
+			}
+		recompute(changed, oldStart);
+		return true;
+	}
+
+	/**
+	 * Adds a production to the lists of productions, not yet live.
+	 *
+	 * @return the number of the production
+	 */
+	private int add(Production production) {
+		SymbolString left = production.getLHS();
+		if (left.size() != 1 || !(left.get(0) instanceof Variable))
+			throw new IllegalArgumentException(
+					"FIRST and FOLLOW sets need a context free grammar.");
+		// Keep a copy, since productions may be edited in place.
+		production = new Production(new SymbolString(left), new SymbolString(
+				production.getRHS()));
+		int p = myProductionCount++;
+		if (p == myProductions.length) {
+			myProductions = Arrays.copyOf(myProductions, p * 2);
+			myLeft = Arrays.copyOf(myLeft, p * 2);
+			myRight = Arrays.copyOf(myRight, p * 2);
+			myLive = Arrays.copyOf(myLive, p * 2);
+		}
+		myProductions[p] = production;
+		myIndex.put(production, p);
+		myLeft[p] = variable(left.get(0));
+		SymbolString right = production.getRHS();
+		myRight[p] = new int[right.size()];
+		for (int i = 0; i < right.size(); i++) {
+			Symbol symbol = right.get(i);
+			myRight[p][i] = symbol instanceof Variable ? variable(symbol)
+					: -1 - terminal(symbol);
+		}
+		myProductionsOf[myLeft[p]] = append(myProductionsOf[myLeft[p]], p);
+		for (int s : myRight[p])
+			if (s >= 0)
+				myUsedIn[s] = append(myUsedIn[s], p);
+		return p;
+	}
+
+	/**
+	 * Returns the number of a variable, numbering it if it is new.
+	 */
+	private int variable(Symbol symbol) {
+		Integer v = myVariableIds.get(symbol);
+		if (v != null)
+			return v;
+		v = myVariables.size();
+		myVariableIds.put(symbol, v);
+		myVariables.add(symbol);
+		if (v == myNullable.length) {
+			int size = v * 2;
+			myNullable = Arrays.copyOf(myNullable, size);
+			myFollowsEnd = Arrays.copyOf(myFollowsEnd, size);
+			myFirst = Arrays.copyOf(myFirst, size);
+			myFollow = Arrays.copyOf(myFollow, size);
+			myProductionsOf = Arrays.copyOf(myProductionsOf, size);
+			myUsedIn = Arrays.copyOf(myUsedIn, size);
+		}
+		myFirst[v] = new long[myWords];
+		myFollow[v] = new long[myWords];
+		myProductionsOf[v] = new int[1];
+		myUsedIn[v] = new int[1];
+		return v;
+	}
+
+	/**
+	 * Returns the number of a terminal, numbering it if it is new.
+	 */
+	private int terminal(Symbol symbol) {
+		Integer t = myTerminalIds.get(symbol);
+		if (t != null)
+			return t;
+		t = myTerminals.size();
+		myTerminalIds.put(symbol, t);
+		myTerminals.add(symbol);
+		if (t == myWords * 64) {
+			myWords++;
+			for (int v = 0; v < myVariables.size(); v++) {
+				myFirst[v] = Arrays.copyOf(myFirst[v], myWords);
+				myFollow[v] = Arrays.copyOf(myFollow[v], myWords);
+			}
+		}
+		return t;
+	}
+
+	/**
+	 * Appends a number to a list kept as an array whose first entry is the
+	 * size.
+	 */
+	private static int[] append(int[] list, int n) {
+		if (++list[0] == list.length)
+			list = Arrays.copyOf(list, list.length * 2);
+		list[list[0]] = n;
+		return list;
+	}
+
+	/**
+	 * Finds again the sets that may have changed.
+	 *
+	 * @param changed
+	 *            the productions added or removed
+	 * @param oldStart
+	 *            the start variable before, or -1
+	 */
+	private void recompute(ArrayList<Integer> changed, int oldStart) {
+		int variables = myVariables.size();
+		// FIRST and lambda: the left sides of the productions changed, and
+		// every variable with a production that uses one of those.
+		boolean[] first = new boolean[variables];
+		int[] stack = new int[variables];
+		int size = 0;
+		for (int p : changed)
+			size = mark(myLeft[p], first, stack, size);
+		while (size > 0) {
+			int[] used = myUsedIn[stack[--size]];
+			for (int i = 1; i <= used[0]; i++)
+				if (myLive[used[i]])
+					size = mark(myLeft[used[i]], first, stack, size);
+		}
+		// FOLLOW: the variables on the right of the productions changed, or
+		// of a production that uses a variable whose FIRST may change, and
+		// every variable on the right of a production of one of those.
+		boolean[] follow = new boolean[variables];
+		for (int p : changed)
+			size = markRight(p, follow, stack, size);
+		for (int v = 0; v < variables; v++) {
+			if (!first[v])
+				continue;
+			int[] used = myUsedIn[v];
+			for (int i = 1; i <= used[0]; i++)
+				if (myLive[used[i]])
+					size = markRight(used[i], follow, stack, size);
+		}
+		if (oldStart >= 0)
+			size = mark(oldStart, follow, stack, size);
+		if (myStart >= 0)
+			size = mark(myStart, follow, stack, size);
+		while (size > 0) {
+			int[] productions = myProductionsOf[stack[--size]];
+			for (int i = 1; i <= productions[0]; i++)
+				if (myLive[productions[i]])
+					size = markRight(productions[i], follow, stack, size);
+		}
+
+		myQueued = Arrays.copyOf(myQueued, myProductionCount);
+		myQueue = new int[myProductionCount];
+		for (int v = 0; v < variables; v++)
+			if (first[v]) {
+				Arrays.fill(myFirst[v], 0);
+				myNullable[v] = false;
+				enqueueAll(myProductionsOf[v]);
+			}
+		findFirst();
+		for (int v = 0; v < variables; v++)
+			if (follow[v]) {
+				Arrays.fill(myFollow[v], 0);
+				myFollowsEnd[v] = v == myStart;
+				enqueueAll(myUsedIn[v]);
+			}
+		findFollow(follow);
+	}
+
+	/**
+	 * Marks a variable, and pushes it if it was not marked.
+	 *
+	 * @return the new size of the stack
+	 */
+	private static int mark(int v, boolean[] marked, int[] stack, int size) {
+		if (marked[v])
+			return size;
+		marked[v] = true;
+		stack[size++] = v;
+		return size;
+	}
+
+	/**
+	 * Marks the variables on the right of a production.
+	 *
+	 * @return the new size of the stack
+	 */
+	private int markRight(int p, boolean[] marked, int[] stack, int size) {
+		for (int s : myRight[p])
+			if (s >= 0)
+				size = mark(s, marked, stack, size);
+		return size;
+	}
+
+	/**
+	 * Puts the live productions of a list on the work list.
+	 */
+	private void enqueueAll(int[] list) {
+		for (int i = 1; i <= list[0]; i++)
+			if (myLive[list[i]] && !myQueued[list[i]]) {
+				myQueued[list[i]] = true;
+				myQueue[myQueueSize++] = list[i];
+			}
+	}
+
+	/**
+	 * Grows the FIRST sets and lambda from the productions on the work list,
+	 * until it is empty.
+	 */
+	private void findFirst() {
+		while (myQueueSize > 0) {
+			int p = myQueue[--myQueueSize];
+			myQueued[p] = false;
+			int v = myLeft[p];
+			long[] first = myFirst[v];
+			boolean grew = false, nullable = true;
+			for (int s : myRight[p]) {
+				if (s < 0) {
+					grew |= set(first, -1 - s);
+					nullable = false;
+					break;
+				}
+				grew |= or(first, myFirst[s]);
+				if (!myNullable[s]) {
+					nullable = false;
+					break;
+				}
+			}
+			if (nullable && !myNullable[v])
+				myNullable[v] = grew = true;
+			if (grew)
+				enqueueAll(myUsedIn[v]);
+		}
+	}
+
+	/**
+	 * Grows the FOLLOW sets of the variables given from the productions on
+	 * the work list, until it is empty.
+	 */
+	private void findFollow(boolean[] affected) {
+		long[] suffix = new long[myWords];
+		while (myQueueSize > 0) {
+			int p = myQueue[--myQueueSize];
+			myQueued[p] = false;
+			int v = myLeft[p];
+			int[] right = myRight[p];
+			// What may follow each symbol within the production, from the
+			// right.
+			Arrays.fill(suffix, 0);
+			boolean nullable = true;
+			for (int i = right.length - 1; i >= 0; i--) {
+				int s = right[i];
+				if (s < 0) {
+					Arrays.fill(suffix, 0);
+					set(suffix, -1 - s);
+					nullable = false;
+					continue;
+				}
+				if (affected[s]) {
+					boolean grew = or(myFollow[s], suffix);
+					if (nullable) {
+						grew |= or(myFollow[s], myFollow[v]);
+						if (myFollowsEnd[v] && !myFollowsEnd[s])
+							myFollowsEnd[s] = grew = true;
+					}
+					if (grew)
+						enqueueAll(myProductionsOf[s]);
+				}
+				if (!myNullable[s])
+					Arrays.fill(suffix, 0);
+				or(suffix, myFirst[s]);
+				nullable &= myNullable[s];
+			}
+		}
+	}
+
+	/**
+	 * Sets a bit.
+	 *
+	 * @return if the bit was not set
+	 */
+	private static boolean set(long[] bits, int bit) {
+		long word = bits[bit >>> 6];
+		bits[bit >>> 6] = word | 1L << bit;
+		return (word & 1L << bit) == 0;
+	}
+
+	/**
+	 * Adds the bits of one set to another.
+	 *
+	 * @return if the set grew
+	 */
+	private static boolean or(long[] bits, long[] more) {
+		boolean grew = false;
+		for (int i = 0; i < more.length; i++)
+			if ((more[i] & ~bits[i]) != 0) {
+				bits[i] |= more[i];
+				grew = true;
+			}
+		return grew;
+	}
+
+	/**
+	 * Returns if a variable derives lambda.
+	 *
+	 * @param variable
+	 *            the variable
+	 * @return <CODE>true</CODE> if the variable derives lambda
+	 */
+	public boolean isNullable(Symbol variable) {
+		Integer v = myVariableIds.get(variable);
+		return v != null && myNullable[v];
+	}
+
+	/**
+	 * Returns the FIRST sets, as {@link Operations#first(Grammar)} does: a map
+	 * from the string of each symbol to the set of the strings of the
+	 * terminals that may begin what the symbol derives, with the empty string
+	 * if the symbol derives lambda.
+	 *
+	 * @return the map of FIRST sets
+	 */
+	public Map<String, Set<String>> getFirstSets() {
+		Map<String, Set<String>> sets = new HashMap<String, Set<String>>();
+		for (Symbol terminal : myTerminals) {
+			Set<String> set = new HashSet<String>();
+			set.add(terminal.getString());
+			sets.put(terminal.getString(), set);
+		}
+		for (int v = 0; v < myVariables.size(); v++) {
+			Set<String> set = toSet(myFirst[v]);
+			if (myNullable[v])
+				set.add("");
+			sets.put(myVariables.get(v).getString(), set);
+		}
+		return sets;
+	}
+
+	/**
+	 * Returns the FOLLOW sets, as {@link Operations#follow(Grammar)} does: a
+	 * map from the string of each variable to the set of the strings of the
+	 * terminals that may follow it, with <CODE>$</CODE> if it may end the
+	 * string.
+	 *
+	 * @return the map of FOLLOW sets
+	 */
+	public Map<String, Set<String>> getFollowSets() {
+		Map<String, Set<String>> sets = new HashMap<String, Set<String>>();
+		for (int v = 0; v < myVariables.size(); v++) {
+			Set<String> set = toSet(myFollow[v]);
+			if (myFollowsEnd[v])
+				set.add("$");
+			sets.put(myVariables.get(v).getString(), set);
+		}
+		return sets;
+	}
+
+	/**
+	 * Returns the strings of the terminals of a bit set.
+	 */
+	private Set<String> toSet(long[] bits) {
+		Set<String> set = new HashSet<String>();
+		for (int i = 0; i < bits.length; i++)
+			for (long word = bits[i]; word != 0; word &= word - 1)
+				set.add(myTerminals.get(i * 64
+						+ Long.numberOfTrailingZeros(word)).getString());
+		return set;
+	}
+
+	/** The productions seen, by number. */
+	private Production[] myProductions = new Production[16];
+
+	/** The number of productions seen. */
+	private int myProductionCount = 0;
+
+	/** The numbers of the productions in the grammar. */
+	private Map<Production, Integer> myIndex = new HashMap<Production, Integer>();
+
+	/** Whether each production is in the grammar. */
+	private boolean[] myLive = new boolean[16];
+
+	/** The variable on the left of each production. */
+	private int[] myLeft = new int[16];
+
+	/**
+	 * The symbols on the right of each production, variables as their
+	 * numbers and terminals as -1 less theirs.
+	 */
+	private int[][] myRight = new int[16][];
+
+	/** The variables, by number. */
+	private ArrayList<Symbol> myVariables = new ArrayList<Symbol>();
+
+	/** The numbers of the variables. */
+	private Map<Symbol, Integer> myVariableIds = new HashMap<Symbol, Integer>();
+
+	/** The terminals, by number. */
+	private ArrayList<Symbol> myTerminals = new ArrayList<Symbol>();
+
+	/** The numbers of the terminals. */
+	private Map<Symbol, Integer> myTerminalIds = new HashMap<Symbol, Integer>();
+
+	/** The start variable, or -1. */
+	private int myStart = -1;
+
+	/** The number of words in a set of terminals. */
+	private int myWords = 1;
+
+	/** Whether each variable derives lambda. */
+	private boolean[] myNullable = new boolean[16];
+
+	/** The FIRST set of each variable. */
+	private long[][] myFirst = new long[16][];
+
+	/** The FOLLOW set of each variable, less the end of the string. */
+	private long[][] myFollow = new long[16][];
+
+	/** Whether the end of the string is in the FOLLOW set of each variable. */
+	private boolean[] myFollowsEnd = new boolean[16];
+
+	/**
+	 * The productions of each variable, as a list whose first entry is the
+	 * size.
+	 */
+	private int[][] myProductionsOf = new int[16][];
+
+	/**
+	 * The productions that use each variable on the right, as a list whose
+	 * first entry is the size.
+	 */
+	private int[][] myUsedIn = new int[16][];
+
+	/** The work list of productions. */
+	private int[] myQueue = new int[0];
+
+	/** The number of productions on the work list. */
+	private int myQueueSize = 0;
+
+	/** Whether each production is on the work list. */
+	private boolean[] myQueued = new boolean[0];
+}
@@ -50,7 +50,27 @@ public class Operations {
 	}
 
 	/**
-	 * Calculate the first sets of a grammar.
+	 * Returns the FIRST and FOLLOW sets of a grammar, brought up to date with
+	 * its productions. If they changed, the cached first and follow maps of
+	 * the grammar are dropped.
+	 */
+	private static FirstFollow firstFollow(Grammar grammar) {
+		FirstFollow sets = (FirstFollow) CACHED_SETS.get(grammar);
+		if (sets == null) {
+			sets = new FirstFollow();
+			CACHED_SETS.put(grammar, sets);
+		}
+		if (sets.update(grammar)) {
+			CACHED_FIRST.remove(grammar);
+			CACHED_FOLLOW.remove(grammar);
+		}
+		return sets;
+	}
+
+	/**
+	 * Calculate the first sets of a grammar. The sets are kept up to date as
+	 * the grammar is edited, and only those that may have changed are found
+	 * again.
 	 * 
 	 * @param grammar
 	 *            the grammar to calculate first sets for
@@ -58,38 +78,11 @@ public class Operations {
 	 *         for this grammar
 	 */
 	public static Map first(Grammar grammar) {
-		if (CACHED_FIRST.containsKey(grammar))
-			return (Map) CACHED_FIRST.get(grammar);
-		Map first = new HashMap();
-		// Put the terminals in the map.
-		String[] terminals = grammar.getTerminalAlphabet();
-		for (int i = 0; i < terminals.length; i++) {
-			Set termSet = new HashSet();
-			termSet.add(terminals[i]);
-			first.put(terminals[i], termSet);
-		}
-		// Put the variables in the map as empty sets.
-		String[] variables = grammar.getVariableAlphabet();
-		for (int i = 0; i < variables.length; i++) {
-			first.put(variables[i], new HashSet());
-		}
-
-		// Repeatedly go over the productions until there is no more
-		// change.
-		boolean hasChanged = true;
-		Production[] productions = grammar.getProductions();
-		while (hasChanged) {
-			hasChanged = false;
-			for (int i = 0; i < productions.length; i++) {
-				String variable = productions[i].getLHS();
-				String rhs = productions[i].getRHS();
-				Set firstRhs = first(first, rhs);
-				if (setForKey(first, variable).addAll(firstRhs))
-					hasChanged = true;
-			}
-		}
-		CACHED_FIRST.put(grammar, Collections.unmodifiableMap(first));
-		return first(grammar);
+		FirstFollow sets = firstFollow(grammar);
+		if (!CACHED_FIRST.containsKey(grammar))
+			CACHED_FIRST.put(grammar, Collections.unmodifiableMap(sets
+					.getFirstSets()));
+		return (Map) CACHED_FIRST.get(grammar);
 	}
 
 	/**
@@ -104,22 +97,14 @@ public class Operations {
 	 */
 	public static Set first(Map firstSets, String sequence) {
 		Set first = new HashSet();
-		if (sequence.equals(""))
-			first.add("");
+		first.add("");
 		for (int j = 0; j < sequence.length(); j++) {
 			Set s = setForKey(firstSets, sequence.substring(j, j + 1));
-			if (!s.contains("")) {
-				// Doesn't contain lambda. Add it and get the
-				// hell out of dodge.
-				first.addAll(s);
-				break;
-			}
-			// Does contain lambda. Damn it.
-			if (j != sequence.length() - 1)
-				s.remove("");
+			// Lambda stays only if every symbol derives it.
+			first.remove("");
 			first.addAll(s);
-			if (j != sequence.length() - 1)
-				s.add("");
+			if (!s.contains(""))
+				break;
 		}
 		return first;
 	}
@@ -133,52 +118,11 @@ public class Operations {
 	 * @return the map of non-terminals to the follow sets
 	 */
 	public static Map follow(Grammar grammar) {
-		if (CACHED_FOLLOW.containsKey(grammar))
-			return (Map) CACHED_FOLLOW.get(grammar);
-		Map follow = new HashMap();
-		// Add the mapping from the initial variable to the end of
-		// string character.
-		Set initialSet = new HashSet();
-		initialSet.add("$");
-		follow.put(grammar.getStartVariable(), initialSet);
-		// Make every follow mapping empty for now.
-		String[] variables = grammar.getVariableAlphabet();
-		for (int i = 0; i < variables.length; i++)
-			if (!variables[i].equals(grammar.getStartVariable()))
-				follow.put(variables[i], new HashSet());
-		// Get the first sets.
-		Map firstSets = first(grammar);
-		// Iterate repeatedly over the productions until we're
-		// completely done.
-		Production[] productions = grammar.getProductions();
-		boolean hasChanged = true;
-		while (hasChanged) {
-			hasChanged = false;
-			for (int i = 0; i < productions.length; i++) {
-				String variable = productions[i].getLHS();
-				String rhs = productions[i].getRHS();
-				for (int j = 0; j < rhs.length(); j++) {
-					String rhsVariable = rhs.substring(j, j + 1);
-					if (!grammar.isVariable(rhsVariable))
-						continue;
-					Set firstFollowing = first(firstSets, rhs.substring(j + 1));
-					// Is lambda in that following the variable? For
-					// A->aBb where lambda is in FIRST(b), everything
-					// in FOLLOW(A) is in FOLLOW(B).
-					if (firstFollowing.remove("")) {
-						if (setForKey(follow, rhsVariable).addAll(
-								setForKey(follow, variable)))
-							hasChanged = true;
-					}
-					// For A->aBb, everything in FIRST(b) except
-					// lambda is put in FOLLOW(B).
-					if (setForKey(follow, rhsVariable).addAll(firstFollowing))
-						hasChanged = true;
-				}
-			}
-		}
-		CACHED_FOLLOW.put(grammar, Collections.unmodifiableMap(follow));
-		return follow(grammar);
+		FirstFollow sets = firstFollow(grammar);
+		if (!CACHED_FOLLOW.containsKey(grammar))
+			CACHED_FOLLOW.put(grammar, Collections.unmodifiableMap(sets
+					.getFollowSets()));
+		return (Map) CACHED_FOLLOW.get(grammar);
 	}
 
 	/**
@@ -408,6 +352,12 @@ public class Operations {
 	/** The cached follow sets, maps from grammars to follow sets. */
 	private static WeakHashMap CACHED_FOLLOW = new WeakHashMap();
 
+	/**
+	 * The FIRST and FOLLOW sets the cached maps are made from, maps from
+	 * grammars to the sets kept up to date with them.
+	 */
+	private static WeakHashMap CACHED_SETS = new WeakHashMap();
+
 	/**
 	 * The cached variables to productions maps, maps from grammars to maps from
 	 * variables to productions on that variable.
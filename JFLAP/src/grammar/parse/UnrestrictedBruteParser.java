@@ -21,9 +21,14 @@
 package grammar.parse;
 
 import grammar.Grammar;
+import JFLAPnew.formaldef.symbols.SymbolString;
 
 /**
- * This is the brute parser for an unrestricted grammar.
+ * This is the brute parser for an unrestricted grammar. Rather than a
+ * breadth first search of derivations, it runs an {@link UnrestrictedSearch}
+ * a slice at a time, which gives up once it has generated too many forms or
+ * run too long, or a thread running it runs out of memory. The slices run on
+ * several threads at once.
  * 
  * @author Thomas Finley
  */
@@ -38,6 +43,113 @@ public class UnrestrictedBruteParser extends BruteParser {
 	 *            the target string
 	 */
 	public UnrestrictedBruteParser(Grammar grammar, String target) {
-		super(grammar, target);
+		super(grammar, SymbolString.createFromString(target, grammar));
 	}
+
+	/**
+	 * Sets the most forms the parse may generate. This has no effect once the
+	 * parse has started.
+	 * 
+	 * @param nodes
+	 *            the number of forms, or 0 for no limit
+	 */
+	public synchronized void setNodeBudget(int nodes) {
+		nodeBudget = nodes;
+	}
+
+	/**
+	 * Sets the most time the parse may run, not counting the time it is
+	 * paused. This has no effect once the parse has started.
+	 * 
+	 * @param millis
+	 *            the time in milliseconds, or 0 for no limit
+	 */
+	public synchronized void setTimeBudget(long millis) {
+		timeBudget = millis;
+	}
+
+	/**
+	 * Returns if the parse rejected because it used up its budget, rather
+	 * than because the target cannot be derived.
+	 * 
+	 * @return <CODE>true</CODE> if the parse gave up
+	 */
+	public synchronized boolean isOutOfBudget() {
+		return search != null
+				&& search.getState() == UnrestrictedSearch.OUT_OF_BUDGET;
+	}
+
+	/**
+	 * Slices of the search may run on several threads at once.
+	 */
+	protected boolean isParallel() {
+		return true;
+	}
+
+	/**
+	 * Returns the search, starting it if need be.
+	 */
+	private synchronized UnrestrictedSearch getSearch() {
+		if (search == null) {
+			search = new UnrestrictedSearch(grammar, target);
+			search.setNodeBudget(nodeBudget);
+			search.setTimeBudget(timeBudget);
+		}
+		return search;
+	}
+
+	/**
+	 * Runs a slice of the search. This is not synchronized, so that the
+	 * threads of the parse run their slices together.
+	 */
+	protected void parse() {
+		// The grammar is left unset if it derives nothing, or the target is
+		// not all terminals.
+		if (grammar == null) {
+			finish(null);
+			return;
+		}
+		UnrestrictedSearch search = getSearch();
+		int state;
+		try {
+			state = search.search(EXPANSIONS);
+		} catch (Error e) {
+			// Most likely out of memory; the forms are let go, and the parse
+			// gives up rather than leave its threads dead.
+			search.giveUp();
+			state = search.getState();
+		}
+		if (state != UnrestrictedSearch.SEARCHING)
+			finish(state == UnrestrictedSearch.FOUND ? search.getAnswer()
+					: null);
+	}
+
+	public int getTotalNodeCount() {
+		UnrestrictedSearch s = search;
+		return s == null ? 0 : s.getNodeCount();
+	}
+
+	public int getCurrentNodeCount() {
+		return getTotalNodeCount();
+	}
+
+	public int getConsiderationNodeCount() {
+		UnrestrictedSearch s = search;
+		return s == null ? 0 : s.getFrontierSize();
+	}
+
+	/** The number of forms expanded in each slice of the search. */
+	private static final int EXPANSIONS = 256;
+
+	/** The most forms the search may generate by default. */
+	public static final int DEFAULT_NODE_BUDGET = 1000000;
+
+	/** The most forms the search may generate, or 0. */
+	private int nodeBudget = DEFAULT_NODE_BUDGET;
+
+	/** The most time the search may run in milliseconds, or 0. */
+	private long timeBudget = 0;
+
+	/** The search, once the parse has started. */
+	private volatile UnrestrictedSearch search = null;
 }
@@ -0,0 +1,926 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ *
+ *
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package grammar.parse;
+
+import grammar.Grammar;
+import grammar.Production;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import JFLAPnew.formaldef.symbols.Symbol;
+import JFLAPnew.formaldef.symbols.SymbolString;
+import JFLAPnew.formaldef.symbols.variable.Variable;
+
+/**
+ * An <CODE>UnrestrictedSearch</CODE> looks for a derivation of a string in
+ * an unrestricted grammar. It is a bidirectional A* search: sentential forms
+ * are derived forward from the start variable, and reduced backward from the
+ * target by the productions turned around, and each side expands its forms
+ * in order of the steps taken plus a lower bound on the steps still needed,
+ * until some form is reached from both sides.
+ * <P>
+ * The lower bounds compare how far the length, the count of each terminal,
+ * and the number of variables must still change against the most any one
+ * production changes them, so they never overestimate; forms that cannot
+ * reach the other end at all are dropped, as are those whose length cannot
+ * shrink to the target's. Productions with an empty right side are not
+ * turned around, since they could be undone between any two symbols; the
+ * forward side still uses them, so no derivation is missed.
+ * <P>
+ * The forms reached by each side are kept in a table up to a set number,
+ * after which they are only recorded in a Bloom filter, and forms longer than
+ * a set length are dropped. This bounds the memory used, at the cost that a
+ * new form may be taken for one already reached, or a derivation through a
+ * long form missed; a search that has spilled to the filter or dropped a long
+ * form never concludes that there is no derivation. A search also stops after
+ * it has generated a set number of forms, counting those dropped or reached
+ * before, or run for a set time. A target with a terminal that no production
+ * puts down is known at once to have no derivation.
+ * <P>
+ * The search is run a slice at a time with {@link #search}, so that it may be
+ * paused between slices. Several threads may run slices at once: the
+ * frontiers are concurrent sorted sets and the tables concurrent maps, so
+ * the threads share one search without taking turns at a lock.
+ */
+
+public class UnrestrictedSearch {
+	/** The state of a search that has not finished. */
+	public static final int SEARCHING = 0;
+
+	/** The state of a search that found a derivation. */
+	public static final int FOUND = 1;
+
+	/** The state of a search that showed there is no derivation. */
+	public static final int NOT_FOUND = 2;
+
+	/** The state of a search that used up its budget. */
+	public static final int OUT_OF_BUDGET = 3;
+
+	/**
+	 * Instantiates a search for a derivation of a string.
+	 *
+	 * @param grammar
+	 *            the grammar
+	 * @param target
+	 *            the string of terminals to derive
+	 */
+	public UnrestrictedSearch(Grammar grammar, SymbolString target) {
+		myProductions = grammar.getProductions();
+		myLeft = new int[myProductions.length][];
+		myRight = new int[myProductions.length][];
+		for (int i = 0; i < myProductions.length; i++) {
+			myLeft[i] = compile(myProductions[i].getLHS());
+			myRight[i] = compile(myProductions[i].getRHS());
+		}
+		int[] start = compile(new SymbolString(grammar.getStartVariable()));
+		myTarget = compile(target);
+		mySymbols = mySymbolList.toArray(new Symbol[mySymbolList.size()]);
+		myIds = null;
+		mySymbolList = null;
+
+		int symbols = mySymbols.length;
+		myIsVariable = new boolean[symbols];
+		for (int s = 0; s < symbols; s++)
+			myIsVariable[s] = mySymbols[s] instanceof Variable;
+		myTargetCount = new int[symbols];
+		for (int s : myTarget)
+			myTargetCount[s]++;
+		int[] count = new int[symbols];
+		findSmaller(count);
+
+		// The most any one production changes the length, the terminals and
+		// the variables of a form.
+		for (int i = 0; i < myProductions.length; i++) {
+			int growth = myRight[i].length - myLeft[i].length;
+			myMostGrowth = Math.max(myMostGrowth, growth);
+			myMostShrinkage = Math.max(myMostShrinkage, -growth);
+			for (int s : myLeft[i])
+				count[s]--;
+			for (int s : myRight[i])
+				count[s]++;
+			int gained = 0, lost = 0, variablesLost = 0;
+			for (int s = 0; s < symbols; s++) {
+				if (myIsVariable[s])
+					variablesLost -= count[s];
+				else if (count[s] > 0)
+					gained += count[s];
+				else
+					lost -= count[s];
+				count[s] = 0;
+			}
+			myMostTerminalsGained = Math.max(myMostTerminalsGained, gained);
+			myMostTerminalsLost = Math.max(myMostTerminalsLost, lost);
+			myMostVariablesLost = Math.max(myMostVariablesLost, variablesLost);
+		}
+
+		myLeftStarting = index(myLeft);
+		myRightStarting = index(myRight);
+		myForward = new Side(false);
+		myBackward = new Side(true);
+		myFormLimit = Math.max(2 * myTarget.length, myTarget.length
+				+ FORM_SLACK);
+		myForward.add(new Node(start, key(start), null, -1, 0, 0,
+				Math.max(0, forwardEstimate(start, count))));
+		myBackward.add(new Node(myTarget, key(myTarget), null, -1, 0, 0,
+				Math.max(0, backwardEstimate(myTarget))));
+		if (forwardEstimate(start, count) < 0 || !isProduced(myTarget))
+			myState = NOT_FOUND;
+	}
+
+	/**
+	 * Returns if every symbol of a form is on the right side of some
+	 * production.
+	 */
+	private boolean isProduced(int[] form) {
+		boolean[] produced = new boolean[mySymbols.length];
+		for (int[] right : myRight)
+			for (int s : right)
+				produced[s] = true;
+		for (int s : form)
+			if (!produced[s])
+				return false;
+		return true;
+	}
+
+	/**
+	 * Returns the numbers of the symbols of a string, numbering those not yet
+	 * seen.
+	 */
+	private int[] compile(SymbolString string) {
+		int[] compiled = new int[string.size()];
+		for (int i = 0; i < compiled.length; i++) {
+			Symbol symbol = string.get(i);
+			Integer id = myIds.get(symbol);
+			if (id == null) {
+				id = mySymbolList.size();
+				myIds.put(symbol, id);
+				mySymbolList.add(symbol);
+			}
+			compiled[i] = id;
+		}
+		return compiled;
+	}
+
+	/**
+	 * Returns, for each symbol, the productions whose side starts with it.
+	 */
+	private int[][] index(int[][] sides) {
+		int[] counts = new int[mySymbols.length];
+		for (int[] side : sides)
+			if (side.length > 0)
+				counts[side[0]]++;
+		int[][] starting = new int[mySymbols.length][];
+		for (int s = 0; s < starting.length; s++)
+			starting[s] = new int[counts[s]];
+		for (int p = 0; p < sides.length; p++)
+			if (sides[p].length > 0)
+				starting[sides[p][0]][--counts[sides[p][0]]] = p;
+		return starting;
+	}
+
+	/**
+	 * Finds the symbols that may derive something shorter, as
+	 * {@link Unrestricted#smallerSymbols} does; every other symbol stays in
+	 * every form derived from one that has it.
+	 */
+	private void findSmaller(int[] count) {
+		mySmaller = new boolean[mySymbols.length];
+		boolean added;
+		do {
+			added = false;
+			for (int i = 0; i < myProductions.length; i++) {
+				int[] left = myLeft[i], right = myRight[i];
+				if (minimumLength(left) <= minimumLength(right))
+					continue;
+				for (int s : right)
+					count[s]--;
+				for (int s : left)
+					count[s]++;
+				for (int s : left)
+					if (!mySmaller[s] && count[s] > 0)
+						mySmaller[s] = added = true;
+				Arrays.fill(count, 0);
+			}
+		} while (added);
+	}
+
+	/**
+	 * Returns the fewest symbols a form can derive.
+	 */
+	private int minimumLength(int[] form) {
+		int length = 0;
+		for (int s : form)
+			if (!mySmaller[s])
+				length++;
+		return length;
+	}
+
+	/**
+	 * Returns a lower bound on the steps to derive the target from a form, or
+	 * -1 if it cannot be derived.
+	 *
+	 * @param count
+	 *            zeros for counting the symbols of the form, which are left
+	 *            zero
+	 */
+	private int forwardEstimate(int[] form, int[] count) {
+		if (minimumLength(form) > myTarget.length)
+			return -1;
+		int variables = 0, missing = 0, extra = 0;
+		for (int s : form)
+			count[s]++;
+		for (int s = 0; s < count.length; s++) {
+			int have = count[s], wanted = myTargetCount[s];
+			if (myIsVariable[s])
+				variables += have;
+			else if (have > wanted)
+				extra += have - wanted;
+			else
+				missing += wanted - have;
+		}
+		for (int s : form)
+			count[s] = 0;
+		int estimate = 0;
+		estimate = bound(estimate, myTarget.length - form.length, myMostGrowth);
+		estimate = bound(estimate, form.length - myTarget.length,
+				myMostShrinkage);
+		estimate = bound(estimate, variables, myMostVariablesLost);
+		estimate = bound(estimate, missing, myMostTerminalsGained);
+		return bound(estimate, extra, myMostTerminalsLost);
+	}
+
+	/**
+	 * Returns a lower bound on the steps to reduce a form to the start
+	 * variable, or -1 if it cannot be.
+	 */
+	private int backwardEstimate(int[] form) {
+		if (minimumLength(form) > myTarget.length)
+			return -1;
+		int terminals = 0;
+		for (int s : form)
+			if (!myIsVariable[s])
+				terminals++;
+		int estimate = 0;
+		estimate = bound(estimate, form.length - 1, myMostGrowth);
+		estimate = bound(estimate, 1 - form.length, myMostShrinkage);
+		return bound(estimate, terminals, myMostTerminalsGained);
+	}
+
+	/**
+	 * Raises a bound to the steps needed to change something by some amount
+	 * when a step changes it by at most so much.
+	 *
+	 * @return the larger bound, or -1 if either is -1 or the change cannot
+	 *         be made
+	 */
+	private static int bound(int estimate, int change, int most) {
+		if (estimate < 0 || change <= 0)
+			return estimate;
+		if (most <= 0)
+			return -1;
+		return Math.max(estimate, (change + most - 1) / most);
+	}
+
+	/**
+	 * Returns the hash key of a form.
+	 */
+	private static long key(int[] form) {
+		long h = form.length;
+		for (int s : form)
+			h = (h + s) * 0x9E3779B97F4A7C15L;
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		return h ^ (h >>> 33);
+	}
+
+	/**
+	 * Sets the most forms the search may generate.
+	 *
+	 * @param nodes
+	 *            the number of forms, or 0 for no limit
+	 */
+	public void setNodeBudget(int nodes) {
+		myNodeBudget = nodes;
+	}
+
+	/**
+	 * Sets the most time the search may run.
+	 *
+	 * @param millis
+	 *            the time in milliseconds, or 0 for no limit
+	 */
+	public void setTimeBudget(long millis) {
+		myTimeBudget = millis * 1000000;
+	}
+
+	/**
+	 * Sets the number of forms each side keeps in its table before it
+	 * records them in a Bloom filter.
+	 *
+	 * @param forms
+	 *            the number of forms
+	 */
+	public void setTableCapacity(int forms) {
+		myForward.myTable.myCapacity = forms;
+		myBackward.myTable.myCapacity = forms;
+	}
+
+	/**
+	 * Sets the longest form the search keeps. By default this is twice the
+	 * length of the target, and at least 16 symbols longer.
+	 *
+	 * @param symbols
+	 *            the number of symbols
+	 */
+	public void setFormLengthLimit(int symbols) {
+		myFormLimit = symbols;
+	}
+
+	/**
+	 * Ends the search as out of budget, and lets go of the forms it has
+	 * reached. A thread that runs out of memory in the search calls this, so
+	 * that the others may stop.
+	 */
+	public void giveUp() {
+		end(OUT_OF_BUDGET, null);
+		if (myState == FOUND)
+			return;
+		myForward.clear();
+		myBackward.clear();
+	}
+
+	/**
+	 * Runs the search for a while. This may be called by several threads at
+	 * once.
+	 *
+	 * @param expansions
+	 *            the most forms to expand
+	 * @return the state of the search afterwards, {@link #SEARCHING},
+	 *         {@link #FOUND}, {@link #NOT_FOUND} or {@link #OUT_OF_BUDGET}
+	 */
+	public int search(int expansions) {
+		enter();
+		try {
+			int[] count = new int[mySymbols.length];
+			for (int i = 0; i < expansions && myState == SEARCHING; i++) {
+				if (myNodeBudget > 0 && myNodeCount.sum() >= myNodeBudget
+						|| myTimeBudget > 0 && (i & 15) == 0
+						&& getTime() >= myTimeBudget) {
+					end(OUT_OF_BUDGET, null);
+					break;
+				}
+				// Expand the side with the smaller frontier. Other threads
+				// may be expanding forms that will add to the frontiers, so
+				// no form left is only the end if none are.
+				myBusy.incrementAndGet();
+				Side side = myBackward.size() > 0
+						&& myBackward.size() < myForward.size() ? myBackward
+						: myForward;
+				Node node = side.poll();
+				if (node == null && side == myBackward) {
+					side = myForward;
+					node = side.poll();
+				}
+				if (node != null)
+					expand(node, side, side == myForward ? myBackward
+							: myForward, count);
+				if (myBusy.decrementAndGet() == 0 && node == null
+						&& myForward.size() == 0)
+					end(myForward.myTable.isExact() && !myTruncated ? NOT_FOUND
+							: OUT_OF_BUDGET, null);
+			}
+		} finally {
+			leave();
+		}
+		return myState;
+	}
+
+	/**
+	 * Notes that a thread has started running the search.
+	 */
+	private synchronized void enter() {
+		if (myRunning++ == 0)
+			myResumed = System.nanoTime();
+	}
+
+	/**
+	 * Notes that a thread has stopped running the search.
+	 */
+	private synchronized void leave() {
+		if (--myRunning == 0)
+			myTime += System.nanoTime() - myResumed;
+	}
+
+	/**
+	 * Returns the time some thread has been running the search, in
+	 * nanoseconds.
+	 */
+	private synchronized long getTime() {
+		return myRunning == 0 ? myTime : myTime + System.nanoTime()
+				- myResumed;
+	}
+
+	/**
+	 * Ends the search, unless it has already ended.
+	 *
+	 * @param meeting
+	 *            the forward and backward nodes of a form both sides reached
+	 */
+	private synchronized void end(int state, Node[] meeting) {
+		if (myState != SEARCHING)
+			return;
+		myMeeting = meeting;
+		myState = state;
+	}
+
+	/**
+	 * Expands a form of one side, and looks for each new form among those
+	 * the other side has reached.
+	 *
+	 * @param count
+	 *            zeros for counting symbols
+	 */
+	private void expand(Node node, Side side, Side other, int[] count) {
+		int[] form = node.myForm;
+		int[][] starting = side.myBackward ? myRightStarting : myLeftStarting;
+		for (int position = 0; position < form.length; position++) {
+			for (int p : starting[form[position]]) {
+				int[] from = side.myBackward ? myRight[p] : myLeft[p];
+				int[] to = side.myBackward ? myLeft[p] : myRight[p];
+				if (position + from.length > form.length
+						|| !matches(form, position, from))
+					continue;
+				myNodeCount.increment();
+				int length = form.length - from.length + to.length;
+				if (length > myFormLimit) {
+					myTruncated = true;
+					continue;
+				}
+				int[] next = new int[length];
+				System.arraycopy(form, 0, next, 0, position);
+				System.arraycopy(to, 0, next, position, to.length);
+				System.arraycopy(form, position + from.length, next, position
+						+ to.length, form.length - position - from.length);
+				int estimate = side.myBackward ? backwardEstimate(next)
+						: forwardEstimate(next, count);
+				if (estimate < 0)
+					continue;
+				Node child = new Node(next, key(next), node, p, position,
+						node.myDepth + 1, node.myDepth + 1 + estimate);
+				// Once the child is in its side's table, whichever of two
+				// threads reaching a form from both sides looks second finds
+				// the other's node.
+				if (!side.add(child))
+					continue;
+				Node meeting = other.myTable.get(child);
+				if (meeting != null) {
+					end(FOUND, side.myBackward ? new Node[] { meeting, child }
+							: new Node[] { child, meeting });
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns if a form has a string at a position.
+	 */
+	private static boolean matches(int[] form, int position, int[] string) {
+		for (int i = 0; i < string.length; i++)
+			if (form[position + i] != string[i])
+				return false;
+		return true;
+	}
+
+	/**
+	 * Returns the state of the search.
+	 *
+	 * @return {@link #SEARCHING}, {@link #FOUND}, {@link #NOT_FOUND} or
+	 *         {@link #OUT_OF_BUDGET}
+	 */
+	public int getState() {
+		return myState;
+	}
+
+	/**
+	 * Returns the number of forms generated, counting those dropped or
+	 * reached before.
+	 */
+	public int getNodeCount() {
+		return myNodeCount.intValue();
+	}
+
+	/**
+	 * Returns the number of nodes made but not yet expanded.
+	 */
+	public int getFrontierSize() {
+		return myForward.size() + myBackward.size();
+	}
+
+	/**
+	 * Returns the derivation found, as a chain of parse nodes from the start
+	 * variable, each applying one production to the one before.
+	 *
+	 * @return the last node of the chain, whose derivation is the target, or
+	 *         <CODE>null</CODE> if no derivation has been found
+	 */
+	public ParseNode getAnswer() {
+		if (myState != FOUND)
+			return null;
+		ArrayList<Node> forward = new ArrayList<Node>();
+		for (Node node = myMeeting[0]; node != null; node = node.myParent)
+			forward.add(node);
+		ParseNode answer = new ParseNode(toSymbolString(forward.get(forward
+				.size() - 1).myForm), new Production[0], new int[0]);
+		for (int i = forward.size() - 2; i >= 0; i--)
+			answer = step(answer, forward.get(i).myForm,
+					forward.get(i).myProduction, forward.get(i).myPosition);
+		// Each backward node turns into its parent by its production.
+		for (Node node = myMeeting[1]; node.myParent != null; node = node.myParent)
+			answer = step(answer, node.myParent.myForm, node.myProduction,
+					node.myPosition);
+		return answer;
+	}
+
+	/**
+	 * Adds a child to a parse node for a production applied to its
+	 * derivation, and returns the child.
+	 */
+	private ParseNode step(ParseNode node, int[] form, int production,
+			int position) {
+		ParseNode child = new ParseNode(toSymbolString(form),
+				new Production[] { myProductions[production] },
+				new int[] { position });
+		node.add(child);
+		return child;
+	}
+
+	/**
+	 * Returns the string of symbols of a form.
+	 */
+	private SymbolString toSymbolString(int[] form) {
+		SymbolString string = new SymbolString();
+		for (int s : form)
+			string.add(mySymbols[s]);
+		return string;
+	}
+
+	/**
+	 * A sentential form reached by one side, with the step that reached it.
+	 */
+	private static class Node {
+		public Node(int[] form, long key, Node parent, int production,
+				int position, int depth, int estimate) {
+			myForm = form;
+			myKey = key;
+			myParent = parent;
+			myProduction = production;
+			myPosition = position;
+			myDepth = depth;
+			myEstimate = estimate;
+		}
+
+		/** The form. */
+		final int[] myForm;
+
+		/** The hash key of the form. */
+		final long myKey;
+
+		/** The node this was reached from, or <CODE>null</CODE>. */
+		final Node myParent;
+
+		/**
+		 * The production that turns the form of the forward parent into
+		 * this, or this into the form of the backward parent.
+		 */
+		final int myProduction;
+
+		/** Where the left side of the production is or goes. */
+		final int myPosition;
+
+		/** The steps from the root of the side. */
+		final int myDepth;
+
+		/** The steps so far plus the lower bound on those left. */
+		final int myEstimate;
+
+		/** The order the node was queued in. */
+		long mySerial;
+
+		/**
+		 * Nodes are equal if their forms are, so that a node is its own key
+		 * in a table.
+		 */
+		public boolean equals(Object o) {
+			return o instanceof Node && Arrays.equals(myForm, ((Node) o).myForm);
+		}
+
+		public int hashCode() {
+			return (int) (myKey ^ myKey >>> 32);
+		}
+	}
+
+	/**
+	 * Nodes are expanded least estimate first, then deepest first, then
+	 * oldest first.
+	 */
+	private static final Comparator<Node> ORDER = new Comparator<Node>() {
+		public int compare(Node a, Node b) {
+			if (a.myEstimate != b.myEstimate)
+				return a.myEstimate < b.myEstimate ? -1 : 1;
+			if (a.myDepth != b.myDepth)
+				return a.myDepth > b.myDepth ? -1 : 1;
+			return a.mySerial < b.mySerial ? -1 : a.mySerial > b.mySerial ? 1
+					: 0;
+		}
+	};
+
+	/**
+	 * One direction of the search: the forms waiting to be expanded, and
+	 * those reached.
+	 */
+	private static class Side {
+		public Side(boolean backward) {
+			myBackward = backward;
+		}
+
+		/**
+		 * Records a node as reached, and queues it, unless its form was
+		 * reached before.
+		 *
+		 * @return if the node was queued
+		 */
+		public boolean add(Node node) {
+			if (!myTable.add(node))
+				return false;
+			node.mySerial = mySerial.getAndIncrement();
+			myOpen.add(node);
+			mySize.incrementAndGet();
+			return true;
+		}
+
+		/**
+		 * Takes the best node waiting to be expanded.
+		 *
+		 * @return the node, or <CODE>null</CODE> if none are waiting
+		 */
+		public Node poll() {
+			Node node = myOpen.pollFirst();
+			if (node != null)
+				mySize.decrementAndGet();
+			return node;
+		}
+
+		/**
+		 * Returns the number of nodes waiting to be expanded.
+		 */
+		public int size() {
+			return mySize.get();
+		}
+
+		/**
+		 * Lets go of the nodes waiting and reached.
+		 */
+		public void clear() {
+			myOpen.clear();
+			mySize.set(0);
+			myTable.clear();
+		}
+
+		/** Whether this side turns the productions around. */
+		final boolean myBackward;
+
+		/** The nodes waiting to be expanded. */
+		final ConcurrentSkipListSet<Node> myOpen = new ConcurrentSkipListSet<Node>(
+				ORDER);
+
+		/** The number of nodes waiting, which the set does not keep. */
+		private final AtomicInteger mySize = new AtomicInteger();
+
+		/** The forms reached. */
+		final Table myTable = new Table(DEFAULT_TABLE_CAPACITY,
+				DEFAULT_FILTER_BITS);
+
+		/** The number of nodes queued so far. */
+		private final AtomicLong mySerial = new AtomicLong();
+	}
+
+	/**
+	 * The forms one side has reached: a map of nodes, which holds at most so
+	 * many, and a Bloom filter of the keys of those added after that.
+	 */
+	private static class Table {
+		public Table(int capacity, int filterBits) {
+			myCapacity = capacity;
+			myFilterBits = filterBits;
+		}
+
+		/**
+		 * Returns the node in the table with the form of a node, or
+		 * <CODE>null</CODE>.
+		 */
+		public Node get(Node node) {
+			return myNodes.get(node);
+		}
+
+		/**
+		 * Records a node as reached, unless its form may have been reached
+		 * before.
+		 *
+		 * @return if the node was recorded
+		 */
+		public boolean add(Node node) {
+			if (myFilter == null) {
+				if (mySize.get() < myCapacity) {
+					if (myNodes.putIfAbsent(node, node) != null)
+						return false;
+					mySize.incrementAndGet();
+					return true;
+				}
+				synchronized (this) {
+					if (myFilter == null)
+						myFilter = new AtomicLongArray(myFilterBits / 64);
+				}
+			}
+			if (myNodes.containsKey(node))
+				return false;
+			// The node is new if it sets any bit of the filter.
+			AtomicLongArray filter = myFilter;
+			long key = node.myKey, step = (key >>> 32 | key << 32) | 1;
+			int mask = myFilterBits - 1;
+			boolean added = false;
+			for (int i = 0; i < HASHES; i++) {
+				int bit = (int) (key + i * step) & mask;
+				long word;
+				while (((word = filter.get(bit >>> 6)) & 1L << bit) == 0)
+					if (filter.compareAndSet(bit >>> 6, word, word | 1L << bit)) {
+						added = true;
+						break;
+					}
+			}
+			return added;
+		}
+
+		/**
+		 * Returns if the table holds every form recorded.
+		 */
+		public boolean isExact() {
+			return myFilter == null;
+		}
+
+		/**
+		 * Lets go of the nodes and the filter.
+		 */
+		public void clear() {
+			myNodes.clear();
+			mySize.set(0);
+			myFilter = null;
+		}
+
+		/** The number of hashes of a key in the filter. */
+		private static final int HASHES = 4;
+
+		/** The nodes, each its own key. */
+		private final ConcurrentHashMap<Node, Node> myNodes = new ConcurrentHashMap<Node, Node>();
+
+		/** The number of nodes in the map. */
+		private final AtomicInteger mySize = new AtomicInteger();
+
+		/** The most nodes the map holds. */
+		volatile int myCapacity;
+
+		/** The size of the filter, a power of two. */
+		private final int myFilterBits;
+
+		/** The filter, once the map is full. */
+		private volatile AtomicLongArray myFilter = null;
+	}
+
+	/** The number of forms a side keeps in its table by default. */
+	public static final int DEFAULT_TABLE_CAPACITY = 1 << 20;
+
+	/** How much longer than the target a form may be by default, at least. */
+	private static final int FORM_SLACK = 16;
+
+	/** The size of the Bloom filter of a side in bits. */
+	private static final int DEFAULT_FILTER_BITS = 1 << 27;
+
+	/** The productions. */
+	private Production[] myProductions;
+
+	/** The numbers of the symbols on the left of each production. */
+	private int[][] myLeft;
+
+	/** The numbers of the symbols on the right of each production. */
+	private int[][] myRight;
+
+	/** The productions whose left side starts with each symbol. */
+	private int[][] myLeftStarting;
+
+	/** The productions whose right side starts with each symbol. */
+	private int[][] myRightStarting;
+
+	/** The symbols, by number. */
+	private Symbol[] mySymbols;
+
+	/** The numbers of the symbols, while compiling. */
+	private HashMap<Symbol, Integer> myIds = new HashMap<Symbol, Integer>();
+
+	/** The symbols in order of number, while compiling. */
+	private ArrayList<Symbol> mySymbolList = new ArrayList<Symbol>();
+
+	/** Whether each symbol is a variable. */
+	private boolean[] myIsVariable;
+
+	/** Whether each symbol may derive something shorter. */
+	private boolean[] mySmaller;
+
+	/** The target. */
+	private int[] myTarget;
+
+	/** The count of each symbol in the target. */
+	private int[] myTargetCount;
+
+	/** The most a production lengthens a form. */
+	private int myMostGrowth = 0;
+
+	/** The most a production shortens a form. */
+	private int myMostShrinkage = 0;
+
+	/** The most terminals a production adds. */
+	private int myMostTerminalsGained = 0;
+
+	/** The most terminals a production removes. */
+	private int myMostTerminalsLost = 0;
+
+	/** The most a production lowers the number of variables. */
+	private int myMostVariablesLost = 0;
+
+	/** The side from the start variable. */
+	private Side myForward;
+
+	/** The side from the target. */
+	private Side myBackward;
+
+	/** The state of the search. */
+	private volatile int myState = SEARCHING;
+
+	/** The forward and backward nodes of the form both sides reached. */
+	private volatile Node[] myMeeting;
+
+	/** The number of forms generated. */
+	private final LongAdder myNodeCount = new LongAdder();
+
+	/** The longest form kept. */
+	private volatile int myFormLimit;
+
+	/** Whether a form was dropped for its length. */
+	private volatile boolean myTruncated = false;
+
+	/** The number of threads expanding a form. */
+	private final AtomicInteger myBusy = new AtomicInteger();
+
+	/** The most forms to generate, or 0. */
+	private volatile int myNodeBudget = 0;
+
+	/** The time run before the threads last started, in nanoseconds. */
+	private long myTime = 0;
+
+	/** The number of threads running the search. */
+	private int myRunning = 0;
+
+	/** When the threads last started running the search. */
+	private long myResumed;
+
+	/** The most time to run in nanoseconds, or 0. */
+	private volatile long myTimeBudget = 0;
+}
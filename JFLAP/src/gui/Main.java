@@ -229,6 +229,19 @@ public class Main {
                         current.setNumUndo(Integer.parseInt(number));
 					}
 
+					//and the brute force parse limits
+					int[] limits = { current.brute_node_budget,
+							current.brute_time_budget, current.brute_threads };
+					String[] names = { current.BRUTE_NODE_BUDGET_NAME,
+							current.BRUTE_TIME_BUDGET_NAME, current.BRUTE_THREADS_NAME };
+					for (int i = 0; i < names.length; i++) {
+						parent = doc.getDocumentElement()
+						   .getElementsByTagName(names[i]).item(0);
+						if (parent != null)
+							limits[i] = Integer.parseInt(parent.getTextContent());
+					}
+					current.setBruteParseLimits(limits[0], limits[1], limits[2]);
+
 				} catch (SAXException e) {
 					// TODO Auto-generated catch block
 					e.printStackTrace();
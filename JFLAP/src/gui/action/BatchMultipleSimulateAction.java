@@ -71,6 +71,7 @@ import javax.swing.AbstractAction;
 import javax.swing.Action;
 import javax.swing.ButtonGroup;
 import javax.swing.JButton;
+import javax.swing.JComboBox;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
@@ -91,6 +92,7 @@ import javax.swing.tree.TreeNode;
 import automata.Automaton;
 import automata.AutomatonSimulator;
 import automata.Configuration;
+import automata.ConfigurationSearch;
 import automata.NondeterminismDetector;
 import automata.NondeterminismDetectorFactory;
 import automata.SimulatorFactory;
@@ -139,63 +141,6 @@ public class BatchMultipleSimulateAction extends MultipleSimulateAction {
 		return "Multiple Run";
 	}
 
-	/**
-	 * This will search configurations for an accepting configuration.
-	 * 
-	 * @param automaton
-	 *            the automaton input is simulated on
-	 * @param simulator
-	 *            the automaton simulator for this automaton
-	 * @param configs
-	 *            the initial configurations generated from a single input
-	 * @param initialInput
-	 *            the object that represents the initial input; this is a String
-	 *            object in most cases, but for Turing Machines is an array of
-	 *            String objects
-	 * @param associatedConfigurations
-	 *            the first accepting configuration encountered will be added to
-	 *            this list, or the last configuration considered if there was
-	 *            no accepted configuration
-	 * @return <CODE>0</CODE> if this was an accept, <CODE>1</CODE> if
-	 *         reject, and <CODE>2</CODE> if the user cancelled the run
-	 */
-	protected int handleInput(Automaton automaton,
-			AutomatonSimulator simulator, Configuration[] configs,
-			Object initialInput, List associatedConfigurations) {
-		JFrame frame = Universe.frameForEnvironment(getEnvironment());
-		// How many configurations have we had?
-		int numberGenerated = 0;
-		// When should the next warning be?
-		int warningGenerated = WARNING_STEP;
-		Configuration lastConsidered = configs[configs.length - 1];
-		while (configs.length > 0) {
-			numberGenerated += configs.length;
-			// Make sure we should continue.
-			if (numberGenerated >= warningGenerated) {
-				if (!confirmContinue(numberGenerated, frame)) {
-					associatedConfigurations.add(lastConsidered);
-					return 2;
-				}
-				while (numberGenerated >= warningGenerated)
-					warningGenerated *= 2;
-			}
-			// Get the next batch of configurations.
-			ArrayList next = new ArrayList();
-			for (int i = 0; i < configs.length; i++) {
-				lastConsidered = configs[i];
-				if (configs[i].isAccept()) {
-					associatedConfigurations.add(configs[i]);
-					return 0;
-				} else {
-					next.addAll(simulator.stepConfiguration(configs[i]));
-				}
-			}
-			configs = (Configuration[]) next.toArray(new Configuration[0]);
-		}
-		associatedConfigurations.add(lastConsidered);
-		return 1;
-	}
-
 	/**
 	 * Provides an initialized multiple input table object.
 	 * 
@@ -362,60 +307,7 @@ public class BatchMultipleSimulateAction extends MultipleSimulateAction {
 				InputTableModel model = (InputTableModel) table.getModel();
 				
 				if(getObject() instanceof Automaton){
-	                Automaton currentAuto = (Automaton)getEnvironment().myObjects.get(0);
-					AutomatonSimulator simulator = SimulatorFactory
-							.getSimulator(currentAuto);
-					String[][] inputs = model.getInputs();
-	                int uniqueInputs = inputs.length;
-	                int tapes = 1;
-	                if(model.isMultiple){
-	                	if (currentAuto instanceof TuringMachine) {
-							 tapes = ((TuringMachine)currentAuto).tapes;
-	                	}
-	                    uniqueInputs = getEnvironment().myTestStrings.size()/tapes;
-	                }
-					for (int r = 0; r < inputs.length; r++) {
-	                    if(r>0){
-	                        if(r%uniqueInputs==0){
-	                            currentAuto = (Automaton)getEnvironment().myObjects.get(r/uniqueInputs);
-	                           
-	                            simulator = SimulatorFactory.getSimulator(currentAuto);                         
-	                        }
-	                    }
-						Configuration[] configs = null;
-						Object input = null;
-						// Is this a Turing machine?
-						if (currentAuto instanceof TuringMachine) {
-							 
-							configs = ((TMSimulator) simulator)
-									.getInitialConfigurations(inputs[r]);
-							input = inputs[r];
-						} else { // If it's not a Turing machine.
-							configs = simulator
-									.getInitialConfigurations(inputs[r][0]);
-							input = inputs[r][0];
-						}
-						List associated = new ArrayList();
-						int result = handleInput(currentAuto, simulator,
-								configs, input, associated);
-						Configuration c = null;
-						if (associated.size() != 0)
-							c = (Configuration) associated.get(0);
-                        
-                        /*
-                         * If it's a Moore or Mealy machine, the output should be
-                         * the string not accept/reject.
-                         */
-                        if(getObject() instanceof MealyMachine)
-                        {
-                            MealyConfiguration con = (MealyConfiguration) c;
-                            model.setResult(r, con.getOutput(), con, 
-                                getEnvironment().myTransducerStrings, (r%(uniqueInputs))*(tapes+1));
-                        }
-						//currentCompare.add()
-                        else
-                            model.setResult(r, RESULT[result], c, getEnvironment().myTransducerStrings, (r%(uniqueInputs))*(tapes+1));
-					}
+					simulateRows(model, (Automaton)getEnvironment().myObjects.get(0), searchStrategy);
 				}
 				else if(getObject() instanceof Grammar){
 					String[][] inputs = model.getInputs();
@@ -440,6 +332,27 @@ public class BatchMultipleSimulateAction extends MultipleSimulateAction {
 			}
 			
 		});
+		// Stop the runs still going.
+		if(getObject() instanceof Automaton){
+			bar.add(new AbstractAction("Stop") {
+				public void actionPerformed(ActionEvent e) {
+					if (myBatch != null)
+						myBatch.cancel();
+				}
+			});
+		}
+		// Choose the order configurations are searched in.
+		if(getObject() instanceof Automaton){
+			final JComboBox strategies = new JComboBox(ConfigurationSearch.Strategy.values());
+			strategies.setSelectedItem(searchStrategy);
+			strategies.setToolTipText("Search order for configurations");
+			strategies.addActionListener(new ActionListener() {
+				public void actionPerformed(ActionEvent e) {
+					searchStrategy = (ConfigurationSearch.Strategy) strategies.getSelectedItem();
+				}
+			});
+			bar.add(strategies);
+		}
 		if(!((InputTableModel)table.getModel()).isMultiple){
 		// Add the clear button.
 		bar.add(new AbstractAction("Clear") {
@@ -961,6 +874,9 @@ public class BatchMultipleSimulateAction extends MultipleSimulateAction {
 		public JSplitPane mySplit = null;
 	}
 	protected JTable table = null;
+
+	/** The order configurations are searched in. */
+	protected ConfigurationSearch.Strategy searchStrategy = ConfigurationSearch.Strategy.BREADTH_FIRST;
     
 	private static String[] RESULT = { "Accept", "Reject", "Cancelled" };
     
@@ -109,8 +109,16 @@ public class DFAEqualityAction extends FSAAction {
 				.cleanAutomaton(other);
 		automaton = (FiniteStateAutomaton) UselessStatesDetector
 				.cleanAutomaton(automaton);
-		String checkedMessage = checker.equals(other, automaton) ? "They ARE equivalent!"
-				: "They AREN'T equivalent!";
+		String checkedMessage = "They ARE equivalent!";
+		if (!checker.equals(other, automaton)) {
+			checkedMessage = "They AREN'T equivalent!";
+			String counterexample = checker.getCounterexample(other, automaton);
+			if (counterexample != null) {
+				if (counterexample.length() == 0)
+					counterexample = Universe.curProfile.getEmptyStringSymbol();
+				checkedMessage += "\nThey differ on \"" + counterexample + "\".";
+			}
+		}
 		JOptionPane.showMessageDialog(
 				Universe.frameForEnvironment(environment), checkedMessage);
 	}
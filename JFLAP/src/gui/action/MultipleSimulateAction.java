@@ -81,6 +81,7 @@ import javax.swing.JSplitPane;
 import javax.swing.JTable;
 import javax.swing.JToolBar;
 import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
 import javax.swing.Timer;
 import javax.swing.table.TableColumnModel;
 import javax.swing.table.TableModel;
@@ -90,7 +91,9 @@ import javax.swing.tree.TreeNode;
 
 import automata.Automaton;
 import automata.AutomatonSimulator;
+import automata.BatchSimulator;
 import automata.Configuration;
+import automata.ConfigurationSearch;
 import automata.NondeterminismDetector;
 import automata.NondeterminismDetectorFactory;
 import automata.SimulatorFactory;
@@ -140,60 +143,73 @@ public class MultipleSimulateAction extends NoInteractionSimulateAction {
 	}
 
 	/**
-	 * This will search configurations for an accepting configuration.
+	 * Runs the input of every row of the table on its automaton, on as many
+	 * threads as there are processors, and puts each result in the table as
+	 * soon as it is known. A run still going from before is stopped.
 	 * 
-	 * @param automaton
-	 *            the automaton input is simulated on
-	 * @param simulator
-	 *            the automaton simulator for this automaton
-	 * @param configs
-	 *            the initial configurations generated from a single input
-	 * @param initialInput
-	 *            the object that represents the initial input; this is a String
-	 *            object in most cases, but for Turing Machines is an array of
-	 *            String objects
-	 * @param associatedConfigurations
-	 *            the first accepting configuration encountered will be added to
-	 *            this list, or the last configuration considered if there was
-	 *            no accepted configuration
-	 * @return <CODE>0</CODE> if this was an accept, <CODE>1</CODE> if
-	 *         reject, and <CODE>2</CODE> if the user cancelled the run
+	 * @param model
+	 *            the table of inputs
+	 * @param first
+	 *            the automaton for the first rows; when there are several
+	 *            files, the rows of each later file use its automaton
+	 * @param strategy
+	 *            the order configurations are searched in
 	 */
-	protected int handleInput(Automaton automaton,
-			AutomatonSimulator simulator, Configuration[] configs,
-			Object initialInput, List associatedConfigurations) {
-		JFrame frame = Universe.frameForEnvironment(getEnvironment());
-		// How many configurations have we had?
-		int numberGenerated = 0;
-		// When should the next warning be?
-		int warningGenerated = WARNING_STEP;
-		Configuration lastConsidered = configs[configs.length - 1];
-		while (configs.length > 0) {
-			numberGenerated += configs.length;
-			// Make sure we should continue.
-			if (numberGenerated >= warningGenerated) {
-				if (!confirmContinue(numberGenerated, frame)) {
-					associatedConfigurations.add(lastConsidered);
-					return 2;
-				}
-				while (numberGenerated >= warningGenerated)
-					warningGenerated *= 2;
-			}
-			// Get the next batch of configurations.
-			ArrayList next = new ArrayList();
-			for (int i = 0; i < configs.length; i++) {
-				lastConsidered = configs[i];
-				if (configs[i].isAccept()) {
-					associatedConfigurations.add(configs[i]);
-					return 0;
-				} else {
-					next.addAll(simulator.stepConfiguration(configs[i]));
-				}
-			}
-			configs = (Configuration[]) next.toArray(new Configuration[0]);
+	protected void simulateRows(final InputTableModel model, Automaton first,
+			ConfigurationSearch.Strategy strategy) {
+		if (myBatch != null)
+			myBatch.cancel();
+		String[][] inputs = model.getInputs();
+		int uniqueInputs = inputs.length;
+		int tapes = 1;
+		if (model.isMultiple) {
+			if (first instanceof TuringMachine)
+				tapes = ((TuringMachine) first).tapes;
+			uniqueInputs = getEnvironment().myTestStrings.size() / tapes;
 		}
-		associatedConfigurations.add(lastConsidered);
-		return 1;
+		final int unique = uniqueInputs, width = tapes + 1;
+		final boolean transducer = getObject() instanceof MealyMachine;
+		final ArrayList comparison = getEnvironment().myTransducerStrings;
+		// The listener needs the batch it belongs to, which is made with it.
+		final BatchSimulator[] batch = new BatchSimulator[1];
+		batch[0] = new BatchSimulator(Runtime.getRuntime()
+				.availableProcessors(), ROW_TIMEOUT, strategy,
+				new BatchSimulator.Listener() {
+					public void finished(final int row, final int result,
+							final Configuration c, long time) {
+						SwingUtilities.invokeLater(new Runnable() {
+							public void run() {
+								// A later run may have replaced this one, or
+								// the rows may have changed since.
+								if (myBatch != batch[0]
+										|| row >= model.getRowCount() - 1)
+									return;
+								/*
+								 * If it's a Moore or Mealy machine, the output
+								 * should be the string not accept/reject.
+								 */
+								if (transducer && c != null)
+									model.setResult(row,
+											((MealyConfiguration) c).getOutput(),
+											c, comparison, (row % unique) * width);
+								else
+									model.setResult(row, RESULT[result], c,
+											comparison, (row % unique) * width);
+							}
+						});
+					}
+				});
+		myBatch = batch[0];
+		Automaton currentAuto = first;
+		for (int r = 0; r < inputs.length; r++) {
+			if (r > 0 && r % uniqueInputs == 0)
+				currentAuto = (Automaton) getEnvironment().myObjects.get(r
+						/ uniqueInputs);
+			batch[0].submit(r, currentAuto,
+					currentAuto instanceof TuringMachine ? (Object) inputs[r]
+							: inputs[r][0]);
+		}
+		batch[0].shutdown();
 	}
 
 	/**
@@ -362,61 +378,7 @@ public class MultipleSimulateAction extends NoInteractionSimulateAction {
 				InputTableModel model = (InputTableModel) table.getModel();
 				
 				if(getObject() instanceof Automaton){
-	                Automaton currentAuto = (Automaton)getObject();
-					AutomatonSimulator simulator = SimulatorFactory
-							.getSimulator(currentAuto);
-					String[][] inputs = model.getInputs();
-	                int uniqueInputs = inputs.length;
-	                int tapes = 1;
-	                if(model.isMultiple){
-	                	if (currentAuto instanceof TuringMachine) {
-							 tapes = ((TuringMachine)currentAuto).tapes;
-	                	}
-	                    uniqueInputs = getEnvironment().myTestStrings.size()/tapes;
-	                }
-					for (int r = 0; r < inputs.length; r++) {
-	                    if(r>0){
-	                        if(r%uniqueInputs==0){
-	                            currentAuto = (Automaton)getEnvironment().myObjects.get(r/uniqueInputs);
-	                           
-	                            simulator = SimulatorFactory.getSimulator(currentAuto);                         
-	                        }
-	                    }
-						Configuration[] configs = null;
-						Object input = null;
-						// Is this a Turing machine?
-						if (currentAuto instanceof TuringMachine) {
-							 
-							configs = ((TMSimulator) simulator)
-									.getInitialConfigurations(inputs[r]);
-							input = inputs[r];
-						} else { // If it's not a Turing machine.
-							configs = simulator
-									.getInitialConfigurations(inputs[r][0]);
-							input = inputs[r][0];
-						}
-						List associated = new ArrayList();
-						int result = handleInput(currentAuto, simulator,
-								configs, input, associated);
-						Configuration c = null;
-						if (associated.size() != 0)
-							c = (Configuration) associated.get(0);
-                        
-                        /*
-                         * If it's a Moore or Mealy machine, the output should be
-                         * the string not accept/reject.
-                         */
-                        //MERLIN MERLIN MERLIN MERLIN MERLIN//
-                        if(getObject() instanceof MealyMachine)
-                        {
-                            MealyConfiguration con = (MealyConfiguration) c;
-                            model.setResult(r, con.getOutput(), con, 
-                                getEnvironment().myTransducerStrings, (r%(uniqueInputs))*(tapes+1));
-                        }
-						//currentCompare.add()
-                        else
-                            model.setResult(r, RESULT[result], c, getEnvironment().myTransducerStrings, (r%(uniqueInputs))*(tapes+1));
-					}
+					simulateRows(model, (Automaton)getObject(), ConfigurationSearch.Strategy.BREADTH_FIRST);
 				}
 				else if(getObject() instanceof Grammar){
 					String[][] inputs = model.getInputs();
@@ -441,6 +403,15 @@ public class MultipleSimulateAction extends NoInteractionSimulateAction {
 			}
 			
 		});
+		// Stop the runs still going.
+		if(getObject() instanceof Automaton){
+			bar.add(new AbstractAction("Stop") {
+				public void actionPerformed(ActionEvent e) {
+					if (myBatch != null)
+						myBatch.cancel();
+				}
+			});
+		}
 		if(!((InputTableModel)table.getModel()).isMultiple){
 		// Add the clear button.
 		bar.add(new AbstractAction("Clear") {
@@ -962,9 +933,16 @@ public class MultipleSimulateAction extends NoInteractionSimulateAction {
 	}
 	protected JTable table = null;
     
-	private static String[] RESULT = { "Accept", "Reject", "Cancelled" };
+	private static String[] RESULT = { "Accept", "Reject", "Cancelled",
+			"Timed out", "Error" };
     
     protected JPanel myPanel = null;
 
+	/** The runs of the rows going on, or that went on last. */
+	protected BatchSimulator myBatch = null;
+
+	/** The most time the run of one row may take, in milliseconds. */
+	protected static final long ROW_TIMEOUT = 30000;
+
 	private static Color[] RESULT_COLOR = { Color.green, Color.red, Color.black };
 }
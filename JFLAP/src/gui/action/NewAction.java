@@ -164,6 +164,7 @@ public class NewAction extends RestrictedAction {
             MenuBarCreator.addItem(menu, new EmptyStringCharacterAction());
 //            menu.add(Universe.curProfile.getTuringFinalCheckBox());
             menu.add(new SetUndoAmountAction());
+            menu.add(new SetBruteParseLimitsAction());
 
             menu.add(tmPrefMenu);
 
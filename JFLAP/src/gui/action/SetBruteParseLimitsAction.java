@@ -0,0 +1,100 @@
+/*
+ *  JFLAP - Formal Languages and Automata Package
+ * 
+ * 
+ *  Susan H. Rodger
+ *  Computer Science Department
+ *  Duke University
+ *  August 27, 2009
+
+ *  Copyright (c) 2002-2009
+ *  All rights reserved.
+
+ *  JFLAP is open source software. Please see the LICENSE for terms.
+ *
+ */
+
+
+
+
+
+package gui.action;
+
+import gui.environment.Universe;
+
+import java.awt.event.ActionEvent;
+
+import javax.swing.JOptionPane;
+
+/**
+ * The <CODE>SetBruteParseLimitsAction</CODE> is an action to set how many
+ * forms a brute force parse of an unrestricted grammar may generate, how long
+ * it may run, and how many threads a brute force parse runs on.
+ */
+
+public class SetBruteParseLimitsAction extends RestrictedAction {
+	/**
+	 * Instantiates a new <CODE>SetBruteParseLimitsAction</CODE>.
+	 */
+	public SetBruteParseLimitsAction() {
+		super("Set Brute Force Parse Limits", null);
+	}
+
+	/**
+	 * Shows a dialog for each limit, and saves the limits unless one of the
+	 * dialogs is cancelled.
+	 * 
+	 * @param event
+	 *            the action event
+	 */
+	public void actionPerformed(ActionEvent event) {
+		int nodes = ask("Most nodes generated for unrestricted grammars (0 for no limit):",
+				Universe.curProfile.brute_node_budget);
+		if (nodes < 0)
+			return;
+		int seconds = ask("Most seconds run for unrestricted grammars (0 for no limit):",
+				Universe.curProfile.brute_time_budget);
+		if (seconds < 0)
+			return;
+		int threads = ask("Number of threads (0 for one for each processor):",
+				Universe.curProfile.brute_threads);
+		if (threads < 0)
+			return;
+		Universe.curProfile.setBruteParseLimits(nodes, seconds, threads);
+		Universe.curProfile.savePreferences();
+	}
+
+	/**
+	 * Asks for a number until one is given.
+	 * 
+	 * @param message
+	 *            the question
+	 * @param current
+	 *            the number shown at first
+	 * @return the number, or -1 if the dialog was cancelled
+	 */
+	private static int ask(String message, int current) {
+		while (true) {
+			String str = JOptionPane.showInputDialog(message, "" + current);
+			if (str == null)
+				return -1;
+			try {
+				int n = Integer.parseInt(str.trim());
+				if (n >= 0)
+					return n;
+			} catch (NumberFormatException e) {
+			}
+		}
+	}
+
+	/**
+	 * This action applies to every object.
+	 * 
+	 * @param object
+	 *            the object to check
+	 * @return <CODE>true</CODE>
+	 */
+	public static boolean isApplicable(Object object) {
+		return true;
+	}
+}
@@ -47,6 +47,7 @@ import JFLAPnew.formaldef.symbols.SymbolString;
 import JFLAPnew.formaldef.symbols.terminal.Terminal;
 
 import file.xml.DOMPrettier;
+import grammar.parse.UnrestrictedBruteParser;
 import gui.editor.TMTransitionCreator;
 
 public class Profile {
@@ -58,6 +59,15 @@ public class Profile {
 	public String epsilonText = "u03B5";
 	private String emptyStringSymbol;
 	public int undo_num = 50;
+
+	/** The most forms a brute force parse of an unrestricted grammar generates, or 0. */
+	public int brute_node_budget = UnrestrictedBruteParser.DEFAULT_NODE_BUDGET;
+
+	/** The most seconds a brute force parse of an unrestricted grammar runs, or 0. */
+	public int brute_time_budget = 0;
+
+	/** The threads a brute force parse runs on, or 0 for one for each processor. */
+	public int brute_threads = 0;
 	
 	/** The tag bane for the empty string preference. */
 	public String EMPTY_STRING_NAME = "empty_string";
@@ -83,6 +93,15 @@ public class Profile {
     /**The tag name for allow-stay preference.*/
     public static final String ALLOW_STAY = "turing_allow_stay_on_transition";
 
+	/** The tag name for the brute force parse node budget preference. */
+	public static final String BRUTE_NODE_BUDGET_NAME = "brute_node_budget";
+
+	/** The tag name for the brute force parse time budget preference. */
+	public static final String BRUTE_TIME_BUDGET_NAME = "brute_time_budget";
+
+	/** The tag name for the brute force parse threads preference. */
+	public static final String BRUTE_THREADS_NAME = "brute_threads";
+
 
 	/**
 	 * Determines whether transitions can be issued from the final
@@ -113,6 +132,24 @@ public class Profile {
     public void setNumUndo(int nn){
     	undo_num = nn;
     }
+
+	/**
+	 * Sets the limits of brute force parses started from now on.
+	 * 
+	 * @param nodes
+	 *            the most forms a parse of an unrestricted grammar generates,
+	 *            or 0 for no limit
+	 * @param seconds
+	 *            the most seconds a parse of an unrestricted grammar runs, or
+	 *            0 for no limit
+	 * @param threads
+	 *            the threads a parse runs on, or 0 for one for each processor
+	 */
+	public void setBruteParseLimits(int nodes, int seconds, int threads) {
+		brute_node_budget = nodes;
+		brute_time_budget = seconds;
+		brute_threads = threads;
+	}
 	
 	public Profile(){
 		emptyStringSymbol = lambda;
@@ -292,6 +329,12 @@ public class Profile {
 			se.appendChild(element);
 			element = createElement(doc, ALLOW_STAY, null, "" + turingAllowStay);
 			se.appendChild(element);
+			element = createElement(doc, BRUTE_NODE_BUDGET_NAME, null, "" + brute_node_budget);
+			se.appendChild(element);
+			element = createElement(doc, BRUTE_TIME_BUDGET_NAME, null, "" + brute_time_budget);
+			se.appendChild(element);
+			element = createElement(doc, BRUTE_THREADS_NAME, null, "" + brute_threads);
+			se.appendChild(element);
 			
 			DOMPrettier.makePretty(doc);
 			Source s = new DOMSource(doc);
@@ -146,18 +146,21 @@ public class BruteParsePane extends ParsePane {
 			}
 		}
 		else parser = newParser;
-		final Timer timer = new Timer(10, new ActionListener() {
-			public void actionPerformed(ActionEvent e) {
-				if (parser == null)
-					return;
-				String nodeCount = "Nodes generated: "
-						+ parser.getTotalNodeCount() + "("
-						+ parser.getConsiderationNodeCount() + ")";
-				progress.setText("Parser running.  " + nodeCount);
-			}
-		});
 		parser.addBruteParserListener(new BruteParserListener() {
 			public void bruteParserStateChange(BruteParserEvent e) {
+				if (e.isProgress()) {
+					final BruteParser source = e.getParser();
+					SwingUtilities.invokeLater(new Runnable() {
+						public void run() {
+							if (source != parser || source.isFinished())
+								return;
+							progress.setText("Parser running.  Nodes generated: "
+									+ source.getTotalNodeCount() + "("
+									+ source.getConsiderationNodeCount() + ")");
+						}
+					});
+					return;
+				}
 				synchronized (e.getParser()) {
 					String nodeCount = e.getParser().getTotalNodeCount()
 							+ " nodes generated.";
@@ -166,14 +169,15 @@ public class BruteParsePane extends ParsePane {
 					case BruteParserEvent.START:
 						pauseResumeAction.setEnabled(true);
 						pauseResumeAction.putValue(Action.NAME, "Pause");
-						timer.start();
 						status = "Parser started.";
 						statusDisplay.setText(status);
 						break;
 					case BruteParserEvent.REJECT:
 						pauseResumeAction.setEnabled(false);
-						timer.stop();
-						status = "String rejected.";
+						status = e.getParser() instanceof UnrestrictedBruteParser
+								&& ((UnrestrictedBruteParser) e.getParser())
+										.isOutOfBudget() ? "Parser gave up."
+								: "String rejected.";
 						if(myModel != null){
                             String[][] inputs = myModel.getInputs();
                             int size = 1;
@@ -184,7 +188,6 @@ public class BruteParsePane extends ParsePane {
 						}
 						break;
 					case BruteParserEvent.PAUSE:
-						timer.stop();
 						pauseResumeAction.putValue(Action.NAME, "Resume");
 						pauseResumeAction.setEnabled(true);
 						status = "Parser paused.";
@@ -193,7 +196,6 @@ public class BruteParsePane extends ParsePane {
 					case BruteParserEvent.ACCEPT:
 						pauseResumeAction.setEnabled(false);
 						stepAction.setEnabled(true);
-						timer.stop();
 						status = "String accepted!";
 						if(myModel != null){ 
 							myModel.setResult(row, "Accept", null, environment.myTransducerStrings, row);
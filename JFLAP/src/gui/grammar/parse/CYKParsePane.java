@@ -57,6 +57,7 @@ import gui.environment.GrammarEnvironment;
 import gui.grammar.GrammarTable;
 import gui.grammar.GrammarTableModel;
 import gui.sim.multiple.InputTableModel;
+import JFLAPnew.formaldef.symbols.SymbolString;
 
 /**
  * CYK Parse Pane
@@ -182,17 +183,19 @@ public class CYKParsePane extends BruteParsePane{
 	 */
 	public void parseMultiple(){
 		String[][] inputs = myModel.getInputs();
-		row=-1;
-		while(row < (inputs.length-1)) 
+		// The rows are parsed at once, across the processors.
+		SymbolString[] targets = new SymbolString[inputs.length];
+		for (int i = 0; i < inputs.length; i++)
+			targets[i] = SymbolString.createFromString(inputs[i][0], myCNFGrammar);
+		boolean[] accepted = myParser.solveAll(targets);
+		for (row = 0; row < inputs.length; row++)
 		{
-			//System.out.println("ROW = "+row);
-			row++;			
-			//System.out.println("String is = "+inputs[row][0]);
-			if (myParser.solve(inputs[row][0]))
+			if (accepted[row])
 				myModel.setResult(row, "Accept", null, environment.myTransducerStrings, row);
 			else
 				myModel.setResult(row, "Reject", null, environment.myTransducerStrings, row);
 		}
+		row = inputs.length - 1;
 	}
 	
 	/**